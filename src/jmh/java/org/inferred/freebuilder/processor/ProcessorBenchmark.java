@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.SyntheticTypes.Shape;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TempJavaFileManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Measures the {@link Processor} end to end, run through in-memory javac over a synthetic type.
+ *
+ * <p>javac runs with {@code -proc:only}, so the time includes parsing and attributing the input
+ * and the generated sources, but not compiling them to bytecode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProcessorBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int properties;
+
+  @Param({"FLAT", "HIERARCHY", "GENERIC", "ALL_KINDS"})
+  public Shape shape;
+
+  private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+  private TempJavaFileManager fileManager;
+  private JavaFileObject source;
+
+  @Setup
+  public void setUp() {
+    source = new SourceBuilder()
+        .addLine("%s", SyntheticTypes.source(shape, properties))
+        .build();
+  }
+
+  /** Each compilation needs a fresh file manager, as the Filer will not overwrite a source. */
+  @Setup(Level.Invocation)
+  public void newFileManager() {
+    fileManager = TempJavaFileManager.newTempFileManager(null, null, null);
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeFileManager() {
+    fileManager.close();
+  }
+
+  @Benchmark
+  public List<Diagnostic<? extends JavaFileObject>> process() {
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    CompilationTask task = compiler.getTask(
+        null,
+        fileManager,
+        diagnostics,
+        ImmutableList.of("-proc:only"),
+        null,
+        ImmutableList.of(source));
+    task.setProcessors(ImmutableList.of(new Processor()));
+    if (!task.call()) {
+      throw new IllegalStateException("Compilation failed: " + diagnostics.getDiagnostics());
+    }
+    return diagnostics.getDiagnostics();
+  }
+}
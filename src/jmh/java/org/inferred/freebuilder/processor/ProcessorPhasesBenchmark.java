@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.processor.Analyser.CannotGenerateCodeException;
+import org.inferred.freebuilder.processor.SyntheticTypes.Shape;
+import org.inferred.freebuilder.processor.util.CompilationUnitBuilder;
+import org.inferred.freebuilder.processor.util.IndentingFormatter;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.SourceStringBuilder;
+import org.inferred.freebuilder.processor.util.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.util.feature.SourceLevel;
+import org.inferred.freebuilder.processor.util.testing.FakeMessager;
+import org.inferred.freebuilder.processor.util.testing.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Measures each phase of processing a synthetic type in isolation: analysis, code generation,
+ * and laying out the generated source with either formatter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProcessorPhasesBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int properties;
+
+  @Param({"FLAT", "HIERARCHY", "GENERIC", "ALL_KINDS"})
+  public Shape shape;
+
+  private final CodeGenerator codeGenerator = new CodeGenerator();
+  private Model model;
+  private Analyser analyser;
+  private TypeElement type;
+  private Metadata metadata;
+  private String unformattedSource;
+
+  @Setup
+  public void setUp() throws CannotGenerateCodeException {
+    model = Model.create();
+    type = model.newType(SyntheticTypes.source(shape, properties));
+    analyser = new Analyser(
+        model.elementUtils(),
+        new FakeMessager(),
+        MethodIntrospector.instance(model.environment()),
+        model.typeUtils());
+    metadata = analyser.analyse(type);
+    unformattedSource = generate().toString();
+  }
+
+  @TearDown
+  public void tearDown() {
+    model.destroy();
+  }
+
+  @Benchmark
+  public Metadata analyse() throws CannotGenerateCodeException {
+    return analyser.analyse(type);
+  }
+
+  @Benchmark
+  public SourceBuilder generate() {
+    SourceBuilder code = SourceStringBuilder.simple(GuavaLibrary.AVAILABLE, SourceLevel.JAVA_8);
+    codeGenerator.writeBuilderSource(code, metadata);
+    return code;
+  }
+
+  @Benchmark
+  public String formatWithGoogleJavaFormat() {
+    return CompilationUnitBuilder.formatSource(unformattedSource);
+  }
+
+  @Benchmark
+  public String formatWithIndentingFormatter() {
+    return IndentingFormatter.format(unformattedSource);
+  }
+}
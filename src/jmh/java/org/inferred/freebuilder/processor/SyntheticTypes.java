@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.FreeBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Source code of synthetic {@link FreeBuilder} types for the benchmarks to process. */
+public class SyntheticTypes {
+
+  static final String PACKAGE = "com.example";
+  static final String TYPE_NAME = "DataType";
+
+  /** The shapes of type the benchmarks process. */
+  public enum Shape {
+    /** An interface declaring int and String properties. */
+    FLAT,
+    /** Properties inherited through a chain of interfaces, ten per level. */
+    HIERARCHY,
+    /** A generic type with properties of its type parameters. */
+    GENERIC,
+    /** Properties of every kind FreeBuilder supports, in turn. */
+    ALL_KINDS
+  }
+
+  private static final int PROPERTIES_PER_LEVEL = 10;
+
+  private static final ImmutableList<String> FLAT_KINDS = ImmutableList.of("int", "String");
+
+  private static final ImmutableList<String> GENERIC_KINDS = ImmutableList.of(
+      "A", "B", "java.util.List<A>", "java.util.Map<A, B>", "java.util.Optional<B>");
+
+  private static final ImmutableList<String> ALL_KINDS = ImmutableList.of(
+      "int",
+      "String",
+      "@javax.annotation.Nullable String",
+      "java.util.Optional<String>",
+      "com.google.common.base.Optional<Integer>",
+      "java.util.OptionalInt",
+      "java.util.List<String>",
+      "java.util.List<Integer>",
+      "java.util.Set<Long>",
+      "java.util.SortedSet<String>",
+      "java.util.Set<Permission>",
+      "java.util.Map<String, Integer>",
+      "java.util.NavigableMap<Long, String>",
+      "com.google.common.collect.Multiset<String>",
+      "com.google.common.collect.ListMultimap<String, Integer>",
+      "com.google.common.collect.SetMultimap<Integer, String>",
+      "byte[]",
+      "Item");
+
+  /** Returns the source of {@link #TYPE_NAME}, of the given shape and number of properties. */
+  static String source(Shape shape, int properties) {
+    List<String> lines = new ArrayList<>();
+    lines.add("package " + PACKAGE + ";");
+    lines.add("");
+    lines.add("@" + FreeBuilder.class.getName());
+    switch (shape) {
+      case FLAT:
+        lines.add("public interface DataType {");
+        addProperties(lines, FLAT_KINDS, 0, properties);
+        lines.add("  class Builder extends DataType_Builder {}");
+        lines.add("}");
+        break;
+
+      case HIERARCHY:
+        int levels = Math.max(1, properties / PROPERTIES_PER_LEVEL);
+        lines.add("public interface DataType extends Level" + (levels - 1) + " {");
+        lines.add("  class Builder extends DataType_Builder {}");
+        lines.add("}");
+        for (int level = 0; level < levels; level++) {
+          lines.add((level == 0)
+              ? "interface Level0 {"
+              : "interface Level" + level + " extends Level" + (level - 1) + " {");
+          int first = level * PROPERTIES_PER_LEVEL;
+          int last = (level == levels - 1) ? properties : first + PROPERTIES_PER_LEVEL;
+          addProperties(lines, FLAT_KINDS, first, last);
+          lines.add("}");
+        }
+        break;
+
+      case GENERIC:
+        lines.add("public interface DataType<A, B extends Comparable<B>> {");
+        addProperties(lines, GENERIC_KINDS, 0, properties);
+        lines.add("  class Builder<A, B extends Comparable<B>> extends DataType_Builder<A, B> {}");
+        lines.add("}");
+        break;
+
+      case ALL_KINDS:
+        lines.add("public interface DataType {");
+        addProperties(lines, ALL_KINDS, 0, properties);
+        lines.add("  class Builder extends DataType_Builder {}");
+        lines.add("}");
+        lines.add("enum Permission { READ, WRITE }");
+        lines.add("@" + FreeBuilder.class.getName());
+        lines.add("interface Item {");
+        lines.add("  String getName();");
+        lines.add("  class Builder extends Item_Builder {}");
+        lines.add("}");
+        break;
+
+      default:
+        throw new AssertionError(shape);
+    }
+    return String.join("\n", lines) + "\n";
+  }
+
+  private static void addProperties(List<String> lines, List<String> kinds, int first, int last) {
+    for (int i = first; i < last; i++) {
+      lines.add("  " + kinds.get(i % kinds.size()) + " getProperty" + i + "();");
+    }
+  }
+
+  private SyntheticTypes() {}
+}
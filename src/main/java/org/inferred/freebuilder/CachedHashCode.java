@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requests that the value type generated for a {@link FreeBuilder} type compute its hash code
+ * at most once per instance.
+ *
+ * <p>The hash code is cached lazily in a transient field the first time {@code hashCode} is
+ * called, in the same way as {@link String#hashCode()}. Once both sides of an {@code equals}
+ * call have cached their hash codes, values with differing hashes are rejected without
+ * comparing any properties. This is worthwhile for types with large collection properties that
+ * are frequently used as keys of hash-based collections.
+ *
+ * <blockquote><pre>&#64;FreeBuilder
+ * &#64;CachedHashCode
+ * public interface Route {
+ *   List&lt;Waypoint&gt; getWaypoints();
+ *   class Builder extends Route_Builder { }
+ * }</pre></blockquote>
+ *
+ * <p>Has no effect if the type implements {@code hashCode} itself.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface CachedHashCode {}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requests that String values set on the builder generated for a {@link FreeBuilder} type be
+ * canonicalized, so that equal strings held by many values share a single instance.
+ *
+ * <p>Annotate the type to intern every String property, or individual accessor methods to intern
+ * only those properties. Interning applies to plain, {@code @Nullable} and {@code Optional}
+ * String properties, and to String elements, keys and values of {@code List}, {@code Set} and
+ * {@code Map} properties.
+ *
+ * <blockquote><pre>&#64;FreeBuilder
+ * public interface Account {
+ *   &#64;InternStrings String getCountryCode();
+ *   String getDisplayName();
+ *   class Builder extends Account_Builder { }
+ * }</pre></blockquote>
+ *
+ * <p>By default, strings are canonicalized through a small, bounded, lock-free cache of weak
+ * references, which never keeps a string alive by itself. To use a different interner, override
+ * the generated {@code internString} method on your builder:
+ *
+ * <blockquote><pre>class Builder extends Account_Builder {
+ *   &#64;Override protected String internString(String value) {
+ *     return MY_INTERNER.intern(value);
+ *   }
+ * }</pre></blockquote>
+ *
+ * <p>Types and properties without this annotation are unaffected.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.SOURCE)
+public @interface InternStrings {}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requests that the builder generated for a {@link FreeBuilder} type be able to canonicalize
+ * built values, so that equal values held by many objects share a single instance.
+ *
+ * <p>The generated superclass gains a static {@code intern} method, and the builder a
+ * {@code buildInterned} method, which return the canonical instance equal to the value given
+ * (or built). Canonical instances are held weakly, so values no longer referenced elsewhere can
+ * still be garbage-collected. Two distinct canonical instances are never equal, so the
+ * generated {@code equals} method returns without comparing any properties when called on them.
+ *
+ * <blockquote><pre>&#64;FreeBuilder
+ * &#64;InternValues
+ * public interface Currency {
+ *   String getCode();
+ *   int getFractionDigits();
+ *   class Builder extends Currency_Builder { }
+ * }
+ *
+ * Currency usd = new Currency.Builder().setCode("USD").setFractionDigits(2).buildInterned();
+ * Currency same = Currency.Builder.intern(parseCurrency(json));
+ * </pre></blockquote>
+ *
+ * <p>Interning is worthwhile for small sets of distinct values referenced from many places, and
+ * wasteful for values that are rarely equal to one another.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface InternValues {}
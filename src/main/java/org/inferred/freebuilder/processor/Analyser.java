@@ -24,10 +24,13 @@ import static com.google.common.collect.Iterables.tryFind;
 import static com.google.common.collect.Maps.newLinkedHashMap;
 import static javax.lang.model.element.ElementKind.INTERFACE;
 import static javax.lang.model.util.ElementFilter.constructorsIn;
+import static javax.lang.model.util.ElementFilter.methodsIn;
 import static javax.lang.model.util.ElementFilter.typesIn;
 import static javax.tools.Diagnostic.Kind.ERROR;
 import static javax.tools.Diagnostic.Kind.NOTE;
+import static javax.tools.Diagnostic.Kind.WARNING;
 import static org.inferred.freebuilder.processor.BuilderFactory.NO_ARGS_CONSTRUCTOR;
+import static org.inferred.freebuilder.processor.BuilderMethods.setter;
 import static org.inferred.freebuilder.processor.GwtSupport.gwtMetadata;
 import static org.inferred.freebuilder.processor.MethodFinder.methodsOn;
 import static org.inferred.freebuilder.processor.naming.NamingConventions.determineNamingConvention;
@@ -43,15 +46,21 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
+import org.inferred.freebuilder.CachedHashCode;
+import org.inferred.freebuilder.InternStrings;
+import org.inferred.freebuilder.InternValues;
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.Metadata.StandardMethod;
 import org.inferred.freebuilder.processor.Metadata.UnderrideLevel;
+import org.inferred.freebuilder.processor.ProcessingProfile.Measurement;
+import org.inferred.freebuilder.processor.ProcessingProfile.Phase;
 import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
 import org.inferred.freebuilder.processor.naming.NamingConvention;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.QualifiedName;
 
 import java.io.Serializable;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -70,6 +79,7 @@ import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.ErrorType;
 import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Elements;
@@ -100,30 +110,51 @@ class Analyser {
    */
   private static final List<PropertyCodeGenerator.Factory> PROPERTY_FACTORIES = ImmutableList.of(
       new NullablePropertyFactory(), // Must be first, as no other factory supports nulls
+      new PrimitiveListPropertyFactory(),
       new ListPropertyFactory(),
+      new PrimitiveSetPropertyFactory(),
+      new SortedSetPropertyFactory(),
       new SetPropertyFactory(),
+      new PrimitiveMapPropertyFactory(),
+      new SortedMapPropertyFactory(),
       new MapPropertyFactory(),
       new MultisetPropertyFactory(),
       new ListMultimapPropertyFactory(),
       new SetMultimapPropertyFactory(),
+      new PrimitiveCollectionsLibraryPropertyFactory(),
+      new PrimitiveOptionalPropertyFactory(),
       new OptionalPropertyFactory(),
       new BuildablePropertyFactory(),
+      new ArrayPropertyFactory(),
       new DefaultPropertyFactory()); // Must be last, as it will always return a CodeGenerator
 
   private static final String BUILDER_SIMPLE_NAME_TEMPLATE = "%s_Builder";
   private static final String USER_BUILDER_NAME = "Builder";
+  /** The JVM limit on parameter slots, less one for the value constructor's receiver. */
+  private static final int MAX_PARAMETER_SLOTS = 254;
 
   private final Elements elements;
   private final Messager messager;
   private final MethodIntrospector methodIntrospector;
   private final Types types;
+  private final ProcessingProfile profile;
 
   Analyser(
       Elements elements, Messager messager, MethodIntrospector methodIntrospector, Types types) {
+    this(elements, messager, methodIntrospector, types, ProcessingProfile.NONE);
+  }
+
+  Analyser(
+      Elements elements,
+      Messager messager,
+      MethodIntrospector methodIntrospector,
+      Types types,
+      ProcessingProfile profile) {
     this.elements = elements;
     this.messager = messager;
     this.methodIntrospector = methodIntrospector;
     this.types = types;
+    this.profile = profile;
   }
 
   /**
@@ -134,7 +165,9 @@ class Analyser {
   Metadata analyse(TypeElement type) throws CannotGenerateCodeException {
     PackageElement pkg = elements.getPackageOf(type);
     verifyType(type, pkg);
+    Measurement findingMethods = profile.start(QualifiedName.of(type), Phase.FIND_METHODS);
     ImmutableSet<ExecutableElement> methods = methodsOn(type, elements);
+    findingMethods.stop();
     QualifiedName generatedBuilder = QualifiedName.of(
         pkg.getQualifiedName().toString(), generatedBuilderSimpleName(type));
     Optional<TypeElement> builder = tryFindBuilder(generatedBuilder, type);
@@ -144,6 +177,7 @@ class Analyser {
     List<? extends TypeParameterElement> typeParameters = type.getTypeParameters();
     Map<ExecutableElement, Property> properties =
         findProperties(type, removeUnderriddenAndConcreteMethods(methods));
+    Map<StandardMethod, UnderrideLevel> underriddenMethods = findUnderriddenMethods(methods);
     Metadata.Builder metadataBuilder = new Metadata.Builder()
         .setType(QualifiedName.of(type).withParameters(typeParameters))
         .setInterfaceType(type.getKind().isInterface())
@@ -157,15 +191,28 @@ class Analyser {
         .addVisibleNestedTypes(partialType)
         .addVisibleNestedTypes(propertyType)
         .addAllVisibleNestedTypes(visibleTypesIn(type))  // Because we inherit from type
-        .putAllStandardMethodUnderrides(findUnderriddenMethods(methods))
+        .putAllStandardMethodUnderrides(underriddenMethods)
         .setBuilderSerializable(shouldBuilderBeSerializable(builder))
+        .setHashCodeCached(shouldCacheHashCode(type, underriddenMethods))
+        .setInterningStrings(type.getAnnotation(InternStrings.class) != null)
+        .setInterningValues(type.getAnnotation(InternValues.class) != null)
         .addAllProperties(properties.values());
     Metadata baseMetadata = metadataBuilder.build();
     metadataBuilder.mergeFrom(gwtMetadata(type, baseMetadata));
     if (builder.isPresent()) {
+      Measurement introspecting = profile.start(
+          baseMetadata.getType().getQualifiedName(), Phase.INTROSPECT_CONSTRUCTORS);
+      Set<String> methodsInvokedInBuilderConstructor =
+          getMethodsInvokedInBuilderConstructor(builder.get());
+      introspecting.stop();
+      List<Property> propertiesWithCodeGenerators = codeGenerators(
+          properties, baseMetadata, builder.get(), methodsInvokedInBuilderConstructor);
       metadataBuilder
           .clearProperties()
-          .addAllProperties(codeGenerators(properties, baseMetadata, builder.get()));
+          .addAllProperties(propertiesWithCodeGenerators)
+          .setStaticFactoryGenerated(shouldGenerateStaticFactory(
+              type, builder.get(), propertiesWithCodeGenerators))
+          .setResetMethodGenerated(shouldGenerateResetMethod(builder.get(), baseMetadata));
     }
     return metadataBuilder.build();
   }
@@ -306,6 +353,79 @@ class Analyser {
     return result.build();
   }
 
+  /** Returns whether the user has requested a cached hash code, and we can generate one. */
+  private boolean shouldCacheHashCode(
+      TypeElement type, Map<StandardMethod, UnderrideLevel> underriddenMethods) {
+    if (type.getAnnotation(CachedHashCode.class) == null) {
+      return false;
+    }
+    if (underriddenMethods.containsKey(StandardMethod.HASH_CODE)) {
+      messager.printMessage(
+          WARNING, "@CachedHashCode has no effect on types that implement hashCode", type);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether values of {@code type} can be created directly from their property values.
+   *
+   * <p>Every property must be required, and the user's builder must not override anything the
+   * factory would bypass: setters may perform validation, and build() may check invariants. Nor
+   * may any property's generated setters do more than assign the value, e.g. intern strings or
+   * copy arrays. The factory is also skipped if it would clash with, or hide, an existing method
+   * called "of".
+   */
+  private static boolean shouldGenerateStaticFactory(
+      TypeElement type, TypeElement builder, List<Property> properties) {
+    if (properties.isEmpty()) {
+      return false;
+    }
+    Set<String> userMethods = new HashSet<String>();
+    for (ExecutableElement method : methodsIn(type.getEnclosedElements())) {
+      userMethods.add(method.getSimpleName().toString());
+    }
+    for (ExecutableElement method : methodsIn(builder.getEnclosedElements())) {
+      userMethods.add(method.getSimpleName().toString());
+    }
+    if (userMethods.contains("of") || userMethods.contains("build")) {
+      return false;
+    }
+    int parameterSlots = 0;
+    for (Property property : properties) {
+      if (property.getCodeGenerator().getType() != PropertyCodeGenerator.Type.REQUIRED
+          || !property.getCodeGenerator().isStaticFactoryCompatible()
+          || property.getCodeGenerator().isInterningStrings()
+          || userMethods.contains(setter(property))) {
+        return false;
+      }
+      TypeKind kind = property.getType().getKind();
+      parameterSlots += (kind == TypeKind.LONG || kind == TypeKind.DOUBLE) ? 2 : 1;
+    }
+    return parameterSlots <= MAX_PARAMETER_SLOTS;
+  }
+
+  /**
+   * Returns whether a reset method can be generated. It needs a way to create the defaults builder
+   * it caches, and must not clash with an existing method, or a property getter, called "reset".
+   */
+  private static boolean shouldGenerateResetMethod(TypeElement builder, Metadata metadata) {
+    if (!metadata.getBuilderFactory().isPresent()) {
+      return false;
+    }
+    for (ExecutableElement method : methodsIn(builder.getEnclosedElements())) {
+      if (method.getSimpleName().contentEquals("reset")) {
+        return false;
+      }
+    }
+    for (Property property : metadata.getProperties()) {
+      if (property.getGetterName().equals("reset")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static Set<ExecutableElement> removeUnderriddenAndConcreteMethods(
       Iterable<ExecutableElement> methods) {
     ImmutableSet.Builder<ExecutableElement> nonUnderriddenMethods = ImmutableSet.builder();
@@ -398,9 +518,9 @@ class Analyser {
   private List<Property> codeGenerators(
       Map<ExecutableElement, Property> properties,
       Metadata metadata,
-      TypeElement builder) {
+      TypeElement builder,
+      Set<String> methodsInvokedInBuilderConstructor) {
     ImmutableList.Builder<Property> codeGenerators = ImmutableList.builder();
-    Set<String> methodsInvokedInBuilderConstructor = getMethodsInvokedInBuilderConstructor(builder);
     for (Map.Entry<ExecutableElement, Property> entry : properties.entrySet()) {
       Config config = new ConfigImpl(
           builder,
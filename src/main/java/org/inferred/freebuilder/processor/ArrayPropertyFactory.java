@@ -0,0 +1,397 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
+import static org.inferred.freebuilder.processor.BuilderMethods.mapper;
+import static org.inferred.freebuilder.processor.BuilderMethods.setter;
+import static org.inferred.freebuilder.processor.BuilderMethods.wrapMethod;
+import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
+import static org.inferred.freebuilder.processor.util.StaticExcerpt.Type.METHOD;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.ParameterizedType;
+import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * {@link PropertyCodeGenerator.Factory} providing value semantics for primitive array and
+ * {@link ByteBuffer} properties.
+ *
+ * <p>Setters copy their argument, while <code>wrap<i>Property</i></code> methods take ownership of
+ * it without copying. Builders and values never modify the array or buffer they hold, so built
+ * values share it with the builder. Value getters return a copy of an array, or a read-only
+ * duplicate of a buffer, and equals and hashCode compare contents.
+ */
+public class ArrayPropertyFactory implements PropertyCodeGenerator.Factory {
+
+  @Override
+  public Optional<CodeGenerator> create(Config config) {
+    Property property = config.getProperty();
+    TypeMirror type = property.getType();
+    boolean isByteBuffer;
+    if (type.getKind() == TypeKind.ARRAY
+        && ((ArrayType) type).getComponentType().getKind().isPrimitive()) {
+      isByteBuffer = false;
+    } else if (maybeDeclared(type).isPresent() && erasesToAnyOf(
+        maybeDeclared(type).get(), ByteBuffer.class)) {
+      isByteBuffer = true;
+    } else {
+      return Optional.absent();
+    }
+    boolean hasDefault = config.getMethodsInvokedInBuilderConstructor().contains(setter(property))
+        || config.getMethodsInvokedInBuilderConstructor().contains(wrapMethod(property));
+    return Optional.of(
+        new CodeGenerator(config.getMetadata(), property, hasDefault, isByteBuffer));
+  }
+
+  @VisibleForTesting static class CodeGenerator extends PropertyCodeGenerator {
+
+    private final boolean hasDefault;
+    private final boolean isByteBuffer;
+
+    CodeGenerator(Metadata metadata, Property property, boolean hasDefault, boolean isByteBuffer) {
+      super(metadata, property);
+      this.hasDefault = hasDefault;
+      this.isByteBuffer = isByteBuffer;
+    }
+
+    @Override
+    public Type getType() {
+      return hasDefault ? Type.HAS_DEFAULT : Type.REQUIRED;
+    }
+
+    @Override
+    public boolean isStaticFactoryCompatible() {
+      // Setters copy their argument, which the static factory would skip.
+      return false;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      // ByteBuffer.equals already compares contents.
+      return isByteBuffer ? EqualityCost.NESTED_VALUE : EqualityCost.ARRAY;
+    }
+
+    @Override
+    public void addBuilderFieldDeclaration(SourceBuilder code) {
+      code.addLine("private %s %s;", property.getType(), property.getName());
+    }
+
+    @Override
+    public void addBuilderFieldAccessors(SourceBuilder code) {
+      addSetter(code, metadata);
+      addWrap(code, metadata);
+      if (isByteBuffer) {
+        addByteArraySetter(code, metadata);
+        addByteArrayWrap(code, metadata);
+      }
+      addMapper(code, metadata);
+      addGetter(code, metadata);
+    }
+
+    private void addSetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Sets the value to be returned by %s",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * to a copy of {@code %s}.", property.getName());
+      if (isByteBuffer) {
+        code.addLine(" * Only the remaining bytes are copied, and the position of")
+            .addLine(" * {@code %s} is not changed.", property.getName());
+      }
+      code.addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code %s} is null", property.getName())
+          .addLine(" */");
+      addAccessorAnnotations(code);
+      code.addLine("public %s %s(%s %s) {",
+          metadata.getBuilder(), setter(property), property.getType(), property.getName());
+      if (isByteBuffer) {
+        code.addLine("  return %s(readOnlyCopy(%s));", wrapMethod(property), property.getName());
+      } else {
+        code.addLine("  return %s(%s.clone());", wrapMethod(property), property.getName());
+      }
+      code.addLine("}");
+    }
+
+    private void addWrap(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Sets the value to be returned by %s",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * to {@code %s}, without copying it.", property.getName());
+      if (isByteBuffer) {
+        code.addLine(" * The value will hold a read-only view of the remaining bytes.");
+      }
+      code.addLine(" *")
+          .addLine(" * <p>This transfers ownership of {@code %s}: the caller must not modify it",
+              property.getName())
+          .addLine(" * afterwards, or built values will change too.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code %s} is null", property.getName())
+          .addLine(" */")
+          .addLine("public %s %s(%s %s) {",
+              metadata.getBuilder(), wrapMethod(property), property.getType(), property.getName());
+      code.add(PreconditionExcerpts.checkNotNull(property.getName()));
+      if (isByteBuffer) {
+        code.addLine("  this.%1$s = %1$s.slice().asReadOnlyBuffer();", property.getName());
+      } else {
+        code.addLine("  this.%1$s = %1$s;", property.getName());
+      }
+      if (!hasDefault) {
+        code.addLine("  %s", UnsetProperties.markSet(metadata, property));
+      }
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addByteArraySetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Sets the value to be returned by %s",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * to a copy of {@code %s}.", property.getName())
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code %s} is null", property.getName())
+          .addLine(" */")
+          .addLine("public %s %s(byte[] %s) {",
+              metadata.getBuilder(), setter(property), property.getName())
+          .addLine("  return %s(%s.clone());", wrapMethod(property), property.getName())
+          .addLine("}");
+    }
+
+    private void addByteArrayWrap(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Sets the value to be returned by %s",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * to a read-only view of {@code %s}, without copying it.", property.getName())
+          .addLine(" *")
+          .addLine(" * <p>This transfers ownership of {@code %s}: the caller must not modify it",
+              property.getName())
+          .addLine(" * afterwards, or built values will change too.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code %s} is null", property.getName())
+          .addLine(" */")
+          .addLine("public %s %s(byte[] %s) {",
+              metadata.getBuilder(), wrapMethod(property), property.getName())
+          .addLine("  return %s(%s.wrap(%s));",
+              wrapMethod(property), ByteBuffer.class, property.getName())
+          .addLine("}");
+    }
+
+    private void addMapper(SourceBuilder code, Metadata metadata) {
+      ParameterizedType unaryOperator = code.feature(FUNCTION_PACKAGE).unaryOperator().orNull();
+      if (unaryOperator == null) {
+        return;
+      }
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Replaces the value to be returned by %s",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * by applying {@code mapper} to it and using a copy of the result.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code mapper} is null"
+              + " or returns null");
+      if (!hasDefault) {
+        code.addLine(" * @throws IllegalStateException if the field has not been set");
+      }
+      TypeMirror typeParam = firstNonNull(property.getBoxedType(), property.getType());
+      code.addLine(" */")
+          .add("public %s %s(%s mapper) {",
+              metadata.getBuilder(),
+              mapper(property),
+              unaryOperator.withParameters(typeParam));
+      if (!hasDefault) {
+        code.add(PreconditionExcerpts.checkNotNull("mapper"));
+      }
+      code.addLine("  return %s(mapper.apply(%s()));", setter(property), getter(property))
+          .addLine("}");
+    }
+
+    private void addGetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns %s the value that will be returned by %s.",
+              isByteBuffer ? "a read-only view of" : "a copy of",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()));
+      if (!hasDefault) {
+        code.addLine(" *")
+            .addLine(" * @throws IllegalStateException if the field has not been set");
+      }
+      code.addLine(" */")
+          .addLine("public %s %s() {", property.getType(), getter(property));
+      if (!hasDefault) {
+        code.add(PreconditionExcerpts.checkState(
+            UnsetProperties.isSet(metadata, property), property.getName() + " not set"));
+      }
+      code.add("  return ");
+      addReadValueFragment(code, property.getName());
+      code.add(";\n")
+          .addLine("}");
+    }
+
+    @Override
+    public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      // The builder never modifies its array or buffer in place, so the value can share it.
+      code.addLine("%s = %s.%s;", finalField, builder, property.getName());
+    }
+
+    @Override
+    public void addReadValueFragment(SourceBuilder code, String finalField) {
+      if (isByteBuffer) {
+        code.add("%s.duplicate()", finalField);
+      } else {
+        code.add("%s.clone()", finalField);
+      }
+    }
+
+    @Override
+    public Excerpt toStringValue(String finalField) {
+      if (isByteBuffer) {
+        return super.toStringValue(finalField);
+      }
+      // An array's own toString only gives its identity hash code.
+      return Excerpts.add("%s.toString(%s)", Arrays.class, finalField);
+    }
+
+    @Override
+    public void addHashCodeFragment(SourceBuilder code, String finalField) {
+      if (isByteBuffer) {
+        super.addHashCodeFragment(code, finalField);
+      } else {
+        code.add("%s.hashCode(%s)", Arrays.class, finalField);
+      }
+    }
+
+    @Override
+    public void addMergeFromValue(Block code, String value) {
+      Excerpt defaults = Declarations.freshBuilder(code, metadata).orNull();
+      if (defaults != null) {
+        code.add("if (");
+        if (!hasDefault) {
+          code.add("%s || ", UnsetProperties.isUnset(metadata, property, defaults));
+        }
+        addNotEqual(code,
+            Excerpts.add("%s.%s()", value, property.getGetterName()),
+            Excerpts.add("%s.%s", defaults, property.getName()));
+        code.add(") {%n");
+      }
+      // The value's getter already returns a copy or read-only view, so take ownership of it.
+      code.addLine("  %s(%s.%s());", wrapMethod(property), value, property.getGetterName());
+      if (defaults != null) {
+        code.addLine("}");
+      }
+    }
+
+    @Override
+    public void addMergeFromBuilder(Block code, String builder) {
+      Excerpt base = Declarations.upcastToGeneratedBuilder(code, metadata, builder);
+      Excerpt defaults = Declarations.freshBuilder(code, metadata).orNull();
+      if (defaults != null) {
+        code.add("if (");
+        if (!hasDefault) {
+          code.add("%s && ", UnsetProperties.isSet(metadata, property, base))
+              .add("(%s ||", UnsetProperties.isUnset(metadata, property, defaults));
+        }
+        addNotEqual(code,
+            Excerpts.add("%s.%s", base, property.getName()),
+            Excerpts.add("%s.%s", defaults, property.getName()));
+        if (!hasDefault) {
+          code.add(")");
+        }
+        code.add(") {%n");
+      } else if (!hasDefault) {
+        code.addLine("if (%s) {", UnsetProperties.isSet(metadata, property, base));
+      }
+      // Builders never modify their array or buffer in place, so share it.
+      code.addLine("  %s(%s.%s);", wrapMethod(property), base, property.getName());
+      if (defaults != null || !hasDefault) {
+        code.addLine("}");
+      }
+    }
+
+    private void addNotEqual(Block code, Excerpt first, Excerpt second) {
+      if (isByteBuffer) {
+        code.add("!%s.equals(%s)", first, second);
+      } else {
+        code.add("!%s.equals(%s, %s)", Arrays.class, first, second);
+      }
+    }
+
+    @Override
+    public void addSetFromResult(SourceBuilder code, String builder, String variable) {
+      code.addLine("%s.%s(%s);", builder, setter(property), variable);
+    }
+
+    @Override
+    public void addClearField(Block code) {
+      Optional<Excerpt> defaults = Declarations.freshBuilder(code, metadata);
+      // Cannot clear property without defaults
+      if (defaults.isPresent()) {
+        code.addLine("%1$s = %2$s.%1$s;", property.getName(), defaults.get());
+      }
+    }
+
+    @Override
+    public Set<StaticExcerpt> getStaticExcerpts() {
+      if (isByteBuffer) {
+        return ImmutableSet.of(READ_ONLY_COPY);
+      }
+      return ImmutableSet.of();
+    }
+  }
+
+  private static final StaticExcerpt READ_ONLY_COPY = new StaticExcerpt(METHOD, "readOnlyCopy") {
+    @Override
+    public void addTo(SourceBuilder code) {
+      code.addLine("")
+          .addLine("/** Returns a read-only copy of the remaining bytes in {@code buffer}. */")
+          .addLine("private static %1$s readOnlyCopy(%1$s buffer) {", ByteBuffer.class)
+          .addLine("  %1$s copy = %1$s.allocate(buffer.remaining());", ByteBuffer.class)
+          .addLine("  copy.put(buffer.duplicate());")
+          .addLine("  copy.flip();")
+          .addLine("  return copy.asReadOnlyBuffer();")
+          .addLine("}");
+    }
+  };
+}
@@ -19,6 +19,7 @@ import static com.google.common.collect.Iterables.any;
 import static com.google.common.collect.Iterables.tryFind;
 import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.util.ElementFilter.typesIn;
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.EXPLICIT_TYPES;
 import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.INFERRED_TYPES;
 import static org.inferred.freebuilder.processor.BuilderMethods.getBuilderMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
@@ -37,6 +38,8 @@ import com.google.common.collect.FluentIterable;
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
 import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 
@@ -162,10 +165,16 @@ public class BuildablePropertyFactory implements PropertyCodeGenerator.Factory {
       this.mergeFromBuilderMethod = mergeFromBuilderMethod;
     }
 
+    @Override
+    public boolean isBuiltValueCacheable() {
+      // The nested builder can be modified through its getter without us noticing.
+      return false;
+    }
+
     @Override
     public void addBuilderFieldDeclaration(SourceBuilder code) {
-      code.addLine("private final %s %s = %s;",
-          builderType, property.getName(), builderFactory.newBuilder(builderType, INFERRED_TYPES));
+      code.addLine("private %s %s;", property.getType(), property.getName())
+          .addLine("private %s %s;", builderType, builderField());
     }
 
     @Override
@@ -191,9 +200,13 @@ public class BuildablePropertyFactory implements PropertyCodeGenerator.Factory {
               setter(property),
               property.getType(),
               property.getName())
-          .addLine("  this.%s.clear();", property.getName())
-          .addLine("  this.%1$s.mergeFrom(%2$s.checkNotNull(%1$s));",
-              property.getName(), Preconditions.class)
+          .addLine("  %s.checkNotNull(%s);", Preconditions.class, property.getName())
+          .addLine("  if (%s == null) {", builderField())
+          .addLine("    this.%1$s = %1$s;", property.getName())
+          .addLine("  } else {")
+          .addLine("    %s.clear();", builderField())
+          .addLine("    %s.mergeFrom(%s);", builderField(), property.getName())
+          .addLine("  }")
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -237,7 +250,7 @@ public class BuildablePropertyFactory implements PropertyCodeGenerator.Factory {
               mutator(property),
               consumer.getQualifiedName(),
               builderType)
-          .addLine("  mutator.accept(%s);", property.getName())
+          .addLine("  mutator.accept(%s());", getBuilderMethod(property))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -249,40 +262,75 @@ public class BuildablePropertyFactory implements PropertyCodeGenerator.Factory {
               metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
           .addLine(" */")
           .addLine("public %s %s() {", builderType, getBuilderMethod(property))
-          .addLine("  return %s;", property.getName())
+          .addLine("  if (%s == null) {", builderField())
+          .addLine("    %s = %s;",
+              builderField(), builderFactory.newBuilder(builderType, INFERRED_TYPES))
+          .addLine("    if (%s != null) {", property.getName())
+          .addLine("      %s.clear();", builderField())
+          .addLine("      %s.mergeFrom(%s);", builderField(), property.getName())
+          .addLine("      %s = null;", property.getName())
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("  return %s;", builderField())
           .addLine("}");
     }
 
     @Override
     public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
-      code.addLine("%s = %s.%s.build();", finalField, builder, property.getName());
+      addFieldAssignment(code, finalField, builder, "build");
     }
 
     @Override
     public void addPartialFieldAssignment(SourceBuilder code, String finalField, String builder) {
-      code.addLine("%s = %s.%s.buildPartial();", finalField, builder, property.getName());
+      addFieldAssignment(code, finalField, builder, "buildPartial");
+    }
+
+    /**
+     * Adds an assignment of the value held by the builder, if it was never converted to a nested
+     * builder, or else the result of calling {@code buildMethod} on the nested builder.
+     */
+    private void addFieldAssignment(
+        SourceBuilder code, String finalField, String builder, String buildMethod) {
+      code.addLine("if (%s.%s != null) {", builder, builderField())
+          .addLine("  %s = %s.%s.%s();", finalField, builder, builderField(), buildMethod)
+          .addLine("} else if (%s.%s != null) {", builder, property.getName())
+          .addLine("  %s = %s.%s;", finalField, builder, property.getName())
+          .addLine("} else {")
+          .addLine("  %s = %s.%s();",
+              finalField, builderFactory.newBuilder(builderType, EXPLICIT_TYPES), buildMethod)
+          .addLine("}");
     }
 
     @Override
     public void addMergeFromValue(Block code, String value) {
-      String propertyName = property.getName();
-      if (propertyName.equals(value)) {
-        propertyName = "this." + propertyName;  // see issue #78
-      }
-      code.addLine("%s.mergeFrom(%s.%s());", propertyName, value, property.getGetterName());
+      addMergeFromValue(code, Excerpts.add("%s.%s()", value, property.getGetterName()), value);
+    }
+
+    /**
+     * Adds a merge of {@code nestedValue} into the property. If the property is still in its
+     * initial state, the value is simply held, and no nested builder is created.
+     */
+    private void addMergeFromValue(Block code, Excerpt nestedValue, String... localNames) {
+      code.addLine("if (%s == null && %s == null) {", builderField(), field(localNames))
+          .addLine("  %s(%s);", setter(property), nestedValue)
+          .addLine("} else {")
+          .addLine("  %s().mergeFrom(%s);", getBuilderMethod(property), nestedValue)
+          .addLine("}");
     }
 
     @Override
     public void addMergeFromBuilder(Block code, String builder) {
-      String propertyName = property.getName();
-      if (propertyName.equals(builder)) {
-        propertyName = "this." + propertyName;  // see issue #78
-      }
-      code.add("%s.mergeFrom(%s.%s()", propertyName, builder, getBuilderMethod(property));
+      Excerpt base = Declarations.upcastToGeneratedBuilder(code, metadata, builder);
+      code.add("if (%s.%s != null) {%n", base, builderField())
+          .add("  %s().mergeFrom(%s.%s", getBuilderMethod(property), base, builderField());
       if (mergeFromBuilderMethod == MergeBuilderMethod.BUILD_PARTIAL_AND_MERGE) {
         code.add(".buildPartial()");
       }
-      code.add(");\n");
+      code.add(");%n")
+          .add("} else if (%s.%s != null) {%n", base, property.getName());
+      addMergeFromValue(
+          code, Excerpts.add("%s.%s", base, property.getName()), builder, base.toString());
+      code.add("}%n");
     }
 
     @Override
@@ -292,7 +340,26 @@ public class BuildablePropertyFactory implements PropertyCodeGenerator.Factory {
 
     @Override
     public void addClearField(Block code) {
-      code.addLine("%s.clear();", property.getName());
+      code.addLine("if (%s == null) {", builderField())
+          .addLine("  %s = null;", property.getName())
+          .addLine("} else {")
+          .addLine("  %s.clear();", builderField())
+          .addLine("}");
+    }
+
+    /** Returns the name of the field holding the nested builder, once one has been requested. */
+    private String builderField() {
+      return "_" + property.getName() + "Builder";
+    }
+
+    /** Returns a reference to the field holding the built value, qualified if necessary. */
+    private String field(String... localNames) {
+      for (String localName : localNames) {
+        if (property.getName().equals(localName)) {
+          return "this." + property.getName();  // see issue #78
+        }
+      }
+      return property.getName();
     }
   }
 
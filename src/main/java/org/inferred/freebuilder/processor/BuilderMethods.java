@@ -73,6 +73,10 @@ public class BuilderMethods {
     return "mutate" + property.getCapitalizedName();
   }
 
+  public static String wrapMethod(Property property) {
+    return "wrap" + property.getCapitalizedName();
+  }
+
   public static String clearMethod(Property property) {
     return "clear" + property.getCapitalizedName();
   }
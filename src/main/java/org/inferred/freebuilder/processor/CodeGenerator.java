@@ -19,9 +19,13 @@ import static com.google.common.collect.Iterables.any;
 import static com.google.common.collect.Iterables.getLast;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.EXPLICIT_TYPES;
+import static org.inferred.freebuilder.processor.BuilderFactory.TypeInference.INFERRED_TYPES;
 import static org.inferred.freebuilder.processor.Metadata.GET_CODE_GENERATOR;
 import static org.inferred.freebuilder.processor.Metadata.UnderrideLevel.ABSENT;
 import static org.inferred.freebuilder.processor.Metadata.UnderrideLevel.FINAL;
+import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNull;
+import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullInline;
+import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullPreamble;
 import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
 
@@ -30,26 +34,32 @@ import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
 
 import org.inferred.freebuilder.FreeBuilder;
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.Metadata.StandardMethod;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.EqualityCost;
 import org.inferred.freebuilder.processor.PropertyCodeGenerator.Type;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
 import org.inferred.freebuilder.processor.util.Excerpts;
-import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
+import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.WeakHashMap;
 
 /**
  * Code generation for the &#64;{@link FreeBuilder} annotation.
@@ -66,6 +76,8 @@ public class CodeGenerator {
     addBuilderTypeDeclaration(code, metadata);
     code.addLine(" {");
     addStaticFromMethod(code, metadata);
+    addStaticFactoryMethod(code, metadata);
+    addStaticInternMethod(code, metadata);
     addConstantDeclarations(metadata, code);
     if (any(metadata.getProperties(), IS_REQUIRED)) {
       addPropertyEnum(metadata, code);
@@ -74,10 +86,13 @@ public class CodeGenerator {
     addFieldDeclarations(code, metadata);
 
     addAccessors(metadata, code);
+    InternedStrings.addInternMethod(code, metadata);
     addMergeFromValueMethod(code, metadata);
     addMergeFromBuilderMethod(code, metadata);
     addClearMethod(code, metadata);
+    addResetMethod(code, metadata);
     addBuildMethod(code, metadata);
+    addBuildInternedMethod(code, metadata);
     addBuildPartialMethod(code, metadata);
 
     addValueType(code, metadata);
@@ -122,6 +137,119 @@ public class CodeGenerator {
         .addLine("}");
   }
 
+  private static void addStaticFactoryMethod(SourceBuilder code, Metadata metadata) {
+    if (!metadata.isStaticFactoryGenerated()) {
+      return;
+    }
+    List<String> nullableParameters = new ArrayList<String>();
+    for (Property property : metadata.getProperties()) {
+      if (!property.getType().getKind().isPrimitive()) {
+        nullableParameters.add("{@code " + property.getName() + "}");
+      }
+    }
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Returns a newly-created %s with the given property values.",
+            metadata.getType().javadocLink())
+        .addLine(" *")
+        .addLine(" * <p>Equivalent to setting every property on a new builder and calling build(),")
+        .addLine(" * but without allocating the builder.");
+    if (nullableParameters.size() == 1) {
+      code.addLine(" *")
+          .addLine(" * @throws NullPointerException if %s is null", nullableParameters.get(0));
+    } else if (!nullableParameters.isEmpty()) {
+      code.addLine(" *")
+          .addLine(" * @throws NullPointerException if any of %s is null",
+              Joiner.on(", ").join(nullableParameters));
+    }
+    code.addLine(" */")
+        .add("public static %s%s of(",
+            metadata.getType().declarationParameters(), metadata.getType());
+    String separator = "";
+    for (Property property : metadata.getProperties()) {
+      code.add("%s%s %s", separator, property.getType(), property.getName());
+      separator = ", ";
+    }
+    code.add(") {\n");
+    for (Property property : metadata.getProperties()) {
+      if (!property.getType().getKind().isPrimitive()) {
+        code.add(checkNotNullPreamble(property.getName()));
+      }
+    }
+    code.add("  return %s(", metadata.getValueType().constructor());
+    separator = "";
+    for (Property property : metadata.getProperties()) {
+      if (property.getType().getKind().isPrimitive()) {
+        code.add("%s%s", separator, property.getName());
+      } else {
+        code.add("%s%s", separator, checkNotNullInline(property.getName()));
+      }
+      separator = ", ";
+    }
+    code.add(");\n")
+        .addLine("}");
+  }
+
+  private static void addStaticInternMethod(SourceBuilder code, Metadata metadata) {
+    if (!metadata.isInterningValues()) {
+      return;
+    }
+    ParameterizedType anyType = metadata.getType().withWildcards();
+    if (code.feature(GUAVA).isAvailable()) {
+      code.addLine("")
+          .addLine("private static final %s<%s> %s = %s.newWeakInterner();",
+              Interner.class, anyType, INTERNED_VALUES, Interners.class);
+    } else {
+      code.addLine("")
+          .addLine("private static final %s<%s, %s<%s>> %s =",
+              Map.class, anyType, WeakReference.class, anyType, INTERNED_VALUES)
+          .addLine("    new %s<%s, %s<%s>>();",
+              WeakHashMap.class, anyType, WeakReference.class, anyType);
+    }
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Returns the canonical %s equal to {@code value}.",
+            metadata.getType().javadocLink())
+        .addLine(" *")
+        .addLine(" * <p>Equal values passed to this method share a single instance, which is")
+        .addLine(" * held weakly, so it can still be garbage-collected once unused.")
+        .addLine(" *")
+        .addLine(" * @throws NullPointerException if {@code value} is null")
+        .addLine(" */");
+    if (metadata.getType().isParameterized()) {
+      code.addLine("@%s(\"unchecked\")", SuppressWarnings.class)
+          .addLine("public static %s %s intern(%s value) {",
+              metadata.getType().declarationParameters(), metadata.getType(), metadata.getType());
+    } else {
+      code.addLine("public static %s intern(%s value) {", metadata.getType(), metadata.getType());
+    }
+    code.add(checkNotNull("value"));
+    if (code.feature(GUAVA).isAvailable()) {
+      code.addLine("  %s canonical = %s.intern(value);", anyType, INTERNED_VALUES);
+    } else {
+      code.addLine("  %s canonical;", anyType)
+          .addLine("  synchronized (%s) {", INTERNED_VALUES)
+          .addLine("    %s<%s> ref = %s.get(value);", WeakReference.class, anyType, INTERNED_VALUES)
+          .addLine("    canonical = (ref == null) ? null : ref.get();")
+          .addLine("    if (canonical == null) {")
+          .addLine("      %s.put(value, new %s<%s>(value));",
+              INTERNED_VALUES, WeakReference.class, anyType)
+          .addLine("      canonical = value;")
+          .addLine("    }")
+          .addLine("  }");
+    }
+    // Mark the canonical instance, so equals can skip comparing it with other canonical ones.
+    code.addLine("  if (canonical instanceof %s) {", metadata.getValueType().getQualifiedName())
+        .addLine("    ((%s) canonical)._interned = true;", metadata.getValueType().withWildcards())
+        .addLine("  }");
+    if (metadata.getType().isParameterized()) {
+      code.addLine("  return (%s) canonical;", metadata.getType());
+    } else {
+      code.addLine("  return canonical;");
+    }
+    code.addLine("}");
+  }
+
   private static void addConstantDeclarations(Metadata metadata, SourceBuilder body) {
     if (body.feature(GUAVA).isAvailable() && metadata.getProperties().size() > 1) {
       body.addLine("")
@@ -138,9 +266,11 @@ public class CodeGenerator {
     }
     // Unset properties
     if (any(metadata.getProperties(), IS_REQUIRED)) {
-      code.addLine("private final %s<%s> _unsetProperties =",
-              EnumSet.class, metadata.getPropertyEnum())
-          .addLine("    %s.allOf(%s.class);", EnumSet.class, metadata.getPropertyEnum());
+      UnsetProperties.addBuilderFieldDeclarations(code, metadata);
+    }
+    LastBuiltValue.addFieldDeclaration(code, metadata);
+    if (metadata.isResetMethodGenerated()) {
+      code.addLine("private transient %s %s;", metadata.getGeneratedBuilder(), RESET_DEFAULTS);
     }
   }
 
@@ -162,12 +292,28 @@ public class CodeGenerator {
     }
     code.addLine(" */")
         .addLine("public %s build() {", metadata.getType());
+    if (metadata.isBuiltValueCached()) {
+      // Return the last value built if nothing has been modified since.
+      code.addLine("  if (%s != null) {", LastBuiltValue.get())
+          .addLine("    return %s;", LastBuiltValue.get())
+          .addLine("  }");
+    }
     if (hasRequiredProperties) {
-      code.add(PreconditionExcerpts.checkState(
-          "_unsetProperties.isEmpty()", "Not set: %s", "_unsetProperties"));
+      // Only describe the unset properties if the check fails.
+      code.addLine("  if (%s) {", UnsetProperties.anyUnset(metadata))
+          .addLine("    throw new %s(\"Not set: \" + %s);",
+              IllegalStateException.class, UnsetProperties.description(metadata))
+          .addLine("  }");
     }
-    code.addLine("  return %s(this);", metadata.getValueType().constructor())
-        .addLine("}");
+    if (metadata.isBuiltValueCached()) {
+      code.addLine("  %s value = %s(this);",
+              metadata.getType(), metadata.getValueType().constructor())
+          .addLine("  %s = value;", LastBuiltValue.get())
+          .addLine("  return value;");
+    } else {
+      code.addLine("  return %s(this);", metadata.getValueType().constructor());
+    }
+    code.addLine("}");
   }
 
   private static void addMergeFromValueMethod(SourceBuilder code, Metadata metadata) {
@@ -176,7 +322,8 @@ public class CodeGenerator {
         .addLine(" * Sets all property values using the given {@code %s} as a template.",
             metadata.getType().getQualifiedName())
         .addLine(" */")
-        .addLine("public %s mergeFrom(%s value) {", metadata.getBuilder(), metadata.getType());
+        .addLine("public %s mergeFrom(%s value) {", metadata.getBuilder(), metadata.getType())
+        .add(LastBuiltValue.invalidate(metadata));
     Block body = new Block(code);
     for (Property property : metadata.getProperties()) {
       property.getCodeGenerator().addMergeFromValue(body, "value");
@@ -193,7 +340,8 @@ public class CodeGenerator {
             metadata.getBuilder().getSimpleName())
         .addLine(" * Does not affect any properties not set on the input.")
         .addLine(" */")
-        .addLine("public %1$s mergeFrom(%1$s template) {", metadata.getBuilder());
+        .addLine("public %1$s mergeFrom(%1$s template) {", metadata.getBuilder())
+        .add(LastBuiltValue.invalidate(metadata));
     Block body = new Block(code);
     for (Property property : metadata.getProperties()) {
       property.getCodeGenerator().addMergeFromBuilder(body, "template");
@@ -209,7 +357,33 @@ public class CodeGenerator {
         .addLine(" * Resets the state of this builder.")
         .addLine(" */")
         .addLine("public %s clear() {", metadata.getBuilder());
+    addClearBody(code, metadata, new Block(code));
+  }
+
+  private static void addResetMethod(SourceBuilder code, Metadata metadata) {
+    if (!metadata.isResetMethodGenerated()) {
+      return;
+    }
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Resets the state of this builder, as {@link #clear()} does, but copies")
+        .addLine(" * defaults from a builder created on the first call and kept for later ones.")
+        .addLine(" * Collections keep their capacity, so a builder reused on one thread can")
+        .addLine(" * produce values without allocating anything beyond the values themselves.")
+        .addLine(" */")
+        .addLine("public %s reset() {", metadata.getBuilder())
+        .addLine("  if (%s == null) {", RESET_DEFAULTS)
+        .addLine("    %s = %s;", RESET_DEFAULTS, metadata.getBuilderFactory().get()
+            .newBuilder(metadata.getBuilder(), INFERRED_TYPES))
+        .addLine("  }");
     Block body = new Block(code);
+    Declarations.cachedDefaults(body, metadata, RESET_DEFAULTS);
+    addClearBody(code, metadata, body);
+  }
+
+  /** Adds the body shared by clear() and reset(), copying defaults as declared in {@code body}. */
+  private static void addClearBody(SourceBuilder code, Metadata metadata, Block body) {
+    code.add(LastBuiltValue.invalidate(metadata));
     List<PropertyCodeGenerator> codeGenerators =
         Lists.transform(metadata.getProperties(), GET_CODE_GENERATOR);
     for (PropertyCodeGenerator codeGenerator : codeGenerators) {
@@ -219,14 +393,31 @@ public class CodeGenerator {
     if (any(metadata.getProperties(), IS_REQUIRED)) {
       Optional<Excerpt> defaults = Declarations.freshBuilder(body, metadata);
       if (defaults.isPresent()) {
-        code.addLine("  _unsetProperties.clear();")
-            .addLine("  _unsetProperties.addAll(%s._unsetProperties);", defaults.get());
+        UnsetProperties.addCopyFrom(code, metadata, "  ", defaults.get());
       }
     }
     code.addLine("  return (%s) this;", metadata.getBuilder())
         .addLine("}");
   }
 
+  private static void addBuildInternedMethod(SourceBuilder code, Metadata metadata) {
+    if (!metadata.isInterningValues()) {
+      return;
+    }
+    code.addLine("")
+        .addLine("/**")
+        .addLine(" * Returns the canonical %s equal to the one {@link #build()} would return.",
+            metadata.getType().javadocLink());
+    if (any(metadata.getProperties(), IS_REQUIRED)) {
+      code.addLine(" *")
+          .addLine(" * @throws IllegalStateException if any field has not been set");
+    }
+    code.addLine(" */")
+        .addLine("public %s buildInterned() {", metadata.getType())
+        .addLine("  return intern(build());")
+        .addLine("}");
+  }
+
   private static void addBuildPartialMethod(SourceBuilder code, Metadata metadata) {
     code.addLine("")
         .addLine("/**")
@@ -254,9 +445,7 @@ public class CodeGenerator {
     code.addLine("")
         .addLine("private enum %s {", metadata.getPropertyEnum().getSimpleName());
     for (Property property : metadata.getProperties()) {
-      if (property.getCodeGenerator().getType() == Type.REQUIRED) {
-        code.addLine("  %s(\"%s\"),", property.getAllCapsName(), property.getName());
-      }
+      code.addLine("  %s(\"%s\"),", property.getAllCapsName(), property.getName());
     }
     code.addLine("  ;")
         .addLine("")
@@ -269,8 +458,9 @@ public class CodeGenerator {
         .addLine("")
         .addLine("  @%s public %s toString() {", Override.class, String.class)
         .addLine("    return name;")
-        .addLine("  }")
-        .addLine("}");
+        .addLine("  }");
+    UnsetProperties.addDescribeMethod(code, metadata);
+    code.addLine("}");
   }
 
   private static void addValueType(SourceBuilder code, Metadata metadata) {
@@ -286,6 +476,12 @@ public class CodeGenerator {
     for (Property property : metadata.getProperties()) {
       property.getCodeGenerator().addValueFieldDeclaration(code, property.getName());
     }
+    if (isHashCodeCached(metadata)) {
+      code.addLine("  private transient int _hashCode;");
+    }
+    if (metadata.isInterningValues()) {
+      code.addLine("  private transient boolean _interned;");
+    }
     // Constructor
     code.addLine("")
         .addLine("  private %s(%s builder) {",
@@ -296,6 +492,20 @@ public class CodeGenerator {
           .addFinalFieldAssignment(code, "this." + property.getName(), "builder");
     }
     code.addLine("  }");
+    if (metadata.isStaticFactoryGenerated()) {
+      code.addLine("")
+          .add("  private %s(", metadata.getValueType().getSimpleName());
+      String separator = "";
+      for (Property property : metadata.getProperties()) {
+        code.add("%s%s %s", separator, property.getType(), property.getName());
+        separator = ", ";
+      }
+      code.add(") {\n");
+      for (Property property : metadata.getProperties()) {
+        code.addLine("    this.%1$s = %1$s;", property.getName());
+      }
+      code.addLine("  }");
+    }
     // Getters
     for (Property property : metadata.getProperties()) {
       code.addLine("")
@@ -330,17 +540,7 @@ public class CodeGenerator {
     }
     // Hash code
     if (metadata.standardMethodUnderride(StandardMethod.HASH_CODE) == ABSENT) {
-      String properties = Joiner.on(", ").join(getNames(metadata.getProperties()));
-      code.addLine("")
-          .addLine("  @%s", Override.class)
-          .addLine("  public int hashCode() {");
-      if (code.feature(SOURCE_LEVEL).javaUtilObjects().isPresent()) {
-        code.addLine("    return %s.hash(%s);",
-            code.feature(SOURCE_LEVEL).javaUtilObjects().get(), properties);
-      } else {
-        code.addLine("    return %s.hashCode(new Object[] { %s });", Arrays.class, properties);
-      }
-      code.addLine("  }");
+      writeHashCode(code, metadata, false);
     }
     // toString
     if (metadata.standardMethodUnderride(StandardMethod.TO_STRING) == ABSENT) {
@@ -353,24 +553,55 @@ public class CodeGenerator {
     // Default implementation if no user implementation exists.
     code.addLine("")
         .addLine("  @%s", Override.class)
-        .addLine("  public boolean equals(Object obj) {")
-        .addLine("    if (!(obj instanceof %s)) {", metadata.getValueType().getQualifiedName())
+        .addLine("  public boolean equals(Object obj) {");
+    if (metadata.isInterningValues()) {
+      code.addLine("    if (obj == this) {")
+          .addLine("      return true;")
+          .addLine("    }");
+    }
+    code.addLine("    if (!(obj instanceof %s)) {", metadata.getValueType().getQualifiedName())
         .addLine("      return false;")
         .addLine("    }")
         .addLine("    %1$s other = (%1$s) obj;", metadata.getValueType().withWildcards());
-    if (metadata.getProperties().isEmpty()) {
+    if (metadata.isInterningValues()) {
+      // Distinct canonical instances are never equal.
+      code.addLine("    if (_interned && other._interned) {")
+          .addLine("      return false;")
+          .addLine("    }");
+    }
+    if (isHashCodeCached(metadata)) {
+      // Values with differing cached hash codes cannot be equal.
+      code.addLine("    if (_hashCode != 0 && other._hashCode != 0")
+          .addLine("        && _hashCode != other._hashCode) {")
+          .addLine("      return false;")
+          .addLine("    }");
+    }
+    // Compare the cheapest properties first, so unequal values are rejected sooner.
+    List<Property> properties = EQUALITY_COST_ORDER.sortedCopy(metadata.getProperties());
+    if (properties.isEmpty()) {
       code.addLine("    return true;");
     } else if (code.feature(SOURCE_LEVEL).javaUtilObjects().isPresent()) {
       String prefix = "    return ";
-      for (Property property : metadata.getProperties()) {
+      for (Property property : properties) {
         code.add(prefix);
-        code.add("%1$s.equals(%2$s, other.%2$s)",
-            code.feature(SOURCE_LEVEL).javaUtilObjects().get(), property.getName());
+        Optional<Excerpt> equalsFragment = equalsFragment(property);
+        if (equalsFragment.isPresent()) {
+          code.add(equalsFragment.get());
+        } else if (property.getCodeGenerator().getEqualityCost() == EqualityCost.COLLECTION) {
+          code.add("(%1$s == other.%1$s\n", property.getName())
+              .add("            || (%1$s.size() == other.%1$s.size()\n", property.getName())
+              .add("                && %1$s.equals(other.%1$s)))", property.getName());
+        } else if (property.getCodeGenerator().getEqualityCost() == EqualityCost.ARRAY) {
+          code.add("%1$s.equals(%2$s, other.%2$s)", Arrays.class, property.getName());
+        } else {
+          code.add("%1$s.equals(%2$s, other.%2$s)",
+              code.feature(SOURCE_LEVEL).javaUtilObjects().get(), property.getName());
+        }
         prefix = "\n        && ";
       }
       code.add(";\n");
     } else {
-      for (Property property : metadata.getProperties()) {
+      for (Property property : properties) {
         switch (property.getType().getKind()) {
           case FLOAT:
           case DOUBLE:
@@ -380,12 +611,21 @@ public class CodeGenerator {
             break;
 
           default:
-            if (property.getType().getKind().isPrimitive()) {
+            if (equalsFragment(property).isPresent()) {
+              code.addLine("    if (!(%s)) {", equalsFragment(property).get());
+            } else if (property.getType().getKind().isPrimitive()) {
               code.addLine("    if (%1$s != other.%1$s) {", property.getName());
+            } else if (property.getCodeGenerator().getEqualityCost() == EqualityCost.ARRAY) {
+              code.addLine("    if (!%1$s.equals(%2$s, other.%2$s)) {",
+                  Arrays.class, property.getName());
             } else if (property.getCodeGenerator().getType() == Type.OPTIONAL) {
               code.addLine("    if (%1$s != other.%1$s", property.getName())
                   .addLine("        && (%1$s == null || !%1$s.equals(other.%1$s))) {",
                       property.getName());
+            } else if (property.getCodeGenerator().getEqualityCost() == EqualityCost.COLLECTION) {
+              code.addLine("    if (%1$s != other.%1$s", property.getName())
+                  .addLine("        && (%1$s.size() != other.%1$s.size()", property.getName())
+                  .addLine("            || !%1$s.equals(other.%1$s))) {", property.getName());
             } else {
               code.addLine("    if (!%1$s.equals(other.%1$s)) {", property.getName());
             }
@@ -412,10 +652,10 @@ public class CodeGenerator {
         code.add("    return \"%s{", metadata.getType().getSimpleName());
         Property property = getOnlyElement(metadata.getProperties());
         if (property.getCodeGenerator().getType() == Type.OPTIONAL) {
-          code.add("\" + (%1$s != null ? \"%1$s=\" + %1$s : \"\") + \"}\";\n",
-              property.getName());
+          code.add("\" + (%1$s != null ? \"%1$s=\" + %2$s : \"\") + \"}\";\n",
+              property.getName(), toStringValue(property));
         } else {
-          code.add("%1$s=\" + %1$s + \"}\";\n", property.getName());
+          code.add("%1$s=\" + %2$s + \"}\";\n", property.getName(), toStringValue(property));
         }
         break;
       }
@@ -426,7 +666,7 @@ public class CodeGenerator {
           code.addLine("    return \"%s{\"", metadata.getType().getSimpleName());
           Property lastProperty = getLast(metadata.getProperties());
           for (Property property : metadata.getProperties()) {
-            code.add("        + \"%1$s=\" + %1$s", property.getName());
+            code.add("        + \"%1$s=\" + %2$s", property.getName(), toStringValue(property));
             if (property != lastProperty) {
               code.add(" + \", \"\n");
             } else {
@@ -443,7 +683,7 @@ public class CodeGenerator {
             if (property.getCodeGenerator().getType() == Type.OPTIONAL) {
               code.add("(%s != null ? ", property.getName());
             }
-            code.add("\"%1$s=\" + %1$s", property.getName());
+            code.add("\"%1$s=\" + %2$s", property.getName(), toStringValue(property));
             if (property.getCodeGenerator().getType() == Type.OPTIONAL) {
               code.add(" : null)");
             }
@@ -475,8 +715,7 @@ public class CodeGenerator {
       property.getCodeGenerator().addValueFieldDeclaration(code, property.getName());
     }
     if (hasRequiredProperties) {
-      code.addLine("  private final %s<%s> _unsetProperties;",
-          EnumSet.class, metadata.getPropertyEnum());
+      UnsetProperties.addPartialFieldDeclarations(code, metadata);
     }
     // Constructor
     code.addLine("")
@@ -488,7 +727,7 @@ public class CodeGenerator {
           .addPartialFieldAssignment(code, "this." + property.getName(), "builder");
     }
     if (hasRequiredProperties) {
-      code.addLine("    this._unsetProperties = builder._unsetProperties.clone();");
+      UnsetProperties.addCopyFrom(code, metadata, "    this.", "builder");
     }
     code.addLine("  }");
     // Getters
@@ -499,8 +738,7 @@ public class CodeGenerator {
       property.getCodeGenerator().addGetterAnnotations(code);
       code.addLine("  public %s %s() {", property.getType(), property.getGetterName());
       if (property.getCodeGenerator().getType() == Type.REQUIRED) {
-        code.addLine("    if (_unsetProperties.contains(%s.%s)) {",
-                metadata.getPropertyEnum(), property.getAllCapsName())
+        code.addLine("    if (%s) {", UnsetProperties.isUnset(metadata, property))
             .addLine("      throw new %s(\"%s not set\");",
                 UnsupportedOperationException.class, property.getName())
             .addLine("    }");
@@ -525,14 +763,20 @@ public class CodeGenerator {
         String prefix = "    return ";
         for (Property property : metadata.getProperties()) {
           code.add(prefix);
-          code.add("%1$s.equals(%2$s, other.%2$s)",
-              code.feature(SOURCE_LEVEL).javaUtilObjects().get(), property.getName());
+          Optional<Excerpt> equalsFragment = equalsFragment(property);
+          if (equalsFragment.isPresent()) {
+            code.add(equalsFragment.get());
+          } else if (property.getCodeGenerator().getEqualityCost() == EqualityCost.ARRAY) {
+            code.add("%1$s.equals(%2$s, other.%2$s)", Arrays.class, property.getName());
+          } else {
+            code.add("%1$s.equals(%2$s, other.%2$s)",
+                code.feature(SOURCE_LEVEL).javaUtilObjects().get(), property.getName());
+          }
           prefix = "\n        && ";
         }
         if (hasRequiredProperties) {
           code.add(prefix);
-          code.add("%1$s.equals(_unsetProperties, other._unsetProperties)",
-              code.feature(SOURCE_LEVEL).javaUtilObjects().get());
+          code.add(UnsetProperties.sameAs(metadata, "other"));
         }
         code.add(";\n");
       } else {
@@ -546,8 +790,13 @@ public class CodeGenerator {
               break;
 
             default:
-              if (property.getType().getKind().isPrimitive()) {
+              if (equalsFragment(property).isPresent()) {
+                code.addLine("    if (!(%s)) {", equalsFragment(property).get());
+              } else if (property.getType().getKind().isPrimitive()) {
                 code.addLine("    if (%1$s != other.%1$s) {", property.getName());
+              } else if (property.getCodeGenerator().getEqualityCost() == EqualityCost.ARRAY) {
+                code.addLine("    if (!%1$s.equals(%2$s, other.%2$s)) {",
+                    Arrays.class, property.getName());
               } else if (property.getCodeGenerator().getType() == Type.HAS_DEFAULT) {
                 code.addLine("    if (!%1$s.equals(other.%1$s)) {", property.getName());
               } else {
@@ -560,7 +809,7 @@ public class CodeGenerator {
               .addLine("    }");
         }
         if (hasRequiredProperties) {
-          code.addLine("    return _unsetProperties.equals(other._unsetProperties);");
+          code.addLine("    return %s;", UnsetProperties.sameAs(metadata, "other"));
         } else {
           code.addLine("    return true;");
         }
@@ -569,24 +818,7 @@ public class CodeGenerator {
     }
     // Hash code
     if (metadata.standardMethodUnderride(StandardMethod.HASH_CODE) != FINAL) {
-      code.addLine("")
-          .addLine("  @%s", Override.class)
-          .addLine("  public int hashCode() {");
-
-      List<String> namesList = getNames(metadata.getProperties());
-      if (hasRequiredProperties) {
-        namesList =
-            ImmutableList.<String>builder().addAll(namesList).add("_unsetProperties").build();
-      }
-      String properties = Joiner.on(", ").join(namesList);
-
-      if (code.feature(SOURCE_LEVEL).javaUtilObjects().isPresent()) {
-        code.addLine("    return %s.hash(%s);",
-            code.feature(SOURCE_LEVEL).javaUtilObjects().get(), properties);
-      } else {
-        code.addLine("    return %s.hashCode(new Object[] { %s });", Arrays.class, properties);
-      }
-      code.addLine("  }");
+      writeHashCode(code, metadata, true);
     }
     // toString
     if (metadata.standardMethodUnderride(StandardMethod.TO_STRING) != FINAL) {
@@ -603,6 +835,62 @@ public class CodeGenerator {
     code.addLine("}");
   }
 
+  /**
+   * Writes a hashCode method combining the hash of each property inline, giving the same result
+   * as {@link Arrays#hashCode(Object[])} without boxing primitives or allocating an array.
+   */
+  private static void writeHashCode(SourceBuilder code, Metadata metadata, boolean isPartial) {
+    code.addLine("")
+        .addLine("  @%s", Override.class)
+        .addLine("  public int hashCode() {");
+    if (metadata.getProperties().isEmpty()) {
+      code.addLine("    return 1;");
+    } else if (!isPartial && isHashCodeCached(metadata)) {
+      // Racy single-check idiom, as in String.hashCode.
+      code.addLine("    int result = _hashCode;")
+          .addLine("    if (result == 0) {")
+          .addLine("      result = 1;");
+      writeHashCodeTerms(code, metadata, false, "      ");
+      code.addLine("      _hashCode = result;")
+          .addLine("    }")
+          .addLine("    return result;");
+    } else {
+      code.addLine("    int result = 1;");
+      writeHashCodeTerms(code, metadata, isPartial, "    ");
+      code.addLine("    return result;");
+    }
+    code.addLine("  }");
+  }
+
+  private static void writeHashCodeTerms(
+      SourceBuilder code, Metadata metadata, boolean isPartial, String indent) {
+    for (Property property : metadata.getProperties()) {
+      PropertyCodeGenerator codeGenerator = property.getCodeGenerator();
+      code.add("%sresult = 31 * result + ", indent);
+      if (isPartial
+          && codeGenerator.getType() == Type.REQUIRED
+          && !property.getType().getKind().isPrimitive()) {
+        // Unset properties are null in the partial.
+        code.add("(%s == null ? 0 : ", property.getName());
+        codeGenerator.addHashCodeFragment(code, property.getName());
+        code.add(")");
+      } else {
+        codeGenerator.addHashCodeFragment(code, property.getName());
+      }
+      code.add(";\n");
+    }
+    if (isPartial && any(metadata.getProperties(), IS_REQUIRED)) {
+      UnsetProperties.addHashCodeTerms(code, metadata, indent);
+    }
+  }
+
+  /** Returns whether the value type will lazily cache its hash code in a field. */
+  private static boolean isHashCodeCached(Metadata metadata) {
+    return metadata.isHashCodeCached()
+        && !metadata.getProperties().isEmpty()
+        && metadata.standardMethodUnderride(StandardMethod.HASH_CODE) == ABSENT;
+  }
+
   private static void writeToStringWithBuilder(
       SourceBuilder code, Metadata metadata, boolean isPartial) {
     code.addLine("%1$s result = new %1$s(\"%2$s%3$s{\");",
@@ -628,8 +916,7 @@ public class CodeGenerator {
 
         case REQUIRED:
           if (isPartial) {
-            code.addLine("if (!_unsetProperties.contains(%s.%s)) {",
-                    metadata.getPropertyEnum(), property.getAllCapsName());
+            code.addLine("if (%s) {", UnsetProperties.isSet(metadata, property));
           }
           break;
       }
@@ -638,7 +925,8 @@ public class CodeGenerator {
       } else if (!noDefaults && hadSeenDefault) {
         code.addLine("result.append(\", \");");
       }
-      code.addLine("result.append(\"%1$s=\").append(%1$s);", property.getName());
+      code.addLine("result.append(\"%1$s=\").append(%2$s);",
+          property.getName(), toStringValue(property));
       if (!noDefaults && !seenDefault) {
         code.addLine("result.append(\", \");");
       } else if (noDefaults && property != last) {
@@ -675,21 +963,21 @@ public class CodeGenerator {
         Property property = getOnlyElement(metadata.getProperties());
         switch (property.getCodeGenerator().getType()) {
           case HAS_DEFAULT:
-            code.add("%1$s=\" + %1$s + \"}\";\n", property.getName());
+            code.add("%1$s=\" + %2$s + \"}\";\n", property.getName(), toStringValue(property));
             break;
 
           case OPTIONAL:
             code.add("\"\n")
-                .addLine("        + (%1$s != null ? \"%1$s=\" + %1$s : \"\")",
-                    property.getName())
+                .addLine("        + (%1$s != null ? \"%1$s=\" + %2$s : \"\")",
+                    property.getName(), toStringValue(property))
                 .addLine("        + \"}\";");
             break;
 
           case REQUIRED:
             code.add("\"\n")
-                .addLine("        + (!_unsetProperties.contains(%s.%s)",
-                    metadata.getPropertyEnum(), property.getAllCapsName())
-                .addLine("            ? \"%1$s=\" + %1$s : \"\")", property.getName())
+                .addLine("        + (%s", UnsetProperties.isSet(metadata, property))
+                .addLine("            ? \"%1$s=\" + %2$s : \"\")",
+                    property.getName(), toStringValue(property))
                 .addLine("        + \"}\";");
             break;
         }
@@ -704,17 +992,18 @@ public class CodeGenerator {
           code.add("            ");
           switch (property.getCodeGenerator().getType()) {
             case HAS_DEFAULT:
-              code.add("\"%1$s=\" + %1$s", property.getName());
+              code.add("\"%1$s=\" + %2$s", property.getName(), toStringValue(property));
               break;
 
             case OPTIONAL:
-              code.add("(%1$s != null ? \"%1$s=\" + %1$s : null)", property.getName());
+              code.add("(%1$s != null ? \"%1$s=\" + %2$s : null)",
+                  property.getName(), toStringValue(property));
               break;
 
             case REQUIRED:
-              code.add("(!_unsetProperties.contains(%s.%s)\n",
-                      metadata.getPropertyEnum(), property.getAllCapsName())
-                  .add("                ? \"%1$s=\" + %1$s : null)", property.getName());
+              code.add("(%s\n", UnsetProperties.isSet(metadata, property))
+                  .add("                ? \"%1$s=\" + %2$s : null)",
+                      property.getName(), toStringValue(property));
               break;
           }
           if (property != lastProperty) {
@@ -729,6 +1018,15 @@ public class CodeGenerator {
     }
   }
 
+  private static Optional<Excerpt> equalsFragment(Property property) {
+    return property.getCodeGenerator()
+        .equalsFragment(property.getName(), "other." + property.getName());
+  }
+
+  private static Excerpt toStringValue(Property property) {
+    return property.getCodeGenerator().toStringValue(property.getName());
+  }
+
   private static void addStaticMethods(SourceBuilder code, Metadata metadata) {
     SortedSet<Excerpt> staticMethods = new TreeSet<Excerpt>();
     for (Property property : metadata.getProperties()) {
@@ -753,13 +1051,18 @@ public class CodeGenerator {
     return Excerpts.add(isInterface ? "implements %s" : "extends %s", type);
   }
 
-  private static ImmutableList<String> getNames(Iterable<Property> properties) {
-    ImmutableList.Builder<String> result = ImmutableList.builder();
-    for (Property property : properties) {
-      result.add(property.getName());
-    }
-    return result.build();
-  }
+  /** Builder field caching the defaults copied by reset(). */
+  private static final String RESET_DEFAULTS = "_resetDefaults";
+
+  /** Static field holding the canonical values returned by intern(). */
+  private static final String INTERNED_VALUES = "INTERNED_VALUES";
+
+  private static final Ordering<Property> EQUALITY_COST_ORDER =
+      Ordering.<EqualityCost>natural().onResultOf(new Function<Property, EqualityCost>() {
+        @Override public EqualityCost apply(Property property) {
+          return property.getCodeGenerator().getEqualityCost();
+        }
+      });
 
   private static final Predicate<Property> IS_REQUIRED = new Predicate<Property>() {
     @Override public boolean apply(Property property) {
@@ -5,9 +5,12 @@ import com.google.common.base.Optional;
 import org.inferred.freebuilder.processor.BuilderFactory.TypeInference;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
 
 class Declarations {
 
+  private static final String DEFAULTS = "_defaults";
+
   /**
    * Upcasts a Builder instance to the generated superclass, to allow access to private fields.
    *
@@ -20,13 +23,14 @@ class Declarations {
     return block.declare(
         "base",
         "// Upcast to access private fields; otherwise, oddly, we get an access violation.%n"
-            + "%1$s base = (%1$s) %2$s;",
+            + "%1$s base = (%1$s) %2$s;%n",
         metadata.getGeneratedBuilder(),
         builder);
   }
 
   /**
-   * Declares a fresh Builder to copy default property values from.
+   * Declares a fresh Builder to copy default property values from, unless
+   * {@link #cachedDefaults} has already declared one in {@code block}.
    *
    * @returns an Excerpt referencing a fresh Builder, if a no-args factory method is available to
    *     create one with
@@ -35,13 +39,24 @@ class Declarations {
     if (!metadata.getBuilderFactory().isPresent()) {
       return Optional.absent();
     }
-    Excerpt defaults = block.declare("_defaults", "%s _defaults = %s;",
+    if (block.isDeclared(DEFAULTS)) {
+      return Optional.of(Excerpts.add("%s", DEFAULTS));
+    }
+    Excerpt defaults = block.declare(DEFAULTS, "%s _defaults = %s;%n",
           metadata.getGeneratedBuilder(),
           metadata.getBuilderFactory().get()
               .newBuilder(metadata.getBuilder(), TypeInference.INFERRED_TYPES));
     return Optional.of(defaults);
   }
 
+  /**
+   * Declares a Builder, cached in {@code field}, to copy default property values from. Must be
+   * called before anything in {@code block} asks for a {@link #freshBuilder}.
+   */
+  public static Excerpt cachedDefaults(Block block, Metadata metadata, String field) {
+    return block.declare(DEFAULTS, "%s _defaults = %s;%n", metadata.getGeneratedBuilder(), field);
+  }
+
   private Declarations() {}
 
 }
@@ -30,7 +30,6 @@ import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
-import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
@@ -44,18 +43,24 @@ public class DefaultPropertyFactory implements PropertyCodeGenerator.Factory {
   public Optional<? extends PropertyCodeGenerator> create(Config config) {
     Property property = config.getProperty();
     boolean hasDefault = config.getMethodsInvokedInBuilderConstructor().contains(setter(property));
-    return Optional.of(new CodeGenerator(config.getMetadata(), property, hasDefault));
+    boolean internStrings =
+        InternedStrings.isString(property.getType()) && InternedStrings.isRequested(config);
+    return Optional.of(
+        new CodeGenerator(config.getMetadata(), property, hasDefault, internStrings));
   }
 
   @VisibleForTesting static class CodeGenerator extends PropertyCodeGenerator {
 
     private final boolean hasDefault;
     private final boolean isPrimitive;
+    private final boolean internStrings;
 
-    CodeGenerator(Metadata metadata, Property property, boolean hasDefault) {
+    CodeGenerator(
+        Metadata metadata, Property property, boolean hasDefault, boolean internStrings) {
       super(metadata, property);
       this.hasDefault = hasDefault;
       this.isPrimitive = property.getType().getKind().isPrimitive();
+      this.internStrings = internStrings;
     }
 
     @Override
@@ -63,6 +68,11 @@ public class DefaultPropertyFactory implements PropertyCodeGenerator.Factory {
       return hasDefault ? Type.HAS_DEFAULT : Type.REQUIRED;
     }
 
+    @Override
+    public boolean isInterningStrings() {
+      return internStrings;
+    }
+
     @Override
     public void addBuilderFieldDeclaration(SourceBuilder code) {
       code.addLine("private %s %s;", property.getType(), property.getName());
@@ -92,13 +102,15 @@ public class DefaultPropertyFactory implements PropertyCodeGenerator.Factory {
       if (isPrimitive) {
         code.addLine("  this.%1$s = %1$s;", property.getName());
       } else {
+        Excerpt value = checkNotNullInline(property.getName());
         code.add(checkNotNullPreamble(property.getName()))
-            .addLine("  this.%s = %s;", property.getName(), checkNotNullInline(property.getName()));
+            .addLine("  this.%s = %s;",
+                property.getName(), internStrings ? InternedStrings.intern(value) : value);
       }
       if (!hasDefault) {
-        code.addLine("  _unsetProperties.remove(%s.%s);",
-            metadata.getPropertyEnum(), property.getAllCapsName());
+        code.addLine("  %s", UnsetProperties.markSet(metadata, property));
       }
+      code.add(LastBuiltValue.invalidate(metadata));
       if ((metadata.getBuilder() == metadata.getGeneratedBuilder())) {
         code.addLine("  return this;");
       } else {
@@ -149,9 +161,8 @@ public class DefaultPropertyFactory implements PropertyCodeGenerator.Factory {
       code.addLine(" */")
           .addLine("public %s %s() {", property.getType(), getter(property));
       if (!hasDefault) {
-        Excerpt propertyIsSet = Excerpts.add("!_unsetProperties.contains(%s.%s)",
-                metadata.getPropertyEnum(), property.getAllCapsName());
-        code.add(PreconditionExcerpts.checkState(propertyIsSet, property.getName() + " not set"));
+        code.add(PreconditionExcerpts.checkState(
+            UnsetProperties.isSet(metadata, property), property.getName() + " not set"));
       }
       code.addLine("  return %s;", property.getName())
           .addLine("}");
@@ -173,8 +184,7 @@ public class DefaultPropertyFactory implements PropertyCodeGenerator.Factory {
       if (defaults != null) {
         code.add("if (");
         if (!hasDefault) {
-          code.add("%s._unsetProperties.contains(%s.%s) || ",
-              defaults, metadata.getPropertyEnum(), property.getAllCapsName());
+          code.add("%s || ", UnsetProperties.isUnset(metadata, property, defaults));
         }
         if (isPrimitive) {
           code.add("%s.%s() != %s.%s()",
@@ -199,10 +209,8 @@ public class DefaultPropertyFactory implements PropertyCodeGenerator.Factory {
       if (defaults != null) {
         code.add("if (");
         if (!hasDefault) {
-          code.add("!%s._unsetProperties.contains(%s.%s) && ",
-                  base, metadata.getPropertyEnum(), property.getAllCapsName())
-              .add("(%s._unsetProperties.contains(%s.%s) ||",
-                  defaults, metadata.getPropertyEnum(), property.getAllCapsName());
+          code.add("%s && ", UnsetProperties.isSet(metadata, property, base))
+              .add("(%s ||", UnsetProperties.isUnset(metadata, property, defaults));
         }
         if (isPrimitive) {
           code.add("%1$s.%2$s() != %3$s.%2$s()", builder, getter(property), defaults);
@@ -214,8 +222,7 @@ public class DefaultPropertyFactory implements PropertyCodeGenerator.Factory {
         }
         code.add(") {%n");
       } else if (!hasDefault) {
-        code.addLine("if (!%s._unsetProperties.contains(%s.%s)) {",
-            base, metadata.getPropertyEnum(), property.getAllCapsName());
+        code.addLine("if (%s) {", UnsetProperties.isSet(metadata, property, base));
       }
       code.addLine("  %s(%s.%s());", setter(property), builder, getter(property));
       if (defaults != null || !hasDefault) {
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.regex.Pattern;
+
+/**
+ * Generated builder sources stored on disk, keyed by a fingerprint of everything that determines
+ * them, so that later builds can skip code generation and formatting for unchanged types.
+ *
+ * <p>The fingerprint covers the textual form of the inputs, plus the processor jar itself, so
+ * upgrading FreeBuilder invalidates every entry. Inputs whose textual form includes an identity
+ * hash code would never match a later build, so are not cached at all.
+ */
+class GeneratedSourceCache {
+
+  /** Matches the default {@link Object#toString()} of an object, e.g. {@code Foo$1@1b6d3586}. */
+  private static final Pattern IDENTITY_STRING = Pattern.compile("[\\w$]@[0-9a-f]{4,8}\\b");
+
+  private final File directory;
+  private final String processorVersion;
+
+  GeneratedSourceCache(File directory) {
+    this.directory = directory;
+    this.processorVersion = processorVersion();
+  }
+
+  /**
+   * Returns the fingerprint of {@code inputs}, or absent if they cannot be reliably compared
+   * across builds.
+   */
+  Optional<String> fingerprint(Object... inputs) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(processorVersion, Charsets.UTF_8);
+    for (Object input : inputs) {
+      String text = String.valueOf(input);
+      if (IDENTITY_STRING.matcher(text).find()) {
+        return Optional.absent();
+      }
+      hasher.putChar('\0').putString(text, Charsets.UTF_8);
+    }
+    return Optional.of(hasher.hash().toString());
+  }
+
+  /** Returns the source stored under {@code fingerprint}, if any. */
+  Optional<String> get(String fingerprint) {
+    File file = file(fingerprint);
+    if (!file.isFile()) {
+      return Optional.absent();
+    }
+    try {
+      return Optional.of(Files.toString(file, Charsets.UTF_8));
+    } catch (IOException e) {
+      // Treat an unreadable entry as a miss; it will be overwritten.
+      return Optional.absent();
+    }
+  }
+
+  /**
+   * Stores {@code source} under {@code fingerprint}. The file is written under a temporary name
+   * and then renamed, so concurrent builds sharing the directory never see a partial entry.
+   */
+  void put(String fingerprint, String source) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException("Cannot create " + directory);
+    }
+    File temp = File.createTempFile(fingerprint, ".tmp", directory);
+    try {
+      Files.write(source, temp, Charsets.UTF_8);
+      File file = file(fingerprint);
+      if (!temp.renameTo(file) && !file.isFile()) {
+        throw new IOException("Cannot rename " + temp + " to " + file);
+      }
+    } finally {
+      temp.delete();
+    }
+  }
+
+  private File file(String fingerprint) {
+    return new File(directory, fingerprint + ".java");
+  }
+
+  /**
+   * Identifies the processor's own code by the location, size and modification time of the jar
+   * (or directory) it was loaded from.
+   */
+  private static String processorVersion() {
+    CodeSource codeSource = GeneratedSourceCache.class.getProtectionDomain().getCodeSource();
+    if (codeSource == null || codeSource.getLocation() == null) {
+      return "unknown";
+    }
+    String location = codeSource.getLocation().toString();
+    try {
+      File file = new File(codeSource.getLocation().toURI());
+      return location + ":" + file.length() + ":" + file.lastModified();
+    } catch (URISyntaxException e) {
+      return location;
+    } catch (IllegalArgumentException e) {
+      return location;
+    }
+  }
+}
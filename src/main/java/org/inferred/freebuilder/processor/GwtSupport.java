@@ -34,8 +34,7 @@ class GwtSupport {
     Optional<AnnotationMirror> annotation = findAnnotationMirror(type, GwtCompatible.class);
     if (annotation.isPresent()) {
       extraMetadata.addGeneratedBuilderAnnotations(Excerpts.add("@%s%n", GwtCompatible.class));
-      Optional<AnnotationValue> serializable = findProperty(annotation.get(), "serializable");
-      if (serializable.isPresent() && serializable.get().getValue().equals(Boolean.TRUE)) {
+      if (isSerializable(annotation.get())) {
         // Due to a bug in GWT's handling of nested types, we have to declare Value as package
         // scoped so Value_CustomFieldSerializer can access it.
         extraMetadata.setValueTypeVisibility(Visibility.PACKAGE);
@@ -52,11 +51,27 @@ class GwtSupport {
     return extraMetadata;
   }
 
+  /** Returns whether {@code type} is annotated {@code @GwtCompatible(serializable = true)}. */
+  public static boolean isGwtSerializable(TypeElement type) {
+    Optional<AnnotationMirror> annotation = findAnnotationMirror(type, GwtCompatible.class);
+    return annotation.isPresent() && isSerializable(annotation.get());
+  }
+
+  private static boolean isSerializable(AnnotationMirror gwtCompatible) {
+    Optional<AnnotationValue> serializable = findProperty(gwtCompatible, "serializable");
+    return serializable.isPresent() && serializable.get().getValue().equals(Boolean.TRUE);
+  }
+
   private static final class CustomValueSerializer implements Function<Metadata, Excerpt> {
     @Override
     public Excerpt apply(final Metadata metadata) {
       return new CustomValueSerializerExcerpt(metadata);
     }
+
+    @Override
+    public String toString() {
+      return CustomValueSerializer.class.getSimpleName();
+    }
   }
 
   private static final class CustomValueSerializerExcerpt extends Excerpt {
@@ -170,6 +185,11 @@ class GwtSupport {
     public Excerpt apply(final Metadata metadata) {
       return new GwtWhitelistExcerpt(metadata);
     }
+
+    @Override
+    public String toString() {
+      return GwtWhitelist.class.getSimpleName();
+    }
   }
 
   private static final class GwtWhitelistExcerpt extends Excerpt {
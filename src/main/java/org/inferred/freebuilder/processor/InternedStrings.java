@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
+
+import com.google.common.base.Optional;
+
+import org.inferred.freebuilder.InternStrings;
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.Shading;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Code snippets canonicalizing the String values set on a builder, for types and properties
+ * annotated with {@link InternStrings}.
+ *
+ * <p>Property code generators pass each String through {@link #intern}, which calls a protected
+ * {@code internString} method on the generated builder. Users can override that method to plug
+ * in their own interner; {@link #addInternMethod} adds the default implementation, a bounded,
+ * direct-mapped cache of weak references that is safe to race on.
+ */
+class InternedStrings {
+
+  private static final String ANNOTATION = Shading.unshadedName(InternStrings.class.getName());
+  private static final String CACHE = "INTERNED_STRINGS";
+  private static final int CACHE_SIZE = 1024;
+
+  /** Returns whether String values of {@code config}'s property should be interned. */
+  static boolean isRequested(Config config) {
+    if (config.getMetadata().isInterningStrings()) {
+      return true;
+    }
+    for (AnnotationMirror annotation : config.getAnnotations()) {
+      TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+      if (annotationType.getQualifiedName().contentEquals(ANNOTATION)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns whether {@code type} is {@code java.lang.String}, ignoring any type annotations. */
+  static boolean isString(TypeMirror type) {
+    Optional<DeclaredType> declaredType = maybeDeclared(type);
+    return declaredType.isPresent() && erasesToAnyOf(declaredType.get(), String.class);
+  }
+
+  /** Returns an expression canonicalizing the non-null String {@code value}. */
+  static Excerpt intern(Object value) {
+    return Excerpts.add("internString(%s)", value);
+  }
+
+  /** Adds the default {@code internString} method, if any property interns its values. */
+  static void addInternMethod(SourceBuilder code, Metadata metadata) {
+    if (!isUsed(metadata)) {
+      return;
+    }
+    code.addLine("")
+        .addLine("private static final %1$s<%2$s<%3$s>> %4$s =",
+            AtomicReferenceArray.class, WeakReference.class, String.class, CACHE)
+        .addLine("    new %s<%s<%s>>(%s);",
+            AtomicReferenceArray.class, WeakReference.class, String.class, CACHE_SIZE)
+        .addLine("")
+        .addLine("/**")
+        .addLine(" * Returns a canonical instance of {@code value}, so equal strings set on")
+        .addLine(" * builders of %s can share one instance.", metadata.getType().javadocLink())
+        .addLine(" *")
+        .addLine(" * <p>The default implementation keeps a bounded cache of weak references,")
+        .addLine(" * and may return a different but equal instance on contention.")
+        .addLine(" * Override this method to use a different interner.")
+        .addLine(" */")
+        .addLine("protected %1$s internString(%1$s value) {", String.class)
+        .addLine("  int hash = value.hashCode();")
+        .addLine("  int index = (hash ^ (hash >>> 16)) & (%s.length() - 1);", CACHE)
+        .addLine("  %s<%s> ref = %s.get(index);", WeakReference.class, String.class, CACHE)
+        .addLine("  %s interned = (ref == null) ? null : ref.get();", String.class)
+        .addLine("  if (value.equals(interned)) {")
+        .addLine("    return interned;")
+        .addLine("  }")
+        .addLine("  %s.set(index, new %s<%s>(value));", CACHE, WeakReference.class, String.class)
+        .addLine("  return value;")
+        .addLine("}");
+  }
+
+  private static boolean isUsed(Metadata metadata) {
+    for (Property property : metadata.getProperties()) {
+      if (property.getCodeGenerator().isInterningStrings()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private InternedStrings() {}
+}
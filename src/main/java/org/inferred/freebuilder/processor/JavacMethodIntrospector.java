@@ -31,6 +31,7 @@ import com.sun.source.util.SimpleTreeVisitor;
 import com.sun.source.util.TreeScanner;
 import com.sun.source.util.Trees;
 
+import java.lang.reflect.Field;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -44,10 +45,44 @@ class JavacMethodIntrospector extends MethodIntrospector {
   /**
    * Returns a {@link MethodIntrospector} implementation for the given javac environment.
    *
+   * <p>Build tools such as Gradle wrap the javac environment to track the files generated for
+   * incremental compilation; {@link Trees} only accepts the original, so wrappers are unwrapped.
+   *
    * @throws IllegalArgumentException if the environment is not from javac
    */
   public static MethodIntrospector instance(ProcessingEnvironment env) {
-    return new JavacMethodIntrospector(Trees.instance(env));
+    try {
+      return new JavacMethodIntrospector(Trees.instance(env));
+    } catch (IllegalArgumentException e) {
+      ProcessingEnvironment delegate = delegateOf(env);
+      if (delegate == null) {
+        throw e;
+      }
+      return instance(delegate);
+    }
+  }
+
+  /** Returns the environment wrapped by {@code env}, or null if it does not wrap another. */
+  private static ProcessingEnvironment delegateOf(ProcessingEnvironment env) {
+    for (Class<?> cls = env.getClass(); cls != null; cls = cls.getSuperclass()) {
+      for (Field field : cls.getDeclaredFields()) {
+        if (!ProcessingEnvironment.class.isAssignableFrom(field.getType())) {
+          continue;
+        }
+        try {
+          field.setAccessible(true);
+          Object delegate = field.get(env);
+          if (delegate != null && delegate != env) {
+            return (ProcessingEnvironment) delegate;
+          }
+        } catch (IllegalAccessException e) {
+          // Fall back to the next field
+        } catch (RuntimeException e) {
+          // Fall back to the next field, e.g. if a security manager forbids access
+        }
+      }
+    }
+    return null;
   }
 
   private final Trees trees;
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.util.List;
+
+/**
+ * Code snippets caching the value returned by a builder's build method, so that repeated calls
+ * with no intervening modification return the same instance without copying any collections.
+ *
+ * <p>Every method that modifies a builder field must {@link #invalidate invalidate} the cached
+ * value. Whether the cache is used depends on every property's code generator, as reported by
+ * {@link Metadata#isBuiltValueCached()}; when it is not, neither the field nor any invalidation
+ * is generated.
+ */
+class LastBuiltValue {
+
+  private static final String FIELD = "_lastBuilt";
+  private static final Excerpt INVALIDATE = Excerpts.add("%s = null;\n", FIELD);
+
+  /** Returns whether build() can return a cached value for a type with {@code properties}. */
+  static boolean isCacheable(List<Property> properties) {
+    for (Property property : properties) {
+      if (!property.getCodeGenerator().isBuiltValueCacheable()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Adds the builder field declaration, if the cache is used. */
+  static void addFieldDeclaration(SourceBuilder code, Metadata metadata) {
+    if (metadata.isBuiltValueCached()) {
+      code.addLine("private transient %s %s;", metadata.getType(), FIELD);
+    }
+  }
+
+  /** Returns an expression referencing the cached value, or null if there is none. */
+  static Excerpt get() {
+    return Excerpts.add("%s", FIELD);
+  }
+
+  /** Returns a statement discarding any cached value, or nothing if the cache is not used. */
+  static Excerpt invalidate(Metadata metadata) {
+    return metadata.isBuiltValueCached() ? INVALIDATE : Excerpts.empty();
+  }
+
+  private LastBuiltValue() {}
+}
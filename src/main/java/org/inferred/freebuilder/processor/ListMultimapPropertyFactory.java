@@ -124,10 +124,15 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
       this.unboxedValueType = unboxedValueType;
     }
 
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
     @Override
     public void addBuilderFieldDeclaration(SourceBuilder code) {
-      code.addLine("private final %1$s<%2$s, %3$s> %4$s = %1$s.create();",
-          LinkedListMultimap.class, keyType, valueType, property.getName());
+      code.addLine("private %s<%s, %s> %s = %s.of();",
+          ListMultimap.class, keyType, valueType, property.getName(), ImmutableListMultimap.class);
     }
 
     @Override
@@ -173,7 +178,11 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
       if (!unboxedValueType.isPresent()) {
         code.addLine("  %s.checkNotNull(value);", Preconditions.class);
       }
-      code.addLine("  this.%s.put(key, value);", property.getName())
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableListMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedListMultimap.class)
+          .addLine("  }")
+          .addLine("  this.%s.put(key, value);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -267,7 +276,11 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
       if (!unboxedValueType.isPresent()) {
         code.addLine("  %s.checkNotNull(value);", Preconditions.class);
       }
-      code.addLine("  this.%s.remove(key, value);", property.getName())
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableListMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedListMultimap.class)
+          .addLine("  }")
+          .addLine("  this.%s.remove(key, value);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -291,7 +304,11 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
       if (!unboxedKeyType.isPresent()) {
         code.addLine("  %s.checkNotNull(key);", Preconditions.class);
       }
-      code.addLine("  this.%s.removeAll(key);", property.getName())
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableListMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedListMultimap.class)
+          .addLine("  }")
+          .addLine("  this.%s.removeAll(key);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -319,6 +336,10 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
               ListMultimap.class,
               keyType,
               valueType);
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableListMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedListMultimap.class)
+          .addLine("  }");
+      code.add(LastBuiltValue.invalidate(metadata));
       if (overridesPutMethod) {
         code.addLine("  mutator.accept(new CheckedListMultimap<>(%s, this::%s));",
             property.getName(), putMethod(property));
@@ -340,7 +361,12 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
           .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
           .addLine(" */")
           .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-          .addLine("  %s.clear();", property.getName())
+          .addLine("  if (%s instanceof %s) {", property.getName(), ImmutableListMultimap.class)
+          .addLine("    %s = %s.of();", property.getName(), ImmutableListMultimap.class)
+          .addLine("  } else {")
+          .addLine("    %s.clear();", property.getName())
+          .addLine("  }")
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -356,7 +382,10 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
               ListMultimap.class,
               keyType,
               valueType,
-              getter(property))
+              getter(property));
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableListMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedListMultimap.class)
+          .addLine("  }")
           .addLine("  return %s.unmodifiableListMultimap(%s);",
               Multimaps.class, property.getName())
           .addLine("}");
@@ -370,7 +399,18 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
 
     @Override
     public void addMergeFromValue(Block code, String value) {
-      code.addLine("%s(%s.%s());", putAllMethod(property), value, property.getGetterName());
+      code.addLine("if (%s instanceof %s && %s == %s.<%s, %s>of()) {",
+              value,
+              metadata.getValueType().getQualifiedName(),
+              property.getName(),
+              ImmutableListMultimap.class,
+              keyType,
+              valueType)
+          .addLine("  %s = %s.copyOf(%s.%s());",
+              property.getName(), ImmutableListMultimap.class, value, property.getGetterName())
+          .addLine("} else {")
+          .addLine("  %s(%s.%s());", putAllMethod(property), value, property.getGetterName())
+          .addLine("}");
     }
 
     @Override
@@ -389,7 +429,7 @@ public class ListMultimapPropertyFactory implements PropertyCodeGenerator.Factor
 
     @Override
     public void addClearField(Block code) {
-      code.addLine("%s.clear();", property.getName());
+      code.addLine("%s();", clearMethod(property));
     }
 
     @Override
@@ -81,7 +81,8 @@ public class ListPropertyFactory implements PropertyCodeGenerator.Factory {
         config.getProperty(),
         overridesAddMethod,
         elementType,
-        unboxedType));
+        unboxedType,
+        InternedStrings.isString(elementType) && InternedStrings.isRequested(config)));
   }
 
   private static boolean hasAddMethodOverride(Config config, TypeMirror keyType) {
@@ -100,6 +101,7 @@ public class ListPropertyFactory implements PropertyCodeGenerator.Factory {
     private final boolean overridesAddMethod;
     private final TypeMirror elementType;
     private final Optional<TypeMirror> unboxedType;
+    private final boolean internStrings;
 
     @VisibleForTesting
     CodeGenerator(
@@ -107,11 +109,23 @@ public class ListPropertyFactory implements PropertyCodeGenerator.Factory {
         Property property,
         boolean overridesAddMethod,
         TypeMirror elementType,
-        Optional<TypeMirror> unboxedType) {
+        Optional<TypeMirror> unboxedType,
+        boolean internStrings) {
       super(metadata, property);
       this.overridesAddMethod = overridesAddMethod;
       this.elementType = elementType;
       this.unboxedType = unboxedType;
+      this.internStrings = internStrings;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
+    @Override
+    public boolean isInterningStrings() {
+      return internStrings;
     }
 
     @Override
@@ -165,10 +179,13 @@ public class ListPropertyFactory implements PropertyCodeGenerator.Factory {
       if (unboxedType.isPresent()) {
         code.addLine("  this.%s.add(element);", property.getName());
       } else {
+        Excerpt element = checkNotNullInline("element");
         code.add(checkNotNullPreamble("element"))
-            .addLine("  this.%s.add(%s);", property.getName(), checkNotNullInline("element"));
+            .addLine("  this.%s.add(%s);",
+                property.getName(), internStrings ? InternedStrings.intern(element) : element);
       }
-      code.addLine("  return (%s) this;", metadata.getBuilder())
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
 
@@ -338,7 +355,8 @@ public class ListPropertyFactory implements PropertyCodeGenerator.Factory {
                 diamondOperator(elementType))
             .addLine("  }");
       }
-      if (overridesAddMethod) {
+      code.add(LastBuiltValue.invalidate(metadata));
+      if (isAddMethodRequired()) {
         code.addLine("  mutator.accept(new CheckedList<>(%s, this::%s));",
             property.getName(), addMethod(property));
       } else {
@@ -368,7 +386,8 @@ public class ListPropertyFactory implements PropertyCodeGenerator.Factory {
       if (code.feature(GUAVA).isAvailable()) {
         code.addLine("  }");
       }
-      code.addLine("  return (%s) this;", metadata.getBuilder())
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
 
@@ -439,17 +458,32 @@ public class ListPropertyFactory implements PropertyCodeGenerator.Factory {
     public Set<StaticExcerpt> getStaticExcerpts() {
       ImmutableSet.Builder<StaticExcerpt> methods = ImmutableSet.builder();
       methods.add(IMMUTABLE_LIST);
-      if (overridesAddMethod) {
+      if (isAddMethodRequired()) {
         methods.addAll(CheckedList.excerpts());
       }
       return methods.build();
     }
+
+    /** Returns whether every element added must go through the add method. */
+    private boolean isAddMethodRequired() {
+      return overridesAddMethod || internStrings;
+    }
   }
 
   private static final StaticExcerpt IMMUTABLE_LIST = new StaticExcerpt(METHOD, "immutableList") {
     @Override
     public void addTo(SourceBuilder code) {
-      if (!code.feature(GUAVA).isAvailable()) {
+      if (code.feature(GUAVA).isAvailable()) {
+        return;
+      }
+      if (code.feature(SOURCE_LEVEL).hasImmutableCollectionFactories()) {
+        // List.of stores the elements in a single compact array, and shares an empty instance
+        code.addLine("")
+            .addLine("@%s(\"unchecked\")", SuppressWarnings.class)
+            .addLine("private static <E> %1$s<E> immutableList(%1$s<E> elements) {", List.class)
+            .addLine("  return (%1$s<E>) (%1$s<?>) %1$s.of(elements.toArray());", List.class)
+            .addLine("}");
+      } else {
         code.addLine("")
             .addLine("@%s(\"unchecked\")", SuppressWarnings.class)
             .addLine("private static <E> %1$s<E> immutableList(%1$s<E> elements) {", List.class)
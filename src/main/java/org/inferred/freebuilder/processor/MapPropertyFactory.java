@@ -22,6 +22,7 @@ import static org.inferred.freebuilder.processor.BuilderMethods.putAllMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
 import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.Util.isEnum;
 import static org.inferred.freebuilder.processor.Util.upperBound;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
@@ -35,10 +36,12 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
 import org.inferred.freebuilder.processor.excerpt.CheckedMap;
+import org.inferred.freebuilder.processor.excerpt.CompactCollections;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
@@ -49,6 +52,7 @@ import org.inferred.freebuilder.processor.util.StaticExcerpt;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -59,6 +63,9 @@ import javax.lang.model.type.TypeMirror;
 /**
  * {@link PropertyCodeGenerator.Factory} providing append-only semantics for {@link Map}
  * properties.
+ *
+ * <p>Maps with enum keys are stored in an {@link EnumMap} in the builder, and an immutable enum map
+ * in the value, iterating in key declaration order rather than insertion order.
  */
 public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
 
@@ -81,7 +88,10 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
         keyType,
         unboxedKeyType,
         valueType,
-        unboxedValueType));
+        unboxedValueType,
+        isEnum(keyType),
+        (InternedStrings.isString(keyType) || InternedStrings.isString(valueType))
+            && InternedStrings.isRequested(config)));
   }
 
   private static boolean hasPutMethodOverride(
@@ -105,6 +115,8 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
     private final Optional<TypeMirror> unboxedKeyType;
     private final TypeMirror valueType;
     private final Optional<TypeMirror> unboxedValueType;
+    private final boolean isEnumMap;
+    private final boolean internStrings;
 
     CodeGenerator(
         Metadata metadata,
@@ -113,23 +125,49 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
         TypeMirror keyType,
         Optional<TypeMirror> unboxedKeyType,
         TypeMirror valueType,
-        Optional<TypeMirror> unboxedValueType) {
+        Optional<TypeMirror> unboxedValueType,
+        boolean isEnumMap,
+        boolean internStrings) {
       super(metadata, property);
       this.overridesPutMethod = overridesPutMethod;
       this.keyType = keyType;
       this.unboxedKeyType = unboxedKeyType;
       this.valueType = valueType;
       this.unboxedValueType = unboxedValueType;
+      this.isEnumMap = isEnumMap;
+      this.internStrings = internStrings;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
+    @Override
+    public boolean isInterningStrings() {
+      return internStrings;
     }
 
     @Override
     public void addBuilderFieldDeclaration(SourceBuilder code) {
-      code.addLine("private final %1$s<%2$s, %3$s> %4$s = new %1$s%5$s();",
-          LinkedHashMap.class,
-          keyType,
-          valueType,
-          property.getName(),
-          diamondOperator(Excerpts.add("%s, %s", keyType, valueType)));
+      if (isEnumMap) {
+        code.addLine("private final %1$s<%2$s, %3$s> %4$s = new %1$s%5$s(%2$s.class);",
+            EnumMap.class,
+            keyType,
+            valueType,
+            property.getName(),
+            diamondOperator(Excerpts.add("%s, %s", keyType, valueType)));
+      } else if (isCopyOnWrite(code)) {
+        code.addLine("private %s<%s, %s> %s = %s.of();",
+            Map.class, keyType, valueType, property.getName(), ImmutableMap.class);
+      } else {
+        code.addLine("private final %1$s<%2$s, %3$s> %4$s = new %1$s%5$s();",
+            LinkedHashMap.class,
+            keyType,
+            valueType,
+            property.getName(),
+            diamondOperator(Excerpts.add("%s, %s", keyType, valueType)));
+      }
     }
 
     @Override
@@ -174,7 +212,17 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
       if (!unboxedValueType.isPresent()) {
         code.add(PreconditionExcerpts.checkNotNull("value"));
       }
-      code.addLine("  %s.put(key, value);", property.getName())
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMap.class)
+            .addLine("    %1$s = new %2$s%3$s(%1$s);",
+                property.getName(),
+                LinkedHashMap.class,
+                diamondOperator(Excerpts.add("%s, %s", keyType, valueType)))
+            .addLine("  }");
+      }
+      code.addLine("  %s.put(%s, %s);",
+              property.getName(), maybeIntern(keyType, "key"), maybeIntern(valueType, "value"))
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -223,7 +271,16 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
       if (!unboxedKeyType.isPresent()) {
         code.add(PreconditionExcerpts.checkNotNull("key"));
       }
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMap.class)
+            .addLine("    %1$s = new %2$s%3$s(%1$s);",
+                property.getName(),
+                LinkedHashMap.class,
+                diamondOperator(Excerpts.add("%s, %s", keyType, valueType)))
+            .addLine("  }");
+      }
       code.addLine("  %s.remove(key);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -253,7 +310,16 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
               Map.class,
               keyType,
               valueType);
-      if (overridesPutMethod) {
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMap.class)
+            .addLine("    %1$s = new %2$s%3$s(%1$s);",
+                property.getName(),
+                LinkedHashMap.class,
+                diamondOperator(Excerpts.add("%s, %s", keyType, valueType)))
+            .addLine("  }");
+      }
+      code.add(LastBuiltValue.invalidate(metadata));
+      if (isPutMethodRequired()) {
         code.addLine("  mutator.accept(new CheckedMap<>(%s, this::%s));",
             property.getName(), putMethod(property));
       } else {
@@ -273,8 +339,17 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
           .addLine(" *")
           .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
           .addLine(" */")
-          .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-          .addLine("  %s.clear();", property.getName())
+          .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property));
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMap.class)
+            .addLine("    %s = %s.of();", property.getName(), ImmutableMap.class)
+            .addLine("  } else {");
+      }
+      code.addLine("    %s.clear();", property.getName());
+      if (isCopyOnWrite(code)) {
+        code.addLine("  }");
+      }
+      code.add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -286,13 +361,25 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
           .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
           .addLine(" * Changes to this builder will be reflected in the view.")
           .addLine(" */")
-          .addLine("public %s<%s, %s> %s() {", Map.class, keyType, valueType, getter(property))
-          .addLine("  return %s.unmodifiableMap(%s);", Collections.class, property.getName())
+          .addLine("public %s<%s, %s> %s() {", Map.class, keyType, valueType, getter(property));
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMap.class)
+            .addLine("    %1$s = new %2$s%3$s(%1$s);",
+                property.getName(),
+                LinkedHashMap.class,
+                diamondOperator(Excerpts.add("%s, %s", keyType, valueType)))
+            .addLine("  }");
+      }
+      code.addLine("  return %s.unmodifiableMap(%s);", Collections.class, property.getName())
           .addLine("}");
     }
 
     @Override
     public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      if (isEnumMap) {
+        addEnumMapFinalFieldAssignment(code, finalField, builder);
+        return;
+      }
       code.add("%s = ", finalField);
       if (code.feature(GUAVA).isAvailable()) {
         code.add("%s.copyOf", ImmutableMap.class);
@@ -302,9 +389,40 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
       code.add("(%s.%s);\n", builder, property.getName());
     }
 
+    private void addEnumMapFinalFieldAssignment(
+        SourceBuilder code, String finalField, String builder) {
+      if (code.feature(GUAVA).isAvailable()) {
+        code.addLine("%s = %s.immutableEnumMap(%s.%s);",
+            finalField, Maps.class, builder, property.getName());
+      } else {
+        code.addLine("%s = %s.unmodifiableMap(new %s%s(%s.%s));",
+            finalField,
+            Collections.class,
+            EnumMap.class,
+            diamondOperator(Excerpts.add("%s, %s", keyType, valueType)),
+            builder,
+            property.getName());
+      }
+    }
+
     @Override
     public void addMergeFromValue(Block code, String value) {
+      if (isCopyOnWrite(code)) {
+        code.addLine("if (%s instanceof %s && %s == %s.<%s, %s>of()) {",
+                value,
+                metadata.getValueType().getQualifiedName(),
+                property.getName(),
+                ImmutableMap.class,
+                keyType,
+                valueType)
+            .addLine("  %s = %s.copyOf(%s.%s());",
+                property.getName(), ImmutableMap.class, value, property.getGetterName())
+            .addLine("} else {");
+      }
       code.addLine("%s(%s.%s());", putAllMethod(property), value, property.getGetterName());
+      if (isCopyOnWrite(code)) {
+        code.addLine("}");
+      }
     }
 
     @Override
@@ -323,18 +441,41 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
 
     @Override
     public void addClearField(Block code) {
-      code.addLine("%s.clear();", property.getName());
+      code.addLine("%s();", clearMethod(property));
     }
 
     @Override
     public Set<StaticExcerpt> getStaticExcerpts() {
       ImmutableSet.Builder<StaticExcerpt> result = ImmutableSet.builder();
-      result.add(IMMUTABLE_MAP);
-      if (overridesPutMethod) {
+      if (!isEnumMap) {
+        result.add(IMMUTABLE_MAP);
+        result.addAll(CompactCollections.mapExcerpts());
+      }
+      if (isPutMethodRequired()) {
         result.addAll(CheckedMap.excerpts());
       }
       return result.build();
     }
+
+    /** Returns whether every entry put must go through the put method. */
+    private boolean isPutMethodRequired() {
+      return overridesPutMethod || internStrings;
+    }
+
+    private Object maybeIntern(TypeMirror type, String parameter) {
+      if (internStrings && InternedStrings.isString(type)) {
+        return InternedStrings.intern(parameter);
+      }
+      return parameter;
+    }
+
+    /**
+     * Returns whether the builder holds an immutable map until first modified, so values can
+     * share it. EnumMaps are cheap enough to copy that they are always mutated in place.
+     */
+    private boolean isCopyOnWrite(SourceBuilder code) {
+      return !isEnumMap && code.feature(GUAVA).isAvailable();
+    }
   }
 
   private static final StaticExcerpt IMMUTABLE_MAP = new StaticExcerpt(METHOD, "immutableMap") {
@@ -351,10 +492,14 @@ public class MapPropertyFactory implements PropertyCodeGenerator.Factory {
             .addLine("    %s<K, V> entry = entries.entrySet().iterator().next();", Map.Entry.class)
             .addLine("    return %s.singletonMap(entry.getKey(), entry.getValue());",
                 Collections.class)
-            .addLine("  default:")
-            .addLine("    return %s.unmodifiableMap(new %s%s(entries));",
-                Collections.class, LinkedHashMap.class, diamondOperator("K, V"))
-            .addLine("  }")
+            .addLine("  default:");
+        if (CompactCollections.isSupported(code)) {
+          code.addLine("    return new CompactMap<>(entries);");
+        } else {
+          code.addLine("    return %s.unmodifiableMap(new %s%s(entries));",
+              Collections.class, LinkedHashMap.class, diamondOperator("K, V"));
+        }
+        code.addLine("  }")
             .addLine("}");
       }
     }
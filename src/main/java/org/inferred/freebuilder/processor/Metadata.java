@@ -15,6 +15,7 @@
  */
 package org.inferred.freebuilder.processor;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.base.Function;
@@ -28,6 +29,9 @@ import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.QualifiedName;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nullable;
 import javax.lang.model.type.TypeMirror;
 
@@ -135,6 +139,45 @@ public abstract class Metadata {
   /** Returns metadata about the properties of the type. */
   public abstract ImmutableList<Property> getProperties();
 
+  /** Positions of required properties among the required properties, computed on first use. */
+  private volatile ImmutableMap<String, Integer> requiredPropertyIndices;
+
+  /**
+   * Returns the number of required properties. Requires the code generator of every property to
+   * be set.
+   */
+  public int getRequiredPropertyCount() {
+    return requiredPropertyIndices().size();
+  }
+
+  /**
+   * Returns the position of the required property called {@code name} among the required
+   * properties. Requires the code generator of every property to be set.
+   *
+   * @throws IllegalArgumentException if there is no such required property
+   */
+  public int getRequiredPropertyIndex(String name) {
+    Integer index = requiredPropertyIndices().get(name);
+    checkArgument(index != null, "%s is not a required property", name);
+    return index;
+  }
+
+  private ImmutableMap<String, Integer> requiredPropertyIndices() {
+    ImmutableMap<String, Integer> indices = requiredPropertyIndices;
+    if (indices == null) {
+      ImmutableMap.Builder<String, Integer> indicesBuilder = ImmutableMap.builder();
+      int index = 0;
+      for (Property property : getProperties()) {
+        if (property.getCodeGenerator().getType() == PropertyCodeGenerator.Type.REQUIRED) {
+          indicesBuilder.put(property.getName(), index++);
+        }
+      }
+      indices = indicesBuilder.build();
+      requiredPropertyIndices = indices;
+    }
+    return indices;
+  }
+
   public UnderrideLevel standardMethodUnderride(StandardMethod standardMethod) {
     UnderrideLevel underrideLevel = getStandardMethodUnderrides().get(standardMethod);
     return (underrideLevel == null) ? UnderrideLevel.ABSENT : underrideLevel;
@@ -145,6 +188,37 @@ public abstract class Metadata {
   /** Returns whether the builder type should be serializable. */
   public abstract boolean isBuilderSerializable();
 
+  /** Returns whether the value type should lazily cache its hash code. */
+  public abstract boolean isHashCodeCached();
+
+  /** Returns whether a builder-free static factory method should be generated. */
+  public abstract boolean isStaticFactoryGenerated();
+
+  /** Whether every code generator permits caching the built value, computed on first use. */
+  private volatile Boolean builtValueCached;
+
+  /**
+   * Returns whether the builder should cache the value returned by build() until it is next
+   * modified. Requires the code generator of every property to be set.
+   */
+  public boolean isBuiltValueCached() {
+    Boolean cached = builtValueCached;
+    if (cached == null) {
+      cached = LastBuiltValue.isCacheable(getProperties());
+      builtValueCached = cached;
+    }
+    return cached;
+  }
+
+  /** Returns whether a reset method, reusing a cached defaults builder, should be generated. */
+  public abstract boolean isResetMethodGenerated();
+
+  /** Returns whether String properties of the type should be interned when set on the builder. */
+  public abstract boolean isInterningStrings();
+
+  /** Returns whether built values of the type can be canonicalized by an interner. */
+  public abstract boolean isInterningValues();
+
   /** Returns a list of annotations that should be applied to the generated builder class. */
   public abstract ImmutableList<Excerpt> getGeneratedBuilderAnnotations();
 
@@ -188,6 +262,9 @@ public abstract class Metadata {
     /**
      * Returns the code generator to use for this property, or null if no generator has been picked
      * (i.e. when passed to {@link PropertyCodeGenerator.Factory#create}.
+     *
+     * <p>Once built into a {@link Metadata}, each code generator is a copy bound to that metadata,
+     * so it can see the code generators of every other property.
      */
     @Nullable public abstract PropertyCodeGenerator getCodeGenerator();
 
@@ -227,6 +304,11 @@ public abstract class Metadata {
 
     public Builder() {
       super.setValueTypeVisibility(Visibility.PRIVATE);
+      setHashCodeCached(false);
+      setStaticFactoryGenerated(false);
+      setResetMethodGenerated(false);
+      setInterningStrings(false);
+      setInterningValues(false);
     }
 
     /**
@@ -268,7 +350,37 @@ public abstract class Metadata {
       checkState(metadata.getPropertyEnum().getQualifiedName().getEnclosingType()
               .equals(generatedBuilder),
           "%s not a nested class of %s", metadata.getPropertyEnum(), generatedBuilder);
-      return metadata;
+      return bindCodeGenerators(metadata);
+    }
+
+    /**
+     * Returns a copy of {@code metadata} holding copies of its properties' code generators, bound
+     * to the copy. Code generators are created from metadata without any code generators, but
+     * generate code that depends on them all, e.g. on whether the built value can be cached.
+     */
+    private static Metadata bindCodeGenerators(Metadata metadata) {
+      Builder builder = metadata.toBuilder().clearProperties();
+      List<PropertyCodeGenerator> codeGenerators = new ArrayList<PropertyCodeGenerator>();
+      for (Property property : metadata.getProperties()) {
+        if (property.getCodeGenerator() != null) {
+          PropertyCodeGenerator codeGenerator = property.getCodeGenerator().copy();
+          codeGenerators.add(codeGenerator);
+          property = property.toBuilder().setCodeGenerator(codeGenerator).build();
+        }
+        builder.addProperties(property);
+      }
+      if (codeGenerators.isEmpty()) {
+        return metadata;
+      }
+      Metadata boundMetadata = builder.buildUnbound();
+      for (PropertyCodeGenerator codeGenerator : codeGenerators) {
+        codeGenerator.bindTo(boundMetadata);
+      }
+      return boundMetadata;
+    }
+
+    private Metadata buildUnbound() {
+      return super.build();
     }
   }
 }
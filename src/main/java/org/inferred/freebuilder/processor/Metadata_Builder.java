@@ -51,6 +51,11 @@ abstract class Metadata_Builder {
     PARTIAL_TYPE("partialType"),
     PROPERTY_ENUM("propertyEnum"),
     BUILDER_SERIALIZABLE("builderSerializable"),
+    HASH_CODE_CACHED("hashCodeCached"),
+    STATIC_FACTORY_GENERATED("staticFactoryGenerated"),
+    RESET_METHOD_GENERATED("resetMethodGenerated"),
+    INTERNING_STRINGS("interningStrings"),
+    INTERNING_VALUES("interningValues"),
     VALUE_TYPE_VISIBILITY("valueTypeVisibility"),
     ;
 
@@ -87,6 +92,11 @@ abstract class Metadata_Builder {
       standardMethodUnderrides =
           new LinkedHashMap<Metadata.StandardMethod, Metadata.UnderrideLevel>();
   private boolean builderSerializable;
+  private boolean hashCodeCached;
+  private boolean staticFactoryGenerated;
+  private boolean resetMethodGenerated;
+  private boolean interningStrings;
+  private boolean interningValues;
   private final ArrayList<Excerpt> generatedBuilderAnnotations = new ArrayList<Excerpt>();
   private final ArrayList<Excerpt> valueTypeAnnotations = new ArrayList<Excerpt>();
   private Metadata.Visibility valueTypeVisibility;
@@ -576,6 +586,121 @@ abstract class Metadata_Builder {
     return builderSerializable;
   }
 
+  /**
+   * Sets the value to be returned by {@link Metadata#isHashCodeCached()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Metadata.Builder setHashCodeCached(boolean hashCodeCached) {
+    this.hashCodeCached = hashCodeCached;
+    _unsetProperties.remove(Metadata_Builder.Property.HASH_CODE_CACHED);
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Metadata#isHashCodeCached()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isHashCodeCached() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Metadata_Builder.Property.HASH_CODE_CACHED),
+        "hashCodeCached not set");
+    return hashCodeCached;
+  }
+
+  /**
+   * Sets the value to be returned by {@link Metadata#isStaticFactoryGenerated()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Metadata.Builder setStaticFactoryGenerated(boolean staticFactoryGenerated) {
+    this.staticFactoryGenerated = staticFactoryGenerated;
+    _unsetProperties.remove(Metadata_Builder.Property.STATIC_FACTORY_GENERATED);
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Metadata#isStaticFactoryGenerated()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isStaticFactoryGenerated() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Metadata_Builder.Property.STATIC_FACTORY_GENERATED),
+        "staticFactoryGenerated not set");
+    return staticFactoryGenerated;
+  }
+
+  /**
+   * Sets the value to be returned by {@link Metadata#isResetMethodGenerated()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Metadata.Builder setResetMethodGenerated(boolean resetMethodGenerated) {
+    this.resetMethodGenerated = resetMethodGenerated;
+    _unsetProperties.remove(Metadata_Builder.Property.RESET_METHOD_GENERATED);
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Metadata#isResetMethodGenerated()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isResetMethodGenerated() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Metadata_Builder.Property.RESET_METHOD_GENERATED),
+        "resetMethodGenerated not set");
+    return resetMethodGenerated;
+  }
+
+  /**
+   * Sets the value to be returned by {@link Metadata#isInterningStrings()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Metadata.Builder setInterningStrings(boolean interningStrings) {
+    this.interningStrings = interningStrings;
+    _unsetProperties.remove(Metadata_Builder.Property.INTERNING_STRINGS);
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Metadata#isInterningStrings()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isInterningStrings() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Metadata_Builder.Property.INTERNING_STRINGS),
+        "interningStrings not set");
+    return interningStrings;
+  }
+
+  /**
+   * Sets the value to be returned by {@link Metadata#isInterningValues()}.
+   *
+   * @return this {@code Builder} object
+   */
+  public Metadata.Builder setInterningValues(boolean interningValues) {
+    this.interningValues = interningValues;
+    _unsetProperties.remove(Metadata_Builder.Property.INTERNING_VALUES);
+    return (Metadata.Builder) this;
+  }
+
+  /**
+   * Returns the value that will be returned by {@link Metadata#isInterningValues()}.
+   *
+   * @throws IllegalStateException if the field has not been set
+   */
+  public boolean isInterningValues() {
+    Preconditions.checkState(
+        !_unsetProperties.contains(Metadata_Builder.Property.INTERNING_VALUES),
+        "interningValues not set");
+    return interningValues;
+  }
+
   /**
    * Adds {@code element} to the list to be returned from {@link Metadata#getGeneratedBuilderAnnotations()}.
    *
@@ -838,6 +963,26 @@ abstract class Metadata_Builder {
         || value.isBuilderSerializable() != _defaults.isBuilderSerializable()) {
       setBuilderSerializable(value.isBuilderSerializable());
     }
+    if (_defaults._unsetProperties.contains(Metadata_Builder.Property.HASH_CODE_CACHED)
+        || value.isHashCodeCached() != _defaults.isHashCodeCached()) {
+      setHashCodeCached(value.isHashCodeCached());
+    }
+    if (_defaults._unsetProperties.contains(Metadata_Builder.Property.STATIC_FACTORY_GENERATED)
+        || value.isStaticFactoryGenerated() != _defaults.isStaticFactoryGenerated()) {
+      setStaticFactoryGenerated(value.isStaticFactoryGenerated());
+    }
+    if (_defaults._unsetProperties.contains(Metadata_Builder.Property.RESET_METHOD_GENERATED)
+        || value.isResetMethodGenerated() != _defaults.isResetMethodGenerated()) {
+      setResetMethodGenerated(value.isResetMethodGenerated());
+    }
+    if (_defaults._unsetProperties.contains(Metadata_Builder.Property.INTERNING_STRINGS)
+        || value.isInterningStrings() != _defaults.isInterningStrings()) {
+      setInterningStrings(value.isInterningStrings());
+    }
+    if (_defaults._unsetProperties.contains(Metadata_Builder.Property.INTERNING_VALUES)
+        || value.isInterningValues() != _defaults.isInterningValues()) {
+      setInterningValues(value.isInterningValues());
+    }
     addAllGeneratedBuilderAnnotations(value.getGeneratedBuilderAnnotations());
     addAllValueTypeAnnotations(value.getValueTypeAnnotations());
     if (_defaults._unsetProperties.contains(Metadata_Builder.Property.VALUE_TYPE_VISIBILITY)
@@ -900,6 +1045,31 @@ abstract class Metadata_Builder {
             || template.isBuilderSerializable() != _defaults.isBuilderSerializable())) {
       setBuilderSerializable(template.isBuilderSerializable());
     }
+    if (!base._unsetProperties.contains(Metadata_Builder.Property.HASH_CODE_CACHED)
+        && (_defaults._unsetProperties.contains(Metadata_Builder.Property.HASH_CODE_CACHED)
+            || template.isHashCodeCached() != _defaults.isHashCodeCached())) {
+      setHashCodeCached(template.isHashCodeCached());
+    }
+    if (!base._unsetProperties.contains(Metadata_Builder.Property.STATIC_FACTORY_GENERATED)
+        && (_defaults._unsetProperties.contains(Metadata_Builder.Property.STATIC_FACTORY_GENERATED)
+            || template.isStaticFactoryGenerated() != _defaults.isStaticFactoryGenerated())) {
+      setStaticFactoryGenerated(template.isStaticFactoryGenerated());
+    }
+    if (!base._unsetProperties.contains(Metadata_Builder.Property.RESET_METHOD_GENERATED)
+        && (_defaults._unsetProperties.contains(Metadata_Builder.Property.RESET_METHOD_GENERATED)
+            || template.isResetMethodGenerated() != _defaults.isResetMethodGenerated())) {
+      setResetMethodGenerated(template.isResetMethodGenerated());
+    }
+    if (!base._unsetProperties.contains(Metadata_Builder.Property.INTERNING_STRINGS)
+        && (_defaults._unsetProperties.contains(Metadata_Builder.Property.INTERNING_STRINGS)
+            || template.isInterningStrings() != _defaults.isInterningStrings())) {
+      setInterningStrings(template.isInterningStrings());
+    }
+    if (!base._unsetProperties.contains(Metadata_Builder.Property.INTERNING_VALUES)
+        && (_defaults._unsetProperties.contains(Metadata_Builder.Property.INTERNING_VALUES)
+            || template.isInterningValues() != _defaults.isInterningValues())) {
+      setInterningValues(template.isInterningValues());
+    }
     addAllGeneratedBuilderAnnotations(((Metadata_Builder) template).generatedBuilderAnnotations);
     addAllValueTypeAnnotations(((Metadata_Builder) template).valueTypeAnnotations);
     if (!base._unsetProperties.contains(Metadata_Builder.Property.VALUE_TYPE_VISIBILITY)
@@ -928,6 +1098,11 @@ abstract class Metadata_Builder {
     properties.clear();
     standardMethodUnderrides.clear();
     builderSerializable = _defaults.builderSerializable;
+    hashCodeCached = _defaults.hashCodeCached;
+    staticFactoryGenerated = _defaults.staticFactoryGenerated;
+    resetMethodGenerated = _defaults.resetMethodGenerated;
+    interningStrings = _defaults.interningStrings;
+    interningValues = _defaults.interningValues;
     generatedBuilderAnnotations.clear();
     valueTypeAnnotations.clear();
     valueTypeVisibility = _defaults.valueTypeVisibility;
@@ -981,6 +1156,11 @@ abstract class Metadata_Builder {
     private final ImmutableMap<Metadata.StandardMethod, Metadata.UnderrideLevel>
         standardMethodUnderrides;
     private final boolean builderSerializable;
+    private final boolean hashCodeCached;
+    private final boolean staticFactoryGenerated;
+    private final boolean resetMethodGenerated;
+    private final boolean interningStrings;
+    private final boolean interningValues;
     private final ImmutableList<Excerpt> generatedBuilderAnnotations;
     private final ImmutableList<Excerpt> valueTypeAnnotations;
     private final Metadata.Visibility valueTypeVisibility;
@@ -999,6 +1179,11 @@ abstract class Metadata_Builder {
       this.properties = ImmutableList.copyOf(builder.properties);
       this.standardMethodUnderrides = ImmutableMap.copyOf(builder.standardMethodUnderrides);
       this.builderSerializable = builder.builderSerializable;
+      this.hashCodeCached = builder.hashCodeCached;
+      this.staticFactoryGenerated = builder.staticFactoryGenerated;
+      this.resetMethodGenerated = builder.resetMethodGenerated;
+      this.interningStrings = builder.interningStrings;
+      this.interningValues = builder.interningValues;
       this.generatedBuilderAnnotations = ImmutableList.copyOf(builder.generatedBuilderAnnotations);
       this.valueTypeAnnotations = ImmutableList.copyOf(builder.valueTypeAnnotations);
       this.valueTypeVisibility = builder.valueTypeVisibility;
@@ -1066,6 +1251,31 @@ abstract class Metadata_Builder {
       return builderSerializable;
     }
 
+    @Override
+    public boolean isHashCodeCached() {
+      return hashCodeCached;
+    }
+
+    @Override
+    public boolean isStaticFactoryGenerated() {
+      return staticFactoryGenerated;
+    }
+
+    @Override
+    public boolean isResetMethodGenerated() {
+      return resetMethodGenerated;
+    }
+
+    @Override
+    public boolean isInterningStrings() {
+      return interningStrings;
+    }
+
+    @Override
+    public boolean isInterningValues() {
+      return interningValues;
+    }
+
     @Override
     public ImmutableList<Excerpt> getGeneratedBuilderAnnotations() {
       return generatedBuilderAnnotations;
@@ -1130,6 +1340,21 @@ abstract class Metadata_Builder {
       if (builderSerializable != other.builderSerializable) {
         return false;
       }
+      if (hashCodeCached != other.hashCodeCached) {
+        return false;
+      }
+      if (staticFactoryGenerated != other.staticFactoryGenerated) {
+        return false;
+      }
+      if (resetMethodGenerated != other.resetMethodGenerated) {
+        return false;
+      }
+      if (interningStrings != other.interningStrings) {
+        return false;
+      }
+      if (interningValues != other.interningValues) {
+        return false;
+      }
       if (!generatedBuilderAnnotations.equals(other.generatedBuilderAnnotations)) {
         return false;
       }
@@ -1161,6 +1386,11 @@ abstract class Metadata_Builder {
             properties,
             standardMethodUnderrides,
             builderSerializable,
+            hashCodeCached,
+            staticFactoryGenerated,
+            resetMethodGenerated,
+            interningStrings,
+            interningValues,
             generatedBuilderAnnotations,
             valueTypeAnnotations,
             valueTypeVisibility,
@@ -1184,6 +1414,11 @@ abstract class Metadata_Builder {
               "properties=" + properties,
               "standardMethodUnderrides=" + standardMethodUnderrides,
               "builderSerializable=" + builderSerializable,
+              "hashCodeCached=" + hashCodeCached,
+              "staticFactoryGenerated=" + staticFactoryGenerated,
+              "resetMethodGenerated=" + resetMethodGenerated,
+              "interningStrings=" + interningStrings,
+              "interningValues=" + interningValues,
               "generatedBuilderAnnotations=" + generatedBuilderAnnotations,
               "valueTypeAnnotations=" + valueTypeAnnotations,
               "valueTypeVisibility=" + valueTypeVisibility,
@@ -1212,6 +1447,11 @@ abstract class Metadata_Builder {
     private final ImmutableMap<Metadata.StandardMethod, Metadata.UnderrideLevel>
         standardMethodUnderrides;
     private final boolean builderSerializable;
+    private final boolean hashCodeCached;
+    private final boolean staticFactoryGenerated;
+    private final boolean resetMethodGenerated;
+    private final boolean interningStrings;
+    private final boolean interningValues;
     private final ImmutableList<Excerpt> generatedBuilderAnnotations;
     private final ImmutableList<Excerpt> valueTypeAnnotations;
     private final Metadata.Visibility valueTypeVisibility;
@@ -1231,6 +1471,11 @@ abstract class Metadata_Builder {
       this.properties = ImmutableList.copyOf(builder.properties);
       this.standardMethodUnderrides = ImmutableMap.copyOf(builder.standardMethodUnderrides);
       this.builderSerializable = builder.builderSerializable;
+      this.hashCodeCached = builder.hashCodeCached;
+      this.staticFactoryGenerated = builder.staticFactoryGenerated;
+      this.resetMethodGenerated = builder.resetMethodGenerated;
+      this.interningStrings = builder.interningStrings;
+      this.interningValues = builder.interningValues;
       this.generatedBuilderAnnotations = ImmutableList.copyOf(builder.generatedBuilderAnnotations);
       this.valueTypeAnnotations = ImmutableList.copyOf(builder.valueTypeAnnotations);
       this.valueTypeVisibility = builder.valueTypeVisibility;
@@ -1320,6 +1565,46 @@ abstract class Metadata_Builder {
       return builderSerializable;
     }
 
+    @Override
+    public boolean isHashCodeCached() {
+      if (_unsetProperties.contains(Metadata_Builder.Property.HASH_CODE_CACHED)) {
+        throw new UnsupportedOperationException("hashCodeCached not set");
+      }
+      return hashCodeCached;
+    }
+
+    @Override
+    public boolean isStaticFactoryGenerated() {
+      if (_unsetProperties.contains(Metadata_Builder.Property.STATIC_FACTORY_GENERATED)) {
+        throw new UnsupportedOperationException("staticFactoryGenerated not set");
+      }
+      return staticFactoryGenerated;
+    }
+
+    @Override
+    public boolean isResetMethodGenerated() {
+      if (_unsetProperties.contains(Metadata_Builder.Property.RESET_METHOD_GENERATED)) {
+        throw new UnsupportedOperationException("resetMethodGenerated not set");
+      }
+      return resetMethodGenerated;
+    }
+
+    @Override
+    public boolean isInterningStrings() {
+      if (_unsetProperties.contains(Metadata_Builder.Property.INTERNING_STRINGS)) {
+        throw new UnsupportedOperationException("interningStrings not set");
+      }
+      return interningStrings;
+    }
+
+    @Override
+    public boolean isInterningValues() {
+      if (_unsetProperties.contains(Metadata_Builder.Property.INTERNING_VALUES)) {
+        throw new UnsupportedOperationException("interningValues not set");
+      }
+      return interningValues;
+    }
+
     @Override
     public ImmutableList<Excerpt> getGeneratedBuilderAnnotations() {
       return generatedBuilderAnnotations;
@@ -1391,6 +1676,21 @@ abstract class Metadata_Builder {
       if (builderSerializable != other.builderSerializable) {
         return false;
       }
+      if (hashCodeCached != other.hashCodeCached) {
+        return false;
+      }
+      if (staticFactoryGenerated != other.staticFactoryGenerated) {
+        return false;
+      }
+      if (resetMethodGenerated != other.resetMethodGenerated) {
+        return false;
+      }
+      if (interningStrings != other.interningStrings) {
+        return false;
+      }
+      if (interningValues != other.interningValues) {
+        return false;
+      }
       if (!generatedBuilderAnnotations.equals(other.generatedBuilderAnnotations)) {
         return false;
       }
@@ -1424,6 +1724,11 @@ abstract class Metadata_Builder {
             properties,
             standardMethodUnderrides,
             builderSerializable,
+            hashCodeCached,
+            staticFactoryGenerated,
+            resetMethodGenerated,
+            interningStrings,
+            interningValues,
             generatedBuilderAnnotations,
             valueTypeAnnotations,
             valueTypeVisibility,
@@ -1460,6 +1765,21 @@ abstract class Metadata_Builder {
               (!_unsetProperties.contains(Metadata_Builder.Property.BUILDER_SERIALIZABLE)
                   ? "builderSerializable=" + builderSerializable
                   : null),
+              (!_unsetProperties.contains(Metadata_Builder.Property.HASH_CODE_CACHED)
+                  ? "hashCodeCached=" + hashCodeCached
+                  : null),
+              (!_unsetProperties.contains(Metadata_Builder.Property.STATIC_FACTORY_GENERATED)
+                  ? "staticFactoryGenerated=" + staticFactoryGenerated
+                  : null),
+              (!_unsetProperties.contains(Metadata_Builder.Property.RESET_METHOD_GENERATED)
+                  ? "resetMethodGenerated=" + resetMethodGenerated
+                  : null),
+              (!_unsetProperties.contains(Metadata_Builder.Property.INTERNING_STRINGS)
+                  ? "interningStrings=" + interningStrings
+                  : null),
+              (!_unsetProperties.contains(Metadata_Builder.Property.INTERNING_VALUES)
+                  ? "interningValues=" + interningValues
+                  : null),
               "generatedBuilderAnnotations=" + generatedBuilderAnnotations,
               "valueTypeAnnotations=" + valueTypeAnnotations,
               (!_unsetProperties.contains(Metadata_Builder.Property.VALUE_TYPE_VISIBILITY)
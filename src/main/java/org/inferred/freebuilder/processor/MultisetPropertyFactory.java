@@ -109,10 +109,15 @@ public class MultisetPropertyFactory implements PropertyCodeGenerator.Factory {
       this.unboxedType = unboxedType;
     }
 
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
     @Override
     public void addBuilderFieldDeclaration(SourceBuilder code) {
-      code.addLine("private final %1$s<%2$s> %3$s = %1$s.create();",
-          LinkedHashMultiset.class, elementType, property.getName());
+      code.addLine("private %s<%s> %s = %s.of();",
+          Multiset.class, elementType, property.getName(), ImmutableMultiset.class);
     }
 
     @Override
@@ -293,7 +298,11 @@ public class MultisetPropertyFactory implements PropertyCodeGenerator.Factory {
               mutator(property),
               consumer.getQualifiedName(),
               Multiset.class,
-              elementType);
+              elementType)
+          .addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMultiset.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedHashMultiset.class)
+          .addLine("  }");
+      code.add(LastBuiltValue.invalidate(metadata));
       if (overridesSetCountMethod) {
         code.addLine("  mutator.accept(new CheckedMultiset<>(%s, this::%s));",
             property.getName(), setCountMethod(property));
@@ -315,7 +324,12 @@ public class MultisetPropertyFactory implements PropertyCodeGenerator.Factory {
           .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
           .addLine(" */")
           .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-          .addLine("  this.%s.clear();", property.getName())
+          .addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMultiset.class)
+          .addLine("    %s = %s.of();", property.getName(), ImmutableMultiset.class)
+          .addLine("  } else {")
+          .addLine("    %s.clear();", property.getName())
+          .addLine("  }")
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -341,7 +355,11 @@ public class MultisetPropertyFactory implements PropertyCodeGenerator.Factory {
       if (!unboxedType.isPresent()) {
         code.addLine("  %s.checkNotNull(element);", Preconditions.class, property.getName());
       }
-      code.addLine("  this.%s.setCount(element, occurrences);", property.getName())
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMultiset.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedHashMultiset.class)
+          .addLine("  }")
+          .addLine("  this.%s.setCount(element, occurrences);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -354,6 +372,9 @@ public class MultisetPropertyFactory implements PropertyCodeGenerator.Factory {
           .addLine(" * Changes to this builder will be reflected in the view.")
           .addLine(" */")
           .addLine("public %s<%s> %s() {", Multiset.class, elementType, getter(property))
+          .addLine("  if (%s instanceof %s) {", property.getName(), ImmutableMultiset.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedHashMultiset.class)
+          .addLine("  }")
           .addLine("  return %s.unmodifiableMultiset(%s);", Multisets.class, property.getName())
           .addLine("}");
     }
@@ -366,7 +387,17 @@ public class MultisetPropertyFactory implements PropertyCodeGenerator.Factory {
 
     @Override
     public void addMergeFromValue(Block code, String value) {
-      code.addLine("%s(%s.%s());", addAllMethod(property), value, property.getGetterName());
+      code.addLine("if (%s instanceof %s && %s == %s.<%s>of()) {",
+              value,
+              metadata.getValueType().getQualifiedName(),
+              property.getName(),
+              ImmutableMultiset.class,
+              elementType)
+          .addLine("  %s = %s.copyOf(%s.%s());",
+              property.getName(), ImmutableMultiset.class, value, property.getGetterName())
+          .addLine("} else {")
+          .addLine("  %s(%s.%s());", addAllMethod(property), value, property.getGetterName())
+          .addLine("}");
     }
 
     @Override
@@ -385,7 +416,7 @@ public class MultisetPropertyFactory implements PropertyCodeGenerator.Factory {
 
     @Override
     public void addClearField(Block code) {
-      code.addLine("%s.clear();", property.getName());
+      code.addLine("%s();", clearMethod(property));
     }
 
     @Override
@@ -50,7 +50,10 @@ public class NullablePropertyFactory implements PropertyCodeGenerator.Factory {
     if (isPrimitive || nullableAnnotations.isEmpty()) {
       return Optional.absent();
     }
-    return Optional.of(new CodeGenerator(config.getMetadata(), property, nullableAnnotations));
+    boolean internStrings =
+        InternedStrings.isString(property.getType()) && InternedStrings.isRequested(config);
+    return Optional.of(new CodeGenerator(
+        config.getMetadata(), property, nullableAnnotations, internStrings));
   }
 
   private static Set<TypeElement> nullablesIn(Iterable<? extends AnnotationMirror> annotations) {
@@ -69,10 +72,16 @@ public class NullablePropertyFactory implements PropertyCodeGenerator.Factory {
   @VisibleForTesting static class CodeGenerator extends PropertyCodeGenerator {
 
     private final Set<TypeElement> nullables;
+    private final boolean internStrings;
 
-    CodeGenerator(Metadata metadata, Property property, Iterable<TypeElement> nullableAnnotations) {
+    CodeGenerator(
+        Metadata metadata,
+        Property property,
+        Iterable<TypeElement> nullableAnnotations,
+        boolean internStrings) {
       super(metadata, property);
       this.nullables = ImmutableSet.copyOf(nullableAnnotations);
+      this.internStrings = internStrings;
     }
 
     @Override
@@ -80,6 +89,11 @@ public class NullablePropertyFactory implements PropertyCodeGenerator.Factory {
       return Type.OPTIONAL;
     }
 
+    @Override
+    public boolean isInterningStrings() {
+      return internStrings;
+    }
+
     @Override
     public void addBuilderFieldDeclaration(SourceBuilder code) {
       addGetterAnnotations(code);
@@ -104,8 +118,14 @@ public class NullablePropertyFactory implements PropertyCodeGenerator.Factory {
       addAccessorAnnotations(code);
       code.add("public %s %s(", metadata.getBuilder(), setter(property));
       addGetterAnnotations(code);
-      code.add("%s %s) {\n", property.getType(), property.getName())
-          .addLine("  this.%1$s = %1$s;", property.getName())
+      code.add("%s %s) {\n", property.getType(), property.getName());
+      if (internStrings) {
+        code.addLine("  this.%1$s = (%1$s == null) ? null : %2$s;",
+            property.getName(), InternedStrings.intern(property.getName()));
+      } else {
+        code.addLine("  this.%1$s = %1$s;", property.getName());
+      }
+      code.add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
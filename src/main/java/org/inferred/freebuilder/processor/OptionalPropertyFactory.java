@@ -127,7 +127,8 @@ public class OptionalPropertyFactory implements PropertyCodeGenerator.Factory {
         optionalType,
         elementType,
         unboxedType,
-        requiresExplicitTypeParameters));
+        requiresExplicitTypeParameters,
+        InternedStrings.isString(elementType) && InternedStrings.isRequested(config)));
   }
 
   private static Optional<OptionalType> maybeOptional(DeclaredType type) {
@@ -145,6 +146,7 @@ public class OptionalPropertyFactory implements PropertyCodeGenerator.Factory {
     private final TypeMirror elementType;
     private final Optional<TypeMirror> unboxedType;
     private final boolean requiresExplicitTypeParameters;
+    private final boolean internStrings;
 
     @VisibleForTesting CodeGenerator(
         Metadata metadata,
@@ -152,12 +154,14 @@ public class OptionalPropertyFactory implements PropertyCodeGenerator.Factory {
         OptionalType optional,
         TypeMirror elementType,
         Optional<TypeMirror> unboxedType,
-        boolean requiresExplicitTypeParametersInJava7) {
+        boolean requiresExplicitTypeParametersInJava7,
+        boolean internStrings) {
       super(metadata, property);
       this.optional = optional;
       this.elementType = elementType;
       this.unboxedType = unboxedType;
       this.requiresExplicitTypeParameters = requiresExplicitTypeParametersInJava7;
+      this.internStrings = internStrings;
     }
 
     @Override
@@ -165,6 +169,11 @@ public class OptionalPropertyFactory implements PropertyCodeGenerator.Factory {
       return Type.OPTIONAL;
     }
 
+    @Override
+    public boolean isInterningStrings() {
+      return internStrings;
+    }
+
     @Override
     public void addValueFieldDeclaration(SourceBuilder code, String finalField) {
       code.addLine("// Store a nullable object instead of an Optional. Escape analysis then")
@@ -210,11 +219,13 @@ public class OptionalPropertyFactory implements PropertyCodeGenerator.Factory {
       if (unboxedType.isPresent()) {
         code.addLine("  this.%1$s = %1$s;", property.getName());
       } else {
+        Excerpt value = PreconditionExcerpts.checkNotNullInline(property.getName());
         code.add(PreconditionExcerpts.checkNotNullPreamble(property.getName()))
             .addLine("  this.%s = %s;",
-                property.getName(), PreconditionExcerpts.checkNotNullInline(property.getName()));
+                property.getName(), internStrings ? InternedStrings.intern(value) : value);
       }
-      code.addLine("  return (%s) this;", metadata.getBuilder())
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
 
@@ -298,6 +309,7 @@ public class OptionalPropertyFactory implements PropertyCodeGenerator.Factory {
           .addLine(" */")
           .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
           .addLine("  this.%s = null;", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderMethods.addAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.addMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
+import static org.inferred.freebuilder.processor.BuilderMethods.putAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
+import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
+import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.diamondOperator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.excerpt.PrimitiveCollectionsLibrary;
+import org.inferred.freebuilder.processor.excerpt.PrimitiveCollectionsLibrary.CollectionType;
+import org.inferred.freebuilder.processor.excerpt.PrimitiveCollectionsLibrary.Shape;
+import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.util.Locale;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * {@link PropertyCodeGenerator.Factory} providing append-only semantics for the primitive list,
+ * set and map interfaces of third-party libraries like fastutil and Eclipse Collections, without
+ * boxing elements.
+ *
+ * <p>See {@link PrimitiveCollectionsLibrary} for the supported libraries.
+ */
+public class PrimitiveCollectionsLibraryPropertyFactory implements PropertyCodeGenerator.Factory {
+
+  @Override
+  public Optional<? extends PropertyCodeGenerator> create(Config config) {
+    DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
+    if (type == null) {
+      return Optional.absent();
+    }
+    // A property of a library type proves the library is on the classpath.
+    CollectionType collectionType = PrimitiveCollectionsLibrary
+        .collectionType(QualifiedName.of((TypeElement) type.asElement()))
+        .orNull();
+    if (collectionType == null) {
+      return Optional.absent();
+    }
+    TypeMirror primitiveType = config.getTypes().getPrimitiveType(
+        TypeKind.valueOf(collectionType.getPrimitiveType().name()));
+    Optional<TypeMirror> valueType = Optional.absent();
+    boolean overridesAddMethod;
+    if (collectionType.getShape() == Shape.MAP) {
+      if (type.getTypeArguments().size() != 1) {
+        return Optional.absent();
+      }
+      valueType = Optional.of(upperBound(config.getElements(), type.getTypeArguments().get(0)));
+      overridesAddMethod = overrides(
+          config.getBuilder(),
+          config.getTypes(),
+          putMethod(config.getProperty()),
+          primitiveType,
+          valueType.get());
+    } else {
+      overridesAddMethod = overrides(
+          config.getBuilder(), config.getTypes(), addMethod(config.getProperty()), primitiveType);
+    }
+    return Optional.of(new CodeGenerator(
+        config.getMetadata(),
+        config.getProperty(),
+        collectionType,
+        primitiveType,
+        valueType,
+        overridesAddMethod));
+  }
+
+  @VisibleForTesting static class CodeGenerator extends PropertyCodeGenerator {
+
+    private final CollectionType collectionType;
+    private final TypeMirror primitiveType;
+    private final Optional<TypeMirror> valueType;
+    private final boolean overridesAddMethod;
+
+    CodeGenerator(
+        Metadata metadata,
+        Property property,
+        CollectionType collectionType,
+        TypeMirror primitiveType,
+        Optional<TypeMirror> valueType,
+        boolean overridesAddMethod) {
+      super(metadata, property);
+      this.collectionType = collectionType;
+      this.primitiveType = primitiveType;
+      this.valueType = valueType;
+      this.overridesAddMethod = overridesAddMethod;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
+    @Override
+    public void addBuilderFieldDeclaration(SourceBuilder code) {
+      if (valueType.isPresent()) {
+        code.addLine("private final %1$s<%2$s> %3$s = new %1$s%4$s();",
+            collectionType.mutableType(),
+            valueType.get(),
+            property.getName(),
+            diamondOperator(valueType.get()));
+      } else {
+        code.addLine("private final %1$s %2$s = new %1$s();",
+            collectionType.mutableType(), property.getName());
+      }
+    }
+
+    @Override
+    public void addBuilderFieldAccessors(SourceBuilder code) {
+      if (collectionType.getShape() == Shape.MAP) {
+        addPut(code, metadata);
+        addPutAll(code, metadata);
+        addRemove(code, metadata, "key");
+      } else {
+        addAdd(code, metadata);
+        addVarargsAdd(code, metadata);
+        addAddAll(code, metadata);
+        if (collectionType.getShape() == Shape.SET) {
+          addRemove(code, metadata, "element");
+        }
+      }
+      addClear(code, metadata);
+      addGetter(code, metadata);
+    }
+
+    private void addAdd(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds {@code element} to the %s to be returned from %s.",
+              collectionName(), metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s(%s element) {",
+              metadata.getBuilder(), addMethod(property), primitiveType)
+          .addLine("  %s.add(element);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addVarargsAdd(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds each element of {@code elements} to the %s to be returned from",
+              collectionName())
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s(%s... elements) {",
+              metadata.getBuilder(), addMethod(property), primitiveType)
+          .addLine("  for (%s element : elements) {", primitiveType)
+          .addLine("    %s(element);", addMethod(property))
+          .addLine("  }")
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addAddAll(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds each element of {@code elements} to the %s to be returned from",
+              collectionName())
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code elements} is null")
+          .addLine(" */");
+      addAccessorAnnotations(code);
+      code.addLine("public %s %s(%s elements) {",
+          metadata.getBuilder(), addAllMethod(property), collectionType.elementsType());
+      if (overridesAddMethod) {
+        collectionType.addForEachElement(code, "elements", addMethod(property));
+      } else {
+        code.addLine("  %s.addAll(elements);", property.getName())
+            .add(LastBuiltValue.invalidate(metadata));
+      }
+      code.addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addPut(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Associates {@code key} with {@code value} in the map to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * If the map previously contained a mapping for the key,")
+          .addLine(" * the old value is replaced by the specified value.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code value} is null")
+          .addLine(" */")
+          .addLine("public %s %s(%s key, %s value) {",
+              metadata.getBuilder(), putMethod(property), primitiveType, valueType.get())
+          .add(PreconditionExcerpts.checkNotNull("value"))
+          .addLine("  %s.put(key, value);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addPutAll(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Copies all of the mappings from {@code map} to the map to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code map} is null or contains a")
+          .addLine(" *     null value")
+          .addLine(" */");
+      addAccessorAnnotations(code);
+      code.addLine("public %s %s(%s<? extends %s> map) {",
+          metadata.getBuilder(),
+          putAllMethod(property),
+          collectionType.readableType(),
+          valueType.get());
+      collectionType.addForEachEntry(code, valueType.get(), "map", putMethod(property));
+      code.addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addRemove(SourceBuilder code, Metadata metadata, String parameter) {
+      String method = (collectionType.getShape() == Shape.MAP)
+          ? collectionType.removeKeyMethod() : "remove";
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Removes {@code %s} from the %s to be returned from %s.",
+              parameter,
+              collectionName(),
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * Does nothing if it is not present.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s(%s %s) {",
+              metadata.getBuilder(), removeMethod(property), primitiveType, parameter)
+          .addLine("  %s.%s(%s);", property.getName(), method, parameter)
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addClear(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Clears the %s to be returned from %s.",
+              collectionName(), metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
+          .addLine("  %s.clear();", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addGetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns an unmodifiable view of the %s that will be returned by",
+              collectionName())
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * Changes to this builder will be reflected in the view.")
+          .addLine(" */")
+          .add("public %s", collectionType.readableType());
+      if (valueType.isPresent()) {
+        code.add("<%s>", valueType.get());
+      }
+      code.add(" %s() {\n", getter(property))
+          .add("  return ");
+      collectionType.addUnmodifiableView(code, property.getName());
+      code.add(";\n")
+          .addLine("}");
+    }
+
+    @Override
+    public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      code.add("%s = ", finalField);
+      collectionType.addImmutableCopy(code, valueType, builder + "." + property.getName());
+      code.add(";\n");
+    }
+
+    @Override
+    public void addMergeFromValue(Block code, String value) {
+      code.addLine("%s(%s.%s());", bulkAddMethod(), value, property.getGetterName());
+    }
+
+    @Override
+    public void addMergeFromBuilder(Block code, String builder) {
+      code.addLine("%s(((%s) %s).%s);",
+          bulkAddMethod(), metadata.getGeneratedBuilder(), builder, property.getName());
+    }
+
+    @Override
+    public void addSetFromResult(SourceBuilder code, String builder, String variable) {
+      code.addLine("%s.%s(%s);", builder, bulkAddMethod(), variable);
+    }
+
+    @Override
+    public void addClearField(Block code) {
+      code.addLine("%s();", clearMethod(property));
+    }
+
+    private String bulkAddMethod() {
+      return (collectionType.getShape() == Shape.MAP)
+          ? putAllMethod(property) : addAllMethod(property);
+    }
+
+    private String collectionName() {
+      return collectionType.getShape().name().toLowerCase(Locale.ENGLISH);
+    }
+  }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderMethods.addAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.addMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
+import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
+import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
+import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.excerpt.CheckedList;
+import org.inferred.freebuilder.processor.excerpt.PrimitiveList;
+import org.inferred.freebuilder.processor.excerpt.PrimitiveType;
+import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.ParameterizedType;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * {@link PropertyCodeGenerator.Factory} providing append-only semantics for {@link List}
+ * properties of {@link Integer}, {@link Long} or {@link Double} elements, storing the elements
+ * unboxed in both the builder and the value type.
+ *
+ * <p>GWT-serializable types are left to {@link ListPropertyFactory}, as their custom field
+ * serializer cannot instantiate the private list types this factory generates.
+ */
+public class PrimitiveListPropertyFactory implements PropertyCodeGenerator.Factory {
+
+  @Override
+  public Optional<? extends PropertyCodeGenerator> create(Config config) {
+    DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
+    if (type == null || !erasesToAnyOf(type, Collection.class, List.class)) {
+      return Optional.absent();
+    }
+    TypeMirror elementType = upperBound(config.getElements(), type.getTypeArguments().get(0));
+    TypeMirror unboxedType = maybeUnbox(elementType, config.getTypes()).orNull();
+    if (unboxedType == null) {
+      return Optional.absent();
+    }
+    PrimitiveType primitiveElementType = PrimitiveType.of(unboxedType.getKind()).orNull();
+    if (primitiveElementType == null) {
+      return Optional.absent();
+    }
+    TypeElement valueType = (TypeElement) config.getBuilder().getEnclosingElement();
+    if (GwtSupport.isGwtSerializable(valueType)) {
+      return Optional.absent();
+    }
+
+    boolean overridesAddMethod = overrides(
+        config.getBuilder(), config.getTypes(), addMethod(config.getProperty()), unboxedType);
+    return Optional.of(new CodeGenerator(
+        config.getMetadata(),
+        config.getProperty(),
+        overridesAddMethod,
+        elementType,
+        unboxedType,
+        primitiveElementType));
+  }
+
+  @VisibleForTesting static class CodeGenerator extends PropertyCodeGenerator {
+
+    private static final ParameterizedType COLLECTION =
+        QualifiedName.of(Collection.class).withParameters("E");
+
+    private final boolean overridesAddMethod;
+    private final TypeMirror elementType;
+    private final TypeMirror unboxedType;
+    private final PrimitiveType primitiveElementType;
+
+    @VisibleForTesting
+    CodeGenerator(
+        Metadata metadata,
+        Property property,
+        boolean overridesAddMethod,
+        TypeMirror elementType,
+        TypeMirror unboxedType,
+        PrimitiveType primitiveElementType) {
+      super(metadata, property);
+      this.overridesAddMethod = overridesAddMethod;
+      this.elementType = elementType;
+      this.unboxedType = unboxedType;
+      this.primitiveElementType = primitiveElementType;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
+    @Override
+    public void addBuilderFieldDeclaration(SourceBuilder code) {
+      code.addLine("private final %1$s %2$s = new %1$s();",
+          PrimitiveList.arrayListType(primitiveElementType), property.getName());
+    }
+
+    @Override
+    public void addBuilderFieldAccessors(SourceBuilder code) {
+      addAdd(code, metadata);
+      addVarargsAdd(code, metadata);
+      addArrayAddAll(code, metadata);
+      addAddAllMethods(code, metadata);
+      addMutate(code, metadata);
+      addClear(code, metadata);
+      addGetter(code, metadata);
+    }
+
+    private void addAdd(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds {@code element} to the list to be returned from %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s(%s element) {",
+              metadata.getBuilder(), addMethod(property), unboxedType)
+          .addLine("  this.%s.%s(element);",
+              property.getName(), PrimitiveList.addMethod(primitiveElementType))
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addVarargsAdd(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds each element of {@code elements} to the list to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s(%s... elements) {",
+              metadata.getBuilder(), addMethod(property), unboxedType)
+          .addLine("  return %s(elements);", addAllMethod(property))
+          .addLine("}");
+    }
+
+    private void addArrayAddAll(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds each element of {@code elements} to the list to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s(%s[] elements) {",
+              metadata.getBuilder(), addAllMethod(property), unboxedType);
+      if (overridesAddMethod) {
+        code.addLine("  for (%s element : elements) {", unboxedType)
+            .addLine("    %s(element);", addMethod(property))
+            .addLine("  }");
+      } else {
+        code.addLine("  %s.addAll(elements);", property.getName())
+            .add(LastBuiltValue.invalidate(metadata));
+      }
+      code.addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addAddAllMethods(SourceBuilder code, Metadata metadata) {
+      if (code.feature(SOURCE_LEVEL).stream().isPresent()) {
+        addSpliteratorAddAll(code, metadata);
+        addStreamAddAll(code, metadata);
+        addPrimitiveStreamAddAll(code, metadata);
+      }
+      addIterableAddAll(code, metadata);
+    }
+
+    private void addSpliteratorAddAll(SourceBuilder code, Metadata metadata) {
+      QualifiedName spliterator = code.feature(SOURCE_LEVEL).spliterator().get();
+      addJavadocForAddAll(code, metadata);
+      code.addLine("public %s %s(%s<? extends %s> elements) {",
+              metadata.getBuilder(),
+              addAllMethod(property),
+              spliterator,
+              elementType)
+          .addLine("  if ((elements.characteristics() & %s.SIZED) != 0) {", spliterator)
+          .addLine("    long elementsSize = elements.estimateSize();")
+          .addLine("    if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {")
+          .addLine("      %1$s.ensureCapacity(%1$s.size() + (int) elementsSize);",
+              property.getName())
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addStreamAddAll(SourceBuilder code, Metadata metadata) {
+      QualifiedName baseStream = code.feature(SOURCE_LEVEL).baseStream().get();
+      addJavadocForAddAll(code, metadata);
+      code.addLine("public %s %s(%s<? extends %s, ?> elements) {",
+              metadata.getBuilder(),
+              addAllMethod(property),
+              baseStream,
+              elementType)
+          .addLine("  return %s(elements.spliterator());", addAllMethod(property))
+          .addLine("}");
+    }
+
+    private void addPrimitiveStreamAddAll(SourceBuilder code, Metadata metadata) {
+      QualifiedName baseStream = code.feature(SOURCE_LEVEL).baseStream().get();
+      QualifiedName stream = QualifiedName.of(
+          baseStream.getPackage(), primitiveElementType.streamName());
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds each element of {@code elements} to the list to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code elements} is null")
+          .addLine(" */")
+          .addLine("public %s %s(%s elements) {",
+              metadata.getBuilder(), addAllMethod(property), stream)
+          .addLine("  return %s(elements.toArray());", addAllMethod(property))
+          .addLine("}");
+    }
+
+    private void addIterableAddAll(SourceBuilder code, Metadata metadata) {
+      addJavadocForAddAll(code, metadata);
+      addAccessorAnnotations(code);
+      code.addLine("public %s %s(%s<? extends %s> elements) {",
+          metadata.getBuilder(),
+          addAllMethod(property),
+          Iterable.class,
+          elementType);
+      if (!overridesAddMethod) {
+        code.addLine("  if (elements instanceof %s) {", Collection.class)
+            .addLine("    %s.addAll((%s<? extends %s>) elements);",
+                property.getName(), Collection.class, elementType)
+            .add(LastBuiltValue.invalidate(metadata))
+            .addLine("    return (%s) this;", metadata.getBuilder())
+            .addLine("  }");
+      }
+      if (code.feature(SOURCE_LEVEL).stream().isPresent()) {
+        code.addLine("  return %s(elements.spliterator());", addAllMethod(property));
+      } else {
+        code.add(Excerpts.forEach(unboxedType, "elements", addMethod(property)))
+            .addLine("  return (%s) this;", metadata.getBuilder());
+      }
+      code.addLine("}");
+    }
+
+    private void addJavadocForAddAll(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds each element of {@code elements} to the list to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code elements} is null or contains a")
+          .addLine(" *     null element")
+          .addLine(" */");
+    }
+
+    private void addMutate(SourceBuilder code, Metadata metadata) {
+      ParameterizedType consumer = code.feature(FUNCTION_PACKAGE).consumer().orNull();
+      if (consumer == null) {
+        return;
+      }
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Applies {@code mutator} to the list to be returned from %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * <p>This method mutates the list in-place. {@code mutator} is a void")
+          .addLine(" * consumer, so any value returned from a lambda will be ignored. Take care")
+          .addLine(" * not to call pure functions, like %s.",
+              COLLECTION.javadocNoArgMethodLink("stream"))
+          .addLine(" *")
+          .addLine(" * @return this {@code Builder} object")
+          .addLine(" * @throws NullPointerException if {@code mutator} is null")
+          .addLine(" */")
+          .addLine("public %s %s(%s<? super %s<%s>> mutator) {",
+              metadata.getBuilder(),
+              mutator(property),
+              consumer.getQualifiedName(),
+              List.class,
+              elementType)
+          .add(LastBuiltValue.invalidate(metadata));
+      if (overridesAddMethod) {
+        code.addLine("  mutator.accept(new CheckedList<>(%s, this::%s));",
+            property.getName(), addMethod(property));
+      } else {
+        code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
+                addMethod(property))
+            .addLine("  mutator.accept(%s);", property.getName());
+      }
+      code.addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addClear(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Clears the list to be returned from %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
+          .addLine("  %s.clear();", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addGetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns an unmodifiable view of the list that will be returned by")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * Changes to this builder will be reflected in the view.")
+          .addLine(" */")
+          .addLine("public %s<%s> %s() {", List.class, elementType, getter(property))
+          .addLine("  return %s.unmodifiableList(%s);", Collections.class, property.getName())
+          .addLine("}");
+    }
+
+    @Override
+    public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      code.addLine("%s = %s.%s.toImmutableList();", finalField, builder, property.getName());
+    }
+
+    @Override
+    public void addMergeFromValue(Block code, String value) {
+      code.addLine("%s(%s.%s());", addAllMethod(property), value, property.getGetterName());
+    }
+
+    @Override
+    public void addMergeFromBuilder(Block code, String builder) {
+      Excerpt base = Declarations.upcastToGeneratedBuilder(code, metadata, builder);
+      code.addLine("%s(%s.%s);", addAllMethod(property), base, property.getName());
+    }
+
+    @Override
+    public void addSetFromResult(SourceBuilder code, String builder, String variable) {
+      code.addLine("%s.%s(%s);", builder, addAllMethod(property), variable);
+    }
+
+    @Override
+    public void addClearField(Block code) {
+      code.addLine("%s();", clearMethod(property));
+    }
+
+    @Override
+    public Set<StaticExcerpt> getStaticExcerpts() {
+      ImmutableSet.Builder<StaticExcerpt> excerpts = ImmutableSet.builder();
+      excerpts.addAll(PrimitiveList.excerpts(primitiveElementType));
+      if (overridesAddMethod) {
+        excerpts.addAll(CheckedList.excerpts());
+      }
+      return excerpts.build();
+    }
+  }
+}
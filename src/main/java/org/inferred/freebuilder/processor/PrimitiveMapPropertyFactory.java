@@ -0,0 +1,338 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
+import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
+import static org.inferred.freebuilder.processor.BuilderMethods.putAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
+import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
+import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.diamondOperator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.excerpt.CheckedMap;
+import org.inferred.freebuilder.processor.excerpt.PrimitiveMap;
+import org.inferred.freebuilder.processor.excerpt.PrimitiveType;
+import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.ParameterizedType;
+import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * {@link PropertyCodeGenerator.Factory} providing append-only semantics for {@link Map}
+ * properties with {@link Integer} or {@link Long} keys, storing the keys unboxed in an
+ * insertion-ordered open-addressing hash table, in both the builder and the value type.
+ *
+ * <p>GWT-serializable types are left to {@link MapPropertyFactory}, as their custom field
+ * serializer cannot instantiate the private map types this factory generates.
+ */
+public class PrimitiveMapPropertyFactory implements PropertyCodeGenerator.Factory {
+
+  @Override
+  public Optional<? extends PropertyCodeGenerator> create(Config config) {
+    DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
+    if (type == null || !erasesToAnyOf(type, Map.class)) {
+      return Optional.absent();
+    }
+    TypeMirror keyType = upperBound(config.getElements(), type.getTypeArguments().get(0));
+    TypeMirror unboxedKeyType = maybeUnbox(keyType, config.getTypes()).orNull();
+    if (unboxedKeyType == null) {
+      return Optional.absent();
+    }
+    PrimitiveType primitiveKeyType = PrimitiveType.of(unboxedKeyType.getKind()).orNull();
+    if (primitiveKeyType == null || primitiveKeyType == PrimitiveType.DOUBLE) {
+      return Optional.absent();
+    }
+    TypeElement valueTypeElement = (TypeElement) config.getBuilder().getEnclosingElement();
+    if (GwtSupport.isGwtSerializable(valueTypeElement)) {
+      return Optional.absent();
+    }
+
+    TypeMirror valueType = upperBound(config.getElements(), type.getTypeArguments().get(1));
+    Optional<TypeMirror> unboxedValueType = maybeUnbox(valueType, config.getTypes());
+    boolean overridesPutMethod = overrides(
+        config.getBuilder(),
+        config.getTypes(),
+        putMethod(config.getProperty()),
+        unboxedKeyType,
+        unboxedValueType.or(valueType));
+    return Optional.of(new CodeGenerator(
+        config.getMetadata(),
+        config.getProperty(),
+        overridesPutMethod,
+        keyType,
+        unboxedKeyType,
+        primitiveKeyType,
+        valueType,
+        unboxedValueType));
+  }
+
+  @VisibleForTesting
+  static class CodeGenerator extends PropertyCodeGenerator {
+
+    private static final ParameterizedType COLLECTION =
+        QualifiedName.of(Collection.class).withParameters("E");
+
+    private final boolean overridesPutMethod;
+    private final TypeMirror keyType;
+    private final TypeMirror unboxedKeyType;
+    private final PrimitiveType primitiveKeyType;
+    private final TypeMirror valueType;
+    private final Optional<TypeMirror> unboxedValueType;
+
+    CodeGenerator(
+        Metadata metadata,
+        Property property,
+        boolean overridesPutMethod,
+        TypeMirror keyType,
+        TypeMirror unboxedKeyType,
+        PrimitiveType primitiveKeyType,
+        TypeMirror valueType,
+        Optional<TypeMirror> unboxedValueType) {
+      super(metadata, property);
+      this.overridesPutMethod = overridesPutMethod;
+      this.keyType = keyType;
+      this.unboxedKeyType = unboxedKeyType;
+      this.primitiveKeyType = primitiveKeyType;
+      this.valueType = valueType;
+      this.unboxedValueType = unboxedValueType;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
+    @Override
+    public void addBuilderFieldDeclaration(SourceBuilder code) {
+      code.addLine("private final %1$s<%2$s> %3$s = new %1$s%4$s();",
+          PrimitiveMap.hashMapType(primitiveKeyType),
+          valueType,
+          property.getName(),
+          diamondOperator(valueType));
+    }
+
+    @Override
+    public void addBuilderFieldAccessors(SourceBuilder code) {
+      addPut(code, metadata);
+      addPutAll(code, metadata);
+      addRemove(code, metadata);
+      addMutate(code, metadata);
+      addClear(code, metadata);
+      addGetter(code, metadata);
+    }
+
+    private void addPut(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Associates {@code key} with {@code value} in the map to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * If the map previously contained a mapping for the key,")
+          .addLine(" * the old value is replaced by the specified value.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName());
+      if (!unboxedValueType.isPresent()) {
+        code.addLine(" * @throws NullPointerException if {@code value} is null");
+      }
+      code.addLine(" */")
+          .addLine("public %s %s(%s key, %s value) {",
+              metadata.getBuilder(),
+              putMethod(property),
+              unboxedKeyType,
+              unboxedValueType.or(valueType));
+      if (!unboxedValueType.isPresent()) {
+        code.add(PreconditionExcerpts.checkNotNull("value"));
+      }
+      code.addLine("  %s.%s(key, value);",
+              property.getName(), PrimitiveMap.putMethod(primitiveKeyType))
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addPutAll(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Copies all of the mappings from {@code map} to the map to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code map} is null or contains a")
+          .addLine(" *     null key or value")
+          .addLine(" */");
+      addAccessorAnnotations(code);
+      code.addLine("public %s %s(%s<? extends %s, ? extends %s> map) {",
+          metadata.getBuilder(),
+          putAllMethod(property),
+          Map.class,
+          keyType,
+          valueType);
+      if (overridesPutMethod) {
+        code.addLine("  for (%s<? extends %s, ? extends %s> entry : map.entrySet()) {",
+                Map.Entry.class, keyType, valueType)
+            .addLine("    %s(entry.getKey(), entry.getValue());", putMethod(property))
+            .addLine("  }");
+      } else {
+        code.addLine("  %s.putAll(map);", property.getName())
+            .add(LastBuiltValue.invalidate(metadata));
+      }
+      code.addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addRemove(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Removes the mapping for {@code key} from the map to be returned from")
+          .addLine(" * %s, if one is present.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s(%s key) {",
+              metadata.getBuilder(), removeMethod(property), unboxedKeyType)
+          .addLine("  %s.%s(key);", property.getName(), PrimitiveMap.removeMethod(primitiveKeyType))
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addMutate(SourceBuilder code, Metadata metadata) {
+      ParameterizedType consumer = code.feature(FUNCTION_PACKAGE).consumer().orNull();
+      if (consumer == null) {
+        return;
+      }
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Invokes {@code mutator} with the map to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * <p>This method mutates the map in-place. {@code mutator} is a void")
+          .addLine(" * consumer, so any value returned from a lambda will be ignored. Take care")
+          .addLine(" * not to call pure functions, like %s.",
+              COLLECTION.javadocNoArgMethodLink("stream"))
+          .addLine(" *")
+          .addLine(" * @return this {@code Builder} object")
+          .addLine(" * @throws NullPointerException if {@code mutator} is null")
+          .addLine(" */")
+          .addLine("public %s %s(%s<? super %s<%s, %s>> mutator) {",
+              metadata.getBuilder(),
+              mutator(property),
+              consumer.getQualifiedName(),
+              Map.class,
+              keyType,
+              valueType)
+          .add(LastBuiltValue.invalidate(metadata));
+      if (overridesPutMethod) {
+        code.addLine("  mutator.accept(new CheckedMap<>(%s, this::%s));",
+            property.getName(), putMethod(property));
+      } else {
+        code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
+                putMethod(property))
+            .addLine("  mutator.accept(%s);", property.getName());
+      }
+      code.addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addClear(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Removes all of the mappings from the map to be returned from ")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
+          .addLine("  %s.clear();", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addGetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns an unmodifiable view of the map that will be returned by")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * Changes to this builder will be reflected in the view.")
+          .addLine(" */")
+          .addLine("public %s<%s, %s> %s() {", Map.class, keyType, valueType, getter(property))
+          .addLine("  return %s.unmodifiableMap(%s);", Collections.class, property.getName())
+          .addLine("}");
+    }
+
+    @Override
+    public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      code.addLine("%s = %s.%s.toImmutableMap();", finalField, builder, property.getName());
+    }
+
+    @Override
+    public void addMergeFromValue(Block code, String value) {
+      code.addLine("%s(%s.%s());", putAllMethod(property), value, property.getGetterName());
+    }
+
+    @Override
+    public void addMergeFromBuilder(Block code, String builder) {
+      Excerpt base = Declarations.upcastToGeneratedBuilder(code, metadata, builder);
+      code.addLine("%s(%s.%s);", putAllMethod(property), base, property.getName());
+    }
+
+    @Override
+    public void addSetFromResult(SourceBuilder code, String builder, String variable) {
+      code.addLine("%s.%s(%s);", builder, putAllMethod(property), variable);
+    }
+
+    @Override
+    public void addClearField(Block code) {
+      code.addLine("%s();", clearMethod(property));
+    }
+
+    @Override
+    public Set<StaticExcerpt> getStaticExcerpts() {
+      ImmutableSet.Builder<StaticExcerpt> result = ImmutableSet.builder();
+      result.addAll(PrimitiveMap.excerpts(primitiveKeyType));
+      if (overridesPutMethod) {
+        result.addAll(CheckedMap.excerpts());
+      }
+      return result.build();
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
+import static org.inferred.freebuilder.processor.BuilderMethods.mapper;
+import static org.inferred.freebuilder.processor.BuilderMethods.setter;
+import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.excerpt.PrimitiveType;
+import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import javax.lang.model.type.DeclaredType;
+
+/**
+ * {@link PropertyCodeGenerator.Factory} providing a default value (empty) and convenience
+ * setter methods for {@code OptionalInt}, {@code OptionalLong} and {@code OptionalDouble}
+ * properties.
+ *
+ * <p>The builder and the value both store a primitive and a presence flag, so setting, mapping,
+ * comparing and hashing the property never allocate. Only the value's getter creates the
+ * optional.
+ */
+public class PrimitiveOptionalPropertyFactory implements PropertyCodeGenerator.Factory {
+
+  @Override
+  public Optional<? extends PropertyCodeGenerator> create(Config config) {
+    DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
+    if (type == null) {
+      return Optional.absent();
+    }
+    for (PrimitiveType primitiveType : PrimitiveType.values()) {
+      if (erasesToAnyOf(type, optionalType(primitiveType))) {
+        return Optional.of(
+            new CodeGenerator(config.getMetadata(), config.getProperty(), primitiveType));
+      }
+    }
+    return Optional.absent();
+  }
+
+  private static QualifiedName optionalType(PrimitiveType primitiveType) {
+    return QualifiedName.of("java.util", "Optional" + primitiveType.capitalized());
+  }
+
+  @VisibleForTesting static class CodeGenerator extends PropertyCodeGenerator {
+
+    private final PrimitiveType primitiveType;
+    private final QualifiedName optionalType;
+
+    @VisibleForTesting
+    CodeGenerator(Metadata metadata, Property property, PrimitiveType primitiveType) {
+      super(metadata, property);
+      this.primitiveType = primitiveType;
+      this.optionalType = optionalType(primitiveType);
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.PRIMITIVE;
+    }
+
+    @Override
+    public boolean isStaticFactoryCompatible() {
+      // The value does not store the optional the static factory would be passed.
+      return false;
+    }
+
+    @Override
+    public void addValueFieldDeclaration(SourceBuilder code, String finalField) {
+      code.addLine("private final %s %s;", primitiveType.primitive(), finalField)
+          .addLine("private final boolean %s;", presentField(finalField));
+    }
+
+    @Override
+    public void addBuilderFieldDeclaration(SourceBuilder code) {
+      code.addLine("// Store a primitive and a presence flag instead of an %s, so the",
+              optionalType.getSimpleName())
+          .addLine("// builder API never allocates.")
+          .addLine("private %s %s = 0;", primitiveType.primitive(), property.getName())
+          .addLine("private boolean %s = false;", presentField());
+    }
+
+    @Override
+    public void addBuilderFieldAccessors(SourceBuilder code) {
+      addSetter(code, metadata);
+      addOptionalSetter(code, metadata);
+      addMapper(code, metadata);
+      addClear(code, metadata);
+      addGetter(code, metadata);
+    }
+
+    private void addSetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Sets the value to be returned by %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s(%s %s) {",
+              metadata.getBuilder(),
+              setter(property),
+              primitiveType.primitive(),
+              property.getName())
+          .addLine("  this.%1$s = %1$s;", property.getName())
+          .addLine("  %s = true;", presentField())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addOptionalSetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Sets the value to be returned by %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code %s} is null", property.getName())
+          .addLine(" */");
+      addAccessorAnnotations(code);
+      code.addLine("public %s %s(%s %s) {",
+              metadata.getBuilder(), setter(property), optionalType, property.getName())
+          .addLine("  if (%s.isPresent()) {", property.getName())
+          .addLine("    return %s(%s.getAs%s());",
+              setter(property), property.getName(), primitiveType.capitalized())
+          .addLine("  } else {")
+          .addLine("    return %s();", clearMethod(property))
+          .addLine("  }")
+          .addLine("}");
+    }
+
+    private void addMapper(SourceBuilder code, Metadata metadata) {
+      if (!code.feature(FUNCTION_PACKAGE).unaryOperator().isPresent()) {
+        return;
+      }
+      QualifiedName unaryOperator =
+          QualifiedName.of("java.util.function", primitiveType.capitalized() + "UnaryOperator");
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * If the value to be returned by %s is present,",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * replaces it by applying {@code mapper} to it and using the result.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code mapper} is null")
+          .addLine(" */")
+          .addLine("public %s %s(%s mapper) {",
+              metadata.getBuilder(), mapper(property), unaryOperator)
+          .add(PreconditionExcerpts.checkNotNull("mapper"))
+          .addLine("  if (%s) {", presentField())
+          .addLine("    %s(mapper.applyAs%s(%s));",
+              setter(property), primitiveType.capitalized(), property.getName())
+          .addLine("  }")
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addClear(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Sets the value to be returned by %s",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * to {@link %1$s#empty() %2$s.empty()}.",
+              optionalType, optionalType.getSimpleName())
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
+          .addLine("  %s = 0;", property.getName())
+          .addLine("  %s = false;", presentField())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addGetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns the value that will be returned by %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" */")
+          .addLine("public %s %s() {", property.getType(), getter(property))
+          .addLine("  return %s ? %s.of(%s) : %s.empty();",
+              presentField(), optionalType, property.getName(), optionalType)
+          .addLine("}");
+    }
+
+    @Override
+    public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      code.addLine("%s = %s.%s;", finalField, builder, property.getName())
+          .addLine("%s = %s.%s;", presentField(finalField), builder, presentField());
+    }
+
+    @Override
+    public void addReadValueFragment(SourceBuilder code, String finalField) {
+      code.add("%s ? %s.of(%s) : %s.empty()",
+          presentField(finalField), optionalType, finalField, optionalType);
+    }
+
+    @Override
+    public Optional<Excerpt> equalsFragment(String finalField, String otherField) {
+      if (primitiveType == PrimitiveType.DOUBLE) {
+        // Matches OptionalDouble.equals, which treats NaNs as equal but not 0.0 and -0.0.
+        return Optional.of(Excerpts.add(
+            "%1$s == %2$s && %3$s.doubleToLongBits(%4$s) == %3$s.doubleToLongBits(%5$s)",
+            presentField(finalField), presentField(otherField), Double.class, finalField,
+            otherField));
+      }
+      return Optional.of(Excerpts.add("%s == %s && %s == %s",
+          presentField(finalField), presentField(otherField), finalField, otherField));
+    }
+
+    @Override
+    public void addHashCodeFragment(SourceBuilder code, String finalField) {
+      code.add("(%s ? %s : 0)", presentField(finalField), primitiveType.hashCodeOf(finalField));
+    }
+
+    @Override
+    public Excerpt toStringValue(String finalField) {
+      return Excerpts.add("(%1$s ? \"%2$s[\" + %3$s + \"]\" : \"%2$s.empty\")",
+          presentField(finalField), optionalType.getSimpleName(), finalField);
+    }
+
+    @Override
+    public void addMergeFromValue(Block code, String value) {
+      String propertyValue = value + "." + property.getGetterName() + "()";
+      code.addLine("if (%s.isPresent()) {", propertyValue)
+          .addLine("  %s(%s.getAs%s());", setter(property), propertyValue,
+              primitiveType.capitalized())
+          .addLine("}");
+    }
+
+    @Override
+    public void addMergeFromBuilder(Block code, String builder) {
+      Excerpt base = Declarations.upcastToGeneratedBuilder(code, metadata, builder);
+      code.addLine("if (%s.%s) {", base, presentField())
+          .addLine("  %s(%s.%s);", setter(property), base, property.getName())
+          .addLine("}");
+    }
+
+    @Override
+    public void addSetFromResult(SourceBuilder code, String builder, String variable) {
+      code.addLine("%s.%s(%s);", builder, setter(property), variable);
+    }
+
+    @Override
+    public void addClearField(Block code) {
+      Optional<Excerpt> defaults = Declarations.freshBuilder(code, metadata);
+      if (defaults.isPresent()) {
+        code.addLine("%1$s = %2$s.%1$s;", property.getName(), defaults.get())
+            .addLine("%1$s = %2$s.%1$s;", presentField(), defaults.get());
+      } else {
+        code.addLine("%s = 0;", property.getName())
+            .addLine("%s = false;", presentField());
+      }
+    }
+
+    private String presentField() {
+      return "_" + property.getName() + "Present";
+    }
+
+    /** Returns the presence flag stored alongside {@code field}, e.g. other._fooPresent. */
+    private String presentField(String field) {
+      checkArgument(field.endsWith(property.getName()), "Unexpected field %s", field);
+      return field.substring(0, field.length() - property.getName().length()) + presentField();
+    }
+  }
+}
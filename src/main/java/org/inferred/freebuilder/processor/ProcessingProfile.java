@@ -0,0 +1,312 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.google.common.io.Files;
+import com.google.common.primitives.Longs;
+
+import org.inferred.freebuilder.processor.util.QualifiedName;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Wall time and allocation spent in each phase of processing each type, for
+ * {@code -Afreebuilder.profile}.
+ *
+ * <p>Measurements may be made on any thread. Allocation is only measured on JVMs supporting
+ * per-thread allocation counters, and is reported as zero elsewhere.
+ */
+class ProcessingProfile {
+
+  /** The phases of processing a type. */
+  enum Phase {
+    /** {@link Analyser#analyse}, including method finding and introspection. */
+    ANALYSE("analyse", true),
+    /** {@link MethodFinder#methodsOn}, part of analysis. */
+    FIND_METHODS("methodsOn", false),
+    /** {@link MethodIntrospector} analysis of builder constructors, part of analysis. */
+    INTROSPECT_CONSTRUCTORS("constructorIntrospection", false),
+    /** {@link CodeGenerator#writeBuilderSource}. */
+    GENERATE("generate", true),
+    /** Laying out the source and its imports. */
+    FORMAT("format", true),
+    /** Writing the source through the Filer. */
+    WRITE("write", true);
+
+    private final String key;
+    private final boolean topLevel;
+
+    Phase(String key, boolean topLevel) {
+      this.key = key;
+      this.topLevel = topLevel;
+    }
+  }
+
+  /** A measurement in progress. */
+  interface Measurement {
+    void stop();
+  }
+
+  private static final Measurement NO_MEASUREMENT = new Measurement() {
+    @Override
+    public void stop() {}
+  };
+
+  /** A profile that records nothing. */
+  static final ProcessingProfile NONE = new ProcessingProfile(AllocationCounter.NONE) {
+    @Override
+    Measurement start(QualifiedName type, Phase phase) {
+      return NO_MEASUREMENT;
+    }
+  };
+
+  private static final int SLOWEST_TYPES = 10;
+  private static final double NANOS_PER_MILLI = 1e6;
+
+  private final AllocationCounter allocationCounter;
+  private final Map<QualifiedName, TypeProfile> typeProfiles =
+      new LinkedHashMap<QualifiedName, TypeProfile>();
+
+  ProcessingProfile() {
+    this(AllocationCounter.create());
+  }
+
+  private ProcessingProfile(AllocationCounter allocationCounter) {
+    this.allocationCounter = allocationCounter;
+  }
+
+  /** Starts measuring {@code phase} of processing {@code type} on the current thread. */
+  Measurement start(final QualifiedName type, final Phase phase) {
+    final long startNanos = System.nanoTime();
+    final long startBytes = allocationCounter.allocatedBytes();
+    return new Measurement() {
+      @Override
+      public void stop() {
+        record(
+            type,
+            phase,
+            System.nanoTime() - startNanos,
+            allocationCounter.allocatedBytes() - startBytes);
+      }
+    };
+  }
+
+  @VisibleForTesting
+  synchronized void record(QualifiedName type, Phase phase, long nanos, long bytes) {
+    TypeProfile profile = typeProfiles.get(type);
+    if (profile == null) {
+      profile = new TypeProfile(type);
+      typeProfiles.put(type, profile);
+    }
+    profile.nanos[phase.ordinal()] += nanos;
+    profile.bytes[phase.ordinal()] += bytes;
+  }
+
+  /** Returns a one-line summary of the time spent in each top-level phase. */
+  synchronized String summary() {
+    StringBuilder summary = new StringBuilder();
+    summary.append(String.format(Locale.ROOT, "FreeBuilder processed %d type%s in %.1f ms (",
+        typeProfiles.size(),
+        typeProfiles.size() == 1 ? "" : "s",
+        totalNanos() / NANOS_PER_MILLI));
+    String separator = "";
+    for (Phase phase : Phase.values()) {
+      if (phase.topLevel) {
+        summary.append(String.format(Locale.ROOT, "%s%s %.1f ms",
+            separator, phase.key, sum(phase, true) / NANOS_PER_MILLI));
+        separator = ", ";
+      }
+    }
+    return summary.append(")").toString();
+  }
+
+  /**
+   * Writes a JSON report to {@code file}: per-phase totals and percentiles over all types, and
+   * the slowest types with their per-phase breakdown.
+   */
+  synchronized void writeReport(File file) throws IOException {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"types\": ").append(typeProfiles.size()).append(",\n");
+    json.append("  \"totalMillis\": ").append(millis(totalNanos())).append(",\n");
+    json.append("  \"phases\": {");
+    String separator = "\n";
+    for (Phase phase : Phase.values()) {
+      long[] nanos = sorted(phase);
+      json.append(separator)
+          .append("    \"").append(phase.key).append("\": {")
+          .append("\"totalMillis\": ").append(millis(sum(phase, true)))
+          .append(", \"allocatedBytes\": ").append(sum(phase, false))
+          .append(", \"p50Millis\": ").append(millis(percentile(nanos, 50)))
+          .append(", \"p90Millis\": ").append(millis(percentile(nanos, 90)))
+          .append(", \"p99Millis\": ").append(millis(percentile(nanos, 99)))
+          .append(", \"maxMillis\": ").append(millis(percentile(nanos, 100)))
+          .append("}");
+      separator = ",\n";
+    }
+    json.append("\n  },\n");
+    json.append("  \"slowestTypes\": [");
+    separator = "\n";
+    for (TypeProfile profile : slowestTypes()) {
+      json.append(separator)
+          .append("    {\"type\": \"").append(profile.type).append("\"")
+          .append(", \"totalMillis\": ").append(millis(profile.totalNanos()));
+      for (Phase phase : Phase.values()) {
+        json.append(", \"").append(phase.key).append("Millis\": ")
+            .append(millis(profile.nanos[phase.ordinal()]));
+      }
+      json.append(", \"allocatedBytes\": ").append(profile.totalBytes()).append("}");
+      separator = ",\n";
+    }
+    json.append("\n  ]\n");
+    json.append("}\n");
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+      throw new IOException("Cannot create " + parent);
+    }
+    Files.write(json, file, Charsets.UTF_8);
+  }
+
+  private long totalNanos() {
+    long total = 0;
+    for (TypeProfile profile : typeProfiles.values()) {
+      total += profile.totalNanos();
+    }
+    return total;
+  }
+
+  private long sum(Phase phase, boolean nanos) {
+    long total = 0;
+    for (TypeProfile profile : typeProfiles.values()) {
+      total += (nanos ? profile.nanos : profile.bytes)[phase.ordinal()];
+    }
+    return total;
+  }
+
+  private long[] sorted(Phase phase) {
+    long[] nanos = new long[typeProfiles.size()];
+    int i = 0;
+    for (TypeProfile profile : typeProfiles.values()) {
+      nanos[i++] = profile.nanos[phase.ordinal()];
+    }
+    Arrays.sort(nanos);
+    return nanos;
+  }
+
+  private List<TypeProfile> slowestTypes() {
+    List<TypeProfile> profiles = new ArrayList<TypeProfile>(typeProfiles.values());
+    Collections.sort(profiles, new Ordering<TypeProfile>() {
+      @Override
+      public int compare(TypeProfile left, TypeProfile right) {
+        return Longs.compare(right.totalNanos(), left.totalNanos());
+      }
+    });
+    return ImmutableList.copyOf(profiles.subList(0, Math.min(SLOWEST_TYPES, profiles.size())));
+  }
+
+  /** Returns the nearest-rank {@code percentile} of {@code sorted}, or zero if it is empty. */
+  private static long percentile(long[] sorted, int percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI);
+  }
+
+  /** Wall time and allocation in each phase for one type. */
+  private static class TypeProfile {
+    final QualifiedName type;
+    final long[] nanos = new long[Phase.values().length];
+    final long[] bytes = new long[Phase.values().length];
+
+    TypeProfile(QualifiedName type) {
+      this.type = type;
+    }
+
+    long totalNanos() {
+      long total = 0;
+      for (Phase phase : Phase.values()) {
+        if (phase.topLevel) {
+          total += nanos[phase.ordinal()];
+        }
+      }
+      return total;
+    }
+
+    long totalBytes() {
+      long total = 0;
+      for (Phase phase : Phase.values()) {
+        if (phase.topLevel) {
+          total += bytes[phase.ordinal()];
+        }
+      }
+      return total;
+    }
+  }
+
+  /** Bytes allocated by the current thread, where the JVM supports counting them. */
+  private abstract static class AllocationCounter {
+
+    /** Counts nothing, without looking up the JVM's thread management bean. */
+    static final AllocationCounter NONE = new AllocationCounter() {
+      @Override
+      long allocatedBytes() {
+        return 0;
+      }
+    };
+
+    abstract long allocatedBytes();
+
+    static AllocationCounter create() {
+      try {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+          final com.sun.management.ThreadMXBean hotspotThreads =
+              (com.sun.management.ThreadMXBean) threads;
+          if (hotspotThreads.isThreadAllocatedMemorySupported()
+              && hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+            return new AllocationCounter() {
+              @Override
+              long allocatedBytes() {
+                return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+              }
+            };
+          }
+        }
+      } catch (LinkageError e) {
+        // Not a HotSpot JVM
+      }
+      return NONE;
+    }
+  }
+}
@@ -16,24 +16,50 @@
 package org.inferred.freebuilder.processor;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
 import static javax.lang.model.util.ElementFilter.typesIn;
 import static org.inferred.freebuilder.processor.util.ModelUtils.findAnnotationMirror;
 import static org.inferred.freebuilder.processor.util.RoundEnvironments.annotatedElementsIn;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
 
 import com.google.auto.service.AutoService;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Callables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.ProcessingProfile.Measurement;
+import org.inferred.freebuilder.processor.ProcessingProfile.Phase;
 import org.inferred.freebuilder.processor.util.CompilationUnitBuilder;
 import org.inferred.freebuilder.processor.util.FilerUtils;
+import org.inferred.freebuilder.processor.util.IndentingFormatter;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.SourceStringBuilder;
 import org.inferred.freebuilder.processor.util.feature.EnvironmentFeatureSet;
+import org.inferred.freebuilder.processor.util.feature.Feature;
 import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.feature.FeatureType;
+import org.inferred.freebuilder.processor.util.feature.GuavaLibrary;
+import org.inferred.freebuilder.processor.util.feature.JavaxPackage;
+import org.inferred.freebuilder.processor.util.feature.SourceLevel;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.FilerException;
@@ -53,11 +79,51 @@ import javax.tools.Diagnostic.Kind;
 @AutoService(javax.annotation.processing.Processor.class)
 public class Processor extends AbstractProcessor {
 
+  /**
+   * Processor option that lays out generated source with google-java-format, rather than the
+   * cheaper {@link IndentingFormatter}. Set with {@code -Afreebuilder.googleJavaFormat}.
+   */
+  public static final String GOOGLE_JAVA_FORMAT_OPTION = "freebuilder.googleJavaFormat";
+
+  /**
+   * Processor option setting how many threads lay out generated source in parallel. The compiler's
+   * model is not thread-safe, so types are always analysed and their builders generated on the
+   * compiler thread; only formatting the resulting text, which is mostly worthwhile with
+   * {@link #GOOGLE_JAVA_FORMAT_OPTION}, can be farmed out. Defaults to 1, using no worker threads;
+   * set with {@code -Afreebuilder.threads=<count>}.
+   */
+  public static final String THREADS_OPTION = "freebuilder.threads";
+
+  /**
+   * Processor option naming a directory in which to keep generated sources between builds, keyed
+   * by a fingerprint of each type's metadata. A builder whose fingerprint is already cached is
+   * written without running code generation or formatting. Set with
+   * {@code -Afreebuilder.cacheDir=<directory>}.
+   */
+  public static final String CACHE_DIR_OPTION = "freebuilder.cacheDir";
+
+  /**
+   * Processor option naming a file to write a JSON report of the time and allocation spent in
+   * each phase of processing to, once processing is over. A one-line summary is also issued as a
+   * note. Set with {@code -Afreebuilder.profile=<path>}.
+   */
+  public static final String PROFILE_OPTION = "freebuilder.profile";
+
+  /** Features queried during code generation, which cached sources are fingerprinted with. */
+  private static final ImmutableList<FeatureType<?>> GENERATION_FEATURES =
+      ImmutableList.<FeatureType<?>>of(
+          GuavaLibrary.GUAVA, SourceLevel.SOURCE_LEVEL, JavaxPackage.JAVAX, FUNCTION_PACKAGE);
+
   private Analyser analyser;
   private final CodeGenerator codeGenerator = new CodeGenerator();
   private final FeatureSet features;
 
   private transient FeatureSet environmentFeatures;
+  private transient boolean googleJavaFormat;
+  private transient ExecutorService layoutPool;
+  private transient GeneratedSourceCache cache;
+  private transient File profileReport;
+  private transient ProcessingProfile profile;
 
   public Processor() {
     this.features = null;
@@ -73,6 +139,12 @@ public class Processor extends AbstractProcessor {
     return ImmutableSet.of(FreeBuilder.class.getName());
   }
 
+  @Override
+  public Set<String> getSupportedOptions() {
+    return ImmutableSet.of(
+        GOOGLE_JAVA_FORMAT_OPTION, THREADS_OPTION, CACHE_DIR_OPTION, PROFILE_OPTION);
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latestSupported();
@@ -81,34 +153,116 @@ public class Processor extends AbstractProcessor {
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
     super.init(processingEnv);
+    String profileOption = processingEnv.getOptions().get(PROFILE_OPTION);
+    if (profileOption != null && !profileOption.trim().isEmpty()) {
+      profileReport = new File(profileOption.trim());
+      profile = new ProcessingProfile();
+    } else {
+      profile = ProcessingProfile.NONE;
+    }
     analyser = new Analyser(
         processingEnv.getElementUtils(),
         processingEnv.getMessager(),
         MethodIntrospector.instance(processingEnv),
-        processingEnv.getTypeUtils());
+        processingEnv.getTypeUtils(),
+        profile);
+    String googleJavaFormatOption = processingEnv.getOptions().get(GOOGLE_JAVA_FORMAT_OPTION);
+    googleJavaFormat = processingEnv.getOptions().containsKey(GOOGLE_JAVA_FORMAT_OPTION)
+        && !"false".equalsIgnoreCase(googleJavaFormatOption);
     if (features == null) {
       environmentFeatures = new EnvironmentFeatureSet(processingEnv);
     }
+    int threads = threads(processingEnv);
+    if (threads > 1) {
+      layoutPool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+          .setNameFormat("freebuilder-%d")
+          .setDaemon(true)
+          .build());
+    }
+    String cacheDir = processingEnv.getOptions().get(CACHE_DIR_OPTION);
+    if (cacheDir != null && !cacheDir.trim().isEmpty()) {
+      cache = new GeneratedSourceCache(new File(cacheDir.trim()));
+    }
+  }
+
+  private static int threads(ProcessingEnvironment processingEnv) {
+    String threadsOption = processingEnv.getOptions().get(THREADS_OPTION);
+    if (threadsOption != null) {
+      try {
+        int threads = Integer.parseInt(threadsOption.trim());
+        if (threads > 0) {
+          return threads;
+        }
+      } catch (NumberFormatException e) {
+        // Fall through to warning
+      }
+      processingEnv.getMessager().printMessage(
+          Kind.WARNING,
+          "Ignoring -A" + THREADS_OPTION + "=" + threadsOption + ": not a positive integer");
+    }
+    return 1;
   }
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-    for (TypeElement type : typesIn(annotatedElementsIn(roundEnv, FreeBuilder.class))) {
+    // javac's model is not thread-safe, so every type in the round is analysed, and its builder
+    // generated, on this thread. Generation renders all types, elements and annotations to text,
+    // so only laying that text out can be farmed out. Sources are written back here, in order.
+    List<TypeElement> types = ImmutableList.copyOf(
+        typesIn(annotatedElementsIn(roundEnv, FreeBuilder.class)));
+    Map<TypeElement, Metadata> analysed = new LinkedHashMap<TypeElement, Metadata>();
+    for (TypeElement type : types) {
+      Measurement analysing = profile.start(QualifiedName.of(type), Phase.ANALYSE);
       try {
-        Metadata metadata = analyser.analyse(type);
-        CompilationUnitBuilder code = new CompilationUnitBuilder(
-            processingEnv,
-            metadata.getGeneratedBuilder().getQualifiedName(),
-            metadata.getVisibleNestedTypes(),
-            firstNonNull(features, environmentFeatures));
-        codeGenerator.writeBuilderSource(code, metadata);
+        analysed.put(type, analyser.analyse(type));
+      } catch (Analyser.CannotGenerateCodeException e) {
+        // Thrown to skip writing the builder source; the error will already have been issued.
+      } catch (RuntimeException e) {
+        reportInternalError(type, e);
+      } finally {
+        analysing.stop();
+      }
+    }
+    FeatureSet featureSet = firstNonNull(features, environmentFeatures);
+    List<Feature<?>> generationFeatures = new ArrayList<Feature<?>>();
+    if (cache != null) {
+      for (FeatureType<?> featureType : GENERATION_FEATURES) {
+        generationFeatures.add(featureSet.get(featureType));
+      }
+    }
+    Map<TypeElement, GeneratedSource> sources = new LinkedHashMap<TypeElement, GeneratedSource>();
+    for (Map.Entry<TypeElement, Metadata> entry : analysed.entrySet()) {
+      try {
+        sources.put(entry.getKey(), generate(entry.getValue(), featureSet, generationFeatures));
+      } catch (RuntimeException e) {
+        reportInternalError(entry.getKey(), e);
+      }
+    }
+    boolean parallel = (layoutPool != null && sources.size() > 1);
+    for (GeneratedSource source : sources.values()) {
+      if (parallel) {
+        layoutPool.execute(source);
+      } else {
+        source.run();
+      }
+    }
+    for (Map.Entry<TypeElement, GeneratedSource> entry : sources.entrySet()) {
+      TypeElement type = entry.getKey();
+      GeneratedSource source = entry.getValue();
+      try {
+        String generatedSource = getUninterruptibly(source);
+        Measurement writing = profile.start(QualifiedName.of(type), Phase.WRITE);
         FilerUtils.writeCompilationUnit(
             processingEnv.getFiler(),
-            metadata.getGeneratedBuilder().getQualifiedName(),
+            source.getClassToWrite(),
             type,
-            code.toString());
-      } catch (Analyser.CannotGenerateCodeException e) {
-        // Thrown to skip writing the builder source; the error will already have been issued.
+            generatedSource);
+        writing.stop();
+        if (source.getFingerprint().isPresent()) {
+          storeInCache(type, source.getFingerprint().get(), generatedSource);
+        }
+      } catch (ExecutionException e) {
+        reportInternalError(type, e.getCause());
       } catch (FilerException e) {
         processingEnv.getMessager().printMessage(
             Kind.WARNING,
@@ -122,16 +276,136 @@ public class Processor extends AbstractProcessor {
             type,
             findAnnotationMirror(type, "org.inferred.freebuilder.FreeBuilder").get());
       } catch (RuntimeException e) {
-        processingEnv.getMessager().printMessage(
-            Kind.ERROR,
-            "Internal error: " + Throwables.getStackTraceAsString(e),
-            type,
-            findAnnotationMirror(type, "org.inferred.freebuilder.FreeBuilder").get());
+        reportInternalError(type, e);
+      }
+    }
+    if (roundEnv.processingOver()) {
+      if (layoutPool != null) {
+        layoutPool.shutdown();
+      }
+      if (profileReport != null) {
+        writeProfile();
       }
     }
     return false;
   }
 
+  /**
+   * Generates the builder source for {@code metadata}, or takes it from the cache. Must be called
+   * on the compiler thread; the returned task only lays out text, so can be run on any thread.
+   */
+  private GeneratedSource generate(
+      Metadata metadata, FeatureSet featureSet, List<Feature<?>> generationFeatures) {
+    CompilationUnitBuilder code = new CompilationUnitBuilder(
+        processingEnv,
+        metadata.getGeneratedBuilder().getQualifiedName(),
+        metadata.getVisibleNestedTypes(),
+        featureSet,
+        googleJavaFormat);
+    Optional<String> fingerprint = Optional.absent();
+    if (cache != null) {
+      // Metadata's string form names type variables, but omits their bounds
+      String typeParameters = SourceStringBuilder.simple()
+          .add(metadata.getType().declarationParameters())
+          .toString();
+      fingerprint = cache.fingerprint(
+          metadata,
+          typeParameters,
+          generationFeatures,
+          googleJavaFormat,
+          code.getImplicitImports());
+      if (fingerprint.isPresent()) {
+        Optional<String> cachedSource = cache.get(fingerprint.get());
+        if (cachedSource.isPresent()) {
+          return GeneratedSource.cached(metadata, cachedSource.get());
+        }
+      }
+    }
+    QualifiedName type = metadata.getType().getQualifiedName();
+    Measurement generating = profile.start(type, Phase.GENERATE);
+    codeGenerator.writeBuilderSource(code, metadata);
+    generating.stop();
+    return GeneratedSource.layOut(metadata, code, fingerprint, profile);
+  }
+
+  private void writeProfile() {
+    try {
+      profile.writeReport(profileReport);
+      processingEnv.getMessager().printMessage(
+          Kind.NOTE, profile.summary() + "; profile written to " + profileReport);
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(
+          Kind.WARNING, profile.summary() + "; could not write profile: " + e.getMessage());
+    }
+  }
+
+  private void reportInternalError(TypeElement type, Throwable e) {
+    processingEnv.getMessager().printMessage(
+        Kind.ERROR,
+        "Internal error: " + Throwables.getStackTraceAsString(e),
+        type,
+        findAnnotationMirror(type, "org.inferred.freebuilder.FreeBuilder").get());
+  }
+
+  private void storeInCache(TypeElement type, String fingerprint, String source) {
+    try {
+      cache.put(fingerprint, source);
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(
+          Kind.WARNING,
+          "Could not cache generated source: " + e.getMessage(),
+          type,
+          findAnnotationMirror(type, "org.inferred.freebuilder.FreeBuilder").get());
+    }
+  }
+
+  /**
+   * The source of a builder, either laid out from text already generated on the compiler thread,
+   * on whichever thread runs the task, or taken from the cache.
+   */
+  private static class GeneratedSource extends FutureTask<String> {
+
+    static GeneratedSource layOut(
+        Metadata metadata,
+        final CompilationUnitBuilder code,
+        Optional<String> fingerprint,
+        final ProcessingProfile profile) {
+      final QualifiedName type = metadata.getType().getQualifiedName();
+      return new GeneratedSource(metadata, fingerprint, new Callable<String>() {
+        @Override
+        public String call() {
+          Measurement layingOut = profile.start(type, Phase.FORMAT);
+          String source = code.toString();
+          layingOut.stop();
+          return source;
+        }
+      });
+    }
+
+    static GeneratedSource cached(Metadata metadata, String source) {
+      return new GeneratedSource(metadata, Optional.<String>absent(), Callables.returning(source));
+    }
+
+    private final QualifiedName classToWrite;
+    private final Optional<String> fingerprint;
+
+    private GeneratedSource(
+        Metadata metadata, Optional<String> fingerprint, Callable<String> generator) {
+      super(generator);
+      this.classToWrite = metadata.getGeneratedBuilder().getQualifiedName();
+      this.fingerprint = fingerprint;
+    }
+
+    QualifiedName getClassToWrite() {
+      return classToWrite;
+    }
+
+    /** Returns the fingerprint to cache the source under, if it was not taken from the cache. */
+    Optional<String> getFingerprint() {
+      return fingerprint;
+    }
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof Processor)) {
@@ -15,6 +15,8 @@
  */
 package org.inferred.freebuilder.processor;
 
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeAsTypeElement;
+
 import com.google.common.base.MoreObjects;
 import com.google.common.base.MoreObjects.ToStringHelper;
 import com.google.common.base.Optional;
@@ -25,6 +27,7 @@ import com.google.common.collect.ImmutableSet;
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.util.Block;
 import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.SourceBuilder;
 import org.inferred.freebuilder.processor.util.StaticExcerpt;
 
@@ -34,12 +37,13 @@ import java.util.Map;
 import java.util.Set;
 
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 
 /** Property-type-specific code generation interface. */
-public abstract class PropertyCodeGenerator {
+public abstract class PropertyCodeGenerator implements Cloneable {
 
   /** Data available to {@link Factory} instances when creating a {@link PropertyCodeGenerator}. */
   interface Config {
@@ -80,7 +84,23 @@ public abstract class PropertyCodeGenerator {
     Optional<? extends PropertyCodeGenerator> create(Config config);
   }
 
-  protected final Metadata metadata;
+  /** Non-enum types whose equals methods are cheap compared to an arbitrary object's. */
+  private static final ImmutableSet<String> SIMPLE_TYPES = ImmutableSet.of(
+      String.class.getName(),
+      Boolean.class.getName(),
+      Byte.class.getName(),
+      Character.class.getName(),
+      Short.class.getName(),
+      Integer.class.getName(),
+      Long.class.getName(),
+      Float.class.getName(),
+      Double.class.getName());
+
+  /**
+   * Metadata of the type being generated. Once {@link Metadata.Builder#build() built} into
+   * metadata, this is that metadata, so every property's code generator is set.
+   */
+  protected Metadata metadata;
   protected final Property property;
 
   public PropertyCodeGenerator(Metadata metadata, Property property) {
@@ -96,6 +116,52 @@ public abstract class PropertyCodeGenerator {
     return Type.HAS_DEFAULT;
   }
 
+  /** Estimated cost of comparing two values of a property, from cheapest to most expensive. */
+  public enum EqualityCost { PRIMITIVE, SIMPLE, NESTED_VALUE, ARRAY, COLLECTION }
+
+  /**
+   * Returns the estimated cost of comparing two values of the property, so the generated equals
+   * method can compare cheap properties first.
+   */
+  public EqualityCost getEqualityCost() {
+    if (property.getType().getKind().isPrimitive()) {
+      return EqualityCost.PRIMITIVE;
+    }
+    Optional<TypeElement> element = maybeAsTypeElement(property.getType());
+    if (element.isPresent()
+        && (element.get().getKind() == ElementKind.ENUM
+            || SIMPLE_TYPES.contains(element.get().getQualifiedName().toString()))) {
+      return EqualityCost.SIMPLE;
+    }
+    return EqualityCost.NESTED_VALUE;
+  }
+
+  /**
+   * Returns whether a value built from the builder can be returned again from later build calls,
+   * up until the builder is next modified. Generators that hand out mutable state, such as nested
+   * builders, which can change without the builder being notified, must return false.
+   */
+  public boolean isBuiltValueCacheable() {
+    return true;
+  }
+
+  /**
+   * Returns whether the generator canonicalizes the Strings set on the builder by calling its
+   * {@code internString} method, which must then be generated.
+   */
+  public boolean isInterningStrings() {
+    return false;
+  }
+
+  /**
+   * Returns whether the generated static factory method may pass values of the property straight
+   * to the value constructor, bypassing the builder's setters. Generators whose setters do more
+   * than check and assign the argument, such as copying mutable state, must return false.
+   */
+  public boolean isStaticFactoryCompatible() {
+    return true;
+  }
+
   /** Add the field declaration for the property to the value's source code. */
   public void addValueFieldDeclaration(SourceBuilder code, String finalField) {
     code.addLine("private final %s %s;", property.getType(), finalField);
@@ -130,6 +196,56 @@ public abstract class PropertyCodeGenerator {
     code.add("%s", finalField);
   }
 
+  /**
+   * Adds an int-valued fragment hashing the value object's field to the source code.
+   *
+   * <p>The result must match {@link java.util.Arrays#hashCode(Object[]) Arrays.hashCode} for
+   * the property, but must not box primitives or allocate.
+   */
+  public void addHashCodeFragment(SourceBuilder code, String finalField) {
+    switch (property.getType().getKind()) {
+      case BOOLEAN:
+        code.add("(%s ? 1231 : 1237)", finalField);
+        break;
+
+      case LONG:
+        code.add("(int) (%1$s ^ (%1$s >>> 32))", finalField);
+        break;
+
+      case FLOAT:
+        code.add("%s.floatToIntBits(%s)", Float.class, finalField);
+        break;
+
+      case DOUBLE:
+        code.add("(int) (%1$s.doubleToLongBits(%2$s) ^ (%1$s.doubleToLongBits(%2$s) >>> 32))",
+            Double.class, finalField);
+        break;
+
+      default:
+        if (property.getType().getKind().isPrimitive()) {
+          code.add("%s", finalField);
+        } else if (getType() == Type.OPTIONAL) {
+          code.add("(%1$s == null ? 0 : %1$s.hashCode())", finalField);
+        } else {
+          code.add("%s.hashCode()", finalField);
+        }
+        break;
+    }
+  }
+
+  /**
+   * Returns a boolean-valued excerpt comparing the value object's field to {@code otherField}, or
+   * absent to compare them as {@link #getEqualityCost()} suggests.
+   */
+  public Optional<Excerpt> equalsFragment(String finalField, String otherField) {
+    return Optional.absent();
+  }
+
+  /** Returns a String-valued excerpt rendering the value object's field in its toString. */
+  public Excerpt toStringValue(String finalField) {
+    return Excerpts.add("%s", finalField);
+  }
+
   /** Adds a set call for the property from a function result to the builder's source code. */
   public abstract void addSetFromResult(SourceBuilder code, String builder, String variable);
 
@@ -147,6 +263,19 @@ public abstract class PropertyCodeGenerator {
     }
   }
 
+  /** Returns a copy of this generator, to be bound to the metadata holding it. */
+  PropertyCodeGenerator copy() {
+    try {
+      return (PropertyCodeGenerator) clone();
+    } catch (CloneNotSupportedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  void bindTo(Metadata metadata) {
+    this.metadata = metadata;
+  }
+
   @Override
   public boolean equals(final Object obj) {
     if (obj == null || !getClass().isInstance(obj)) {
@@ -182,6 +311,10 @@ public abstract class PropertyCodeGenerator {
         addFieldValues(cls.getSuperclass(), valuesBuilder);
       }
       for (Field field : cls.getDeclaredFields()) {
+        if (field.getName().equals("metadata") && cls == PropertyCodeGenerator.class) {
+          // The metadata holds this generator, and is compared and printed on its own.
+          continue;
+        }
         field.setAccessible(true);
         valuesBuilder.put(field.getName(), field.get(this));
       }
@@ -115,10 +115,15 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
       this.unboxedValueType = unboxedValueType;
     }
 
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
     @Override
     public void addBuilderFieldDeclaration(SourceBuilder code) {
-      code.addLine("private final %1$s<%2$s, %3$s> %4$s = %1$s.create();",
-          LinkedHashMultimap.class, keyType, valueType, property.getName());
+      code.addLine("private %s<%s, %s> %s = %s.of();",
+          SetMultimap.class, keyType, valueType, property.getName(), ImmutableSetMultimap.class);
     }
 
     @Override
@@ -167,7 +172,11 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
       if (!unboxedValueType.isPresent()) {
         code.addLine("  %s.checkNotNull(value);", Preconditions.class);
       }
-      code.addLine("  this.%s.put(key, value);", property.getName())
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSetMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedHashMultimap.class)
+          .addLine("  }")
+          .addLine("  this.%s.put(key, value);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -263,7 +272,11 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
       if (!unboxedValueType.isPresent()) {
         code.addLine("  %s.checkNotNull(value);", Preconditions.class);
       }
-      code.addLine("  this.%s.remove(key, value);", property.getName())
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSetMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedHashMultimap.class)
+          .addLine("  }")
+          .addLine("  this.%s.remove(key, value);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -287,7 +300,11 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
       if (!unboxedKeyType.isPresent()) {
         code.addLine("  %s.checkNotNull(key);", Preconditions.class);
       }
-      code.addLine("  this.%s.removeAll(key);", property.getName())
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSetMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedHashMultimap.class)
+          .addLine("  }")
+          .addLine("  this.%s.removeAll(key);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -315,6 +332,10 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
               SetMultimap.class,
               keyType,
               valueType);
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSetMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedHashMultimap.class)
+          .addLine("  }");
+      code.add(LastBuiltValue.invalidate(metadata));
       if (overridesPutMethod) {
         code.addLine("  mutator.accept(new CheckedSetMultimap<>(%s, this::%s));",
             property.getName(), putMethod(property));
@@ -336,7 +357,12 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
           .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
           .addLine(" */")
           .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property))
-          .addLine("  %s.clear();", property.getName())
+          .addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSetMultimap.class)
+          .addLine("    %s = %s.of();", property.getName(), ImmutableSetMultimap.class)
+          .addLine("  } else {")
+          .addLine("    %s.clear();", property.getName())
+          .addLine("  }")
+          .add(LastBuiltValue.invalidate(metadata))
           .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
@@ -352,7 +378,10 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
               SetMultimap.class,
               keyType,
               valueType,
-              getter(property))
+              getter(property));
+      code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSetMultimap.class)
+          .addLine("    %1$s = %2$s.create(%1$s);", property.getName(), LinkedHashMultimap.class)
+          .addLine("  }")
           .addLine("  return %s.unmodifiableSetMultimap(%s);",
               Multimaps.class, property.getName())
           .addLine("}");
@@ -366,7 +395,18 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
 
     @Override
     public void addMergeFromValue(Block code, String value) {
-      code.addLine("%s(%s.%s());", putAllMethod(property), value, property.getGetterName());
+      code.addLine("if (%s instanceof %s && %s == %s.<%s, %s>of()) {",
+              value,
+              metadata.getValueType().getQualifiedName(),
+              property.getName(),
+              ImmutableSetMultimap.class,
+              keyType,
+              valueType)
+          .addLine("  %s = %s.copyOf(%s.%s());",
+              property.getName(), ImmutableSetMultimap.class, value, property.getGetterName())
+          .addLine("} else {")
+          .addLine("  %s(%s.%s());", putAllMethod(property), value, property.getGetterName())
+          .addLine("}");
     }
 
     @Override
@@ -385,7 +425,7 @@ public class SetMultimapPropertyFactory implements PropertyCodeGenerator.Factory
 
     @Override
     public void addClearField(Block code) {
-      code.addLine("%s.clear();", property.getName());
+      code.addLine("%s();", clearMethod(property));
     }
 
     @Override
@@ -22,6 +22,7 @@ import static org.inferred.freebuilder.processor.BuilderMethods.getter;
 import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
 import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
 import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.Util.isEnum;
 import static org.inferred.freebuilder.processor.Util.upperBound;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
 import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
@@ -37,11 +38,14 @@ import static org.inferred.freebuilder.processor.util.feature.SourceLevel.diamon
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
 import org.inferred.freebuilder.processor.excerpt.CheckedSet;
+import org.inferred.freebuilder.processor.excerpt.CompactCollections;
 import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.Excerpt;
 import org.inferred.freebuilder.processor.util.Excerpts;
 import org.inferred.freebuilder.processor.util.ParameterizedType;
 import org.inferred.freebuilder.processor.util.QualifiedName;
@@ -50,6 +54,7 @@ import org.inferred.freebuilder.processor.util.StaticExcerpt;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -59,6 +64,9 @@ import javax.lang.model.type.TypeMirror;
 /**
  * {@link PropertyCodeGenerator.Factory} providing append-only semantics for {@link Set}
  * properties.
+ *
+ * <p>Sets of enums are stored in an {@link EnumSet} in the builder, and an immutable enum set in
+ * the value, iterating in declaration order rather than insertion order.
  */
 public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
 
@@ -73,7 +81,13 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
     Optional<TypeMirror> unboxedType = maybeUnbox(elementType, config.getTypes());
     boolean overridesAddMethod = hasAddMethodOverride(config, unboxedType.or(elementType));
     return Optional.of(new CodeGenerator(
-        config.getMetadata(), config.getProperty(), elementType, unboxedType, overridesAddMethod));
+        config.getMetadata(),
+        config.getProperty(),
+        elementType,
+        unboxedType,
+        overridesAddMethod,
+        isEnum(elementType),
+        InternedStrings.isString(elementType) && InternedStrings.isRequested(config)));
   }
 
   private static boolean hasAddMethodOverride(Config config, TypeMirror elementType) {
@@ -92,22 +106,41 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
     private final TypeMirror elementType;
     private final Optional<TypeMirror> unboxedType;
     private final boolean overridesAddMethod;
+    private final boolean isEnumSet;
+    private final boolean internStrings;
 
     CodeGenerator(
         Metadata metadata,
         Property property,
         TypeMirror elementType,
         Optional<TypeMirror> unboxedType,
-        boolean overridesAddMethod) {
+        boolean overridesAddMethod,
+        boolean isEnumSet,
+        boolean internStrings) {
       super(metadata, property);
       this.elementType = elementType;
       this.unboxedType = unboxedType;
       this.overridesAddMethod = overridesAddMethod;
+      this.isEnumSet = isEnumSet;
+      this.internStrings = internStrings;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
+    @Override
+    public boolean isInterningStrings() {
+      return internStrings;
     }
 
     @Override
     public void addBuilderFieldDeclaration(SourceBuilder code) {
-      if (code.feature(GUAVA).isAvailable()) {
+      if (isEnumSet) {
+        code.addLine("private final %1$s<%2$s> %3$s = %1$s.noneOf(%2$s.class);",
+            EnumSet.class, elementType, property.getName());
+      } else if (isCopyOnWrite(code)) {
         code.addLine("private %s<%s> %s = %s.of();",
             Set.class, elementType, property.getName(), ImmutableSet.class);
       } else {
@@ -145,7 +178,7 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
               metadata.getBuilder(),
               addMethod(property),
               unboxedType.or(elementType));
-      if (code.feature(GUAVA).isAvailable()) {
+      if (isCopyOnWrite(code)) {
         code.addLine("  if (this.%s instanceof %s) {", property.getName(), ImmutableSet.class)
             .addLine("    this.%1$s = new %2$s%3$s(this.%1$s);",
                 property.getName(), LinkedHashSet.class, diamondOperator(elementType))
@@ -154,10 +187,13 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
       if (unboxedType.isPresent()) {
         code.addLine("  this.%s.add(element);", property.getName());
       } else {
+        Excerpt element = checkNotNullInline("element");
         code.add(checkNotNullPreamble("element"))
-            .addLine("  this.%s.add(%s);", property.getName(), checkNotNullInline("element"));
+            .addLine("  this.%s.add(%s);",
+                property.getName(), internStrings ? InternedStrings.intern(element) : element);
       }
-      code.addLine("  return (%s) this;", metadata.getBuilder())
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
 
@@ -268,7 +304,7 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
               metadata.getBuilder(),
               removeMethod(property),
               unboxedType.or(elementType));
-      if (code.feature(GUAVA).isAvailable()) {
+      if (isCopyOnWrite(code)) {
         code.addLine("  if (this.%s instanceof %s) {", property.getName(), ImmutableSet.class)
             .addLine("    this.%1$s = new %2$s%3$s(this.%1$s);",
                 property.getName(), LinkedHashSet.class, diamondOperator(elementType))
@@ -280,7 +316,8 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
         code.add(checkNotNullPreamble("element"))
             .addLine("  this.%s.remove(%s);", property.getName(), checkNotNullInline("element"));
       }
-      code.addLine("  return (%s) this;", metadata.getBuilder())
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
 
@@ -306,13 +343,14 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
                 consumer.get().getQualifiedName(),
                 Set.class,
                 elementType);
-        if (code.feature(GUAVA).isAvailable()) {
+        if (isCopyOnWrite(code)) {
           code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSet.class)
               .addLine("    %1$s = new %2$s%3$s(%1$s);",
                   property.getName(), LinkedHashSet.class, diamondOperator(elementType))
               .addLine("  }");
         }
-        if (overridesAddMethod) {
+        code.add(LastBuiltValue.invalidate(metadata));
+        if (isAddMethodRequired()) {
           code.addLine("  mutator.accept(new CheckedSet<%s>(%s, this::%s));",
                   elementType, property.getName(), addMethod(property));
         } else {
@@ -334,16 +372,17 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
           .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
           .addLine(" */")
           .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property));
-      if (code.feature(GUAVA).isAvailable()) {
+      if (isCopyOnWrite(code)) {
         code.addLine("if (%s instanceof %s) {", property.getName(), ImmutableSet.class)
             .addLine("  %s = %s.of();", property.getName(), ImmutableSet.class)
             .addLine("} else {");
       }
       code.addLine("%s.clear();", property.getName());
-      if (code.feature(GUAVA).isAvailable()) {
+      if (isCopyOnWrite(code)) {
         code.addLine("}");
       }
-      code.addLine("  return (%s) this;", metadata.getBuilder())
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
           .addLine("}");
     }
 
@@ -355,7 +394,7 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
           .addLine(" * Changes to this builder will be reflected in the view.")
           .addLine(" */")
           .addLine("public %s<%s> %s() {", Set.class, elementType, getter(property));
-      if (code.feature(GUAVA).isAvailable()) {
+      if (isCopyOnWrite(code)) {
         code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSet.class)
             .addLine("    %1$s = new %2$s%3$s(%1$s);",
                 property.getName(), LinkedHashSet.class, diamondOperator(elementType))
@@ -367,6 +406,10 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
 
     @Override
     public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      if (isEnumSet) {
+        addEnumSetFinalFieldAssignment(code, finalField, builder);
+        return;
+      }
       code.add("%s = ", finalField);
       if (code.feature(GUAVA).isAvailable()) {
         code.add("%s.copyOf", ImmutableSet.class);
@@ -376,9 +419,20 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
       code.add("(%s.%s);\n", builder, property.getName());
     }
 
+    private void addEnumSetFinalFieldAssignment(
+        SourceBuilder code, String finalField, String builder) {
+      if (code.feature(GUAVA).isAvailable()) {
+        code.addLine("%s = %s.immutableEnumSet(%s.%s);",
+            finalField, Sets.class, builder, property.getName());
+      } else {
+        code.addLine("%s = %s.unmodifiableSet(%s.copyOf(%s.%s));",
+            finalField, Collections.class, EnumSet.class, builder, property.getName());
+      }
+    }
+
     @Override
     public void addMergeFromValue(Block code, String value) {
-      if (code.feature(GUAVA).isAvailable()) {
+      if (isCopyOnWrite(code)) {
         code.addLine("if (%s instanceof %s && %s == %s.<%s>of()) {",
                 value,
                 metadata.getValueType().getQualifiedName(),
@@ -390,7 +444,7 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
             .addLine("} else {");
       }
       code.addLine("%s(%s.%s());", addAllMethod(property), value, property.getGetterName());
-      if (code.feature(GUAVA).isAvailable()) {
+      if (isCopyOnWrite(code)) {
         code.addLine("}");
       }
     }
@@ -417,12 +471,28 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
     @Override
     public Set<StaticExcerpt> getStaticExcerpts() {
       ImmutableSet.Builder<StaticExcerpt> staticMethods = ImmutableSet.builder();
-      staticMethods.add(IMMUTABLE_SET);
-      if (overridesAddMethod) {
+      if (!isEnumSet) {
+        staticMethods.add(IMMUTABLE_SET);
+        staticMethods.addAll(CompactCollections.setExcerpts());
+      }
+      if (isAddMethodRequired()) {
         staticMethods.addAll(CheckedSet.excerpts());
       }
       return staticMethods.build();
     }
+
+    /** Returns whether every element added must go through the add method. */
+    private boolean isAddMethodRequired() {
+      return overridesAddMethod || internStrings;
+    }
+
+    /**
+     * Returns whether the builder holds an immutable set until first modified, so values can
+     * share it. EnumSets are cheap enough to copy that they are always mutated in place.
+     */
+    private boolean isCopyOnWrite(SourceBuilder code) {
+      return !isEnumSet && code.feature(GUAVA).isAvailable();
+    }
   }
 
   private static final StaticExcerpt IMMUTABLE_SET = new StaticExcerpt(METHOD, "immutableSet") {
@@ -437,10 +507,14 @@ public class SetPropertyFactory implements PropertyCodeGenerator.Factory {
             .addLine("    return %s.emptySet();", Collections.class)
             .addLine("  case 1:")
             .addLine("    return %s.singleton(elements.iterator().next());", Collections.class)
-            .addLine("  default:")
-            .addLine("    return %s.unmodifiableSet(new %s%s(elements));",
-                Collections.class, LinkedHashSet.class, diamondOperator("E"))
-            .addLine("  }")
+            .addLine("  default:");
+        if (CompactCollections.isSupported(code)) {
+          code.addLine("    return new CompactSet<>(elements);");
+        } else {
+          code.addLine("    return %s.unmodifiableSet(new %s%s(elements));",
+              Collections.class, LinkedHashSet.class, diamondOperator("E"));
+        }
+        code.addLine("  }")
             .addLine("}");
       }
     }
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
+import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
+import static org.inferred.freebuilder.processor.BuilderMethods.putAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.putMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
+import static org.inferred.freebuilder.processor.Util.comparatorMethod;
+import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.Util.isComparable;
+import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
+import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.excerpt.CheckedMap;
+import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.ParameterizedType;
+import org.inferred.freebuilder.processor.util.PreconditionExcerpts;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * {@link PropertyCodeGenerator.Factory} providing append-only semantics for {@link SortedMap},
+ * {@link NavigableMap} and {@link ImmutableSortedMap} properties.
+ *
+ * <p>The builder keeps its entries in a {@link TreeMap}, so the value can be built from
+ * already-sorted data without re-sorting it. Keys are ordered by the value type's static
+ * <code><i>property</i>Comparator()</code> method if there is one, and naturally otherwise.
+ */
+public class SortedMapPropertyFactory implements PropertyCodeGenerator.Factory {
+
+  @Override
+  public Optional<CodeGenerator> create(Config config) {
+    DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
+    if (type == null
+        || !erasesToAnyOf(type, SortedMap.class, NavigableMap.class, ImmutableSortedMap.class)) {
+      return Optional.absent();
+    }
+    TypeMirror keyType = upperBound(config.getElements(), type.getTypeArguments().get(0));
+    TypeMirror valueType = upperBound(config.getElements(), type.getTypeArguments().get(1));
+    Optional<String> comparatorMethod = comparatorMethod(config);
+    if (!comparatorMethod.isPresent() && !isComparable(config, keyType)) {
+      return Optional.absent();
+    }
+    Optional<TypeMirror> unboxedKeyType = maybeUnbox(keyType, config.getTypes());
+    Optional<TypeMirror> unboxedValueType = maybeUnbox(valueType, config.getTypes());
+    boolean overridesPutMethod = overrides(
+        config.getBuilder(),
+        config.getTypes(),
+        putMethod(config.getProperty()),
+        unboxedKeyType.or(keyType),
+        unboxedValueType.or(valueType));
+    return Optional.of(new CodeGenerator(
+        config.getMetadata(),
+        config.getProperty(),
+        overridesPutMethod,
+        keyType,
+        unboxedKeyType,
+        valueType,
+        unboxedValueType,
+        comparatorMethod,
+        erasesToAnyOf(type, SortedMap.class)));
+  }
+
+  @VisibleForTesting
+  static class CodeGenerator extends PropertyCodeGenerator {
+
+    private final boolean overridesPutMethod;
+    private final TypeMirror keyType;
+    private final Optional<TypeMirror> unboxedKeyType;
+    private final TypeMirror valueType;
+    private final Optional<TypeMirror> unboxedValueType;
+    private final Optional<String> comparatorMethod;
+    private final boolean isSortedMap;
+
+    CodeGenerator(
+        Metadata metadata,
+        Property property,
+        boolean overridesPutMethod,
+        TypeMirror keyType,
+        Optional<TypeMirror> unboxedKeyType,
+        TypeMirror valueType,
+        Optional<TypeMirror> unboxedValueType,
+        Optional<String> comparatorMethod,
+        boolean isSortedMap) {
+      super(metadata, property);
+      this.overridesPutMethod = overridesPutMethod;
+      this.keyType = keyType;
+      this.unboxedKeyType = unboxedKeyType;
+      this.valueType = valueType;
+      this.unboxedValueType = unboxedValueType;
+      this.comparatorMethod = comparatorMethod;
+      this.isSortedMap = isSortedMap;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
+    @Override
+    public void addValueFieldDeclaration(SourceBuilder code, String finalField) {
+      if (hasUnmodifiableView(code)) {
+        super.addValueFieldDeclaration(code, finalField);
+      } else {
+        code.addLine("// No unmodifiable NavigableMap is available, so keep a private copy and")
+            .addLine("// return a defensive copy of it from the getter.")
+            .addLine("private final %s<%s, %s> %s;",
+                TreeMap.class, keyType, valueType, finalField);
+      }
+    }
+
+    @Override
+    public void addBuilderFieldDeclaration(SourceBuilder code) {
+      if (isCopyOnWrite(code)) {
+        code.add("private %s<%s, %s> %s = ",
+            NavigableMap.class, keyType, valueType, property.getName());
+      } else {
+        code.add("private final %s<%s, %s> %s = ",
+            TreeMap.class, keyType, valueType, property.getName());
+      }
+      if (comparatorMethod.isPresent()) {
+        code.add("new %s<%s, %s>(%s.%s())", TreeMap.class, keyType, valueType,
+            metadata.getType().getQualifiedName(), comparatorMethod.get());
+      } else {
+        code.add("new %s<%s, %s>()", TreeMap.class, keyType, valueType);
+      }
+      code.add(";\n");
+    }
+
+    @Override
+    public void addBuilderFieldAccessors(SourceBuilder code) {
+      addPut(code, metadata);
+      addPutAll(code, metadata);
+      addRemove(code, metadata);
+      addMutate(code, metadata);
+      addClear(code, metadata);
+      addGetter(code, metadata);
+    }
+
+    private void addPut(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Associates {@code key} with {@code value} in the map to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * If the map previously contained a mapping for the key,")
+          .addLine(" * the old value is replaced by the specified value.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName());
+      if (!unboxedKeyType.isPresent() || !unboxedValueType.isPresent()) {
+        code.add(" * @throws NullPointerException if ");
+        if (unboxedKeyType.isPresent()) {
+          code.add("{@code value} is");
+        } else if (unboxedValueType.isPresent()) {
+          code.add("{@code key} is");
+        } else {
+          code.add("either {@code key} or {@code value} are");
+        }
+        code.add(" null\n");
+      }
+      code.addLine(" */")
+          .addLine("public %s %s(%s key, %s value) {",
+              metadata.getBuilder(),
+              putMethod(property),
+              unboxedKeyType.or(keyType),
+              unboxedValueType.or(valueType));
+      if (!unboxedKeyType.isPresent()) {
+        code.add(PreconditionExcerpts.checkNotNull("key"));
+      }
+      if (!unboxedValueType.isPresent()) {
+        code.add(PreconditionExcerpts.checkNotNull("value"));
+      }
+      addCopyOnWrite(code);
+      code.addLine("  %s.put(key, value);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addPutAll(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Copies all of the mappings from {@code map} to the map to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code map} is null or contains a")
+          .addLine(" *     null key or value")
+          .addLine(" */");
+      addAccessorAnnotations(code);
+      code.addLine("public %s %s(%s<? extends %s, ? extends %s> map) {",
+              metadata.getBuilder(),
+              putAllMethod(property),
+              Map.class,
+              keyType,
+              valueType)
+          .addLine("  for (%s<? extends %s, ? extends %s> entry : map.entrySet()) {",
+              Map.Entry.class, keyType, valueType)
+          .addLine("    %s(entry.getKey(), entry.getValue());", putMethod(property))
+          .addLine("  }")
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addRemove(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Removes the mapping for {@code key} from the map to be returned from")
+          .addLine(" * %s, if one is present.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName());
+      if (!unboxedKeyType.isPresent()) {
+        code.addLine(" * @throws NullPointerException if {@code key} is null");
+      }
+      code.addLine(" */")
+          .addLine("public %s %s(%s key) {",
+              metadata.getBuilder(),
+              removeMethod(property),
+              unboxedKeyType.or(keyType));
+      if (!unboxedKeyType.isPresent()) {
+        code.add(PreconditionExcerpts.checkNotNull("key"));
+      }
+      addCopyOnWrite(code);
+      code.addLine("  %s.remove(key);", property.getName())
+          .add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addMutate(SourceBuilder code, Metadata metadata) {
+      ParameterizedType consumer = code.feature(FUNCTION_PACKAGE).consumer().orNull();
+      if (consumer == null) {
+        return;
+      }
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Invokes {@code mutator} with the map to be returned from")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * <p>This method mutates the map in-place. {@code mutator} is a void")
+          .addLine(" * consumer, so any value returned from a lambda will be ignored.")
+          .addLine(" *")
+          .addLine(" * @return this {@code Builder} object")
+          .addLine(" * @throws NullPointerException if {@code mutator} is null")
+          .addLine(" */")
+          .addLine("public %s %s(%s<? super %s<%s, %s>> mutator) {",
+              metadata.getBuilder(),
+              mutator(property),
+              consumer.getQualifiedName(),
+              Map.class,
+              keyType,
+              valueType);
+      addCopyOnWrite(code);
+      code.add(LastBuiltValue.invalidate(metadata));
+      if (overridesPutMethod) {
+        code.addLine("  mutator.accept(new CheckedMap<>(%s, this::%s));",
+            property.getName(), putMethod(property));
+      } else {
+        code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
+                putMethod(property))
+            .addLine("  mutator.accept(%s);", property.getName());
+      }
+      code.addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addClear(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Removes all of the mappings from the map to be returned from ")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property));
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSortedMap.class)
+            .addLine("    %1$s = new %2$s<%3$s, %4$s>(%1$s.comparator());",
+                property.getName(), TreeMap.class, keyType, valueType)
+            .addLine("  } else {");
+      }
+      code.addLine("    %s.clear();", property.getName());
+      if (isCopyOnWrite(code)) {
+        code.addLine("  }");
+      }
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addGetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns an unmodifiable view of the map that will be returned by")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * Changes to this builder will be reflected in the view.")
+          .addLine(" */")
+          .addLine("public %s<%s, %s> %s() {",
+              SortedMap.class, keyType, valueType, getter(property));
+      addCopyOnWrite(code);
+      code.addLine("  return %s.unmodifiableSortedMap(%s);",
+              Collections.class, property.getName())
+          .addLine("}");
+    }
+
+    @Override
+    public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      String builderField = builder + "." + property.getName();
+      if (code.feature(GUAVA).isAvailable()) {
+        // The builder's map is already sorted, so this copies it without re-sorting.
+        code.addLine("%s = %s.copyOfSorted(%s);",
+            finalField, ImmutableSortedMap.class, builderField);
+      } else if (!hasUnmodifiableView(code)) {
+        code.addLine("%s = new %s<%s, %s>(%s);",
+            finalField, TreeMap.class, keyType, valueType, builderField);
+      } else {
+        code.addLine("%s = %s.unmodifiable%sMap(new %s<%s, %s>(%s));",
+            finalField,
+            Collections.class,
+            isSortedMap ? "Sorted" : "Navigable",
+            TreeMap.class,
+            keyType,
+            valueType,
+            builderField);
+      }
+    }
+
+    @Override
+    public void addReadValueFragment(SourceBuilder code, String finalField) {
+      if (hasUnmodifiableView(code)) {
+        super.addReadValueFragment(code, finalField);
+      } else {
+        code.add("new %s<%s, %s>(%s)", TreeMap.class, keyType, valueType, finalField);
+      }
+    }
+
+    @Override
+    public void addMergeFromValue(Block code, String value) {
+      if (isCopyOnWrite(code)) {
+        // Adopt the value's immutable map if this builder's map is empty, copying it on write.
+        code.addLine("if (%s instanceof %s && %s.isEmpty()) {",
+                value, metadata.getValueType().getQualifiedName(), property.getName())
+            .addLine("  %s = %s.copyOfSorted(%s.%s());",
+                property.getName(), ImmutableSortedMap.class, value, property.getGetterName())
+            .addLine("} else {");
+      }
+      code.addLine("%s(%s.%s());", putAllMethod(property), value, property.getGetterName());
+      if (isCopyOnWrite(code)) {
+        code.addLine("}");
+      }
+    }
+
+    @Override
+    public void addMergeFromBuilder(Block code, String builder) {
+      code.addLine("%s(((%s) %s).%s);",
+          putAllMethod(property),
+          metadata.getGeneratedBuilder(),
+          builder,
+          property.getName());
+    }
+
+    @Override
+    public void addSetFromResult(SourceBuilder code, String builder, String variable) {
+      code.addLine("%s.%s(%s);", builder, putAllMethod(property), variable);
+    }
+
+    @Override
+    public void addClearField(Block code) {
+      code.addLine("%s();", clearMethod(property));
+    }
+
+    @Override
+    public Set<StaticExcerpt> getStaticExcerpts() {
+      ImmutableSet.Builder<StaticExcerpt> result = ImmutableSet.builder();
+      if (overridesPutMethod) {
+        result.addAll(CheckedMap.excerpts());
+      }
+      return result.build();
+    }
+
+    /** Adds a statement replacing the builder's immutable map with a mutable copy, if needed. */
+    private void addCopyOnWrite(SourceBuilder code) {
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSortedMap.class)
+            .addLine("    %1$s = new %2$s<%3$s, %4$s>(%1$s);",
+                property.getName(), TreeMap.class, keyType, valueType)
+            .addLine("  }");
+      }
+    }
+
+    /**
+     * Returns whether the builder can hold an immutable map adopted from a value until first
+     * modified, as it can when Guava is available.
+     */
+    private boolean isCopyOnWrite(SourceBuilder code) {
+      return code.feature(GUAVA).isAvailable();
+    }
+
+    /** Returns whether the value can hold an unmodifiable map of the property's type. */
+    private boolean hasUnmodifiableView(SourceBuilder code) {
+      return isSortedMap
+          || code.feature(GUAVA).isAvailable()
+          || code.feature(SOURCE_LEVEL).hasUnmodifiableNavigableCollections();
+    }
+  }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.BuilderMethods.addAllMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.addMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.clearMethod;
+import static org.inferred.freebuilder.processor.BuilderMethods.getter;
+import static org.inferred.freebuilder.processor.BuilderMethods.mutator;
+import static org.inferred.freebuilder.processor.BuilderMethods.removeMethod;
+import static org.inferred.freebuilder.processor.Util.comparatorMethod;
+import static org.inferred.freebuilder.processor.Util.erasesToAnyOf;
+import static org.inferred.freebuilder.processor.Util.isComparable;
+import static org.inferred.freebuilder.processor.Util.upperBound;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeUnbox;
+import static org.inferred.freebuilder.processor.util.ModelUtils.overrides;
+import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullInline;
+import static org.inferred.freebuilder.processor.util.PreconditionExcerpts.checkNotNullPreamble;
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
+import org.inferred.freebuilder.processor.excerpt.CheckedSet;
+import org.inferred.freebuilder.processor.util.Block;
+import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.ParameterizedType;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * {@link PropertyCodeGenerator.Factory} providing append-only semantics for {@link SortedSet},
+ * {@link NavigableSet} and {@link ImmutableSortedSet} properties.
+ *
+ * <p>The builder keeps its elements in a {@link TreeSet}, so the value can be built from
+ * already-sorted data without re-sorting it. Elements are ordered by the value type's static
+ * <code><i>property</i>Comparator()</code> method if there is one, and naturally otherwise.
+ */
+public class SortedSetPropertyFactory implements PropertyCodeGenerator.Factory {
+
+  @Override
+  public Optional<CodeGenerator> create(Config config) {
+    DeclaredType type = maybeDeclared(config.getProperty().getType()).orNull();
+    if (type == null
+        || !erasesToAnyOf(type, SortedSet.class, NavigableSet.class, ImmutableSortedSet.class)) {
+      return Optional.absent();
+    }
+
+    TypeMirror elementType = upperBound(config.getElements(), type.getTypeArguments().get(0));
+    Optional<String> comparatorMethod = comparatorMethod(config);
+    if (!comparatorMethod.isPresent() && !isComparable(config, elementType)) {
+      return Optional.absent();
+    }
+    Optional<TypeMirror> unboxedType = maybeUnbox(elementType, config.getTypes());
+    boolean overridesAddMethod = overrides(
+        config.getBuilder(),
+        config.getTypes(),
+        addMethod(config.getProperty()),
+        unboxedType.or(elementType));
+    return Optional.of(new CodeGenerator(
+        config.getMetadata(),
+        config.getProperty(),
+        elementType,
+        unboxedType,
+        comparatorMethod,
+        overridesAddMethod,
+        erasesToAnyOf(type, SortedSet.class)));
+  }
+
+  @VisibleForTesting
+  static class CodeGenerator extends PropertyCodeGenerator {
+
+    private final TypeMirror elementType;
+    private final Optional<TypeMirror> unboxedType;
+    private final Optional<String> comparatorMethod;
+    private final boolean overridesAddMethod;
+    private final boolean isSortedSet;
+
+    CodeGenerator(
+        Metadata metadata,
+        Property property,
+        TypeMirror elementType,
+        Optional<TypeMirror> unboxedType,
+        Optional<String> comparatorMethod,
+        boolean overridesAddMethod,
+        boolean isSortedSet) {
+      super(metadata, property);
+      this.elementType = elementType;
+      this.unboxedType = unboxedType;
+      this.comparatorMethod = comparatorMethod;
+      this.overridesAddMethod = overridesAddMethod;
+      this.isSortedSet = isSortedSet;
+    }
+
+    @Override
+    public EqualityCost getEqualityCost() {
+      return EqualityCost.COLLECTION;
+    }
+
+    @Override
+    public void addValueFieldDeclaration(SourceBuilder code, String finalField) {
+      if (hasUnmodifiableView(code)) {
+        super.addValueFieldDeclaration(code, finalField);
+      } else {
+        code.addLine("// No unmodifiable NavigableSet is available, so keep a private copy and")
+            .addLine("// return a defensive copy of it from the getter.")
+            .addLine("private final %s<%s> %s;", TreeSet.class, elementType, finalField);
+      }
+    }
+
+    @Override
+    public void addBuilderFieldDeclaration(SourceBuilder code) {
+      if (isCopyOnWrite(code)) {
+        code.add("private %s<%s> %s = ", NavigableSet.class, elementType, property.getName());
+      } else {
+        code.add("private final %s<%s> %s = ", TreeSet.class, elementType, property.getName());
+      }
+      if (comparatorMethod.isPresent()) {
+        code.add("new %s<%s>(%s.%s())", TreeSet.class, elementType,
+            metadata.getType().getQualifiedName(), comparatorMethod.get());
+      } else {
+        code.add("new %s<%s>()", TreeSet.class, elementType);
+      }
+      code.add(";\n");
+    }
+
+    @Override
+    public void addBuilderFieldAccessors(SourceBuilder code) {
+      addAdd(code, metadata);
+      addVarargsAdd(code, metadata);
+      addAddAllMethods(code, metadata);
+      addRemove(code, metadata);
+      addMutator(code, metadata);
+      addClear(code, metadata);
+      addGetter(code, metadata);
+    }
+
+    private void addAdd(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds {@code element} to the set to be returned from %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * If the set already contains {@code element}, then {@code %s}",
+              addMethod(property))
+          .addLine(" * has no effect (only the previously added element is retained).")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName());
+      if (!unboxedType.isPresent()) {
+        code.addLine(" * @throws NullPointerException if {@code element} is null");
+      }
+      code.addLine(" */")
+          .addLine("public %s %s(%s element) {",
+              metadata.getBuilder(),
+              addMethod(property),
+              unboxedType.or(elementType));
+      addCopyOnWrite(code);
+      if (unboxedType.isPresent()) {
+        code.addLine("  this.%s.add(element);", property.getName());
+      } else {
+        code.add(checkNotNullPreamble("element"))
+            .addLine("  this.%s.add(%s);", property.getName(), checkNotNullInline("element"));
+      }
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addVarargsAdd(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds each element of {@code elements} to the set to be returned from")
+          .addLine(" * %s, ignoring duplicate elements",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * (only the first duplicate element is added).")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName());
+      if (!unboxedType.isPresent()) {
+        code.addLine(" * @throws NullPointerException if {@code elements} is null or contains a")
+            .addLine(" *     null element");
+      }
+      code.addLine(" */")
+          .addLine("public %s %s(%s... elements) {",
+              metadata.getBuilder(),
+              addMethod(property),
+              unboxedType.or(elementType))
+          .addLine("  for (%s element : elements) {", unboxedType.or(elementType))
+          .addLine("    %s(element);", addMethod(property))
+          .addLine("  }")
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addAddAllMethods(SourceBuilder code, Metadata metadata) {
+      if (code.feature(SOURCE_LEVEL).stream().isPresent()) {
+        QualifiedName spliterator = code.feature(SOURCE_LEVEL).spliterator().get();
+        addJavadocForAddAll(code, metadata);
+        code.addLine("public %s %s(%s<? extends %s> elements) {",
+                metadata.getBuilder(),
+                addAllMethod(property),
+                spliterator,
+                elementType)
+            .addLine("  elements.forEachRemaining(this::%s);", addMethod(property))
+            .addLine("  return (%s) this;", metadata.getBuilder())
+            .addLine("}");
+        QualifiedName baseStream = code.feature(SOURCE_LEVEL).baseStream().get();
+        addJavadocForAddAll(code, metadata);
+        code.addLine("public %s %s(%s<? extends %s, ?> elements) {",
+                metadata.getBuilder(),
+                addAllMethod(property),
+                baseStream,
+                elementType)
+            .addLine("  return %s(elements.spliterator());", addAllMethod(property))
+            .addLine("}");
+      }
+      addJavadocForAddAll(code, metadata);
+      addAccessorAnnotations(code);
+      code.addLine("public %s %s(%s<? extends %s> elements) {",
+              metadata.getBuilder(),
+              addAllMethod(property),
+              Iterable.class,
+              elementType)
+          .add(Excerpts.forEach(unboxedType.or(elementType), "elements", addMethod(property)))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addJavadocForAddAll(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Adds each element of {@code elements} to the set to be returned from")
+          .addLine(" * %s, ignoring duplicate elements",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * (only the first duplicate element is added).")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" * @throws NullPointerException if {@code elements} is null or contains a")
+          .addLine(" *     null element")
+          .addLine(" */");
+    }
+
+    private void addRemove(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Removes {@code element} from the set to be returned from %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * Does nothing if {@code element} is not a member of the set.")
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName());
+      if (!unboxedType.isPresent()) {
+        code.addLine(" * @throws NullPointerException if {@code element} is null");
+      }
+      code.addLine(" */")
+          .addLine("public %s %s(%s element) {",
+              metadata.getBuilder(),
+              removeMethod(property),
+              unboxedType.or(elementType));
+      addCopyOnWrite(code);
+      if (unboxedType.isPresent()) {
+        code.addLine("  this.%s.remove(element);", property.getName());
+      } else {
+        code.add(checkNotNullPreamble("element"))
+            .addLine("  this.%s.remove(%s);", property.getName(), checkNotNullInline("element"));
+      }
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addMutator(SourceBuilder code, Metadata metadata) {
+      Optional<ParameterizedType> consumer = code.feature(FUNCTION_PACKAGE).consumer();
+      if (!consumer.isPresent()) {
+        return;
+      }
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Applies {@code mutator} to the set to be returned from %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * <p>This method mutates the set in-place. {@code mutator} is a void")
+          .addLine(" * consumer, so any value returned from a lambda will be ignored.")
+          .addLine(" *")
+          .addLine(" * @return this {@code Builder} object")
+          .addLine(" * @throws NullPointerException if {@code mutator} is null")
+          .addLine(" */")
+          .addLine("public %s %s(%s<? super %s<%s>> mutator) {",
+              metadata.getBuilder(),
+              mutator(property),
+              consumer.get().getQualifiedName(),
+              Set.class,
+              elementType);
+      addCopyOnWrite(code);
+      code.add(LastBuiltValue.invalidate(metadata));
+      if (overridesAddMethod) {
+        code.addLine("  mutator.accept(new CheckedSet<%s>(%s, this::%s));",
+                elementType, property.getName(), addMethod(property));
+      } else {
+        code.addLine("  // If %s is overridden, this method will be updated to delegate to it",
+                addMethod(property))
+            .addLine("  mutator.accept(%s);", property.getName());
+      }
+      code.addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addClear(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Clears the set to be returned from %s.",
+              metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" *")
+          .addLine(" * @return this {@code %s} object", metadata.getBuilder().getSimpleName())
+          .addLine(" */")
+          .addLine("public %s %s() {", metadata.getBuilder(), clearMethod(property));
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSortedSet.class)
+            .add("    %s = ", property.getName());
+        addNewTreeSet(code, property.getName() + ".comparator()");
+        code.add(";\n")
+            .addLine("  } else {")
+            .addLine("    %s.clear();", property.getName())
+            .addLine("  }");
+      } else {
+        code.addLine("  %s.clear();", property.getName());
+      }
+      code.add(LastBuiltValue.invalidate(metadata))
+          .addLine("  return (%s) this;", metadata.getBuilder())
+          .addLine("}");
+    }
+
+    private void addGetter(SourceBuilder code, Metadata metadata) {
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Returns an unmodifiable view of the set that will be returned by")
+          .addLine(" * %s.", metadata.getType().javadocNoArgMethodLink(property.getGetterName()))
+          .addLine(" * Changes to this builder will be reflected in the view.")
+          .addLine(" */")
+          .addLine("public %s<%s> %s() {", SortedSet.class, elementType, getter(property));
+      addCopyOnWrite(code);
+      code.addLine("  return %s.unmodifiableSortedSet(%s);",
+              Collections.class, property.getName())
+          .addLine("}");
+    }
+
+    @Override
+    public void addFinalFieldAssignment(SourceBuilder code, String finalField, String builder) {
+      String builderField = builder + "." + property.getName();
+      if (code.feature(GUAVA).isAvailable()) {
+        // The builder's set is already sorted, so this copies it without re-sorting.
+        code.addLine("%s = %s.copyOfSorted(%s);",
+            finalField, ImmutableSortedSet.class, builderField);
+      } else if (!hasUnmodifiableView(code)) {
+        code.add("%s = ", finalField);
+        addNewTreeSet(code, builderField);
+        code.add(";\n");
+      } else {
+        code.add("%s = %s.unmodifiable%sSet(", finalField, Collections.class,
+            isSortedSet ? "Sorted" : "Navigable");
+        addNewTreeSet(code, builderField);
+        code.add(");\n");
+      }
+    }
+
+    @Override
+    public void addReadValueFragment(SourceBuilder code, String finalField) {
+      if (hasUnmodifiableView(code)) {
+        super.addReadValueFragment(code, finalField);
+      } else {
+        addNewTreeSet(code, finalField);
+      }
+    }
+
+    @Override
+    public void addMergeFromValue(Block code, String value) {
+      if (isCopyOnWrite(code)) {
+        // Adopt the value's immutable set if this builder's set is empty, copying it on write.
+        code.addLine("if (%s instanceof %s && %s.isEmpty()) {",
+                value, metadata.getValueType().getQualifiedName(), property.getName())
+            .addLine("  %s = %s.copyOfSorted(%s.%s());",
+                property.getName(), ImmutableSortedSet.class, value, property.getGetterName())
+            .addLine("} else {");
+      }
+      code.addLine("%s(%s.%s());", addAllMethod(property), value, property.getGetterName());
+      if (isCopyOnWrite(code)) {
+        code.addLine("}");
+      }
+    }
+
+    @Override
+    public void addMergeFromBuilder(Block code, String builder) {
+      code.addLine("%s(((%s) %s).%s);",
+          addAllMethod(property),
+          metadata.getGeneratedBuilder(),
+          builder,
+          property.getName());
+    }
+
+    @Override
+    public void addSetFromResult(SourceBuilder code, String builder, String variable) {
+      code.addLine("%s.%s(%s);", builder, addAllMethod(property), variable);
+    }
+
+    @Override
+    public void addClearField(Block code) {
+      code.addLine("%s();", clearMethod(property));
+    }
+
+    @Override
+    public Set<StaticExcerpt> getStaticExcerpts() {
+      ImmutableSet.Builder<StaticExcerpt> staticMethods = ImmutableSet.builder();
+      if (overridesAddMethod) {
+        staticMethods.addAll(CheckedSet.excerpts());
+      }
+      return staticMethods.build();
+    }
+
+    /** Adds an expression creating a new TreeSet, passing it {@code argument}. */
+    private void addNewTreeSet(SourceBuilder code, String argument) {
+      code.add("new %s<%s>(%s)", TreeSet.class, elementType, argument);
+    }
+
+    /** Adds a statement replacing the builder's immutable set with a mutable copy, if needed. */
+    private void addCopyOnWrite(SourceBuilder code) {
+      if (isCopyOnWrite(code)) {
+        code.addLine("  if (%s instanceof %s) {", property.getName(), ImmutableSortedSet.class)
+            .add("    %s = ", property.getName());
+        addNewTreeSet(code, property.getName());
+        code.add(";\n")
+            .addLine("  }");
+      }
+    }
+
+    /**
+     * Returns whether the builder can hold an immutable set adopted from a value until first
+     * modified, as it can when Guava is available.
+     */
+    private boolean isCopyOnWrite(SourceBuilder code) {
+      return code.feature(GUAVA).isAvailable();
+    }
+
+    /** Returns whether the value can hold an unmodifiable set of the property's type. */
+    private boolean hasUnmodifiableView(SourceBuilder code) {
+      return isSortedSet
+          || code.feature(GUAVA).isAvailable()
+          || code.feature(SOURCE_LEVEL).hasUnmodifiableNavigableCollections();
+    }
+  }
+}
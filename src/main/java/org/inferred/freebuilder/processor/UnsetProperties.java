@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.Metadata.Property;
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Type;
+import org.inferred.freebuilder.processor.util.Excerpt;
+import org.inferred.freebuilder.processor.util.Excerpts;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Code snippets tracking which required properties have not yet been set on a builder.
+ *
+ * <p>Each required property is assigned one bit, matching its position among the required
+ * properties. Types with up to 32 required properties use a single {@code int _unsetProperties}
+ * field, and up to 64 a single {@code long}, however many other properties they have. Larger
+ * types spread the bits over {@code long _unsetProperties0}, {@code _unsetProperties1}, and so
+ * on. Unlike an EnumSet, the fields never need to be allocated or cloned, so escape analysis can
+ * eliminate short-lived builders entirely.
+ *
+ * <p>All methods require metadata with code generators set.
+ */
+class UnsetProperties {
+
+  private static final String FIELD = "_unsetProperties";
+  private static final int INT_BITS = 32;
+  private static final int LONG_BITS = 64;
+  private static final Joiner PIPE_JOINER = Joiner.on(" | ");
+  private static final Joiner COMMA_JOINER = Joiner.on(", ");
+
+  /** Adds builder field declarations, initially marking every required property as unset. */
+  static void addBuilderFieldDeclarations(SourceBuilder code, Metadata metadata) {
+    List<String> fields = fields(metadata);
+    long[] words = new long[fields.size()];
+    for (int index = 0; index < metadata.getRequiredPropertyCount(); index++) {
+      words[index / LONG_BITS] |= 1L << (index % LONG_BITS);
+    }
+    for (int word = 0; word < words.length; word++) {
+      if (isInt(metadata)) {
+        code.addLine("private int %s = %s;", fields.get(word), intLiteral((int) words[word]));
+      } else {
+        code.addLine("private long %s = %s;", fields.get(word), longLiteral(words[word]));
+      }
+    }
+  }
+
+  /** Adds final field declarations for the partial value type. */
+  static void addPartialFieldDeclarations(SourceBuilder code, Metadata metadata) {
+    for (String field : fields(metadata)) {
+      code.addLine("  private final %s %s;", isInt(metadata) ? "int" : "long", field);
+    }
+  }
+
+  /**
+   * Adds one statement per field, copying the unset properties of {@code source}.
+   *
+   * @param prefix indentation and qualifier to put before each assigned field, e.g. "this."
+   */
+  static void addCopyFrom(SourceBuilder code, Metadata metadata, String prefix, Object source) {
+    for (String field : fields(metadata)) {
+      code.addLine("%s%s = %s.%s;", prefix, field, source, field);
+    }
+  }
+
+  /** Returns a boolean expression that is true if {@code property} is unset on this builder. */
+  static Excerpt isUnset(Metadata metadata, Property property) {
+    return Excerpts.add("(%s & %s) != 0", field(metadata, property), mask(metadata, property));
+  }
+
+  /** Returns a boolean expression that is true if {@code property} is unset on {@code builder}. */
+  static Excerpt isUnset(Metadata metadata, Property property, Object builder) {
+    return Excerpts.add("(%s.%s & %s) != 0",
+        builder, field(metadata, property), mask(metadata, property));
+  }
+
+  /** Returns a boolean expression that is true if {@code property} is set on this builder. */
+  static Excerpt isSet(Metadata metadata, Property property) {
+    return Excerpts.add("(%s & %s) == 0", field(metadata, property), mask(metadata, property));
+  }
+
+  /** Returns a boolean expression that is true if {@code property} is set on {@code builder}. */
+  static Excerpt isSet(Metadata metadata, Property property, Object builder) {
+    return Excerpts.add("(%s.%s & %s) == 0",
+        builder, field(metadata, property), mask(metadata, property));
+  }
+
+  /** Returns a statement marking {@code property} as set on this builder. */
+  static Excerpt markSet(Metadata metadata, Property property) {
+    return Excerpts.add("%s &= ~%s;", field(metadata, property), mask(metadata, property));
+  }
+
+  /** Returns a boolean expression that is true if any required property is unset. */
+  static Excerpt anyUnset(Metadata metadata) {
+    List<String> fields = fields(metadata);
+    if (fields.size() == 1) {
+      return Excerpts.add("%s != 0", fields.get(0));
+    }
+    return Excerpts.add("(%s) != 0", PIPE_JOINER.join(fields));
+  }
+
+  /** Returns a boolean expression that is true if this and {@code other} match. */
+  static Excerpt sameAs(Metadata metadata, String other) {
+    List<String> comparisons = new ArrayList<String>();
+    for (String field : fields(metadata)) {
+      comparisons.add(field + " == " + other + "." + field);
+    }
+    return Excerpts.add("%s", Joiner.on(" && ").join(comparisons));
+  }
+
+  /** Adds one hashCode accumulation statement per field. */
+  static void addHashCodeTerms(SourceBuilder code, Metadata metadata, String indent) {
+    for (String field : fields(metadata)) {
+      if (isInt(metadata)) {
+        code.addLine("%sresult = 31 * result + %s;", indent, field);
+      } else {
+        code.addLine("%sresult = 31 * result + (int) (%2$s ^ (%2$s >>> 32));", indent, field);
+      }
+    }
+  }
+
+  /**
+   * Returns an expression describing the unset properties, e.g. {@code [name, age]}.
+   *
+   * <p>The description is built by a static method on the Property enum, so it costs nothing
+   * unless it is actually needed.
+   */
+  static Excerpt description(Metadata metadata) {
+    return Excerpts.add("%s.describe(%s)",
+        metadata.getPropertyEnum(), COMMA_JOINER.join(fields(metadata)));
+  }
+
+  /**
+   * Adds the static describe method to the Property enum. If every property is required, bits
+   * match ordinals; otherwise, the method lists the required properties in bit order.
+   */
+  static void addDescribeMethod(SourceBuilder code, Metadata metadata) {
+    boolean isMultiWord = fields(metadata).size() > 1;
+    boolean allRequired = metadata.getRequiredPropertyCount() == metadata.getProperties().size();
+    code.addLine("")
+        .addLine("  static %s describe(long%s unsetProperties) {",
+            String.class, isMultiWord ? "..." : "")
+        .addLine("    %1$s result = new %1$s(\"[\");", StringBuilder.class)
+        .addLine("    %s separator = \"\";", String.class);
+    String property;
+    if (allRequired) {
+      code.addLine("    for (%s property : values()) {", metadata.getPropertyEnum());
+      if (isMultiWord) {
+        code.addLine("      int ordinal = property.ordinal();")
+            .addLine("      if ((unsetProperties[ordinal / 64] & (1L << (ordinal %% 64))) != 0) {");
+      } else {
+        code.addLine("      if ((unsetProperties & (1L << property.ordinal())) != 0) {");
+      }
+      property = "property";
+    } else {
+      List<String> required = new ArrayList<String>();
+      for (Property requiredProperty : metadata.getProperties()) {
+        if (requiredProperty.getCodeGenerator().getType() == Type.REQUIRED) {
+          required.add(requiredProperty.getAllCapsName());
+        }
+      }
+      code.addLine("    %s[] required = {%s};",
+              metadata.getPropertyEnum(), COMMA_JOINER.join(required))
+          .addLine("    for (int bit = 0; bit < required.length; bit++) {");
+      if (isMultiWord) {
+        code.addLine("      if ((unsetProperties[bit / 64] & (1L << (bit %% 64))) != 0) {");
+      } else {
+        code.addLine("      if ((unsetProperties & (1L << bit)) != 0) {");
+      }
+      property = "required[bit]";
+    }
+    code.addLine("        result.append(separator).append(%s);", property)
+        .addLine("        separator = \", \";")
+        .addLine("      }")
+        .addLine("    }")
+        .addLine("    return result.append(\"]\").toString();")
+        .addLine("  }");
+  }
+
+  private static boolean isInt(Metadata metadata) {
+    return metadata.getRequiredPropertyCount() <= INT_BITS;
+  }
+
+  private static List<String> fields(Metadata metadata) {
+    int count = metadata.getRequiredPropertyCount();
+    if (count <= LONG_BITS) {
+      return ImmutableList.of(FIELD);
+    }
+    ImmutableList.Builder<String> fields = ImmutableList.builder();
+    for (int word = 0; word < wordCount(count); word++) {
+      fields.add(FIELD + word);
+    }
+    return fields.build();
+  }
+
+  private static String field(Metadata metadata, Property property) {
+    if (metadata.getRequiredPropertyCount() <= LONG_BITS) {
+      return FIELD;
+    }
+    return FIELD + (index(metadata, property) / LONG_BITS);
+  }
+
+  private static String mask(Metadata metadata, Property property) {
+    int index = index(metadata, property);
+    if (isInt(metadata)) {
+      return intLiteral(1 << index);
+    }
+    return longLiteral(1L << (index % LONG_BITS));
+  }
+
+  /** Returns the bit index of {@code property}, matched by name as its generator may differ. */
+  private static int index(Metadata metadata, Property property) {
+    return metadata.getRequiredPropertyIndex(property.getName());
+  }
+
+  private static int wordCount(int count) {
+    return (count + LONG_BITS - 1) / LONG_BITS;
+  }
+
+  private static String intLiteral(int value) {
+    return "0x" + Integer.toHexString(value);
+  }
+
+  private static String longLiteral(long value) {
+    return "0x" + Long.toHexString(value) + "L";
+  }
+
+  private UnsetProperties() {}
+}
@@ -15,10 +15,23 @@
  */
 package org.inferred.freebuilder.processor;
 
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeAsTypeElement;
+import static org.inferred.freebuilder.processor.util.ModelUtils.maybeDeclared;
 import static org.inferred.freebuilder.processor.util.Shading.unshadedName;
+import static javax.lang.model.util.ElementFilter.methodsIn;
 
+import com.google.common.base.Optional;
+
+import org.inferred.freebuilder.processor.PropertyCodeGenerator.Config;
 import org.inferred.freebuilder.processor.util.QualifiedName;
 
+import java.util.Comparator;
+import java.util.Set;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
@@ -72,6 +85,43 @@ public class Util {
     return false;
   }
 
+  /** Returns true if {@code type} is an enum type. */
+  static boolean isEnum(TypeMirror type) {
+    TypeElement element = maybeAsTypeElement(type).orNull();
+    return element != null && element.getKind() == ElementKind.ENUM;
+  }
+
+  /** Returns true if {@code type} implements {@link Comparable}. */
+  static boolean isComparable(Config config, TypeMirror type) {
+    TypeMirror comparable =
+        config.getElements().getTypeElement(Comparable.class.getName()).asType();
+    return config.getTypes().isAssignable(
+        config.getTypes().erasure(type), config.getTypes().erasure(comparable));
+  }
+
+  /**
+   * Returns the name of the static, no-args method on the value type that supplies the
+   * comparator for the property in {@code config}, if the user has declared one. The method
+   * must be called <code><i>property</i>Comparator</code>, e.g. {@code itemsComparator()}.
+   */
+  static Optional<String> comparatorMethod(Config config) {
+    String name = config.getProperty().getName() + "Comparator";
+    TypeElement valueType = (TypeElement) config.getBuilder().getEnclosingElement();
+    for (ExecutableElement method : methodsIn(valueType.getEnclosedElements())) {
+      Set<Modifier> modifiers = method.getModifiers();
+      DeclaredType returnType = maybeDeclared(method.getReturnType()).orNull();
+      if (method.getSimpleName().contentEquals(name)
+          && modifiers.contains(Modifier.STATIC)
+          && !modifiers.contains(Modifier.PRIVATE)
+          && method.getParameters().isEmpty()
+          && returnType != null
+          && erasesToAnyOf(returnType, Comparator.class)) {
+        return Optional.of(name);
+      }
+    }
+    return Optional.absent();
+  }
+
   private static final class TypeToStringVisitor extends SimpleTypeVisitor6<String, Object> {
     @Override
     public String visitDeclared(DeclaredType t, Object p) {
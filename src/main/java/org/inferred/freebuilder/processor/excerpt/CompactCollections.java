@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.excerpt;
+
+import static org.inferred.freebuilder.processor.util.StaticExcerpt.Type.TYPE;
+import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
+
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Excerpts defining immutable, insertion-ordered set and map implementations for values built
+ * without Guava on Java 9+. Each stores its elements (or keys and values) in arrays, indexed by an
+ * open-addressing hash table of ints, rather than in a {@code LinkedHashSet} or
+ * {@code LinkedHashMap} allocating a linked node per element.
+ *
+ * <p>The JDK's own {@code Set.of} and {@code Map.of} are equally compact, but do not preserve
+ * insertion order. Older source levels keep the unmodifiable linked collections.
+ */
+public class CompactCollections {
+
+  /** Returns whether the compact collections are used by {@code code}. */
+  public static boolean isSupported(SourceBuilder code) {
+    return !code.feature(GUAVA).isAvailable()
+        && code.feature(SOURCE_LEVEL).hasImmutableCollectionFactories();
+  }
+
+  public static Set<StaticExcerpt> setExcerpts() {
+    return ImmutableSet.of(COMPACT_HASH_INDEX, COMPACT_SET);
+  }
+
+  public static Set<StaticExcerpt> mapExcerpts() {
+    return ImmutableSet.of(COMPACT_HASH_INDEX, COMPACT_MAP);
+  }
+
+  private static final StaticExcerpt COMPACT_HASH_INDEX =
+      new StaticExcerpt(TYPE, "CompactHashIndex") {
+        @Override
+        public void addTo(SourceBuilder code) {
+          if (!isSupported(code)) {
+            return;
+          }
+          code.addLine("")
+              .addLine("/**")
+              .addLine(" * Helpers for open-addressing hash tables of distinct, non-null keys.")
+              .addLine(" * Each slot holds one plus the index of its key in an insertion-ordered")
+              .addLine(" * key array, or zero if empty. Tables are a power of two in size, and at")
+              .addLine(" * most half full.")
+              .addLine(" */")
+              .addLine("private static final class CompactHashIndex {")
+              .addLine("")
+              .addLine("  /** Returns the index of {@code key} in {@code keys}, or -1. */")
+              .addLine("  static int indexOf(Object[] keys, int[] table, Object key) {")
+              .addLine("    if (key == null) {")
+              .addLine("      return -1;")
+              .addLine("    }")
+              .addLine("    int mask = table.length - 1;")
+              .addLine("    for (int slot = slot(key, mask); table[slot] != 0; "
+                  + "slot = (slot + 1) & mask) {")
+              .addLine("      int index = table[slot] - 1;")
+              .addLine("      if (key.equals(keys[index])) {")
+              .addLine("        return index;")
+              .addLine("      }")
+              .addLine("    }")
+              .addLine("    return -1;")
+              .addLine("  }")
+              .addLine("")
+              .addLine("  /** Returns a table of {@code keys}, which must be distinct. */")
+              .addLine("  static int[] newTable(Object[] keys) {")
+              .addLine("    int tableSize = Integer.highestOneBit(keys.length * 2 - 1) << 1;")
+              .addLine("    int[] table = new int[tableSize];")
+              .addLine("    int mask = table.length - 1;")
+              .addLine("    for (int index = 0; index < keys.length; index++) {")
+              .addLine("      int slot = slot(keys[index], mask);")
+              .addLine("      while (table[slot] != 0) {")
+              .addLine("        slot = (slot + 1) & mask;")
+              .addLine("      }")
+              .addLine("      table[slot] = index + 1;")
+              .addLine("    }")
+              .addLine("    return table;")
+              .addLine("  }")
+              .addLine("")
+              .addLine("  private static int slot(Object key, int mask) {")
+              .addLine("    int hash = key.hashCode() * 0x9E3779B9;")
+              .addLine("    return (hash ^ (hash >>> 16)) & mask;")
+              .addLine("  }")
+              .addLine("")
+              .addLine("  private CompactHashIndex() {}")
+              .addLine("}");
+        }
+      };
+
+  private static final StaticExcerpt COMPACT_SET = new StaticExcerpt(TYPE, "CompactSet") {
+    @Override
+    public void addTo(SourceBuilder code) {
+      if (!isSupported(code)) {
+        return;
+      }
+      code.addLine("")
+          .addLine("/** An immutable, insertion-ordered set of two or more elements. */")
+          .addLine("private static final class CompactSet<E> extends %s<E> implements %s {",
+              AbstractSet.class, Serializable.class)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  private final Object[] elements;")
+          .addLine("  private final int[] table;")
+          .addLine("")
+          .addLine("  CompactSet(%s<E> elements) {", Set.class)
+          .addLine("    this.elements = elements.toArray();")
+          .addLine("    this.table = CompactHashIndex.newTable(this.elements);")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public int size() {")
+          .addLine("    return elements.length;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean contains(Object o) {")
+          .addLine("    return CompactHashIndex.indexOf(elements, table, o) >= 0;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s<E> iterator() {", Iterator.class)
+          .addLine("    return new %s<E>() {", Iterator.class)
+          .addLine("      private int index = 0;")
+          .addLine("")
+          .addLine("      @Override public boolean hasNext() {")
+          .addLine("        return index < elements.length;")
+          .addLine("      }")
+          .addLine("")
+          .addLine("      @%s(\"unchecked\")", SuppressWarnings.class)
+          .addLine("      @Override public E next() {")
+          .addLine("        if (!hasNext()) {")
+          .addLine("          throw new %s();", NoSuchElementException.class)
+          .addLine("        }")
+          .addLine("        return (E) elements[index++];")
+          .addLine("      }")
+          .addLine("    };")
+          .addLine("  }")
+          .addLine("}");
+    }
+  };
+
+  private static final StaticExcerpt COMPACT_MAP = new StaticExcerpt(TYPE, "CompactMap") {
+    @Override
+    public void addTo(SourceBuilder code) {
+      if (!isSupported(code)) {
+        return;
+      }
+      code.addLine("")
+          .addLine("/** An immutable, insertion-ordered map of two or more entries. */")
+          .addLine("private static final class CompactMap<K, V> extends %s<K, V> implements %s {",
+              AbstractMap.class, Serializable.class)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  private final Object[] keys;")
+          .addLine("  private final Object[] values;")
+          .addLine("  private final int[] table;")
+          .addLine("")
+          .addLine("  CompactMap(%s<K, V> entries) {", Map.class)
+          .addLine("    keys = new Object[entries.size()];")
+          .addLine("    values = new Object[keys.length];")
+          .addLine("    int index = 0;")
+          .addLine("    for (%s<K, V> entry : entries.entrySet()) {", Map.Entry.class)
+          .addLine("      keys[index] = entry.getKey();")
+          .addLine("      values[index++] = entry.getValue();")
+          .addLine("    }")
+          .addLine("    table = CompactHashIndex.newTable(keys);")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public int size() {")
+          .addLine("    return keys.length;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean containsKey(Object key) {")
+          .addLine("    return CompactHashIndex.indexOf(keys, table, key) >= 0;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public V get(Object key) {")
+          .addLine("    int index = CompactHashIndex.indexOf(keys, table, key);")
+          .addLine("    return (index < 0) ? null : value(index);")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+          .addLine("  private K key(int index) {")
+          .addLine("    return (K) keys[index];")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+          .addLine("  private V value(int index) {")
+          .addLine("    return (V) values[index];")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s<%s<K, V>> entrySet() {", Set.class, Map.Entry.class)
+          .addLine("    return new %s<%s<K, V>>() {", AbstractSet.class, Map.Entry.class)
+          .addLine("      @Override public int size() {")
+          .addLine("        return keys.length;")
+          .addLine("      }")
+          .addLine("")
+          .addLine("      @Override public %s<%s<K, V>> iterator() {",
+              Iterator.class, Map.Entry.class)
+          .addLine("        return new %s<%s<K, V>>() {", Iterator.class, Map.Entry.class)
+          .addLine("          private int index = 0;")
+          .addLine("")
+          .addLine("          @Override public boolean hasNext() {")
+          .addLine("            return index < keys.length;")
+          .addLine("          }")
+          .addLine("")
+          .addLine("          @Override public %s<K, V> next() {", Map.Entry.class)
+          .addLine("            if (!hasNext()) {")
+          .addLine("              throw new %s();", NoSuchElementException.class)
+          .addLine("            }")
+          .addLine("            %s<K, V> entry = new %s<>(key(index), value(index));",
+              Map.Entry.class, AbstractMap.SimpleImmutableEntry.class)
+          .addLine("            index++;")
+          .addLine("            return entry;")
+          .addLine("          }")
+          .addLine("        };")
+          .addLine("      }")
+          .addLine("    };")
+          .addLine("  }")
+          .addLine("}");
+    }
+  };
+
+  private CompactCollections() {}
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.excerpt;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.ValueType;
+
+import java.util.List;
+
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Third-party libraries of primitive collections.
+ *
+ * <p>The libraries are only ever referenced by name, so neither is a dependency of FreeBuilder, and
+ * generated code only uses a library if the user's own types already do.
+ */
+public enum PrimitiveCollectionsLibrary {
+
+  /** <a href="http://fastutil.di.unimi.it/">fastutil</a>. */
+  FASTUTIL {
+    @Override
+    List<QualifiedName> interfaceTypes(Shape shape, PrimitiveType primitiveType) {
+      return ImmutableList.of(readableType(shape, primitiveType));
+    }
+
+    @Override
+    QualifiedName readableType(Shape shape, PrimitiveType primitiveType) {
+      return fastutilType(primitiveType, shape.fastutilInterface);
+    }
+
+    @Override
+    QualifiedName mutableType(Shape shape, PrimitiveType primitiveType) {
+      return fastutilType(primitiveType, shape.fastutilImplementation);
+    }
+
+    @Override
+    QualifiedName elementsType(PrimitiveType primitiveType) {
+      return fastutilType(primitiveType, "%sCollection");
+    }
+
+    @Override
+    void addUnmodifiableView(
+        SourceBuilder code, Shape shape, PrimitiveType primitiveType, String collection) {
+      code.add("%s.unmodifiable(%s)",
+          fastutilType(primitiveType, shape.fastutilUtilities), collection);
+    }
+
+    @Override
+    void addImmutableCopy(
+        SourceBuilder code,
+        Shape shape,
+        PrimitiveType primitiveType,
+        Optional<TypeMirror> valueType,
+        String collection) {
+      code.add("%s.unmodifiable(new %s",
+          fastutilType(primitiveType, shape.fastutilUtilities),
+          mutableType(shape, primitiveType));
+      if (valueType.isPresent()) {
+        code.add("<%s>", valueType.get());
+      }
+      code.add("(%s))", collection);
+    }
+
+    @Override
+    void addForEachElement(
+        SourceBuilder code, PrimitiveType primitiveType, String elements, String method) {
+      code.addLine("  %s iterator = %s.iterator();",
+              fastutilType(primitiveType, "%sIterator"), elements)
+          .addLine("  while (iterator.hasNext()) {")
+          .addLine("    %s(iterator.next%s());", method, primitiveType.capitalized())
+          .addLine("  }");
+    }
+
+    @Override
+    void addForEachEntry(
+        SourceBuilder code,
+        PrimitiveType primitiveType,
+        TypeMirror valueType,
+        String map,
+        String method) {
+      code.addLine("  for (%s<? extends %s> entry : %s.%s2ObjectEntrySet()) {",
+              readableType(Shape.MAP, primitiveType).nestedType("Entry"),
+              valueType,
+              map,
+              primitiveType.primitive())
+          .addLine("    %s(entry.get%sKey(), entry.getValue());",
+              method, primitiveType.capitalized())
+          .addLine("  }");
+    }
+
+    @Override
+    String removeKeyMethod() {
+      return "remove";
+    }
+  },
+
+  /** <a href="https://www.eclipse.org/collections/">Eclipse Collections</a>. */
+  ECLIPSE_COLLECTIONS {
+    @Override
+    List<QualifiedName> interfaceTypes(Shape shape, PrimitiveType primitiveType) {
+      return ImmutableList.of(
+          readableType(shape, primitiveType),
+          eclipseType(shape.eclipsePackage, "Immutable" + shape.eclipseInterface, primitiveType));
+    }
+
+    @Override
+    QualifiedName readableType(Shape shape, PrimitiveType primitiveType) {
+      return eclipseType(shape.eclipsePackage, shape.eclipseInterface, primitiveType);
+    }
+
+    @Override
+    QualifiedName mutableType(Shape shape, PrimitiveType primitiveType) {
+      return eclipseType(shape.eclipseImplementationPackage, shape.eclipseImplementation,
+          primitiveType);
+    }
+
+    @Override
+    QualifiedName elementsType(PrimitiveType primitiveType) {
+      return eclipseType("api", "%sIterable", primitiveType);
+    }
+
+    @Override
+    void addUnmodifiableView(
+        SourceBuilder code, Shape shape, PrimitiveType primitiveType, String collection) {
+      code.add("%s.asUnmodifiable()", collection);
+    }
+
+    @Override
+    void addImmutableCopy(
+        SourceBuilder code,
+        Shape shape,
+        PrimitiveType primitiveType,
+        Optional<TypeMirror> valueType,
+        String collection) {
+      code.add("%s.toImmutable()", collection);
+    }
+
+    @Override
+    void addForEachElement(
+        SourceBuilder code, PrimitiveType primitiveType, String elements, String method) {
+      code.addLine("  %s iterator = %s.%sIterator();",
+              eclipseType("api.iterator", "%sIterator", primitiveType),
+              elements,
+              primitiveType.primitive())
+          .addLine("  while (iterator.hasNext()) {")
+          .addLine("    %s(iterator.next());", method)
+          .addLine("  }");
+    }
+
+    @Override
+    void addForEachEntry(
+        SourceBuilder code,
+        PrimitiveType primitiveType,
+        TypeMirror valueType,
+        String map,
+        String method) {
+      code.addLine("  for (%s<? extends %s> entry : %s.keyValuesView()) {",
+              eclipseType("api.tuple.primitive", "%sObjectPair", primitiveType),
+              valueType,
+              map)
+          .addLine("    %s(entry.getOne(), entry.getTwo());", method)
+          .addLine("  }");
+    }
+
+    @Override
+    String removeKeyMethod() {
+      return "removeKey";
+    }
+  };
+
+  /** Kinds of primitive collection supported. */
+  public enum Shape {
+    LIST("%sList", "%sArrayList", "%sLists",
+        "api.list.primitive", "%sList", "impl.list.mutable.primitive", "%sArrayList"),
+    SET("%sSet", "%sLinkedOpenHashSet", "%sSets",
+        "api.set.primitive", "%sSet", "impl.set.mutable.primitive", "%sHashSet"),
+    MAP("%s2ObjectMap", "%s2ObjectLinkedOpenHashMap", "%s2ObjectMaps",
+        "api.map.primitive", "%sObjectMap", "impl.map.mutable.primitive", "%sObjectHashMap");
+
+    private final String fastutilInterface;
+    private final String fastutilImplementation;
+    private final String fastutilUtilities;
+    private final String eclipsePackage;
+    private final String eclipseInterface;
+    private final String eclipseImplementationPackage;
+    private final String eclipseImplementation;
+
+    Shape(
+        String fastutilInterface,
+        String fastutilImplementation,
+        String fastutilUtilities,
+        String eclipsePackage,
+        String eclipseInterface,
+        String eclipseImplementationPackage,
+        String eclipseImplementation) {
+      this.fastutilInterface = fastutilInterface;
+      this.fastutilImplementation = fastutilImplementation;
+      this.fastutilUtilities = fastutilUtilities;
+      this.eclipsePackage = eclipsePackage;
+      this.eclipseInterface = eclipseInterface;
+      this.eclipseImplementationPackage = eclipseImplementationPackage;
+      this.eclipseImplementation = eclipseImplementation;
+    }
+  }
+
+  /** A collection interface of a library, specialized to a primitive element or key type. */
+  public static final class CollectionType extends ValueType {
+
+    private final PrimitiveCollectionsLibrary library;
+    private final Shape shape;
+    private final PrimitiveType primitiveType;
+
+    private CollectionType(
+        PrimitiveCollectionsLibrary library, Shape shape, PrimitiveType primitiveType) {
+      this.library = library;
+      this.shape = shape;
+      this.primitiveType = primitiveType;
+    }
+
+    public Shape getShape() {
+      return shape;
+    }
+
+    public PrimitiveType getPrimitiveType() {
+      return primitiveType;
+    }
+
+    /** Returns the read-only interface type, e.g. fastutil's {@code IntList}. */
+    public QualifiedName readableType() {
+      return library.readableType(shape, primitiveType);
+    }
+
+    /** Returns the mutable implementation type builders store elements in. */
+    public QualifiedName mutableType() {
+      return library.mutableType(shape, primitiveType);
+    }
+
+    /** Returns the type bulk-add methods accept, e.g. fastutil's {@code IntCollection}. */
+    public QualifiedName elementsType() {
+      return library.elementsType(primitiveType);
+    }
+
+    /** Adds an expression returning an unmodifiable view of {@code collection}. */
+    public void addUnmodifiableView(SourceBuilder code, String collection) {
+      library.addUnmodifiableView(code, shape, primitiveType, collection);
+    }
+
+    /**
+     * Adds an expression returning an immutable copy of {@code collection}, a collection of
+     * {@link #mutableType()} with map values of {@code valueType}.
+     */
+    public void addImmutableCopy(
+        SourceBuilder code, Optional<TypeMirror> valueType, String collection) {
+      library.addImmutableCopy(code, shape, primitiveType, valueType, collection);
+    }
+
+    /** Adds statements passing each element of {@code elements} to {@code method}. */
+    public void addForEachElement(SourceBuilder code, String elements, String method) {
+      library.addForEachElement(code, primitiveType, elements, method);
+    }
+
+    /** Adds statements passing each key and value of {@code map} to {@code method}. */
+    public void addForEachEntry(
+        SourceBuilder code, TypeMirror valueType, String map, String method) {
+      library.addForEachEntry(code, primitiveType, valueType, map, method);
+    }
+
+    /** Returns the name of the method removing a key from a map of {@link #mutableType()}. */
+    public String removeKeyMethod() {
+      return library.removeKeyMethod();
+    }
+
+    @Override
+    protected void addFields(FieldReceiver fields) {
+      fields.add("library", library);
+      fields.add("shape", shape);
+      fields.add("primitiveType", primitiveType);
+    }
+  }
+
+  /** Returns the collection type {@code type} names, if it is supported. */
+  public static Optional<CollectionType> collectionType(QualifiedName type) {
+    for (PrimitiveCollectionsLibrary library : values()) {
+      for (Shape shape : Shape.values()) {
+        for (PrimitiveType primitiveType : PrimitiveType.values()) {
+          if (library.interfaceTypes(shape, primitiveType).contains(type)) {
+            return Optional.of(new CollectionType(library, shape, primitiveType));
+          }
+        }
+      }
+    }
+    return Optional.absent();
+  }
+
+  abstract List<QualifiedName> interfaceTypes(Shape shape, PrimitiveType primitiveType);
+
+  abstract QualifiedName readableType(Shape shape, PrimitiveType primitiveType);
+
+  abstract QualifiedName mutableType(Shape shape, PrimitiveType primitiveType);
+
+  abstract QualifiedName elementsType(PrimitiveType primitiveType);
+
+  abstract void addUnmodifiableView(
+      SourceBuilder code, Shape shape, PrimitiveType primitiveType, String collection);
+
+  abstract void addImmutableCopy(
+      SourceBuilder code,
+      Shape shape,
+      PrimitiveType primitiveType,
+      Optional<TypeMirror> valueType,
+      String collection);
+
+  abstract void addForEachElement(
+      SourceBuilder code, PrimitiveType primitiveType, String elements, String method);
+
+  abstract void addForEachEntry(
+      SourceBuilder code,
+      PrimitiveType primitiveType,
+      TypeMirror valueType,
+      String map,
+      String method);
+
+  abstract String removeKeyMethod();
+
+  private static QualifiedName fastutilType(PrimitiveType primitiveType, String simpleName) {
+    return QualifiedName.of("it.unimi.dsi.fastutil." + primitiveType.primitive() + "s",
+        String.format(simpleName, primitiveType.capitalized()));
+  }
+
+  private static QualifiedName eclipseType(
+      String subpackage, String simpleName, PrimitiveType primitiveType) {
+    return QualifiedName.of("org.eclipse.collections." + subpackage,
+        String.format(simpleName, primitiveType.capitalized()));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.excerpt;
+
+import static org.inferred.freebuilder.processor.util.StaticExcerpt.Type.TYPE;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+/**
+ * Excerpt defining static helpers for open-addressing hash tables of int or long keys, shared by
+ * the {@link PrimitiveSet} and {@link PrimitiveMap} implementations.
+ *
+ * <p>Keys are kept in a separate array in insertion order; each table slot holds one plus the
+ * index of its key in that array, or zero if the slot is empty. Tables are a power of two in size
+ * and at most half full, so a probe always terminates. Removal uses backward-shift deletion, so
+ * tables never need tombstones of their own.
+ */
+public class PrimitiveHashIndex {
+
+  /** Returns the name of the helper type for {@code keyType} keys. */
+  public static String hashIndexType(PrimitiveType keyType) {
+    return keyType.capitalized() + "HashIndex";
+  }
+
+  static StaticExcerpt excerpt(PrimitiveType keyType) {
+    return new HashIndex(keyType);
+  }
+
+  private static final class HashIndex extends StaticExcerpt {
+
+    private final PrimitiveType keyType;
+
+    HashIndex(PrimitiveType keyType) {
+      super(TYPE, hashIndexType(keyType));
+      this.keyType = keyType;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      String primitive = keyType.primitive();
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * Helpers for open-addressing hash tables of %s keys. Each slot holds one",
+              primitive)
+          .addLine(" * plus the index of its key in an insertion-ordered key array, or zero if")
+          .addLine(" * empty. Tables are a power of two in size, and at most half full.")
+          .addLine(" */")
+          .addLine("private static final class %s {", getName())
+          .addLine("")
+          .addLine("  static final int[] EMPTY_TABLE = new int[1];")
+          .addLine("")
+          .addLine("  /** Returns the index of {@code key} in {@code keys}, or -1. */")
+          .addLine("  static int indexOf(%1$s[] keys, int[] table, %1$s key) {", primitive)
+          .addLine("    int mask = table.length - 1;")
+          .addLine("    for (int slot = slot(key, mask); table[slot] != 0; "
+              + "slot = (slot + 1) & mask) {")
+          .addLine("      int index = table[slot] - 1;")
+          .addLine("      if (keys[index] == key) {")
+          .addLine("        return index;")
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("    return -1;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Adds {@code keys[index]}, which must not already be present. */")
+          .addLine("  static void insert(%s[] keys, int[] table, int index) {", primitive)
+          .addLine("    int mask = table.length - 1;")
+          .addLine("    int slot = slot(keys[index], mask);")
+          .addLine("    while (table[slot] != 0) {")
+          .addLine("      slot = (slot + 1) & mask;")
+          .addLine("    }")
+          .addLine("    table[slot] = index + 1;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /**")
+          .addLine("   * Removes {@code keys[index]}, which must be present, shifting later keys")
+          .addLine("   * in its probe sequence back so no lookup meets an empty slot before them.")
+          .addLine("   */")
+          .addLine("  static void remove(%s[] keys, int[] table, int index) {", primitive)
+          .addLine("    int mask = table.length - 1;")
+          .addLine("    int hole = slot(keys[index], mask);")
+          .addLine("    while (table[hole] != index + 1) {")
+          .addLine("      hole = (hole + 1) & mask;")
+          .addLine("    }")
+          .addLine("    for (int slot = (hole + 1) & mask; table[slot] != 0; "
+              + "slot = (slot + 1) & mask) {")
+          .addLine("      int home = slot(keys[table[slot] - 1], mask);")
+          .addLine("      if (((slot - home) & mask) >= ((slot - hole) & mask)) {")
+          .addLine("        table[hole] = table[slot];")
+          .addLine("        hole = slot;")
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("    table[hole] = 0;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Returns a table of the first {@code size} keys, with room for more. */")
+          .addLine("  static int[] newTable(%s[] keys, int size, int capacity) {", primitive)
+          .addLine("    int tableSize = Integer.highestOneBit(%s.max(capacity, 1) * 2 - 1) << 1;",
+              Math.class)
+          .addLine("    int[] table = new int[tableSize];")
+          .addLine("    for (int index = 0; index < size; index++) {")
+          .addLine("      insert(keys, table, index);")
+          .addLine("    }")
+          .addLine("    return table;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  private static int slot(%s key, int mask) {", primitive)
+          .addLine("    int hash = %s * 0x9E3779B9;", keyType.hashCodeOf("key"))
+          .addLine("    return (hash ^ (hash >>> 16)) & mask;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  private %s() {}", getName())
+          .addLine("}");
+    }
+  }
+
+  private PrimitiveHashIndex() {}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.excerpt;
+
+import static org.inferred.freebuilder.processor.util.StaticExcerpt.Type.TYPE;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Excerpts defining list implementations that store int, long or double elements without boxing
+ * them: an immutable list for value types, and a growable list for builders.
+ *
+ * <p>The growable list adopts the array of an immutable list added to it while empty, only copying
+ * it when first modified, so a value passed through {@code Builder.from(value).build()} keeps the
+ * same list instance.
+ */
+public class PrimitiveList {
+
+  /** Returns the name of the immutable list type for {@code elementType}, used by values. */
+  public static String immutableListType(PrimitiveType elementType) {
+    return "Immutable" + elementType.capitalized() + "List";
+  }
+
+  /** Returns the name of the growable list type for {@code elementType}, used by builders. */
+  public static String arrayListType(PrimitiveType elementType) {
+    return elementType.capitalized() + "ArrayList";
+  }
+
+  /** Returns the name of the growable list's method for adding an unboxed element. */
+  public static String addMethod(PrimitiveType elementType) {
+    return "add" + elementType.capitalized();
+  }
+
+  public static List<StaticExcerpt> excerpts(PrimitiveType elementType) {
+    return ImmutableList.<StaticExcerpt>of(
+        new ImmutablePrimitiveList(elementType), new PrimitiveArrayList(elementType));
+  }
+
+  private static final class ImmutablePrimitiveList extends StaticExcerpt {
+
+    private final PrimitiveType elementType;
+
+    ImmutablePrimitiveList(PrimitiveType elementType) {
+      super(TYPE, immutableListType(elementType));
+      this.elementType = elementType;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      String primitive = elementType.primitive();
+      code.addLine("")
+          .addLine("/** An immutable list of %ss, stored without boxing. */", primitive)
+          .addLine("private static final class %s extends %s<%s>",
+              getName(), AbstractList.class, elementType.boxed())
+          .addLine("    implements %s, %s {", RandomAccess.class, Serializable.class)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  static final %1$s EMPTY = new %1$s(new %2$s[0]);", getName(), primitive)
+          .addLine("")
+          .addLine("  private final %s[] elements;", primitive)
+          .addLine("")
+          .addLine("  %s(%s[] elements) {", getName(), primitive)
+          .addLine("    this.elements = elements;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public int size() {")
+          .addLine("    return elements.length;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s get(int index) {", elementType.boxed())
+          .addLine("    return elements[index];")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean equals(Object o) {")
+          .addLine("    if (o instanceof %s) {", getName())
+          .addLine("      return %s.equals(elements, ((%s) o).elements);",
+              Arrays.class, getName())
+          .addLine("    }")
+          .addLine("    return super.equals(o);")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public int hashCode() {")
+          .addLine("    // Matches List.hashCode without boxing")
+          .addLine("    return %s.hashCode(elements);", Arrays.class)
+          .addLine("  }")
+          .addLine("}");
+    }
+  }
+
+  private static final class PrimitiveArrayList extends StaticExcerpt {
+
+    private final PrimitiveType elementType;
+
+    PrimitiveArrayList(PrimitiveType elementType) {
+      super(TYPE, arrayListType(elementType));
+      this.elementType = elementType;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      String primitive = elementType.primitive();
+      Class<?> boxed = elementType.boxed();
+      String immutableList = immutableListType(elementType);
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * A growable list of %ss, stored without boxing. Adopts the array of",
+              primitive)
+          .addLine(" * a {@link %s} added while this list is empty, copying it on first",
+              immutableList)
+          .addLine(" * write.")
+          .addLine(" */")
+          .addLine("private static final class %s extends %s<%s>",
+              getName(), AbstractList.class, boxed)
+          .addLine("    implements %s, %s {", RandomAccess.class, Serializable.class)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  private %s[] elements = %s.EMPTY.elements;", primitive, immutableList)
+          .addLine("  private int size = 0;")
+          .addLine("  /** The immutable list sharing {@code elements}, if any. */")
+          .addLine("  private %s shared = null;", immutableList)
+          .addLine("")
+          .addLine("  @Override public int size() {")
+          .addLine("    return size;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s get(int index) {", boxed)
+          .addLine("    checkIndex(index, size - 1);")
+          .addLine("    return elements[index];")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %1$s set(int index, %1$s element) {", boxed)
+          .addLine("    checkIndex(index, size - 1);")
+          .addLine("    %s value = element;", primitive)
+          .addLine("    ensureCapacity(size);")
+          .addLine("    %s previous = elements[index];", primitive)
+          .addLine("    elements[index] = value;")
+          .addLine("    return previous;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  void %s(%s element) {", addMethod(elementType), primitive)
+          .addLine("    ensureCapacity(size + 1);")
+          .addLine("    elements[size++] = element;")
+          .addLine("    modCount++;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public void add(int index, %s element) {", boxed)
+          .addLine("    checkIndex(index, size);")
+          .addLine("    %s value = element;", primitive)
+          .addLine("    ensureCapacity(size + 1);")
+          .addLine("    System.arraycopy(elements, index, elements, index + 1, size - index);")
+          .addLine("    elements[index] = value;")
+          .addLine("    size++;")
+          .addLine("    modCount++;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  void addAll(%s[] values) {", primitive)
+          .addLine("    ensureCapacity(size + values.length);")
+          .addLine("    System.arraycopy(values, 0, elements, size, values.length);")
+          .addLine("    size += values.length;")
+          .addLine("    modCount++;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean addAll(%s<? extends %s> values) {",
+              Collection.class, boxed)
+          .addLine("    if (values instanceof %s) {", immutableList)
+          .addLine("      %1$s immutableValues = (%1$s) values;", immutableList)
+          .addLine("      if (size == 0) {")
+          .addLine("        elements = immutableValues.elements;")
+          .addLine("        size = elements.length;")
+          .addLine("        shared = immutableValues;")
+          .addLine("        modCount++;")
+          .addLine("      } else {")
+          .addLine("        addAll(immutableValues.elements);")
+          .addLine("      }")
+          .addLine("    } else if (values instanceof %s) {", getName())
+          .addLine("      %1$s listValues = (%1$s) values;", getName())
+          .addLine("      addAll(%s.copyOf(listValues.elements, listValues.size));",
+              Arrays.class)
+          .addLine("    } else {")
+          .addLine("      ensureCapacity(size + values.size());")
+          .addLine("      for (%s value : values) {", primitive)
+          .addLine("        %s(value);", addMethod(elementType))
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("    return !values.isEmpty();")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s remove(int index) {", boxed)
+          .addLine("    checkIndex(index, size - 1);")
+          .addLine("    ensureCapacity(size);")
+          .addLine("    %s previous = elements[index];", primitive)
+          .addLine("    System.arraycopy(elements, index + 1, elements, index, size - index - 1);")
+          .addLine("    size--;")
+          .addLine("    modCount++;")
+          .addLine("    return previous;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override protected void removeRange(int fromIndex, int toIndex) {")
+          .addLine("    ensureCapacity(size);")
+          .addLine("    System.arraycopy(elements, toIndex, elements, fromIndex, size - toIndex);")
+          .addLine("    size -= toIndex - fromIndex;")
+          .addLine("    modCount++;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Empties the list, keeping any capacity it owns. */")
+          .addLine("  @Override public void clear() {")
+          .addLine("    if (shared != null) {")
+          .addLine("      elements = %s.EMPTY.elements;", immutableList)
+          .addLine("      shared = null;")
+          .addLine("    }")
+          .addLine("    size = 0;")
+          .addLine("    modCount++;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Ensures this list owns {@code elements}, and can hold minCapacity. */")
+          .addLine("  void ensureCapacity(int minCapacity) {")
+          .addLine("    if (shared != null || minCapacity > elements.length) {")
+          .addLine("      int grownCapacity = elements.length + (elements.length >> 1);")
+          .addLine("      int capacity = %s.max(minCapacity, %s.max(grownCapacity, 10));",
+              Math.class, Math.class)
+          .addLine("      elements = %s.copyOf(elements, capacity);", Arrays.class)
+          .addLine("      shared = null;")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  %s toImmutableList() {", immutableList)
+          .addLine("    if (shared != null) {")
+          .addLine("      return shared;")
+          .addLine("    } else if (size == 0) {")
+          .addLine("      return %s.EMPTY;", immutableList)
+          .addLine("    }")
+          .addLine("    return new %s(%s.copyOf(elements, size));", immutableList, Arrays.class)
+          .addLine("  }")
+          .addLine("")
+          .addLine("  private static void checkIndex(int index, int maxIndex) {")
+          .addLine("    if (index < 0 || index > maxIndex) {")
+          .addLine("      throw new %s(\"Index: \" + index + \", Max: \" + maxIndex);",
+              IndexOutOfBoundsException.class)
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("}");
+    }
+  }
+
+  private PrimitiveList() {}
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.excerpt;
+
+import static org.inferred.freebuilder.processor.excerpt.PrimitiveHashIndex.hashIndexType;
+import static org.inferred.freebuilder.processor.util.StaticExcerpt.Type.TYPE;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Excerpts defining insertion-ordered map implementations with int or long keys, stored without
+ * boxing in an open-addressing hash table: an immutable map for value types, and a mutable map
+ * for builders.
+ *
+ * <p>As with {@link PrimitiveList}, the mutable map adopts the arrays of an immutable map added to
+ * it while empty, only copying them when first modified.
+ */
+public class PrimitiveMap {
+
+  /** Returns the name of the immutable map type for {@code keyType}, used by values. */
+  public static String immutableMapType(PrimitiveType keyType) {
+    return "Immutable" + keyType.capitalized() + "Map";
+  }
+
+  /** Returns the name of the mutable map type for {@code keyType}, used by builders. */
+  public static String hashMapType(PrimitiveType keyType) {
+    return keyType.capitalized() + "HashMap";
+  }
+
+  /** Returns the name of the mutable map's method for adding an entry with an unboxed key. */
+  public static String putMethod(PrimitiveType keyType) {
+    return "put" + keyType.capitalized();
+  }
+
+  /** Returns the name of the mutable map's method for removing an unboxed key. */
+  public static String removeMethod(PrimitiveType keyType) {
+    return "remove" + keyType.capitalized();
+  }
+
+  public static List<StaticExcerpt> excerpts(PrimitiveType keyType) {
+    return ImmutableList.<StaticExcerpt>of(
+        PrimitiveHashIndex.excerpt(keyType),
+        new ImmutablePrimitiveMap(keyType),
+        new PrimitiveHashMap(keyType));
+  }
+
+  /** Adds the read-only methods shared by the immutable and mutable map implementations. */
+  private static void addLookupMethods(
+      SourceBuilder code, PrimitiveType keyType, String size) {
+    Class<?> boxed = keyType.boxed();
+    String hashIndex = hashIndexType(keyType);
+    code.addLine("")
+        .addLine("  @Override public int size() {")
+        .addLine("    return %s;", size)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  @Override public boolean containsKey(Object key) {")
+        .addLine("    return key instanceof %s && %s.indexOf(keys, table, (%s) key) >= 0;",
+            boxed, hashIndex, boxed)
+        .addLine("  }")
+        .addLine("")
+        .addLine("  @Override public V get(Object key) {")
+        .addLine("    int index = (key instanceof %s) ? %s.indexOf(keys, table, (%s) key) : -1;",
+            boxed, hashIndex, boxed)
+        .addLine("    return (index < 0) ? null : value(index);")
+        .addLine("  }")
+        .addLine("")
+        .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+        .addLine("  private V value(int index) {")
+        .addLine("    return (V) values[index];")
+        .addLine("  }");
+  }
+
+  private static final class ImmutablePrimitiveMap extends StaticExcerpt {
+
+    private final PrimitiveType keyType;
+
+    ImmutablePrimitiveMap(PrimitiveType keyType) {
+      super(TYPE, immutableMapType(keyType));
+      this.keyType = keyType;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      String primitive = keyType.primitive();
+      Class<?> boxed = keyType.boxed();
+      String hashIndex = hashIndexType(keyType);
+      code.addLine("")
+          .addLine("/** An immutable, insertion-ordered map from %ss, stored without boxing. */",
+              primitive)
+          .addLine("private static final class %s<V> extends %s<%s, V> implements %s {",
+              getName(), AbstractMap.class, boxed, Serializable.class)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  private static final %1$s<Object> EMPTY = new %1$s<Object>(", getName())
+          .addLine("      new %s[0], new Object[0], %s.EMPTY_TABLE);", primitive, hashIndex)
+          .addLine("")
+          .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+          .addLine("  static <V> %s<V> of() {", getName())
+          .addLine("    return (%s<V>) EMPTY;", getName())
+          .addLine("  }")
+          .addLine("")
+          .addLine("  private final %s[] keys;", primitive)
+          .addLine("  private final Object[] values;")
+          .addLine("  private final int[] table;")
+          .addLine("")
+          .addLine("  %s(%s[] keys, Object[] values, int[] table) {", getName(), primitive)
+          .addLine("    this.keys = keys;")
+          .addLine("    this.values = values;")
+          .addLine("    this.table = table;")
+          .addLine("  }");
+      addLookupMethods(code, keyType, "keys.length");
+      code.addLine("")
+          .addLine("  @Override public %s<%s<%s, V>> entrySet() {",
+              Set.class, Map.Entry.class, boxed)
+          .addLine("    return new %s<%s<%s, V>>() {", AbstractSet.class, Map.Entry.class, boxed)
+          .addLine("      @Override public int size() {")
+          .addLine("        return keys.length;")
+          .addLine("      }")
+          .addLine("")
+          .addLine("      @Override public %s<%s<%s, V>> iterator() {",
+              Iterator.class, Map.Entry.class, boxed)
+          .addLine("        return new %s<%s<%s, V>>() {", Iterator.class, Map.Entry.class, boxed)
+          .addLine("          private int index = 0;")
+          .addLine("")
+          .addLine("          @Override public boolean hasNext() {")
+          .addLine("            return index < keys.length;")
+          .addLine("          }")
+          .addLine("")
+          .addLine("          @Override public %s<%s, V> next() {", Map.Entry.class, boxed)
+          .addLine("            if (!hasNext()) {")
+          .addLine("              throw new %s();", NoSuchElementException.class)
+          .addLine("            }")
+          .addLine("            V value = value(index);")
+          .addLine("            return new %s<%s, V>(keys[index++], value);",
+              AbstractMap.SimpleImmutableEntry.class, boxed)
+          .addLine("          }")
+          .addLine("")
+          .addLine("          @Override public void remove() {")
+          .addLine("            throw new %s();", UnsupportedOperationException.class)
+          .addLine("          }")
+          .addLine("        };")
+          .addLine("      }")
+          .addLine("    };")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean equals(Object o) {")
+          .addLine("    if (o instanceof %s) {", getName())
+          .addLine("      %1$s<?> other = (%1$s<?>) o;", getName())
+          .addLine("      if (keys.length != other.keys.length) {")
+          .addLine("        return false;")
+          .addLine("      }")
+          .addLine("      for (int index = 0; index < keys.length; index++) {")
+          .addLine("        int otherIndex = %s.indexOf(other.keys, other.table, keys[index]);",
+              hashIndex)
+          .addLine("        if (otherIndex < 0")
+          .addLine("            || !values[index].equals(other.values[otherIndex])) {")
+          .addLine("          return false;")
+          .addLine("        }")
+          .addLine("      }")
+          .addLine("      return true;")
+          .addLine("    }")
+          .addLine("    return super.equals(o);")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public int hashCode() {")
+          .addLine("    // Matches Map.hashCode without boxing")
+          .addLine("    int hashCode = 0;")
+          .addLine("    for (int index = 0; index < keys.length; index++) {")
+          .addLine("      %s key = keys[index];", primitive)
+          .addLine("      hashCode += %s ^ values[index].hashCode();", keyType.hashCodeOf("key"))
+          .addLine("    }")
+          .addLine("    return hashCode;")
+          .addLine("  }")
+          .addLine("}");
+    }
+  }
+
+  private static final class PrimitiveHashMap extends StaticExcerpt {
+
+    private final PrimitiveType keyType;
+
+    PrimitiveHashMap(PrimitiveType keyType) {
+      super(TYPE, hashMapType(keyType));
+      this.keyType = keyType;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      String primitive = keyType.primitive();
+      Class<?> boxed = keyType.boxed();
+      String hashIndex = hashIndexType(keyType);
+      String immutableMap = immutableMapType(keyType);
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * An insertion-ordered map from %ss, stored without boxing. Adopts the",
+              primitive)
+          .addLine(" * arrays of a {@link %s} added while this map is empty, copying them on",
+              immutableMap)
+          .addLine(" * first write. Null values are not permitted. Removal takes constant time,")
+          .addLine(" * leaving a gap, marked by a null value, that is reclaimed when the map next")
+          .addLine(" * grows or is built.")
+          .addLine(" */")
+          .addLine("private static final class %s<V> extends %s<%s, V> implements %s {",
+              getName(), AbstractMap.class, boxed, Serializable.class)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  private %s[] keys = %s.EMPTY.keys;", primitive, immutableMap)
+          .addLine("  private Object[] values = %s.EMPTY.values;", immutableMap)
+          .addLine("  private int[] table = %s.EMPTY_TABLE;", hashIndex)
+          .addLine("  private int size = 0;")
+          .addLine("  /** The number of slots of {@code keys} in use, including gaps. */")
+          .addLine("  private int used = 0;")
+          .addLine("  /** The immutable map sharing this map's arrays, if any. */")
+          .addLine("  private %s<?> shared = null;", immutableMap);
+      addLookupMethods(code, keyType, "size");
+      code.addLine("")
+          .addLine("  V %s(%s key, V value) {", putMethod(keyType), primitive)
+          .addLine("    if (value == null) {")
+          .addLine("      throw new %s(\"value\");", NullPointerException.class)
+          .addLine("    }")
+          .addLine("    int index = %s.indexOf(keys, table, key);", hashIndex)
+          .addLine("    if (index >= 0) {")
+          .addLine("      ensureCapacity(size);")
+          .addLine("      V previous = value(index);")
+          .addLine("      values[index] = value;")
+          .addLine("      return previous;")
+          .addLine("    }")
+          .addLine("    ensureCapacity(size + 1);")
+          .addLine("    keys[used] = key;")
+          .addLine("    values[used] = value;")
+          .addLine("    %s.insert(keys, table, used);", hashIndex)
+          .addLine("    used++;")
+          .addLine("    size++;")
+          .addLine("    return null;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public V put(%s key, V value) {", boxed)
+          .addLine("    return %s(key, value);", putMethod(keyType))
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public void putAll(%s<? extends %s, ? extends V> map) {",
+              Map.class, boxed)
+          .addLine("    if (map instanceof %s) {", immutableMap)
+          .addLine("      %1$s<?> immutableMap = (%1$s<?>) map;", immutableMap)
+          .addLine("      if (size == 0) {")
+          .addLine("        keys = immutableMap.keys;")
+          .addLine("        values = immutableMap.values;")
+          .addLine("        table = immutableMap.table;")
+          .addLine("        size = keys.length;")
+          .addLine("        used = size;")
+          .addLine("        shared = immutableMap;")
+          .addLine("      } else {")
+          .addLine("        putAll(immutableMap.keys, immutableMap.values, immutableMap.size());")
+          .addLine("      }")
+          .addLine("    } else if (map instanceof %s) {", getName())
+          .addLine("      %1$s<?> hashMap = (%1$s<?>) map;", getName())
+          .addLine("      putAll(hashMap.keys, hashMap.values, hashMap.used);")
+          .addLine("    } else {")
+          .addLine("      super.putAll(map);")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+          .addLine("  private void putAll(%s[] otherKeys, Object[] otherValues, int count) {",
+              primitive)
+          .addLine("    for (int index = 0; index < count; index++) {")
+          .addLine("      if (otherValues[index] != null) {")
+          .addLine("        %s(otherKeys[index], (V) otherValues[index]);", putMethod(keyType))
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  V %s(%s key) {", removeMethod(keyType), primitive)
+          .addLine("    int index = %s.indexOf(keys, table, key);", hashIndex)
+          .addLine("    if (index < 0) {")
+          .addLine("      return null;")
+          .addLine("    }")
+          .addLine("    V previous = value(index);")
+          .addLine("    removeAt(index);")
+          .addLine("    return previous;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public V remove(Object key) {")
+          .addLine("    return (key instanceof %s) ? %s((%s) key) : null;",
+              boxed, removeMethod(keyType), boxed)
+          .addLine("  }")
+          .addLine("")
+          .addLine("  private void removeAt(int index) {")
+          .addLine("    if (shared != null) {")
+          .addLine("      keys = keys.clone();")
+          .addLine("      values = values.clone();")
+          .addLine("      table = table.clone();")
+          .addLine("      shared = null;")
+          .addLine("    }")
+          .addLine("    %s.remove(keys, table, index);", hashIndex)
+          .addLine("    values[index] = null;")
+          .addLine("    size--;")
+          .addLine("    if (size == 0) {")
+          .addLine("      used = 0;")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Empties the map, keeping any capacity it owns. */")
+          .addLine("  @Override public void clear() {")
+          .addLine("    if (shared != null) {")
+          .addLine("      keys = %s.EMPTY.keys;", immutableMap)
+          .addLine("      values = %s.EMPTY.values;", immutableMap)
+          .addLine("      table = %s.EMPTY_TABLE;", hashIndex)
+          .addLine("      shared = null;")
+          .addLine("    } else if (size != 0) {")
+          .addLine("      %s.fill(table, 0);", Arrays.class)
+          .addLine("      %s.fill(values, 0, used, null);", Arrays.class)
+          .addLine("    }")
+          .addLine("    size = 0;")
+          .addLine("    used = 0;")
+          .addLine("  }");
+      addEntrySet(code);
+      addCapacityMethods(code);
+      code.addLine("}");
+    }
+
+    private void addCapacityMethods(SourceBuilder code) {
+      String primitive = keyType.primitive();
+      String hashIndex = hashIndexType(keyType);
+      String immutableMap = immutableMapType(keyType);
+      code.addLine("")
+          .addLine("  /** Ensures this map owns its arrays, and can hold minCapacity entries. */")
+          .addLine("  void ensureCapacity(int minCapacity) {")
+          .addLine("    int gaps = used - size;")
+          .addLine("    if (shared == null && gaps + minCapacity <= keys.length) {")
+          .addLine("      return;")
+          .addLine("    }")
+          .addLine("    int capacity = keys.length;")
+          .addLine("    if (shared != null || gaps <= size / 2 || minCapacity > capacity) {")
+          .addLine("      int grownCapacity = capacity + (capacity >> 1);")
+          .addLine("      capacity = %s.max(minCapacity, %s.max(grownCapacity, 8));",
+              Math.class, Math.class)
+          .addLine("    }")
+          .addLine("    %s[] resizedKeys = new %s[capacity];", primitive, primitive)
+          .addLine("    Object[] resizedValues = new Object[capacity];")
+          .addLine("    copyEntriesTo(resizedKeys, resizedValues);")
+          .addLine("    keys = resizedKeys;")
+          .addLine("    values = resizedValues;")
+          .addLine("    table = %s.newTable(keys, size, capacity);", hashIndex)
+          .addLine("    used = size;")
+          .addLine("    shared = null;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Copies the entries, in order and without gaps, to the target arrays. */")
+          .addLine("  private void copyEntriesTo(%s[] targetKeys, Object[] targetValues) {",
+              primitive)
+          .addLine("    if (used == size) {")
+          .addLine("      System.arraycopy(keys, 0, targetKeys, 0, size);")
+          .addLine("      System.arraycopy(values, 0, targetValues, 0, size);")
+          .addLine("      return;")
+          .addLine("    }")
+          .addLine("    int count = 0;")
+          .addLine("    for (int index = 0; index < used; index++) {")
+          .addLine("      if (values[index] != null) {")
+          .addLine("        targetKeys[count] = keys[index];")
+          .addLine("        targetValues[count++] = values[index];")
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @%s(\"unchecked\")", SuppressWarnings.class)
+          .addLine("  %s<V> toImmutableMap() {", immutableMap)
+          .addLine("    if (shared != null) {")
+          .addLine("      return (%s<V>) shared;", immutableMap)
+          .addLine("    } else if (size == 0) {")
+          .addLine("      return %s.of();", immutableMap)
+          .addLine("    }")
+          .addLine("    %s[] immutableKeys = new %s[size];", primitive, primitive)
+          .addLine("    Object[] immutableValues = new Object[size];")
+          .addLine("    copyEntriesTo(immutableKeys, immutableValues);")
+          .addLine("    return new %s<V>(", immutableMap)
+          .addLine("        immutableKeys,")
+          .addLine("        immutableValues,")
+          .addLine("        %s.newTable(immutableKeys, size, size));", hashIndex)
+          .addLine("  }");
+    }
+
+    private void addEntrySet(SourceBuilder code) {
+      String primitive = keyType.primitive();
+      Class<?> boxed = keyType.boxed();
+      code.addLine("")
+          .addLine("  @Override public %s<%s<%s, V>> entrySet() {",
+              Set.class, Map.Entry.class, boxed)
+          .addLine("    return new %s<%s<%s, V>>() {", AbstractSet.class, Map.Entry.class, boxed)
+          .addLine("      @Override public int size() {")
+          .addLine("        return size;")
+          .addLine("      }")
+          .addLine("")
+          .addLine("      @Override public %s<%s<%s, V>> iterator() {",
+              Iterator.class, Map.Entry.class, boxed)
+          .addLine("        return new %s<%s<%s, V>>() {", Iterator.class, Map.Entry.class, boxed)
+          .addLine("          private int index = 0;")
+          .addLine("          private boolean canRemove = false;")
+          .addLine("")
+          .addLine("          @Override public boolean hasNext() {")
+          .addLine("            while (index < used && values[index] == null) {")
+          .addLine("              index++;")
+          .addLine("            }")
+          .addLine("            return index < used;")
+          .addLine("          }")
+          .addLine("")
+          .addLine("          @Override public %s<%s, V> next() {", Map.Entry.class, boxed)
+          .addLine("            if (!hasNext()) {")
+          .addLine("              throw new %s();", NoSuchElementException.class)
+          .addLine("            }")
+          .addLine("            canRemove = true;")
+          .addLine("            V value = value(index);")
+          .addLine("            return new HashEntry(keys[index++], value);")
+          .addLine("          }")
+          .addLine("")
+          .addLine("          @Override public void remove() {")
+          .addLine("            if (!canRemove) {")
+          .addLine("              throw new %s();", IllegalStateException.class)
+          .addLine("            }")
+          .addLine("            removeAt(index - 1);")
+          .addLine("            canRemove = false;")
+          .addLine("          }")
+          .addLine("        };")
+          .addLine("      }")
+          .addLine("    };")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** An entry that reads and writes its value through to the map. */")
+          .addLine("  private final class HashEntry extends %s<%s, V> {",
+              AbstractMap.SimpleEntry.class, boxed)
+          .addLine("")
+          .addLine("    private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("    HashEntry(%s key, V value) {", primitive)
+          .addLine("      super(key, value);")
+          .addLine("    }")
+          .addLine("")
+          .addLine("    @Override public V getValue() {")
+          .addLine("      int index = %s.indexOf(keys, table, getKey());", hashIndexType(keyType))
+          .addLine("      return (index >= 0) ? value(index) : super.getValue();")
+          .addLine("    }")
+          .addLine("")
+          .addLine("    @Override public V setValue(V value) {")
+          .addLine("      V oldValue = getValue();")
+          .addLine("      %s(getKey(), value);", putMethod(keyType))
+          .addLine("      super.setValue(value);")
+          .addLine("      return oldValue;")
+          .addLine("    }")
+          .addLine("  }");
+    }
+  }
+
+  private PrimitiveMap() {}
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.excerpt;
+
+import static org.inferred.freebuilder.processor.excerpt.PrimitiveHashIndex.hashIndexType;
+import static org.inferred.freebuilder.processor.util.StaticExcerpt.Type.TYPE;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.util.SourceBuilder;
+import org.inferred.freebuilder.processor.util.StaticExcerpt;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Excerpts defining insertion-ordered set implementations that store int or long elements
+ * without boxing them, in an open-addressing hash table: an immutable set for value types, and a
+ * mutable set for builders.
+ *
+ * <p>As with {@link PrimitiveList}, the mutable set adopts the arrays of an immutable set added to
+ * it while empty, only copying them when first modified.
+ */
+public class PrimitiveSet {
+
+  /** Returns the name of the immutable set type for {@code elementType}, used by values. */
+  public static String immutableSetType(PrimitiveType elementType) {
+    return "Immutable" + elementType.capitalized() + "Set";
+  }
+
+  /** Returns the name of the mutable set type for {@code elementType}, used by builders. */
+  public static String hashSetType(PrimitiveType elementType) {
+    return elementType.capitalized() + "HashSet";
+  }
+
+  /** Returns the name of the mutable set's method for adding an unboxed element. */
+  public static String addMethod(PrimitiveType elementType) {
+    return "add" + elementType.capitalized();
+  }
+
+  /** Returns the name of the mutable set's method for removing an unboxed element. */
+  public static String removeMethod(PrimitiveType elementType) {
+    return "remove" + elementType.capitalized();
+  }
+
+  public static List<StaticExcerpt> excerpts(PrimitiveType elementType) {
+    return ImmutableList.<StaticExcerpt>of(
+        PrimitiveHashIndex.excerpt(elementType),
+        new ImmutablePrimitiveSet(elementType),
+        new PrimitiveHashSet(elementType));
+  }
+
+  private static final class ImmutablePrimitiveSet extends StaticExcerpt {
+
+    private final PrimitiveType elementType;
+
+    ImmutablePrimitiveSet(PrimitiveType elementType) {
+      super(TYPE, immutableSetType(elementType));
+      this.elementType = elementType;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      String primitive = elementType.primitive();
+      Class<?> boxed = elementType.boxed();
+      String hashIndex = hashIndexType(elementType);
+      code.addLine("")
+          .addLine("/** An immutable, insertion-ordered set of %ss, stored without boxing. */",
+              primitive)
+          .addLine("private static final class %s extends %s<%s> implements %s {",
+              getName(), AbstractSet.class, boxed, Serializable.class)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  static final %1$s EMPTY = new %1$s(new %2$s[0], %3$s.EMPTY_TABLE);",
+              getName(), primitive, hashIndex)
+          .addLine("")
+          .addLine("  private final %s[] elements;", primitive)
+          .addLine("  private final int[] table;")
+          .addLine("")
+          .addLine("  %s(%s[] elements, int[] table) {", getName(), primitive)
+          .addLine("    this.elements = elements;")
+          .addLine("    this.table = table;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public int size() {")
+          .addLine("    return elements.length;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean contains(Object o) {")
+          .addLine("    return o instanceof %s && %s.indexOf(elements, table, (%s) o) >= 0;",
+              boxed, hashIndex, boxed)
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public %s<%s> iterator() {", Iterator.class, boxed)
+          .addLine("    return new %s<%s>() {", Iterator.class, boxed)
+          .addLine("      private int index = 0;")
+          .addLine("")
+          .addLine("      @Override public boolean hasNext() {")
+          .addLine("        return index < elements.length;")
+          .addLine("      }")
+          .addLine("")
+          .addLine("      @Override public %s next() {", boxed)
+          .addLine("        if (!hasNext()) {")
+          .addLine("          throw new %s();", NoSuchElementException.class)
+          .addLine("        }")
+          .addLine("        return elements[index++];")
+          .addLine("      }")
+          .addLine("")
+          .addLine("      @Override public void remove() {")
+          .addLine("        throw new %s();", UnsupportedOperationException.class)
+          .addLine("      }")
+          .addLine("    };")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean equals(Object o) {")
+          .addLine("    if (o instanceof %s) {", getName())
+          .addLine("      %1$s other = (%1$s) o;", getName())
+          .addLine("      if (elements.length != other.elements.length) {")
+          .addLine("        return false;")
+          .addLine("      }")
+          .addLine("      for (%s element : elements) {", primitive)
+          .addLine("        if (%s.indexOf(other.elements, other.table, element) < 0) {",
+              hashIndex)
+          .addLine("          return false;")
+          .addLine("        }")
+          .addLine("      }")
+          .addLine("      return true;")
+          .addLine("    }")
+          .addLine("    return super.equals(o);")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public int hashCode() {")
+          .addLine("    // Matches Set.hashCode without boxing")
+          .addLine("    int hashCode = 0;")
+          .addLine("    for (%s element : elements) {", primitive)
+          .addLine("      hashCode += %s;", elementType.hashCodeOf("element"))
+          .addLine("    }")
+          .addLine("    return hashCode;")
+          .addLine("  }")
+          .addLine("}");
+    }
+  }
+
+  private static final class PrimitiveHashSet extends StaticExcerpt {
+
+    private final PrimitiveType elementType;
+
+    PrimitiveHashSet(PrimitiveType elementType) {
+      super(TYPE, hashSetType(elementType));
+      this.elementType = elementType;
+    }
+
+    @Override
+    public void addTo(SourceBuilder code) {
+      String primitive = elementType.primitive();
+      Class<?> boxed = elementType.boxed();
+      String hashIndex = hashIndexType(elementType);
+      String immutableSet = immutableSetType(elementType);
+      code.addLine("")
+          .addLine("/**")
+          .addLine(" * An insertion-ordered set of %ss, stored without boxing. Adopts the arrays",
+              primitive)
+          .addLine(" * of a {@link %s} added while this set is empty, copying them on first",
+              immutableSet)
+          .addLine(" * write. Removal takes constant time, leaving a gap in {@code elements} that")
+          .addLine(" * is reclaimed when the set next grows or is built.")
+          .addLine(" */")
+          .addLine("private static final class %s extends %s<%s> implements %s {",
+              getName(), AbstractSet.class, boxed, Serializable.class)
+          .addLine("")
+          .addLine("  private static final long serialVersionUID = 1L;")
+          .addLine("")
+          .addLine("  private %s[] elements = %s.EMPTY.elements;", primitive, immutableSet)
+          .addLine("  private int[] table = %s.EMPTY_TABLE;", hashIndex)
+          .addLine("  private int size = 0;")
+          .addLine("  /** The number of slots of {@code elements} in use, including gaps. */")
+          .addLine("  private int used = 0;")
+          .addLine("  /** Flags the gaps left in {@code elements} by removal, if there are any. */")
+          .addLine("  private boolean[] removed = null;")
+          .addLine("  /** The immutable set sharing {@code elements} and {@code table}, if any. */")
+          .addLine("  private %s shared = null;", immutableSet)
+          .addLine("")
+          .addLine("  @Override public int size() {")
+          .addLine("    return size;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean contains(Object o) {")
+          .addLine("    return o instanceof %s && %s.indexOf(elements, table, (%s) o) >= 0;",
+              boxed, hashIndex, boxed)
+          .addLine("  }")
+          .addLine("")
+          .addLine("  boolean %s(%s element) {", addMethod(elementType), primitive)
+          .addLine("    if (%s.indexOf(elements, table, element) >= 0) {", hashIndex)
+          .addLine("      return false;")
+          .addLine("    }")
+          .addLine("    ensureCapacity(size + 1);")
+          .addLine("    elements[used] = element;")
+          .addLine("    %s.insert(elements, table, used);", hashIndex)
+          .addLine("    used++;")
+          .addLine("    size++;")
+          .addLine("    return true;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean add(%s element) {", boxed)
+          .addLine("    return %s(element);", addMethod(elementType))
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean addAll(%s<? extends %s> values) {",
+              Collection.class, boxed)
+          .addLine("    if (values instanceof %s) {", immutableSet)
+          .addLine("      %1$s immutableValues = (%1$s) values;", immutableSet)
+          .addLine("      if (size == 0) {")
+          .addLine("        elements = immutableValues.elements;")
+          .addLine("        table = immutableValues.table;")
+          .addLine("        size = elements.length;")
+          .addLine("        used = size;")
+          .addLine("        removed = null;")
+          .addLine("        shared = immutableValues;")
+          .addLine("        return size != 0;")
+          .addLine("      }")
+          .addLine("      return addAll(immutableValues.elements, null, immutableValues.size());")
+          .addLine("    } else if (values instanceof %s) {", getName())
+          .addLine("      %1$s setValues = (%1$s) values;", getName())
+          .addLine("      return addAll(setValues.elements, setValues.removed, setValues.used);")
+          .addLine("    }")
+          .addLine("    boolean changed = false;")
+          .addLine("    for (%s value : values) {", primitive)
+          .addLine("      changed |= %s(value);", addMethod(elementType))
+          .addLine("    }")
+          .addLine("    return changed;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  private boolean addAll(%s[] values, boolean[] skip, int count) {", primitive)
+          .addLine("    boolean changed = false;")
+          .addLine("    for (int index = 0; index < count; index++) {")
+          .addLine("      if (skip == null || !skip[index]) {")
+          .addLine("        changed |= %s(values[index]);", addMethod(elementType))
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("    return changed;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  boolean %s(%s element) {", removeMethod(elementType), primitive)
+          .addLine("    int index = %s.indexOf(elements, table, element);", hashIndex)
+          .addLine("    if (index < 0) {")
+          .addLine("      return false;")
+          .addLine("    }")
+          .addLine("    removeAt(index);")
+          .addLine("    return true;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  @Override public boolean remove(Object o) {")
+          .addLine("    return o instanceof %s && %s((%s) o);",
+              boxed, removeMethod(elementType), boxed)
+          .addLine("  }")
+          .addLine("")
+          .addLine("  private void removeAt(int index) {")
+          .addLine("    if (shared != null) {")
+          .addLine("      elements = elements.clone();")
+          .addLine("      table = table.clone();")
+          .addLine("      shared = null;")
+          .addLine("    }")
+          .addLine("    %s.remove(elements, table, index);", hashIndex)
+          .addLine("    size--;")
+          .addLine("    if (size == 0) {")
+          .addLine("      used = 0;")
+          .addLine("      removed = null;")
+          .addLine("      return;")
+          .addLine("    } else if (removed == null) {")
+          .addLine("      removed = new boolean[elements.length];")
+          .addLine("    }")
+          .addLine("    removed[index] = true;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Empties the set, keeping any capacity it owns. */")
+          .addLine("  @Override public void clear() {")
+          .addLine("    if (shared != null) {")
+          .addLine("      elements = %s.EMPTY.elements;", immutableSet)
+          .addLine("      table = %s.EMPTY_TABLE;", hashIndex)
+          .addLine("      shared = null;")
+          .addLine("    } else if (size != 0) {")
+          .addLine("      %s.fill(table, 0);", Arrays.class)
+          .addLine("    }")
+          .addLine("    size = 0;")
+          .addLine("    used = 0;")
+          .addLine("    removed = null;")
+          .addLine("  }");
+      addIterator(code, boxed);
+      addCapacityMethods(code);
+      code.addLine("}");
+    }
+
+    private void addCapacityMethods(SourceBuilder code) {
+      String primitive = elementType.primitive();
+      String hashIndex = hashIndexType(elementType);
+      String immutableSet = immutableSetType(elementType);
+      code.addLine("")
+          .addLine("  /** Ensures this set owns its arrays, and can hold minCapacity elements. */")
+          .addLine("  void ensureCapacity(int minCapacity) {")
+          .addLine("    int gaps = used - size;")
+          .addLine("    if (shared == null && gaps + minCapacity <= elements.length) {")
+          .addLine("      return;")
+          .addLine("    }")
+          .addLine("    int capacity = elements.length;")
+          .addLine("    if (shared != null || gaps <= size / 2 || minCapacity > capacity) {")
+          .addLine("      int grownCapacity = capacity + (capacity >> 1);")
+          .addLine("      capacity = %s.max(minCapacity, %s.max(grownCapacity, 8));",
+              Math.class, Math.class)
+          .addLine("    }")
+          .addLine("    %s[] resized = new %s[capacity];", primitive, primitive)
+          .addLine("    copyElementsTo(resized);")
+          .addLine("    elements = resized;")
+          .addLine("    table = %s.newTable(elements, size, capacity);", hashIndex)
+          .addLine("    used = size;")
+          .addLine("    removed = null;")
+          .addLine("    shared = null;")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  /** Copies the elements, in order and without gaps, to {@code target}. */")
+          .addLine("  private void copyElementsTo(%s[] target) {", primitive)
+          .addLine("    if (removed == null) {")
+          .addLine("      System.arraycopy(elements, 0, target, 0, size);")
+          .addLine("      return;")
+          .addLine("    }")
+          .addLine("    int count = 0;")
+          .addLine("    for (int index = 0; index < used; index++) {")
+          .addLine("      if (!removed[index]) {")
+          .addLine("        target[count++] = elements[index];")
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("")
+          .addLine("  %s toImmutableSet() {", immutableSet)
+          .addLine("    if (shared != null) {")
+          .addLine("      return shared;")
+          .addLine("    } else if (size == 0) {")
+          .addLine("      return %s.EMPTY;", immutableSet)
+          .addLine("    }")
+          .addLine("    %s[] immutableElements = new %s[size];", primitive, primitive)
+          .addLine("    copyElementsTo(immutableElements);")
+          .addLine("    return new %s(", immutableSet)
+          .addLine("        immutableElements, %s.newTable(immutableElements, size, size));",
+              hashIndex)
+          .addLine("  }");
+    }
+
+    private static void addIterator(SourceBuilder code, Class<?> boxed) {
+      code.addLine("")
+          .addLine("  @Override public %s<%s> iterator() {", Iterator.class, boxed)
+          .addLine("    return new %s<%s>() {", Iterator.class, boxed)
+          .addLine("      private int index = 0;")
+          .addLine("      private boolean canRemove = false;")
+          .addLine("")
+          .addLine("      @Override public boolean hasNext() {")
+          .addLine("        while (index < used && removed != null && removed[index]) {")
+          .addLine("          index++;")
+          .addLine("        }")
+          .addLine("        return index < used;")
+          .addLine("      }")
+          .addLine("")
+          .addLine("      @Override public %s next() {", boxed)
+          .addLine("        if (!hasNext()) {")
+          .addLine("          throw new %s();", NoSuchElementException.class)
+          .addLine("        }")
+          .addLine("        canRemove = true;")
+          .addLine("        return elements[index++];")
+          .addLine("      }")
+          .addLine("")
+          .addLine("      @Override public void remove() {")
+          .addLine("        if (!canRemove) {")
+          .addLine("          throw new %s();", IllegalStateException.class)
+          .addLine("        }")
+          .addLine("        removeAt(index - 1);")
+          .addLine("        canRemove = false;")
+          .addLine("      }")
+          .addLine("    };")
+          .addLine("  }");
+    }
+  }
+
+  private PrimitiveSet() {}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.excerpt;
+
+import com.google.common.base.Optional;
+
+import javax.lang.model.type.TypeKind;
+
+/** Primitive types with unboxed collection implementations. */
+public enum PrimitiveType {
+  INT("int", Integer.class, "Int"),
+  LONG("long", Long.class, "Long"),
+  DOUBLE("double", Double.class, "Double");
+
+  private final String primitive;
+  private final Class<?> boxed;
+  private final String capitalized;
+
+  PrimitiveType(String primitive, Class<?> boxed, String capitalized) {
+    this.primitive = primitive;
+    this.boxed = boxed;
+    this.capitalized = capitalized;
+  }
+
+  /** Returns the primitive type of {@code kind}, if it has unboxed collection implementations. */
+  public static Optional<PrimitiveType> of(TypeKind kind) {
+    for (PrimitiveType primitiveType : values()) {
+      if (primitiveType.name().equals(kind.name())) {
+        return Optional.of(primitiveType);
+      }
+    }
+    return Optional.absent();
+  }
+
+  /** Returns the primitive keyword, e.g. int. */
+  public String primitive() {
+    return primitive;
+  }
+
+  /** Returns the boxed type, e.g. Integer. */
+  public Class<?> boxed() {
+    return boxed;
+  }
+
+  /** Returns the capitalized primitive keyword used in type and method names, e.g. Int. */
+  public String capitalized() {
+    return capitalized;
+  }
+
+  /** Returns the simple name of the stream type for this primitive, e.g. IntStream. */
+  public String streamName() {
+    return capitalized + "Stream";
+  }
+
+  /**
+   * Returns an expression evaluating to the hash code of the boxed value of {@code variable},
+   * without boxing it.
+   */
+  public String hashCodeOf(String variable) {
+    switch (this) {
+      case INT:
+        return variable;
+      case LONG:
+        return String.format("(int) (%1$s ^ (%1$s >>> 32))", variable);
+      case DOUBLE:
+        return String.format(
+            "(int) (Double.doubleToLongBits(%1$s) ^ (Double.doubleToLongBits(%1$s) >>> 32))",
+            variable);
+      default:
+        throw new AssertionError(this);
+    }
+  }
+}
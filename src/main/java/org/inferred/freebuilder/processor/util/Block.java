@@ -38,6 +38,11 @@ public class Block extends Excerpt implements SourceBuilder {
     return Excerpts.add("%s", name);
   }
 
+  /** Returns whether {@code name} has been declared in this block's preamble. */
+  public boolean isDeclared(String name) {
+    return declarations.containsKey(name);
+  }
+
   @Override
   public Block add(String fmt, Object... args) {
     body.add(fmt, args);
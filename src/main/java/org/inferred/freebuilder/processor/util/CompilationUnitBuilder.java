@@ -16,6 +16,7 @@
 package org.inferred.freebuilder.processor.util;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
 import com.google.googlejavaformat.java.Formatter;
 
 import org.inferred.freebuilder.processor.util.feature.Feature;
@@ -35,6 +36,8 @@ public class CompilationUnitBuilder implements SourceBuilder {
   private final ImportManager importManager;
   private final SourceBuilder source;
   private final QualifiedName classToWrite;
+  private final boolean googleJavaFormat;
+  private final ImmutableSet<QualifiedName> implicitImports;
 
   /**
    * Returns a {@link CompilationUnitBuilder} for {@code classToWrite} using {@code features}. The
@@ -46,22 +49,48 @@ public class CompilationUnitBuilder implements SourceBuilder {
       QualifiedName classToWrite,
       Collection<QualifiedName> nestedClasses,
       FeatureSet features) {
+    this(env, classToWrite, nestedClasses, features, false);
+  }
+
+  /**
+   * Returns a {@link CompilationUnitBuilder} for {@code classToWrite} using {@code features}, as
+   * above. If {@code googleJavaFormat} is true, the source will be laid out by google-java-format
+   * rather than the much cheaper {@link IndentingFormatter}.
+   */
+  public CompilationUnitBuilder(
+      ProcessingEnvironment env,
+      QualifiedName classToWrite,
+      Collection<QualifiedName> nestedClasses,
+      FeatureSet features,
+      boolean googleJavaFormat) {
     this.classToWrite = classToWrite;
+    this.googleJavaFormat = googleJavaFormat;
     // Write the source code into an intermediate SourceStringBuilder, as the imports need to be
     // written first, but aren't known yet.
-    ImportManager.Builder importManagerBuilder = new ImportManager.Builder();
-    importManagerBuilder.addImplicitImport(classToWrite);
+    ImmutableSet.Builder<QualifiedName> implicitImportsBuilder = ImmutableSet.builder();
+    implicitImportsBuilder.add(classToWrite);
     PackageElement pkg = env.getElementUtils().getPackageElement(classToWrite.getPackage());
     for (TypeElement sibling : ElementFilter.typesIn(pkg.getEnclosedElements())) {
-      importManagerBuilder.addImplicitImport(QualifiedName.of(sibling));
+      implicitImportsBuilder.add(QualifiedName.of(sibling));
     }
-    for (QualifiedName nestedClass : nestedClasses) {
-      importManagerBuilder.addImplicitImport(nestedClass);
+    implicitImportsBuilder.addAll(nestedClasses);
+    implicitImports = implicitImportsBuilder.build();
+    ImportManager.Builder importManagerBuilder = new ImportManager.Builder();
+    for (QualifiedName implicitImport : implicitImports) {
+      importManagerBuilder.addImplicitImport(implicitImport);
     }
     importManager = importManagerBuilder.build();
     source = new SourceStringBuilder(importManager, features);
   }
 
+  /**
+   * Returns the types visible in the compilation unit without an import, which determine how
+   * other types will be named in the source.
+   */
+  public ImmutableSet<QualifiedName> getImplicitImports() {
+    return implicitImports;
+  }
+
   @Override
   public CompilationUnitBuilder add(String fmt, Object... args) {
     source.add(fmt, args);
@@ -102,7 +131,11 @@ public class CompilationUnitBuilder implements SourceBuilder {
       }
       unit.append("\n");
     }
-    unit.append(formatSource(source.toString()));
+    if (googleJavaFormat) {
+      unit.append(formatSource(source.toString()));
+    } else {
+      unit.append(IndentingFormatter.format(source.toString()));
+    }
     return unit.toString();
   }
 
@@ -33,6 +33,10 @@ public class FilerUtils {
    * <p>This is complicated mainly by an EJC bug that returns the wrong object from
    * {@link Writer#append(CharSequence)}, plus how to handle any exception thrown from
    * {@link Writer#close()}.
+   *
+   * <p>{@code originatingElement} must be the only element the source is derived from, as
+   * isolating incremental builds (e.g. Gradle's) reject files with several originating elements.
+   * Supertypes of the element are tracked by the build tool itself.
    */
   public static void writeCompilationUnit(
       Filer filer,
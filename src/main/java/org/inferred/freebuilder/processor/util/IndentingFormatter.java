@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Lays out generated source code in a single pass over its lines, without parsing it.
+ *
+ * <p>Code generators already break their output into lines, but indent each excerpt relative to
+ * wherever it happens to start. This re-indents every line from the braces enclosing it, two
+ * spaces per block, with continuation lines kept at their offset from the start of the statement
+ * (at least four spaces). Runs of spaces in code and of blank lines are collapsed. Lines are not
+ * joined or wrapped.
+ */
+public class IndentingFormatter {
+
+  private static final int BLOCK_INDENT = 2;
+  private static final int CONTINUATION_INDENT = 4;
+
+  /** Returns {@code source}, re-indented. */
+  public static String format(String source) {
+    IndentingFormatter layout = new IndentingFormatter(source.length());
+    int start = 0;
+    while (start < source.length()) {
+      int end = source.indexOf('\n', start);
+      if (end == -1) {
+        end = source.length();
+      }
+      layout.addLine(source.substring(start, end));
+      start = end + 1;
+    }
+    return layout.toString();
+  }
+
+  /** The kinds of brace-delimited block that are laid out differently. */
+  private enum BlockKind {
+    /** Statements or members; lines ending with a comma continue onto the next line. */
+    CODE,
+    /** Enum constants or array elements; lines ending with a comma are complete. */
+    LIST,
+    /** A switch body; statements are indented below their case label. */
+    SWITCH
+  }
+
+  /** An open block, and the statement it interrupted. */
+  private static class Block {
+    final BlockKind kind;
+    final int closingIndent;
+    final int bodyIndent;
+    final int statementIndent;
+    final int statementEmittedIndent;
+    boolean afterCaseLabel;
+
+    Block(
+        BlockKind kind,
+        int closingIndent,
+        int bodyIndent,
+        int statementIndent,
+        int statementEmittedIndent) {
+      this.kind = kind;
+      this.closingIndent = closingIndent;
+      this.bodyIndent = bodyIndent;
+      this.statementIndent = statementIndent;
+      this.statementEmittedIndent = statementEmittedIndent;
+    }
+
+    int statementIndent() {
+      return (kind == BlockKind.SWITCH && afterCaseLabel) ? bodyIndent + BLOCK_INDENT : bodyIndent;
+    }
+  }
+
+  private final StringBuilder output;
+  private final Deque<Block> blocks = new ArrayDeque<Block>();
+  private boolean pendingBlankLine = false;
+  private boolean inComment = false;
+  private int commentIndent;
+  private int commentEmittedIndent;
+  private boolean statementOpen = false;
+  private int statementIndent;
+  private int statementEmittedIndent;
+
+  private IndentingFormatter(int capacity) {
+    output = new StringBuilder(capacity + capacity / 4);
+  }
+
+  private void addLine(String line) {
+    int emittedIndent = 0;
+    while (emittedIndent < line.length() && isSpace(line.charAt(emittedIndent))) {
+      emittedIndent++;
+    }
+    int end = line.length();
+    while (end > emittedIndent && isSpace(line.charAt(end - 1))) {
+      end--;
+    }
+    String text = line.substring(emittedIndent, end);
+    if (text.isEmpty()) {
+      pendingBlankLine = (output.length() > 0);
+      return;
+    }
+    if (inComment) {
+      int indent = commentIndent + (text.startsWith("*")
+          ? 1 : Math.max(0, emittedIndent - commentEmittedIndent));
+      writeLine(indent, text);
+      inComment = !text.contains("*/");
+      return;
+    }
+    addCodeLine(emittedIndent, text);
+  }
+
+  private void addCodeLine(int emittedIndent, String text) {
+    int leadingCloses = 0;
+    while (leadingCloses < text.length() && text.charAt(leadingCloses) == '}') {
+      leadingCloses++;
+    }
+    int indent;
+    boolean continuation = false;
+    if (leadingCloses > 0 && !blocks.isEmpty()) {
+      indent = closingIndent(leadingCloses);
+    } else if (statementOpen) {
+      indent = statementIndent
+          + Math.max(CONTINUATION_INDENT, emittedIndent - statementEmittedIndent);
+      continuation = true;
+    } else if (isCaseLabel(text) && !blocks.isEmpty() && blocks.peek().kind == BlockKind.SWITCH) {
+      indent = blocks.peek().bodyIndent;
+      blocks.peek().afterCaseLabel = true;
+    } else {
+      indent = blocks.isEmpty() ? 0 : blocks.peek().statementIndent();
+    }
+    if (!continuation && leadingCloses == 0) {
+      statementIndent = indent;
+      statementEmittedIndent = emittedIndent;
+    }
+    writeLine(indent, "");
+    scan(text, indent, emittedIndent, continuation);
+    output.append('\n');
+  }
+
+  /** Returns the indent of a line closing {@code closes} blocks, without closing them. */
+  private int closingIndent(int closes) {
+    int indent = 0;
+    int i = 0;
+    for (Block block : blocks) {
+      indent = block.closingIndent;
+      if (++i == closes) {
+        break;
+      }
+    }
+    return indent;
+  }
+
+  /**
+   * Appends {@code text} to the output, collapsing runs of spaces outside literals and comments,
+   * and updates the block and statement state from its braces and final character.
+   */
+  private void scan(String text, int indent, int emittedIndent, boolean continuation) {
+    char lastCode = 0;
+    boolean annotationOnly = text.startsWith("@");
+    int parens = 0;
+    int i = 0;
+    while (i < text.length()) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\'') {
+        int close = endOfLiteral(text, i);
+        output.append(text, i, close);
+        i = close;
+        lastCode = c;
+        continue;
+      }
+      if (c == '/' && i + 1 < text.length() && text.charAt(i + 1) == '/') {
+        output.append(text, i, text.length());
+        break;
+      }
+      if (c == '/' && i + 1 < text.length() && text.charAt(i + 1) == '*') {
+        int close = text.indexOf("*/", i + 2);
+        if (close == -1) {
+          output.append(text, i, text.length());
+          inComment = true;
+          commentIndent = indent;
+          commentEmittedIndent = emittedIndent;
+          break;
+        }
+        output.append(text, i, close + 2);
+        i = close + 2;
+        continue;
+      }
+      if (c == ' ') {
+        if (output.charAt(output.length() - 1) != ' ') {
+          output.append(' ');
+        }
+        if (parens == 0) {
+          annotationOnly = false;
+        }
+        i++;
+        continue;
+      }
+      if (c == '(') {
+        parens++;
+      } else if (c == ')') {
+        parens--;
+        if (annotationOnly && parens == 0 && i + 1 < text.length()) {
+          annotationOnly = false;
+        }
+      } else if (c == '{') {
+        openBlock(text, i, indent, continuation);
+        annotationOnly = false;
+      } else if (c == '}') {
+        closeBlock();
+        annotationOnly = false;
+      } else if (parens == 0 && (c == ';' || c == '=' || c == ',')) {
+        annotationOnly = false;
+      }
+      output.append(c);
+      lastCode = c;
+      i++;
+    }
+    int trailing = output.length();
+    while (output.charAt(trailing - 1) == ' ') {
+      trailing--;
+    }
+    output.setLength(trailing);
+    statementOpen = !isComplete(text, lastCode, annotationOnly && parens == 0);
+  }
+
+  private boolean isComplete(String text, char lastCode, boolean annotationOnly) {
+    if (inComment || lastCode == 0 || annotationOnly) {
+      return true;
+    }
+    switch (lastCode) {
+      case ';':
+      case '{':
+      case '}':
+        return true;
+      case ':':
+        return isCaseLabel(text);
+      case ',':
+        return !blocks.isEmpty() && blocks.peek().kind == BlockKind.LIST;
+      default:
+        return false;
+    }
+  }
+
+  private void openBlock(String text, int braceIndex, int indent, boolean continuation) {
+    String before = text.substring(0, braceIndex).trim();
+    BlockKind kind;
+    if (before.startsWith("switch ") || before.startsWith("switch(")) {
+      kind = BlockKind.SWITCH;
+    } else if (before.endsWith("]") || before.endsWith("=") || before.endsWith("{")
+        || before.contains("enum ")) {
+      kind = BlockKind.LIST;
+    } else {
+      kind = BlockKind.CODE;
+    }
+    // The body of a multi-line method declaration or condition lines up with its first line;
+    // the body of an anonymous class lines up with the line it starts on.
+    int blockIndent = (continuation && !before.contains("new ")) ? statementIndent : indent;
+    blocks.push(new Block(
+        kind,
+        blockIndent,
+        blockIndent + BLOCK_INDENT,
+        statementIndent,
+        statementEmittedIndent));
+  }
+
+  private void closeBlock() {
+    if (blocks.isEmpty()) {
+      return;
+    }
+    Block block = blocks.pop();
+    statementIndent = block.statementIndent;
+    statementEmittedIndent = block.statementEmittedIndent;
+  }
+
+  private void writeLine(int indent, String text) {
+    if (pendingBlankLine) {
+      output.append('\n');
+      pendingBlankLine = false;
+    }
+    for (int i = 0; i < indent; i++) {
+      output.append(' ');
+    }
+    if (!text.isEmpty()) {
+      output.append(text).append('\n');
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (output.length() == 0) {
+      return "\n";
+    }
+    return output.toString();
+  }
+
+  private static boolean isCaseLabel(String text) {
+    return (text.startsWith("case ") || text.startsWith("default:")) && text.endsWith(":");
+  }
+
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\r';
+  }
+
+  /** Returns the index just past the string or character literal starting at {@code start}. */
+  private static int endOfLiteral(String text, int start) {
+    char quote = text.charAt(start);
+    int i = start + 1;
+    while (i < text.length()) {
+      char c = text.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == quote) {
+        return i + 1;
+      } else {
+        i++;
+      }
+    }
+    return text.length();
+  }
+}
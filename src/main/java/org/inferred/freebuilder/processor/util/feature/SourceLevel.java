@@ -36,7 +36,7 @@ import javax.lang.model.util.Elements;
  */
 public enum SourceLevel implements Feature<SourceLevel> {
 
-  JAVA_6("Java 6"), JAVA_7("Java 7"), JAVA_8("Java 8+");
+  JAVA_6("Java 6"), JAVA_7("Java 7"), JAVA_8("Java 8"), JAVA_9("Java 9+");
 
   /**
    * Constant to pass to {@link SourceBuilder#feature(FeatureType)} to get the current
@@ -56,8 +56,10 @@ public enum SourceLevel implements Feature<SourceLevel> {
       if (sourceVersion <= 6) {
         // RELEASE_6 is always available, as previous releases did not support annotation processing
         return JAVA_6;
-      } else if (sourceVersion >= 8) {
-        // Return JAVA_8 for versions 9+ also.
+      } else if (sourceVersion >= 9) {
+        // Return JAVA_9 for versions 10+ also.
+        return JAVA_9;
+      } else if (sourceVersion == 8) {
         return JAVA_8;
       } else if (runningInEclipse()) {
         // Some versions of Eclipse erroneously return RELEASE_7 instead of RELEASE_8.
@@ -124,6 +126,16 @@ public enum SourceLevel implements Feature<SourceLevel> {
     return compareTo(JAVA_8) >= 0;
   }
 
+  /** Returns whether {@code Collections.unmodifiableNavigableSet} and {@code Map} exist. */
+  public boolean hasUnmodifiableNavigableCollections() {
+    return compareTo(JAVA_8) >= 0;
+  }
+
+  /** Returns whether {@code List.of} and the other immutable collection factories exist. */
+  public boolean hasImmutableCollectionFactories() {
+    return compareTo(JAVA_9) >= 0;
+  }
+
   public Optional<QualifiedName> baseStream() {
     switch (this) {
       case JAVA_6:
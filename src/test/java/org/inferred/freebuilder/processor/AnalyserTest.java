@@ -26,6 +26,7 @@ import static org.inferred.freebuilder.processor.Metadata.Visibility.PRIVATE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -35,6 +36,9 @@ import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import org.inferred.freebuilder.CachedHashCode;
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.InternValues;
 import org.inferred.freebuilder.processor.Analyser.CannotGenerateCodeException;
 import org.inferred.freebuilder.processor.Metadata.Property;
 import org.inferred.freebuilder.processor.Metadata.StandardMethod;
@@ -710,6 +714,283 @@ public class AnalyserTest {
     assertThat(messager.getMessagesByElement().asMap()).isEmpty();
   }
 
+  @Test
+  public void cachedHashCode() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "@" + CachedHashCode.class.getName(),
+        "public class DataType {",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertTrue(metadata.isHashCodeCached());
+    assertThat(messager.getMessagesByElement().asMap()).isEmpty();
+  }
+
+  @Test
+  public void internValues() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "@" + InternValues.class.getName(),
+        "public class DataType {",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertTrue(metadata.isInterningValues());
+    assertThat(messager.getMessagesByElement().asMap()).isEmpty();
+  }
+
+  @Test
+  public void cachedHashCode_underriddenHashCodeAndEquals() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "@" + CachedHashCode.class.getName(),
+        "public class DataType {",
+        "  @Override public int hashCode() {",
+        "    return DataType.class.hashCode();",
+        "  }",
+        "  @Override public boolean equals(Object obj) {",
+        "    return (obj instanceof DataType);",
+        "  }",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isHashCodeCached());
+    assertThat(messager.getMessagesByElement().asMap())
+        .containsEntry("DataType", ImmutableList.of(
+            "[WARNING] @CachedHashCode has no effect on types that implement hashCode"));
+  }
+
+  @Test
+  public void staticFactory() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public abstract int getAge();",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertTrue(metadata.isStaticFactoryGenerated());
+  }
+
+  @Test
+  public void builtValueCached() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public abstract java.util.List<String> getAliases();",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertTrue(metadata.isBuiltValueCached());
+  }
+
+  @Test
+  public void builtValueCached_buildableProperty() throws CannotGenerateCodeException {
+    model.newType(
+        "package com.example;",
+        "@" + FreeBuilder.class.getName(),
+        "public abstract class Item {",
+        "  public abstract String getName();",
+        "  public static class Builder extends Item_Builder {}",
+        "}");
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public abstract Item getItem();",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isBuiltValueCached());
+    for (Property property : metadata.getProperties()) {
+      assertSame(metadata, property.getCodeGenerator().metadata);
+    }
+  }
+
+  @Test
+  public void staticFactory_collectionProperty() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public abstract java.util.List<String> getAliases();",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isStaticFactoryGenerated());
+  }
+
+  @Test
+  public void staticFactory_propertyWithDefault() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public abstract int getAge();",
+        "  public static class Builder extends DataType_Builder {",
+        "    public Builder() {",
+        "      setAge(18);",
+        "    }",
+        "  }",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isStaticFactoryGenerated());
+  }
+
+  @Test
+  public void staticFactory_arrayProperty() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract byte[] getData();",
+        "  public abstract java.nio.ByteBuffer getPayload();",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isStaticFactoryGenerated());
+  }
+
+  @Test
+  public void staticFactory_setterOverridden() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public abstract int getAge();",
+        "  public static class Builder extends DataType_Builder {",
+        "    public Builder setName(String name) {",
+        "      return super.setName(name.trim());",
+        "    }",
+        "  }",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isStaticFactoryGenerated());
+  }
+
+  @Test
+  public void staticFactory_buildOverridden() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public abstract int getAge();",
+        "  public static class Builder extends DataType_Builder {",
+        "    public DataType build() {",
+        "      DataType value = super.build();",
+        "      if (value.getAge() < 0) {",
+        "        throw new IllegalStateException();",
+        "      }",
+        "      return value;",
+        "    }",
+        "  }",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isStaticFactoryGenerated());
+  }
+
+  @Test
+  public void staticFactory_existingOfMethod() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public abstract int getAge();",
+        "  public static DataType of(String name) {",
+        "    return new Builder().setName(name).setAge(0).build();",
+        "  }",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isStaticFactoryGenerated());
+  }
+
+  @Test
+  public void resetMethod() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertTrue(metadata.isResetMethodGenerated());
+  }
+
+  @Test
+  public void resetMethod_existingResetMethod() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public static class Builder extends DataType_Builder {",
+        "    public void reset() {}",
+        "  }",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isResetMethodGenerated());
+  }
+
+  @Test
+  public void resetMethod_prefixlessResetProperty() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract boolean reset();",
+        "  public static class Builder extends DataType_Builder {}",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isResetMethodGenerated());
+  }
+
+  @Test
+  public void resetMethod_noBuilderFactory() throws CannotGenerateCodeException {
+    TypeElement dataType = model.newType(
+        "package com.example;",
+        "public abstract class DataType {",
+        "  public abstract String getName();",
+        "  public static class Builder extends DataType_Builder {",
+        "    private Builder() {}",
+        "  }",
+        "}");
+
+    Metadata metadata = analyser.analyse(dataType);
+
+    assertFalse(metadata.isResetMethodGenerated());
+  }
+
   @Test
   public void underriddenToString() throws CannotGenerateCodeException {
     TypeElement dataType = model.newType(
@@ -1114,6 +1395,7 @@ public class AnalyserTest {
         .setInterfaceType(false)
         .setPartialType(partialType.withParameters())
         .setPropertyEnum(propertyType.withParameters())
+        .setResetMethodGenerated(true)
         .setType(QualifiedName.of("com.example", "DataType").withParameters())
         .setValueType(valueType.withParameters())
         .addVisibleNestedTypes(QualifiedName.of(concreteBuilder))
@@ -1152,6 +1434,7 @@ public class AnalyserTest {
         .setInterfaceType(false)
         .setPartialType(partialType.withParameters())
         .setPropertyEnum(propertyType.withParameters())
+        .setResetMethodGenerated(true)
         .setType(QualifiedName.of("com.example", "DataType").withParameters())
         .setValueType(valueType.withParameters())
         .addVisibleNestedTypes(QualifiedName.of(concreteBuilder))
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.junit.Assume.assumeTrue;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for primitive array and {@link ByteBuffer} properties. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class ArrayPropertyTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  private static final JavaFileObject ARRAY_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract byte[] getData();")
+      .addLine("  public abstract int[] getIds();")
+      .addLine("  public abstract %s getPayload();", ByteBuffer.class)
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {")
+      .addLine("    public Builder() {")
+      .addLine("      setIds(new int[0]);")
+      .addLine("    }")
+      .addLine("  }")
+      .addLine("}")
+      .build();
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testSetterCopiesArray() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("byte[] data = { 1, 2, 3 };")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(data)")
+            .addLine("    .setPayload(new byte[0])")
+            .addLine("    .build();")
+            .addLine("data[0] = 9;")
+            .addLine("assertEquals(1, value.getData()[0]);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testWrapDoesNotCopyArray() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("byte[] data = { 1, 2, 3 };")
+            .addLine("byte[] payload = { 4, 5 };")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .wrapData(data)")
+            .addLine("    .wrapPayload(payload)")
+            .addLine("    .build();")
+            .addLine("data[0] = 9;")
+            .addLine("payload[0] = 8;")
+            .addLine("assertEquals(9, value.getData()[0]);")
+            .addLine("assertEquals(8, value.getPayload().get(0));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGetterReturnsCopyOfArray() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2, 3 })")
+            .addLine("    .setPayload(new byte[0])")
+            .addLine("    .build();")
+            .addLine("value.getData()[0] = 9;")
+            .addLine("assertEquals(1, value.getData()[0]);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testByteBufferSetterCopiesRemainingBytes() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("%s buffer = %s.wrap(new byte[] { 1, 2, 3 });",
+                ByteBuffer.class, ByteBuffer.class)
+            .addLine("buffer.get();")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(new byte[0])")
+            .addLine("    .setPayload(buffer)")
+            .addLine("    .build();")
+            .addLine("buffer.put(1, (byte) 9);")
+            .addLine("assertEquals(1, buffer.position());")
+            .addLine("assertEquals(2, value.getPayload().remaining());")
+            .addLine("assertEquals(2, value.getPayload().get());")
+            .addLine("assertEquals(3, value.getPayload().get(1));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testByteBufferGetterIsReadOnlyView() {
+    thrown.expect(ReadOnlyBufferException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(new byte[0])")
+            .addLine("    .setPayload(new byte[] { 1, 2 })")
+            .addLine("    .build();")
+            .addLine("value.getPayload().get();")
+            .addLine("assertEquals(2, value.getPayload().remaining());")
+            .addLine("value.getPayload().put(0, (byte) 9);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualsAndHashCodeCompareContents() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2 })")
+            .addLine("    .setIds(new int[] { 3 })")
+            .addLine("    .setPayload(new byte[] { 4 })")
+            .addLine("    .build();")
+            .addLine("DataType copy = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2 })")
+            .addLine("    .setIds(new int[] { 3 })")
+            .addLine("    .setPayload(new byte[] { 4 })")
+            .addLine("    .build();")
+            .addLine("DataType other = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2 })")
+            .addLine("    .setIds(new int[] { 4 })")
+            .addLine("    .setPayload(new byte[] { 4 })")
+            .addLine("    .build();")
+            .addLine("assertEquals(value, copy);")
+            .addLine("assertEquals(value.hashCode(), copy.hashCode());")
+            .addLine("assertFalse(value.equals(other));")
+            .addLine("DataType partial = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2 })")
+            .addLine("    .buildPartial();")
+            .addLine("assertEquals(partial, new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2 })")
+            .addLine("    .buildPartial());")
+            .addLine("assertEquals(partial.hashCode(), new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2 })")
+            .addLine("    .buildPartial()")
+            .addLine("    .hashCode());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testToStringShowsArrayContents() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2 })")
+            .addLine("    .setIds(new int[] { 3 })")
+            .addLine("    .setPayload(new byte[0])")
+            .addLine("    .build();")
+            .addLine("String expected = \"DataType{data=[1, 2], ids=[3], payload=\";")
+            .addLine("assertTrue(value.toString(), value.toString().startsWith(expected));")
+            .addLine("DataType partial = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1, 2 })")
+            .addLine("    .buildPartial();")
+            .addLine("assertEquals(\"partial DataType{data=[1, 2], ids=[]}\", partial.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 1 })")
+            .addLine("    .setIds(new int[] { 2 })")
+            .addLine("    .setPayload(new byte[] { 3 })")
+            .addLine("    .build();")
+            .addLine("DataType.Builder template = new DataType.Builder()")
+            .addLine("    .setData(new byte[] { 4 });")
+            .addLine("DataType merged = new DataType.Builder()")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertArrayEquals(new byte[] { 4 }, merged.getData());")
+            .addLine("assertArrayEquals(new int[] { 2 }, merged.getIds());")
+            .addLine("assertEquals(value.getPayload(), merged.getPayload());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testRequiredPropertyUnset() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("payload");
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().setData(new byte[0]).build();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testWrapNull() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().wrapIds(null);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMapper() {
+    assumeTrue("Environment has lambdas",
+        features.get(FUNCTION_PACKAGE).unaryOperator().isPresent());
+    behaviorTester
+        .with(new Processor(features))
+        .with(ARRAY_TYPE)
+        .with(testBuilder()
+            .addLine("int[] ids = { 1, 2 };")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(new byte[0])")
+            .addLine("    .setPayload(new byte[0])")
+            .addLine("    .wrapIds(ids)")
+            .addLine("    .mapIds(a -> {")
+            .addLine("      a[0] = 5;")
+            .addLine("      return a;")
+            .addLine("    })")
+            .addLine("    .build();")
+            .addLine("assertArrayEquals(new int[] { 5, 2 }, value.getIds());")
+            .addLine("assertArrayEquals(new int[] { 1, 2 }, ids);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNoStaticFactoryForArrayOnlyType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract byte[] getData();")
+            .addLine("  public abstract %s getPayload();", ByteBuffer.class)
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(testBuilder()
+            .addLine("for (%s method : DataType.Builder.class.getMethods()) {", Method.class)
+            .addLine("  assertFalse(method.toString(), method.getName().equals(\"of\"));")
+            .addLine("}")
+            .addLine("byte[] data = { 1, 2, 3 };")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setData(data)")
+            .addLine("    .setPayload(new byte[] { 4 })")
+            .addLine("    .build();")
+            .addLine("data[0] = 9;")
+            .addLine("assertEquals(1, value.getData()[0]);")
+            .addLine("assertTrue(value.getPayload().isReadOnly());")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
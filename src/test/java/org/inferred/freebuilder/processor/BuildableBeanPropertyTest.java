@@ -498,6 +498,21 @@ public class BuildableBeanPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testGetBuilder_modifiedAfterBuild() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DEFAULTS_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder();")
+            .addLine("builder.getItem1Builder().setName(\"Foo\");")
+            .addLine("assertEquals(\"Foo\", builder.build().getItem1().getName());")
+            .addLine("builder.getItem1Builder().setName(\"Bar\");")
+            .addLine("assertEquals(\"Bar\", builder.build().getItem1().getName());")
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testGetBuilder_protolike() {
     behaviorTester
@@ -661,6 +676,65 @@ public class BuildableBeanPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testMergeFromValue_reusesNestedValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DEFAULTS_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .setItem1(new com.example.DataType.Item.Builder()")
+            .addLine("        .setName(\"Foo\")")
+            .addLine("        .setPrice(1)")
+            .addLine("        .build())")
+            .addLine("    .build();")
+            .addLine("com.example.DataType copy = new com.example.DataType.Builder()")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .build();")
+            .addLine("assertSame(value.getItem1(), copy.getItem1());")
+            .addLine("assertSame(value.getItem2(), copy.getItem2());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGetBuilder_afterSetToValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DEFAULTS_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder()")
+            .addLine("    .setItem1(new com.example.DataType.Item.Builder()")
+            .addLine("        .setName(\"Foo\")")
+            .addLine("        .setPrice(1)")
+            .addLine("        .build());")
+            .addLine("builder.getItem1Builder().setPrice(5);")
+            .addLine("assertEquals(\"Foo\", builder.build().getItem1().getName());")
+            .addLine("assertEquals(5, builder.build().getItem1().getPrice());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSetToValue_afterGetBuilder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(DEFAULTS_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder();")
+            .addLine("com.example.DataType.Item.Builder itemBuilder = builder.getItem1Builder();")
+            .addLine("builder.setItem1(new com.example.DataType.Item.Builder()")
+            .addLine("    .setName(\"Foo\")")
+            .addLine("    .setPrice(1)")
+            .addLine("    .build());")
+            .addLine("assertSame(itemBuilder, builder.getItem1Builder());")
+            .addLine("assertEquals(\"Foo\", itemBuilder.getName());")
+            .addLine("itemBuilder.setPrice(5);")
+            .addLine("assertEquals(5, builder.build().getItem1().getPrice());")
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testMergeFromValue_nestedList() {
     behaviorTester
@@ -63,6 +63,7 @@ public class DefaultedPropertiesSourceTest {
         "",
         "  private String name;",
         "  private int age;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -72,6 +73,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -89,6 +91,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -103,6 +106,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
@@ -118,6 +122,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!template.getName().equals(_defaults.getName())) {",
         "      setName(template.getName());",
@@ -132,6 +137,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -142,7 +148,12 @@ public class DefaultedPropertiesSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -182,10 +193,10 @@ public class DefaultedPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      if (age != other.age) {",
+        "      if (!name.equals(other.name)) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -193,7 +204,10 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -238,7 +252,10 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -274,6 +291,7 @@ public class DefaultedPropertiesSourceTest {
         "",
         "  private String name;",
         "  private int age;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -283,6 +301,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -300,6 +319,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -314,6 +334,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
@@ -329,6 +350,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!template.getName().equals(_defaults.getName())) {",
         "      setName(template.getName());",
@@ -343,6 +365,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -353,7 +376,12 @@ public class DefaultedPropertiesSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -393,12 +421,15 @@ public class DefaultedPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return Objects.equals(age, other.age) && Objects.equals(name, other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -437,7 +468,10 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -470,6 +504,7 @@ public class DefaultedPropertiesSourceTest {
         "",
         "  private String name;",
         "  private int age;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -482,6 +517,7 @@ public class DefaultedPropertiesSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    this.name = name;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -499,6 +535,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -513,6 +550,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
@@ -528,6 +566,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!template.getName().equals(_defaults.getName())) {",
         "      setName(template.getName());",
@@ -542,6 +581,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -552,7 +592,12 @@ public class DefaultedPropertiesSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -591,10 +636,10 @@ public class DefaultedPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      if (age != other.age) {",
+        "      if (!name.equals(other.name)) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -602,7 +647,10 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -647,7 +695,10 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -714,13 +765,15 @@ public class DefaultedPropertiesSourceTest {
     Metadata metadataWithCodeGenerators = metadata.toBuilder()
         .clearProperties()
         .addProperties(name.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, name, false))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(
+                metadata, name, false, false))
             .build())
         .addProperties(age.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, age, true))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, age, true, false))
             .build())
         .addProperties(shoeSize.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, shoeSize, false))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(
+                metadata, shoeSize, false, false))
             .build())
         .build();
 
@@ -741,6 +794,7 @@ public class DefaultedPropertiesSourceTest {
         "",
         "  private enum Property {",
         "    NAME(\"name\"),",
+        "    AGE(\"age\"),",
         "    SHOE_SIZE(\"shoeSize\"),",
         "    ;",
         "",
@@ -754,13 +808,26 @@ public class DefaultedPropertiesSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      Person_Builder.Property[] required = {NAME, SHOE_SIZE};",
+        "      for (int bit = 0; bit < required.length; bit++) {",
+        "        if ((unsetProperties & (1L << bit)) != 0) {",
+        "          result.append(separator).append(required[bit]);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
         "  private int shoeSize;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -773,7 +840,8 @@ public class DefaultedPropertiesSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    this.name = name;",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -783,10 +851,9 @@ public class DefaultedPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "    if (!((_unsetProperties & 0x1) == 0)) {",
         "      throw new IllegalStateException(\"name not set\");",
         "    }",
-
         "    return name;",
         "  }",
         "",
@@ -797,6 +864,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -814,7 +882,8 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setShoeSize(int shoeSize) {",
         "    this.shoeSize = shoeSize;",
-        "    _unsetProperties.remove(Person_Builder.Property.SHOE_SIZE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -824,7 +893,7 @@ public class DefaultedPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getShoeSize() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)) {",
+        "    if (!((_unsetProperties & 0x2) == 0)) {",
         "      throw new IllegalStateException(\"shoeSize not set\");",
         "    }",
         "    return shoeSize;",
@@ -834,16 +903,17 @@ public class DefaultedPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
         "    if (value.getAge() != _defaults.getAge()) {",
         "      setAge(value.getAge());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)",
-        "        || value.getShoeSize() != _defaults.getShoeSize()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getShoeSize() != "
+            + "_defaults.getShoeSize()) {",
         "      setShoeSize(value.getShoeSize());",
         "    }",
         "    return (Person.Builder) this;",
@@ -854,19 +924,20 @@ public class DefaultedPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
         "    if (template.getAge() != _defaults.getAge()) {",
         "      setAge(template.getAge());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || template.getShoeSize() != _defaults.getShoeSize())) {",
         "      setShoeSize(template.getShoeSize());",
         "    }",
@@ -877,12 +948,12 @@ public class DefaultedPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
         "    shoeSize = _defaults.shoeSize;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -892,10 +963,16 @@ public class DefaultedPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    if (!_unsetProperties.isEmpty()) {",
-        "      throw new IllegalStateException(\"Not set: \" + _unsetProperties);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
         "    }",
-        "    return new Person_Builder.Value(this);",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -943,21 +1020,25 @@ public class DefaultedPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
-        "        return false;",
-        "      }",
         "      if (age != other.age) {",
         "        return false;",
         "      }",
         "      if (shoeSize != other.shoeSize) {",
         "        return false;",
         "      }",
+        "      if (!name.equals(other.name)) {",
+        "        return false;",
+        "      }",
         "      return true;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age, shoeSize});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + shoeSize;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -971,18 +1052,18 @@ public class DefaultedPropertiesSourceTest {
         "    private final String name;",
         "    private final int age;",
         "    private final int shoeSize;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
         "      this.shoeSize = builder.shoeSize;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -995,7 +1076,7 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getShoeSize() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"shoeSize not set\");",
         "      }",
         "      return shoeSize;",
@@ -1016,23 +1097,28 @@ public class DefaultedPropertiesSourceTest {
         "      if (shoeSize != other.shoeSize) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age, shoeSize, _unsetProperties});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + shoeSize;",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      StringBuilder result = new StringBuilder(\"partial Person{\");",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) == 0) {",
         "        result.append(\"name=\").append(name);",
         "        result.append(\", \");",
         "      }",
         "      result.append(\"age=\").append(age);",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.SHOE_SIZE)) {",
+        "      if ((_unsetProperties & 0x2) == 0) {",
         "        result.append(\", \");",
         "        result.append(\"shoeSize=\").append(shoeSize);",
         "      }",
@@ -1066,6 +1152,7 @@ public class DefaultedPropertiesSourceTest {
         "",
         "  private String name;",
         "  private int age;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -1075,6 +1162,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1103,6 +1191,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1128,6 +1217,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
@@ -1143,6 +1233,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!template.getName().equals(_defaults.getName())) {",
         "      setName(template.getName());",
@@ -1157,6 +1248,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -1167,7 +1259,12 @@ public class DefaultedPropertiesSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1207,12 +1304,15 @@ public class DefaultedPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return Objects.equals(age, other.age) && Objects.equals(name, other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1251,7 +1351,10 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1286,6 +1389,7 @@ public class DefaultedPropertiesSourceTest {
         "",
         "  private String name;",
         "  private int age;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#name()}.",
@@ -1295,6 +1399,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder name(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1312,6 +1417,7 @@ public class DefaultedPropertiesSourceTest {
         "   */",
         "  public Person.Builder age(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1326,6 +1432,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!value.name().equals(_defaults.name())) {",
         "      name(value.name());",
@@ -1341,6 +1448,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    if (!template.name().equals(_defaults.name())) {",
         "      name(template.name());",
@@ -1355,6 +1463,7 @@ public class DefaultedPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -1365,7 +1474,12 @@ public class DefaultedPropertiesSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1405,10 +1519,10 @@ public class DefaultedPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      if (age != other.age) {",
+        "      if (!name.equals(other.name)) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -1416,7 +1530,10 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1461,7 +1578,10 @@ public class DefaultedPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1522,10 +1642,10 @@ public class DefaultedPropertiesSourceTest {
     return metadata.toBuilder()
         .clearProperties()
         .addProperties(name.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, name, true))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, name, true, false))
             .build())
         .addProperties(age.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, age, true))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, age, true, false))
             .build())
         .build();
   }
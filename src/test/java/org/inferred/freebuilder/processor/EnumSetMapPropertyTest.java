@@ -0,0 +1,279 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for {@code Set<E>} and {@code Map<E, V>} properties with an enum type E. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class EnumSetMapPropertyTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  private static final JavaFileObject ENUM_KEYED_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public enum Permission { READ, WRITE, EXECUTE }")
+      .addLine("")
+      .addLine("  public abstract %s<Permission> getPermissions();", Set.class)
+      .addLine("  public abstract %s<Permission, String> getOwners();", Map.class)
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testIteratesInDeclarationOrder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.EXECUTE, Permission.READ)")
+            .addLine("    .addPermissions(Permission.EXECUTE)")
+            .addLine("    .putOwners(Permission.WRITE, \"bob\")")
+            .addLine("    .putOwners(Permission.READ, \"alice\")")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getPermissions())")
+            .addLine("    .containsExactly(Permission.READ, Permission.EXECUTE).inOrder();")
+            .addLine("assertThat(value.getOwners().keySet())")
+            .addLine("    .containsExactly(Permission.READ, Permission.WRITE).inOrder();")
+            .addLine("assertThat(value.getOwners().get(Permission.WRITE)).isEqualTo(\"bob\");")
+            .addLine("assertThat(value.getPermissions().contains(Permission.WRITE)).isFalse();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualsOtherSetAndMapImplementations() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.WRITE, Permission.READ)")
+            .addLine("    .putOwners(Permission.EXECUTE, \"carol\")")
+            .addLine("    .build();")
+            .addLine("%1$s<Permission> permissions = new %2$s<Permission>();",
+                Set.class, HashSet.class)
+            .addLine("permissions.add(Permission.READ);")
+            .addLine("permissions.add(Permission.WRITE);")
+            .addLine("%1$s<Permission, String> owners = new %2$s<Permission, String>();",
+                Map.class, HashMap.class)
+            .addLine("owners.put(Permission.EXECUTE, \"carol\");")
+            .addLine("assertThat(value.getPermissions()).isEqualTo(permissions);")
+            .addLine("assertThat(value.getPermissions().hashCode())")
+            .addLine("    .isEqualTo(permissions.hashCode());")
+            .addLine("assertThat(value.getOwners()).isEqualTo(owners);")
+            .addLine("assertThat(value.getOwners().hashCode()).isEqualTo(owners.hashCode());")
+            .addLine("assertThat(value).isEqualTo(new DataType.Builder()")
+            .addLine("    .addAllPermissions(permissions)")
+            .addLine("    .putAllOwners(owners)")
+            .addLine("    .build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testRemove() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.READ, Permission.WRITE)")
+            .addLine("    .removePermissions(Permission.READ)")
+            .addLine("    .putOwners(Permission.READ, \"alice\")")
+            .addLine("    .putOwners(Permission.WRITE, \"bob\")")
+            .addLine("    .removeOwners(Permission.WRITE)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getPermissions()).containsExactly(Permission.WRITE);")
+            .addLine("assertThat(value.getOwners())")
+            .addLine("    .isEqualTo(%s.of(Permission.READ, \"alice\"));", ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuiltSetIsImmutable() {
+    thrown.expect(UnsupportedOperationException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().build();")
+            .addLine("value.getPermissions().add(Permission.READ);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuiltMapIsImmutable() {
+    thrown.expect(UnsupportedOperationException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .putOwners(Permission.READ, \"alice\")")
+            .addLine("    .build();")
+            .addLine("value.getOwners().put(Permission.WRITE, \"bob\");")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testModifyingBuilderDoesNotModifyBuiltValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.READ)")
+            .addLine("    .putOwners(Permission.READ, \"alice\");")
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addPermissions(Permission.WRITE);")
+            .addLine("builder.putOwners(Permission.READ, \"bob\");")
+            .addLine("assertThat(value.getPermissions()).containsExactly(Permission.READ);")
+            .addLine("assertThat(value.getOwners().get(Permission.READ)).isEqualTo(\"alice\");")
+            .addLine("DataType copy = DataType.Builder.from(value).build();")
+            .addLine("assertThat(copy).isEqualTo(value);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.EXECUTE)")
+            .addLine("    .putOwners(Permission.EXECUTE, \"carol\")")
+            .addLine("    .build();")
+            .addLine("DataType.Builder template = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.WRITE);")
+            .addLine("DataType merged = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.READ)")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertThat(merged.getPermissions()).isEqualTo(%s.of(",
+                ImmutableSet.class)
+            .addLine("    Permission.READ, Permission.WRITE, Permission.EXECUTE));")
+            .addLine("assertThat(merged.getOwners())")
+            .addLine("    .isEqualTo(%s.of(Permission.EXECUTE, \"carol\"));", ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testClear() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.READ)")
+            .addLine("    .putOwners(Permission.READ, \"alice\")")
+            .addLine("    .clearPermissions()")
+            .addLine("    .clearOwners()")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getPermissions()).isEmpty();")
+            .addLine("assertThat(value.getOwners()).isEmpty();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPutNullValue() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().putOwners(Permission.READ, null);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMutate() {
+    assumeTrue("Environment has lambdas", features.get(FUNCTION_PACKAGE).consumer().isPresent());
+    behaviorTester
+        .with(new Processor(features))
+        .with(ENUM_KEYED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addPermissions(Permission.READ)")
+            .addLine("    .mutatePermissions(permissions -> {")
+            .addLine("      permissions.remove(Permission.READ);")
+            .addLine("      permissions.add(Permission.EXECUTE);")
+            .addLine("    })")
+            .addLine("    .mutateOwners(owners -> owners.put(Permission.WRITE, \"bob\"))")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getPermissions()).containsExactly(Permission.EXECUTE);")
+            .addLine("assertThat(value.getOwners())")
+            .addLine("    .isEqualTo(%s.of(Permission.WRITE, \"bob\"));", ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType")
+        .addImport("com.example.DataType.Permission");
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder.TestSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.tools.JavaFileObject;
+
+public class GeneratedSourceCacheTest {
+
+  private static final JavaFileObject TWO_PROPERTY_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("  int getCount();")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject ONE_PROPERTY_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public interface DataType {")
+      .addLine("  String getName();")
+      .addLine("")
+      .addLine("  class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void fingerprintIsStable() {
+    GeneratedSourceCache cache = new GeneratedSourceCache(temporaryFolder.getRoot());
+    assertEquals(cache.fingerprint("a", 1, true), cache.fingerprint("a", 1, true));
+    assertThat(cache.fingerprint("a", 1, true)).isNotEqualTo(cache.fingerprint("a", 2, true));
+    assertThat(cache.fingerprint("a1", true)).isNotEqualTo(cache.fingerprint("a", "1true"));
+  }
+
+  @Test
+  public void identityStringsAreNotFingerprinted() {
+    GeneratedSourceCache cache = new GeneratedSourceCache(temporaryFolder.getRoot());
+    assertEquals(Optional.absent(), cache.fingerprint("a", new Object()));
+  }
+
+  @Test
+  public void storedSourceIsReturned() throws IOException {
+    GeneratedSourceCache cache = new GeneratedSourceCache(
+        new File(temporaryFolder.getRoot(), "cache"));
+    String fingerprint = cache.fingerprint("a").get();
+    assertEquals(Optional.absent(), cache.get(fingerprint));
+    cache.put(fingerprint, "class A {}\n");
+    assertEquals(Optional.of("class A {}\n"), cache.get(fingerprint));
+    assertThat(new File(temporaryFolder.getRoot(), "cache").list())
+        .asList().containsExactly(fingerprint + ".java");
+  }
+
+  @Test
+  public void generatedSourceIsCached() {
+    compile(TWO_PROPERTY_TYPE, new TestBuilder()
+        .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+        .addLine("    .setName(\"Bob\")")
+        .addLine("    .setCount(3)")
+        .addLine("    .build();")
+        .addLine("assertEquals(\"Bob\", value.getName());")
+        .build());
+    assertThat(temporaryFolder.getRoot().list()).hasLength(1);
+  }
+
+  @Test
+  public void cachedSourceIsReused() throws IOException {
+    compile(TWO_PROPERTY_TYPE, new TestBuilder().build());
+    File entry = temporaryFolder.getRoot().listFiles()[0];
+    String source = Files.toString(entry, Charsets.UTF_8);
+    int end = source.lastIndexOf('}');
+    Files.write(
+        source.substring(0, end) + "public static int fromCache() { return 1; }\n}\n",
+        entry,
+        Charsets.UTF_8);
+
+    compile(TWO_PROPERTY_TYPE, new TestBuilder()
+        .addLine("assertEquals(1, com.example.DataType.Builder.fromCache());")
+        .build());
+  }
+
+  @Test
+  public void changedMetadataIsRegenerated() {
+    compile(TWO_PROPERTY_TYPE, new TestBuilder().build());
+    compile(ONE_PROPERTY_TYPE, new TestBuilder()
+        .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+        .addLine("    .setName(\"Bob\")")
+        .addLine("    .build();")
+        .addLine("assertEquals(\"Bob\", value.getName());")
+        .build());
+    assertThat(temporaryFolder.getRoot().list()).hasLength(2);
+  }
+
+  private void compile(JavaFileObject type, TestSource test) {
+    RecordingProcessor processor = new RecordingProcessor(ImmutableMap.of(
+        Processor.CACHE_DIR_OPTION, temporaryFolder.getRoot().getPath()));
+    BehaviorTester behaviorTester = BehaviorTester.create();
+    behaviorTester
+        .with(processor)
+        .with(type)
+        .with(test)
+        .runTest();
+    assertThat(processor.written).containsExactly("com.example.DataType_Builder");
+    assertThat(processor.messages).isEmpty();
+  }
+}
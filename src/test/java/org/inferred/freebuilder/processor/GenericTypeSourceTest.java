@@ -75,12 +75,24 @@ public class GenericTypeSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private A name;",
         "  private B age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person<A, B> _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -90,7 +102,8 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setName(A name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -100,8 +113,7 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public A getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x1) == 0, \"name not set\");",
         "    return name;",
         "  }",
         "",
@@ -113,7 +125,8 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setAge(B age) {",
         "    this.age = Preconditions.checkNotNull(age);",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -123,8 +136,7 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public B getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x2) == 0, \"age not set\");",
         "    return age;",
         "  }",
         "",
@@ -132,13 +144,14 @@ public class GenericTypeSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder<A, B> mergeFrom(Person<A, B> value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<A, B>();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || !value.getAge().equals(_defaults.getAge())) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || "
+            + "!value.getAge().equals(_defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder<A, B>) this;",
@@ -149,16 +162,17 @@ public class GenericTypeSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder<A, B> mergeFrom(Person.Builder<A, B> template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder<A, B> base = (Person_Builder<A, B>) template;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<A, B>();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !template.getAge().equals(_defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -169,11 +183,11 @@ public class GenericTypeSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder<A, B> clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<A, B>();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -183,9 +197,16 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person<A, B> build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
-        "    return new Person_Builder.Value<A, B>(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
+        "    }",
+        "    Person<A, B> value = new Person_Builder.Value<A, B>(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -238,7 +259,10 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -250,17 +274,17 @@ public class GenericTypeSourceTest {
         "  private static final class Partial<A, B> extends Person<A, B> {",
         "    private final A name;",
         "    private final B age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder<A, B> builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public A getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -268,7 +292,7 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public B getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -286,22 +310,24 @@ public class GenericTypeSourceTest {
         "      if (age != other.age && (age == null || !age.equals(other.age))) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age, _unsetProperties});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -345,12 +371,24 @@ public class GenericTypeSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private A name;",
         "  private B age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person<A, B> _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -360,7 +398,8 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setName(A name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -370,8 +409,7 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public A getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x1) == 0, \"name not set\");",
         "    return name;",
         "  }",
         "",
@@ -383,7 +421,8 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setAge(B age) {",
         "    this.age = Preconditions.checkNotNull(age);",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -393,8 +432,7 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public B getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x2) == 0, \"age not set\");",
         "    return age;",
         "  }",
         "",
@@ -402,13 +440,14 @@ public class GenericTypeSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder<A, B> mergeFrom(Person<A, B> value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || !value.getAge().equals(_defaults.getAge())) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || "
+            + "!value.getAge().equals(_defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder<A, B>) this;",
@@ -419,16 +458,17 @@ public class GenericTypeSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder<A, B> mergeFrom(Person.Builder<A, B> template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder<A, B> base = (Person_Builder<A, B>) template;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !template.getAge().equals(_defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -439,11 +479,11 @@ public class GenericTypeSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder<A, B> clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -453,9 +493,16 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person<A, B> build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
-        "    return new Person_Builder.Value<>(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
+        "    }",
+        "    Person<A, B> value = new Person_Builder.Value<>(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -502,7 +549,10 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -514,17 +564,17 @@ public class GenericTypeSourceTest {
         "  private static final class Partial<A, B> extends Person<A, B> {",
         "    private final A name;",
         "    private final B age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder<A, B> builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public A getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -532,7 +582,7 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public B getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -546,22 +596,24 @@ public class GenericTypeSourceTest {
         "      Person_Builder.Partial<?, ?> other = (Person_Builder.Partial<?, ?>) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age, _unsetProperties);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -604,12 +656,24 @@ public class GenericTypeSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private A name;",
         "  private B age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person<A, B> _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -619,7 +683,8 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setName(A name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -642,8 +707,7 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public A getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x1) == 0, \"name not set\");",
         "    return name;",
         "  }",
         "",
@@ -655,7 +719,8 @@ public class GenericTypeSourceTest {
         "   */",
         "  public Person.Builder<A, B> setAge(B age) {",
         "    this.age = Preconditions.checkNotNull(age);",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -678,8 +743,7 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public B getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x2) == 0, \"age not set\");",
         "    return age;",
         "  }",
         "",
@@ -687,13 +751,14 @@ public class GenericTypeSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder<A, B> mergeFrom(Person<A, B> value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || !value.getAge().equals(_defaults.getAge())) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || "
+            + "!value.getAge().equals(_defaults.getAge())) {",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder<A, B>) this;",
@@ -704,16 +769,17 @@ public class GenericTypeSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder<A, B> mergeFrom(Person.Builder<A, B> template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder<A, B> base = (Person_Builder<A, B>) template;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0",
         "            || !template.getAge().equals(_defaults.getAge()))) {",
         "      setAge(template.getAge());",
         "    }",
@@ -724,11 +790,11 @@ public class GenericTypeSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder<A, B> clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder<A, B> _defaults = new Person.Builder<>();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder<A, B>) this;",
         "  }",
         "",
@@ -738,9 +804,16 @@ public class GenericTypeSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person<A, B> build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
-        "    return new Person_Builder.Value<>(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
+        "    }",
+        "    Person<A, B> value = new Person_Builder.Value<>(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -787,7 +860,10 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -799,17 +875,17 @@ public class GenericTypeSourceTest {
         "  private static final class Partial<A, B> extends Person<A, B> {",
         "    private final A name;",
         "    private final B age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder<A, B> builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public A getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -817,7 +893,7 @@ public class GenericTypeSourceTest {
         "",
         "    @Override",
         "    public B getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -831,22 +907,24 @@ public class GenericTypeSourceTest {
         "      Person_Builder.Partial<?, ?> other = (Person_Builder.Partial<?, ?>) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age, _unsetProperties);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -901,10 +979,11 @@ public class GenericTypeSourceTest {
     return metadata.toBuilder()
         .clearProperties()
         .addProperties(name.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, name, false))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(
+                metadata, name, false, false))
             .build())
         .addProperties(age.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, age, false))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, age, false, false))
             .build())
         .build();
   }
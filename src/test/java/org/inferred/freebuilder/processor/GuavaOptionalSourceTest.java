@@ -74,6 +74,7 @@ public class GuavaOptionalSourceTest {
         "  // allows the JVM to optimize away the Optional objects created by and",
         "  // passed to our API.",
         "  private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -83,6 +84,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -120,6 +122,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    this.name = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -137,6 +140,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -174,6 +178,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    this.age = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -188,6 +193,7 @@ public class GuavaOptionalSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value.getName().isPresent()) {",
         "      setName(value.getName().get());",
         "    }",
@@ -202,6 +208,7 @@ public class GuavaOptionalSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    if (template.getName().isPresent()) {",
         "      setName(template.getName().get());",
         "    }",
@@ -215,6 +222,7 @@ public class GuavaOptionalSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -225,7 +233,12 @@ public class GuavaOptionalSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -282,7 +295,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -337,7 +353,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -382,6 +401,7 @@ public class GuavaOptionalSourceTest {
         "  // allows the JVM to optimize away the Optional objects created by and",
         "  // passed to our API.",
         "  private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -391,6 +411,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -428,6 +449,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    this.name = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -445,6 +467,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -482,6 +505,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    this.age = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -496,6 +520,7 @@ public class GuavaOptionalSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value.getName().isPresent()) {",
         "      setName(value.getName().get());",
         "    }",
@@ -510,6 +535,7 @@ public class GuavaOptionalSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    if (template.getName().isPresent()) {",
         "      setName(template.getName().get());",
         "    }",
@@ -523,6 +549,7 @@ public class GuavaOptionalSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -533,7 +560,12 @@ public class GuavaOptionalSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -584,7 +616,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -633,7 +668,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -677,6 +715,7 @@ public class GuavaOptionalSourceTest {
         "  // allows the JVM to optimize away the Optional objects created by and",
         "  // passed to our API.",
         "  private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -686,6 +725,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -741,6 +781,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    this.name = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -758,6 +799,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -813,6 +855,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    this.age = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -827,6 +870,7 @@ public class GuavaOptionalSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value.getName().isPresent()) {",
         "      setName(value.getName().get());",
         "    }",
@@ -841,6 +885,7 @@ public class GuavaOptionalSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    if (template.getName().isPresent()) {",
         "      setName(template.getName().get());",
         "    }",
@@ -854,6 +899,7 @@ public class GuavaOptionalSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -864,7 +910,12 @@ public class GuavaOptionalSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -915,7 +966,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -964,7 +1018,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1008,6 +1065,7 @@ public class GuavaOptionalSourceTest {
         "  // allows the JVM to optimize away the Optional objects created by and",
         "  // passed to our API.",
         "  private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#name()}.",
@@ -1017,6 +1075,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder name(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1054,6 +1113,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    this.name = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1071,6 +1131,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder age(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1108,6 +1169,7 @@ public class GuavaOptionalSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    this.age = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1122,6 +1184,7 @@ public class GuavaOptionalSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value.name().isPresent()) {",
         "      name(value.name().get());",
         "    }",
@@ -1136,6 +1199,7 @@ public class GuavaOptionalSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    if (template.name().isPresent()) {",
         "      name(template.name().get());",
         "    }",
@@ -1149,6 +1213,7 @@ public class GuavaOptionalSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -1159,7 +1224,12 @@ public class GuavaOptionalSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1216,7 +1286,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1271,7 +1344,10 @@ public class GuavaOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1340,11 +1416,13 @@ public class GuavaOptionalSourceTest {
         .clearProperties()
         .addProperties(name.toBuilder()
             .setCodeGenerator(new OptionalPropertyFactory.CodeGenerator(
-                metadata, name, OptionalType.GUAVA, string, Optional.<TypeMirror>absent(), false))
+                metadata, name, OptionalType.GUAVA, string, Optional.<TypeMirror>absent(),
+                false, false))
             .build())
         .addProperties(age.toBuilder()
             .setCodeGenerator(new OptionalPropertyFactory.CodeGenerator(
-                metadata, age, OptionalType.GUAVA, integer, Optional.<TypeMirror>of(INT), false))
+                metadata, age, OptionalType.GUAVA, integer, Optional.<TypeMirror>of(INT),
+                false, false))
             .build())
         .build();
   }
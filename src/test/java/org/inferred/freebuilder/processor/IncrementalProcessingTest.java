@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager.Location;
+import javax.tools.JavaFileObject;
+
+/**
+ * Tests that {@link Processor} honours the contract of an isolating processor in Gradle's
+ * incremental annotation processing, running it in a wrapped environment as Gradle does.
+ */
+public class IncrementalProcessingTest {
+
+  private static final JavaFileObject FIRST_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class FirstType extends BaseType {")
+      .addLine("  public abstract int getItem();")
+      .addLine("")
+      .addLine("  public static class Builder extends FirstType_Builder {")
+      .addLine("    public Builder() {")
+      .addLine("      setItem(3);")
+      .addLine("    }")
+      .addLine("  }")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject BASE_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("public abstract class BaseType {")
+      .addLine("  public abstract String getName();")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject SECOND_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("public class Outer {")
+      .addLine("  @%s", FreeBuilder.class)
+      .addLine("  public interface SecondType {")
+      .addLine("    String getName();")
+      .addLine("")
+      .addLine("    class Builder extends Outer_SecondType_Builder {}")
+      .addLine("  }")
+      .addLine("}")
+      .build();
+
+  private final BehaviorTester behaviorTester = BehaviorTester.create();
+
+  @Test
+  public void eachBuilderHasItsAnnotatedTypeAsOnlyOriginatingElement() {
+    RecordingProcessor processor = new RecordingProcessor();
+    behaviorTester
+        .with(processor)
+        .with(FIRST_TYPE)
+        .with(BASE_TYPE)
+        .with(SECOND_TYPE)
+        .compiles()
+        .withNoWarnings();
+
+    assertThat(processor.originatingElements).isEqualTo(ImmutableListMultimap.of(
+        "com.example.FirstType_Builder", "com.example.FirstType",
+        "com.example.Outer_SecondType_Builder", "com.example.Outer.SecondType"));
+  }
+
+  @Test
+  public void methodIntrospectionSupportedInWrappedEnvironment() {
+    RecordingProcessor processor = new RecordingProcessor();
+    behaviorTester
+        .with(processor)
+        .with(FIRST_TYPE)
+        .with(BASE_TYPE)
+        .compiles()
+        .withNoWarnings();
+
+    // Needed to detect the defaults set in FirstType.Builder's constructor
+    assertThat(processor.methodIntrospector).isInstanceOf(JavacMethodIntrospector.class);
+  }
+
+  /** Runs {@link Processor} in a wrapped environment, recording originating elements. */
+  private static class RecordingProcessor extends Processor {
+
+    private final ListMultimap<String, String> originatingElements = LinkedListMultimap.create();
+    private MethodIntrospector methodIntrospector;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+      ProcessingEnvironment wrappedEnv = new WrappedEnvironment(processingEnv, originatingElements);
+      super.init(wrappedEnv);
+      methodIntrospector = MethodIntrospector.instance(wrappedEnv);
+    }
+  }
+
+  /** Delegates to the compiler's environment, recording calls to its {@link Filer}. */
+  private static class WrappedEnvironment implements ProcessingEnvironment {
+
+    private final ProcessingEnvironment delegate;
+    private final Filer filer;
+
+    WrappedEnvironment(
+        ProcessingEnvironment delegate, ListMultimap<String, String> originatingElements) {
+      this.delegate = delegate;
+      this.filer = new RecordingFiler(delegate.getFiler(), originatingElements);
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+      return delegate.getOptions();
+    }
+
+    @Override
+    public Messager getMessager() {
+      return delegate.getMessager();
+    }
+
+    @Override
+    public Filer getFiler() {
+      return filer;
+    }
+
+    @Override
+    public Elements getElementUtils() {
+      return delegate.getElementUtils();
+    }
+
+    @Override
+    public Types getTypeUtils() {
+      return delegate.getTypeUtils();
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+      return delegate.getSourceVersion();
+    }
+
+    @Override
+    public Locale getLocale() {
+      return delegate.getLocale();
+    }
+  }
+
+  private static class RecordingFiler implements Filer {
+
+    private final Filer delegate;
+    private final ListMultimap<String, String> originatingElements;
+
+    RecordingFiler(Filer delegate, ListMultimap<String, String> originatingElements) {
+      this.delegate = delegate;
+      this.originatingElements = originatingElements;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      record(name, originatingElements);
+      return delegate.createSourceFile(name, originatingElements);
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      record(name, originatingElements);
+      return delegate.createClassFile(name, originatingElements);
+    }
+
+    @Override
+    public FileObject createResource(
+        Location location,
+        CharSequence pkg,
+        CharSequence relativeName,
+        Element... originatingElements) throws IOException {
+      record(pkg + "/" + relativeName, originatingElements);
+      return delegate.createResource(location, pkg, relativeName, originatingElements);
+    }
+
+    @Override
+    public FileObject getResource(Location location, CharSequence pkg, CharSequence relativeName)
+        throws IOException {
+      return delegate.getResource(location, pkg, relativeName);
+    }
+
+    private void record(CharSequence name, Element... elements) {
+      for (Element element : elements) {
+        originatingElements.put(
+            name.toString(), ((TypeElement) element).getQualifiedName().toString());
+      }
+    }
+  }
+}
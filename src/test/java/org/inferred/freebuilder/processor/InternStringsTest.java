@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.InternStrings;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for {@link InternStrings}. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class InternStringsTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  private static final JavaFileObject INTERNED_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s", InternStrings.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract String getName();")
+      .addLine("  @%s public abstract String getNickname();", Nullable.class)
+      .addLine("  public abstract %s<String> getTags();", List.class)
+      .addLine("  public abstract %s<String> getLabels();", Set.class)
+      .addLine("  public abstract %s<String, String> getAttributes();", Map.class)
+      .addLine("  public abstract int getCount();")
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject INTERNED_PROPERTY_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  @%s public abstract String getName();", InternStrings.class)
+      .addLine("  public abstract String getDescription();")
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject CUSTOM_INTERNER_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s", InternStrings.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract String getName();")
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {")
+      .addLine("    @Override protected String internString(String value) {")
+      .addLine("      return value.intern();")
+      .addLine("    }")
+      .addLine("  }")
+      .addLine("}")
+      .build();
+
+  @Parameter public FeatureSet features;
+
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testSetter_internsEqualStrings() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType a = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .setCount(1)")
+            .addLine("    .build();")
+            .addLine("DataType b = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .setCount(2)")
+            .addLine("    .build();")
+            .addLine("assertThat(a.getName()).isEqualTo(\"alice\");")
+            .addLine("assertThat(b.getName()).isSameAs(a.getName());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNullableSetter_internsEqualStringsAndAcceptsNull() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType a = new DataType.Builder()")
+            .addLine("    .setName(\"alice\")")
+            .addLine("    .setNickname(new String(\"al\"))")
+            .addLine("    .setCount(1)")
+            .addLine("    .build();")
+            .addLine("DataType b = new DataType.Builder()")
+            .addLine("    .setName(\"alice\")")
+            .addLine("    .setNickname(new String(\"al\"))")
+            .addLine("    .setCount(1)")
+            .addLine("    .build();")
+            .addLine("DataType c = new DataType.Builder()")
+            .addLine("    .setName(\"alice\")")
+            .addLine("    .setNickname(null)")
+            .addLine("    .setCount(1)")
+            .addLine("    .build();")
+            .addLine("assertThat(b.getNickname()).isSameAs(a.getNickname());")
+            .addLine("assertThat(c.getNickname()).isNull();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCollections_internEqualStrings() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType a = new DataType.Builder()")
+            .addLine("    .setName(\"alice\")")
+            .addLine("    .addTags(new String(\"red\"))")
+            .addLine("    .addLabels(new String(\"blue\"))")
+            .addLine("    .putAttributes(new String(\"key\"), new String(\"value\"))")
+            .addLine("    .setCount(1)")
+            .addLine("    .build();")
+            .addLine("DataType b = new DataType.Builder()")
+            .addLine("    .setName(\"alice\")")
+            .addLine("    .addAllTags(%s.of(new String(\"red\")))", ImmutableList.class)
+            .addLine("    .addAllLabels(%s.of(new String(\"blue\")))", ImmutableSet.class)
+            .addLine("    .putAllAttributes(%s.of(new String(\"key\"), new String(\"value\")))",
+                ImmutableMap.class)
+            .addLine("    .setCount(1)")
+            .addLine("    .build();")
+            .addLine("assertThat(b.getTags().get(0)).isSameAs(a.getTags().get(0));")
+            .addLine("assertThat(b.getLabels().iterator().next())")
+            .addLine("    .isSameAs(a.getLabels().iterator().next());")
+            .addLine("assertThat(b.getAttributes().keySet().iterator().next())")
+            .addLine("    .isSameAs(a.getAttributes().keySet().iterator().next());")
+            .addLine("assertThat(b.getAttributes().get(\"key\"))")
+            .addLine("    .isSameAs(a.getAttributes().get(\"key\"));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_internsEqualStrings() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType a = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .setCount(1)")
+            .addLine("    .build();")
+            .addLine("DataType b = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .setCount(1)")
+            .addLine("    .build();")
+            .addLine("DataType copy = new DataType.Builder().mergeFrom(b).build();")
+            .addLine("assertThat(copy.getName()).isSameAs(a.getName());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testTypeAnnotatedString_isInterned() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s(%s.TYPE_USE)", Target.class, ElementType.class)
+            .addLine("@interface Tagged {}")
+            .build())
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", InternStrings.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract @Tagged String getName();")
+            .addLine("  public abstract %s<@Tagged String> getTags();", List.class)
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(testBuilder()
+            .addLine("DataType a = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .addTags(new String(\"x\"))")
+            .addLine("    .build();")
+            .addLine("DataType b = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .addTags(new String(\"x\"))")
+            .addLine("    .build();")
+            .addLine("assertThat(b.getName()).isSameAs(a.getName());")
+            .addLine("assertThat(b.getTags().get(0)).isSameAs(a.getTags().get(0));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPropertyAnnotation_internsOnlyAnnotatedProperty() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_PROPERTY_TYPE)
+        .with(testBuilder()
+            .addLine("DataType a = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .setDescription(new String(\"first\"))")
+            .addLine("    .build();")
+            .addLine("String description = new String(\"first\");")
+            .addLine("DataType b = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .setDescription(description)")
+            .addLine("    .build();")
+            .addLine("assertThat(b.getName()).isSameAs(a.getName());")
+            .addLine("assertThat(b.getDescription()).isSameAs(description);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testOverriddenInternString_isUsed() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(CUSTOM_INTERNER_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setName(new String(\"alice\"))")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getName()).isSameAs(\"alice\");")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
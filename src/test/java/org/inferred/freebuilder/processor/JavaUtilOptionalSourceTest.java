@@ -73,6 +73,7 @@ public class JavaUtilOptionalSourceTest {
         "  // allows the JVM to optimize away the Optional objects created by and",
         "  // passed to our API.",
         "  private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -82,6 +83,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -132,6 +134,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    this.name = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -149,6 +152,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -199,6 +203,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    this.age = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -213,6 +218,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    value.getName().ifPresent(this::setName);",
         "    value.getAge().ifPresent(this::setAge);",
         "    return (Person.Builder) this;",
@@ -223,6 +229,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    template.getName().ifPresent(this::setName);",
         "    template.getAge().ifPresent(this::setAge);",
         "    return (Person.Builder) this;",
@@ -232,6 +239,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -242,7 +250,12 @@ public class JavaUtilOptionalSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -293,7 +306,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -342,7 +358,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -384,6 +403,7 @@ public class JavaUtilOptionalSourceTest {
         "  // allows the JVM to optimize away the Optional objects created by and",
         "  // passed to our API.",
         "  private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -393,6 +413,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Objects.requireNonNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -443,6 +464,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    this.name = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -460,6 +482,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -510,6 +533,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    this.age = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -524,6 +548,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    value.getName().ifPresent(this::setName);",
         "    value.getAge().ifPresent(this::setAge);",
         "    return (Person.Builder) this;",
@@ -534,6 +559,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    template.getName().ifPresent(this::setName);",
         "    template.getAge().ifPresent(this::setAge);",
         "    return (Person.Builder) this;",
@@ -543,6 +569,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -553,7 +580,12 @@ public class JavaUtilOptionalSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -603,7 +635,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -659,7 +694,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -710,6 +748,7 @@ public class JavaUtilOptionalSourceTest {
         "  // allows the JVM to optimize away the Optional objects created by and",
         "  // passed to our API.",
         "  private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#name()}.",
@@ -719,6 +758,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder name(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -769,6 +809,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    this.name = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -786,6 +827,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder age(int age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -836,6 +878,7 @@ public class JavaUtilOptionalSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    this.age = null;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -850,6 +893,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    value.name().ifPresent(this::name);",
         "    value.age().ifPresent(this::age);",
         "    return (Person.Builder) this;",
@@ -860,6 +904,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    template.name().ifPresent(this::name);",
         "    template.age().ifPresent(this::age);",
         "    return (Person.Builder) this;",
@@ -869,6 +914,7 @@ public class JavaUtilOptionalSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -879,7 +925,12 @@ public class JavaUtilOptionalSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -930,7 +981,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -979,7 +1033,10 @@ public class JavaUtilOptionalSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1048,11 +1105,13 @@ public class JavaUtilOptionalSourceTest {
         .clearProperties()
         .addProperties(name.toBuilder()
             .setCodeGenerator(new OptionalPropertyFactory.CodeGenerator(
-                metadata, name, OptionalType.JAVA8, string, Optional.<TypeMirror>absent(), false))
+                metadata, name, OptionalType.JAVA8, string, Optional.<TypeMirror>absent(),
+                false, false))
             .build())
         .addProperties(age.toBuilder()
             .setCodeGenerator(new OptionalPropertyFactory.CodeGenerator(
-                metadata, age, OptionalType.JAVA8, integer, Optional.<TypeMirror>of(INT), false))
+                metadata, age, OptionalType.JAVA8, integer, Optional.<TypeMirror>of(INT),
+                false, false))
             .build())
         .build();
   }
@@ -106,6 +106,22 @@ public class ListMutateMethodTest {
         .runTest();
   }
 
+  @Test
+  public void mutateAfterBuildModifiesNextBuiltValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(CHECKED_LIST_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder()")
+            .addLine("    .addProperties(1);")
+            .addLine("com.example.DataType value = builder.build();")
+            .addLine("builder.mutateProperties(list -> list.add(2));")
+            .addLine("assertThat(builder.build().getProperties()).containsExactly(1, 2).inOrder();")
+            .addLine("assertThat(value.getProperties()).containsExactly(1);")
+            .build())
+        .runTest();
+  }
+
   @Test
   public void mutateAndAddModifiesUnderlyingPropertyWhenChecked() {
     behaviorTester
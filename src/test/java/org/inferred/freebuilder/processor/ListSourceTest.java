@@ -21,6 +21,7 @@ import static org.inferred.freebuilder.processor.util.ClassTypeImpl.newTopLevelC
 import static org.inferred.freebuilder.processor.util.PrimitiveTypeImpl.INT;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_7;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_8;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_9;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
@@ -66,6 +67,7 @@ public class ListSourceTest {
         "",
         "  private List<String> name = ImmutableList.of();",
         "  private List<Integer> age = ImmutableList.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the list to be returned from {@link Person#getName()}.",
@@ -78,6 +80,7 @@ public class ListSourceTest {
         "      this.name = new ArrayList<String>(this.name);",
         "    }",
         "    this.name.add(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -128,6 +131,7 @@ public class ListSourceTest {
         "    } else {",
         "      name.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -153,6 +157,7 @@ public class ListSourceTest {
         "      this.age = new ArrayList<Integer>(this.age);",
         "    }",
         "    this.age.add(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -201,6 +206,7 @@ public class ListSourceTest {
         "    } else {",
         "      age.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -220,6 +226,7 @@ public class ListSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value instanceof Person_Builder.Value && name == ImmutableList.<String>of()) {",
         "      name = ImmutableList.copyOf(value.getName());",
         "    } else {",
@@ -238,6 +245,7 @@ public class ListSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    addAllName(base.name);",
@@ -249,6 +257,7 @@ public class ListSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    clearAge();",
         "    return (Person.Builder) this;",
@@ -258,7 +267,12 @@ public class ListSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -298,10 +312,12 @@ public class ListSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
-        "      if (!age.equals(other.age)) {",
+        "      if (age != other.age && (age.size() != other.age.size() || "
+            + "!age.equals(other.age))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -309,7 +325,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -354,7 +373,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -390,6 +412,7 @@ public class ListSourceTest {
         "",
         "  private List<String> name = ImmutableList.of();",
         "  private List<Integer> age = ImmutableList.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the list to be returned from {@link Person#getName()}.",
@@ -402,6 +425,7 @@ public class ListSourceTest {
         "      this.name = new ArrayList<>(this.name);",
         "    }",
         "    this.name.add(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -452,6 +476,7 @@ public class ListSourceTest {
         "    } else {",
         "      name.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -477,6 +502,7 @@ public class ListSourceTest {
         "      this.age = new ArrayList<>(this.age);",
         "    }",
         "    this.age.add(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -525,6 +551,7 @@ public class ListSourceTest {
         "    } else {",
         "      age.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -544,6 +571,7 @@ public class ListSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value instanceof Person_Builder.Value && name == ImmutableList.<String>of()) {",
         "      name = ImmutableList.copyOf(value.getName());",
         "    } else {",
@@ -562,6 +590,7 @@ public class ListSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    addAllName(base.name);",
@@ -573,6 +602,7 @@ public class ListSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    clearAge();",
         "    return (Person.Builder) this;",
@@ -582,7 +612,12 @@ public class ListSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -622,12 +657,18 @@ public class ListSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)))",
+        "          && (age == other.age || (age.size() == other.age.size() && "
+            + "age.equals(other.age)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -666,7 +707,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -701,6 +745,7 @@ public class ListSourceTest {
         "",
         "  private List<String> name = ImmutableList.of();",
         "  private List<Integer> age = ImmutableList.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the list to be returned from {@link Person#getName()}.",
@@ -713,6 +758,7 @@ public class ListSourceTest {
         "      this.name = new ArrayList<>(this.name);",
         "    }",
         "    this.name.add(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -788,6 +834,7 @@ public class ListSourceTest {
         "    if (this.name instanceof ImmutableList) {",
         "      this.name = new ArrayList<>(this.name);",
         "    }",
+        "    _lastBuilt = null;",
         "    // If addName is overridden, this method will be updated to delegate to it",
         "    mutator.accept(name);",
         "    return (Person.Builder) this;",
@@ -804,6 +851,7 @@ public class ListSourceTest {
         "    } else {",
         "      name.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -829,6 +877,7 @@ public class ListSourceTest {
         "      this.age = new ArrayList<>(this.age);",
         "    }",
         "    this.age.add(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -902,6 +951,7 @@ public class ListSourceTest {
         "    if (this.age instanceof ImmutableList) {",
         "      this.age = new ArrayList<>(this.age);",
         "    }",
+        "    _lastBuilt = null;",
         "    // If addAge is overridden, this method will be updated to delegate to it",
         "    mutator.accept(age);",
         "    return (Person.Builder) this;",
@@ -918,6 +968,7 @@ public class ListSourceTest {
         "    } else {",
         "      age.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -937,6 +988,7 @@ public class ListSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value instanceof Person_Builder.Value && name == ImmutableList.<String>of()) {",
         "      name = ImmutableList.copyOf(value.getName());",
         "    } else {",
@@ -955,6 +1007,7 @@ public class ListSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    addAllName(base.name);",
@@ -966,6 +1019,7 @@ public class ListSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    clearAge();",
         "    return (Person.Builder) this;",
@@ -975,7 +1029,12 @@ public class ListSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1015,12 +1074,18 @@ public class ListSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)))",
+        "          && (age == other.age || (age.size() == other.age.size() && "
+            + "age.equals(other.age)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1059,7 +1124,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1092,6 +1160,7 @@ public class ListSourceTest {
         "",
         "  private final ArrayList<String> name = new ArrayList<String>();",
         "  private final ArrayList<Integer> age = new ArrayList<Integer>();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the list to be returned from {@link Person#getName()}.",
@@ -1104,6 +1173,7 @@ public class ListSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    this.name.add(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1145,6 +1215,7 @@ public class ListSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    name.clear();",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1164,6 +1235,7 @@ public class ListSourceTest {
         "   */",
         "  public Person.Builder addAge(int element) {",
         "    this.age.add(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1207,6 +1279,7 @@ public class ListSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    age.clear();",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1223,6 +1296,7 @@ public class ListSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    addAllName(value.getName());",
         "    addAllAge(value.getAge());",
         "    return (Person.Builder) this;",
@@ -1233,6 +1307,7 @@ public class ListSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    addAllName(base.name);",
@@ -1244,6 +1319,7 @@ public class ListSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    clearAge();",
         "    return (Person.Builder) this;",
@@ -1253,7 +1329,12 @@ public class ListSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1292,10 +1373,12 @@ public class ListSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
-        "      if (!age.equals(other.age)) {",
+        "      if (age != other.age && (age.size() != other.age.size() || "
+            + "!age.equals(other.age))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -1303,7 +1386,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1348,7 +1434,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1398,6 +1487,7 @@ public class ListSourceTest {
         "",
         "  private final ArrayList<String> name = new ArrayList<>();",
         "  private final ArrayList<Integer> age = new ArrayList<>();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the list to be returned from {@link Person#getName()}.",
@@ -1407,6 +1497,7 @@ public class ListSourceTest {
         "   */",
         "  public Person.Builder addName(String element) {",
         "    this.name.add(Objects.requireNonNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1448,6 +1539,7 @@ public class ListSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    name.clear();",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1467,6 +1559,7 @@ public class ListSourceTest {
         "   */",
         "  public Person.Builder addAge(int element) {",
         "    this.age.add(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1510,6 +1603,7 @@ public class ListSourceTest {
         "   */",
         "  public Person.Builder clearAge() {",
         "    age.clear();",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1526,6 +1620,7 @@ public class ListSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    addAllName(value.getName());",
         "    addAllAge(value.getAge());",
         "    return (Person.Builder) this;",
@@ -1536,6 +1631,7 @@ public class ListSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    addAllName(base.name);",
@@ -1547,6 +1643,7 @@ public class ListSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    clearAge();",
         "    return (Person.Builder) this;",
@@ -1556,7 +1653,12 @@ public class ListSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1595,12 +1697,18 @@ public class ListSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)))",
+        "          && (age == other.age || (age.size() == other.age.size() && "
+            + "age.equals(other.age)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1639,7 +1747,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1668,6 +1779,392 @@ public class ListSourceTest {
         "}\n"));
   }
 
+  @Test
+  public void test_noGuava_j9() {
+    Metadata metadata = createMetadata(true);
+
+    assertThat(generateSource(metadata, JAVA_9)).isEqualTo(Joiner.on('\n').join(
+        "/**",
+        " * Auto-generated superclass of {@link Person.Builder},",
+        " * derived from the API of {@link Person}.",
+        " */",
+        "abstract class Person_Builder {",
+        "",
+        "  /**",
+        "   * Creates a new builder using {@code value} as a template.",
+        "   */",
+        "  public static Person.Builder from(Person value) {",
+        "    return new Person.Builder().mergeFrom(value);",
+        "  }",
+        "",
+        "  private final ArrayList<String> name = new ArrayList<>();",
+        "  private final ArrayList<Integer> age = new ArrayList<>();",
+        "  private transient Person _lastBuilt;",
+        "",
+        "  /**",
+        "   * Adds {@code element} to the list to be returned from {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code element} is null",
+        "   */",
+        "  public Person.Builder addName(String element) {",
+        "    this.name.add(Objects.requireNonNull(element));",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from",
+        "   * {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addName(String... elements) {",
+        "    return addAllName(Arrays.asList(elements));",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from",
+        "   * {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllName(Spliterator<? extends String> elements) {",
+        "    if ((elements.characteristics() & Spliterator.SIZED) != 0) {",
+        "      long elementsSize = elements.estimateSize();",
+        "      if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {",
+        "        name.ensureCapacity(name.size() + (int) elementsSize);",
+        "      }",
+        "    }",
+        "    elements.forEachRemaining(this::addName);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from",
+        "   * {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllName(BaseStream<? extends String, ?> elements) {",
+        "    return addAllName(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from",
+        "   * {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllName(Iterable<? extends String> elements) {",
+        "    return addAllName(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Applies {@code mutator} to the list to be returned from {@link Person#getName()}.",
+        "   *",
+        "   * <p>This method mutates the list in-place. {@code mutator} is a void",
+        "   * consumer, so any value returned from a lambda will be ignored. Take care",
+        "   * not to call pure functions, like {@link Collection#stream()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code mutator} is null",
+        "   */",
+        "  public Person.Builder mutateName(Consumer<? super List<String>> mutator) {",
+        "    _lastBuilt = null;",
+        "    // If addName is overridden, this method will be updated to delegate to it",
+        "    mutator.accept(name);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Clears the list to be returned from {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder clearName() {",
+        "    name.clear();",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns an unmodifiable view of the list that will be returned by",
+        "   * {@link Person#getName()}.",
+        "   * Changes to this builder will be reflected in the view.",
+        "   */",
+        "  public List<String> getName() {",
+        "    return Collections.unmodifiableList(name);",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds {@code element} to the list to be returned from {@link Person#getAge()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder addAge(int element) {",
+        "    this.age.add(element);",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from",
+        "   * {@link Person#getAge()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder addAge(int... elements) {",
+        "    age.ensureCapacity(age.size() + elements.length);",
+        "    for (int element : elements) {",
+        "      addAge(element);",
+        "    }",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from",
+        "   * {@link Person#getAge()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllAge(Spliterator<? extends Integer> elements) {",
+        "    if ((elements.characteristics() & Spliterator.SIZED) != 0) {",
+        "      long elementsSize = elements.estimateSize();",
+        "      if (elementsSize > 0 && elementsSize <= Integer.MAX_VALUE) {",
+        "        age.ensureCapacity(age.size() + (int) elementsSize);",
+        "      }",
+        "    }",
+        "    elements.forEachRemaining(this::addAge);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from",
+        "   * {@link Person#getAge()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllAge(BaseStream<? extends Integer, ?> elements) {",
+        "    return addAllAge(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the list to be returned from",
+        "   * {@link Person#getAge()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllAge(Iterable<? extends Integer> elements) {",
+        "    return addAllAge(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Applies {@code mutator} to the list to be returned from {@link Person#getAge()}.",
+        "   *",
+        "   * <p>This method mutates the list in-place. {@code mutator} is a void",
+        "   * consumer, so any value returned from a lambda will be ignored. Take care",
+        "   * not to call pure functions, like {@link Collection#stream()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code mutator} is null",
+        "   */",
+        "  public Person.Builder mutateAge(Consumer<? super List<Integer>> mutator) {",
+        "    _lastBuilt = null;",
+        "    // If addAge is overridden, this method will be updated to delegate to it",
+        "    mutator.accept(age);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Clears the list to be returned from {@link Person#getAge()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder clearAge() {",
+        "    age.clear();",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns an unmodifiable view of the list that will be returned by",
+        "   * {@link Person#getAge()}.",
+        "   * Changes to this builder will be reflected in the view.",
+        "   */",
+        "  public List<Integer> getAge() {",
+        "    return Collections.unmodifiableList(age);",
+        "  }",
+        "",
+        "  /**",
+        "   * Sets all property values using the given {@code Person} as a template.",
+        "   */",
+        "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
+        "    addAllName(value.getName());",
+        "    addAllAge(value.getAge());",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Copies values from the given {@code Builder}.",
+        "   * Does not affect any properties not set on the input.",
+        "   */",
+        "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
+        "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
+        "    Person_Builder base = (Person_Builder) template;",
+        "    addAllName(base.name);",
+        "    addAllAge(base.age);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Resets the state of this builder.",
+        "   */",
+        "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
+        "    clearName();",
+        "    clearAge();",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
+        "   */",
+        "  public Person build() {",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns a newly-created partial {@link Person}",
+        "   * based on the contents of the {@code Builder}.",
+        "   * State checking will not be performed.",
+        "   *",
+        "   * <p>Partials should only ever be used in tests.",
+        "   */",
+        "  public Person buildPartial() {",
+        "    return new Person_Builder.Partial(this);",
+        "  }",
+        "",
+        "  private static final class Value extends Person {",
+        "    private final List<String> name;",
+        "    private final List<Integer> age;",
+        "",
+        "    private Value(Person_Builder builder) {",
+        "      this.name = immutableList(builder.name);",
+        "      this.age = immutableList(builder.age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public List<String> getName() {",
+        "      return name;",
+        "    }",
+        "",
+        "    @Override",
+        "    public List<Integer> getAge() {",
+        "      return age;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean equals(Object obj) {",
+        "      if (!(obj instanceof Person_Builder.Value)) {",
+        "        return false;",
+        "      }",
+        "      Person_Builder.Value other = (Person_Builder.Value) obj;",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)))",
+        "          && (age == other.age || (age.size() == other.age.size() && "
+            + "age.equals(other.age)));",
+        "    }",
+        "",
+        "    @Override",
+        "    public int hashCode() {",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
+        "    }",
+        "",
+        "    @Override",
+        "    public String toString() {",
+        "      return \"Person{\" + \"name=\" + name + \", \" + \"age=\" + age + \"}\";",
+        "    }",
+        "  }",
+        "",
+        "  private static final class Partial extends Person {",
+        "    private final List<String> name;",
+        "    private final List<Integer> age;",
+        "",
+        "    Partial(Person_Builder builder) {",
+        "      this.name = immutableList(builder.name);",
+        "      this.age = immutableList(builder.age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public List<String> getName() {",
+        "      return name;",
+        "    }",
+        "",
+        "    @Override",
+        "    public List<Integer> getAge() {",
+        "      return age;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean equals(Object obj) {",
+        "      if (!(obj instanceof Person_Builder.Partial)) {",
+        "        return false;",
+        "      }",
+        "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
+        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "    }",
+        "",
+        "    @Override",
+        "    public int hashCode() {",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
+        "    }",
+        "",
+        "    @Override",
+        "    public String toString() {",
+        "      StringBuilder result = new StringBuilder(\"partial Person{\");",
+        "      result.append(\"name=\").append(name);",
+        "      result.append(\", \");",
+        "      result.append(\"age=\").append(age);",
+        "      result.append(\"}\");",
+        "      return result.toString();",
+        "    }",
+        "  }",
+        "",
+        "  @SuppressWarnings(\"unchecked\")",
+        "  private static <E> List<E> immutableList(List<E> elements) {",
+        "    return (List<E>) (List<?>) List.of(elements.toArray());",
+        "  }",
+        "}\n"));
+  }
+
   @Test
   public void test_prefixless() {
     Metadata metadata = createMetadata(false);
@@ -1691,6 +2188,7 @@ public class ListSourceTest {
         "",
         "  private List<String> name = ImmutableList.of();",
         "  private List<Integer> age = ImmutableList.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the list to be returned from {@link Person#name()}.",
@@ -1703,6 +2201,7 @@ public class ListSourceTest {
         "      this.name = new ArrayList<String>(this.name);",
         "    }",
         "    this.name.add(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1753,6 +2252,7 @@ public class ListSourceTest {
         "    } else {",
         "      name.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1778,6 +2278,7 @@ public class ListSourceTest {
         "      this.age = new ArrayList<Integer>(this.age);",
         "    }",
         "    this.age.add(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1826,6 +2327,7 @@ public class ListSourceTest {
         "    } else {",
         "      age.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1845,6 +2347,7 @@ public class ListSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value instanceof Person_Builder.Value && name == ImmutableList.<String>of()) {",
         "      name = ImmutableList.copyOf(value.name());",
         "    } else {",
@@ -1863,6 +2366,7 @@ public class ListSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    addAllName(base.name);",
@@ -1874,6 +2378,7 @@ public class ListSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    clearAge();",
         "    return (Person.Builder) this;",
@@ -1883,7 +2388,12 @@ public class ListSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1923,10 +2433,12 @@ public class ListSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
-        "      if (!age.equals(other.age)) {",
+        "      if (age != other.age && (age.size() != other.age.size() || "
+            + "!age.equals(other.age))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -1934,7 +2446,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1979,7 +2494,10 @@ public class ListSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -2045,11 +2563,11 @@ public class ListSourceTest {
         .clearProperties()
         .addProperties(name.toBuilder()
             .setCodeGenerator(new ListPropertyFactory.CodeGenerator(
-                metadata, name, false, string, Optional.<TypeMirror>absent()))
+                metadata, name, false, string, Optional.<TypeMirror>absent(), false))
             .build())
         .addProperties(age.toBuilder()
             .setCodeGenerator(new ListPropertyFactory.CodeGenerator(
-                metadata, age, false, integer, Optional.<TypeMirror>of(INT)))
+                metadata, age, false, integer, Optional.<TypeMirror>of(INT), false))
             .build())
         .build();
   }
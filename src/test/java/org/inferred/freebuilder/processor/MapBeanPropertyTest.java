@@ -499,6 +499,49 @@ public class MapBeanPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testMergeFrom_valueInstance_reusesImmutableMap() {
+    assumeTrue("Guava available", features.get(GUAVA).isAvailable());
+    behaviorTester
+        .with(new Processor(features))
+        .with(MAP_PROPERTY_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType template = new com.example.DataType.Builder()")
+            .addLine("    .putItems(\"bar\", \"baz\")")
+            .addLine("    .build();")
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertSame(template.getItems(), value.getItems());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_valueInstance_thenModify() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MAP_PROPERTY_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType template = new com.example.DataType.Builder()")
+            .addLine("    .putItems(\"bar\", \"baz\")")
+            .addLine("    .putItems(\"three\", 3)")
+            .addLine("    .build();")
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .removeItems(\"bar\")")
+            .addLine("    .putItems(\"four\", 4)")
+            .addLine("    .build();")
+            .addLine("assertThat(template.getItems())")
+            .addLine("    .isEqualTo(%s.of(\"bar\", \"baz\", \"three\", 3));",
+                ImmutableMap.class)
+            .addLine("assertThat(value.getItems())")
+            .addLine("    .isEqualTo(%s.of(\"three\", 3, \"four\", 4));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testBuilderClear() {
     behaviorTester
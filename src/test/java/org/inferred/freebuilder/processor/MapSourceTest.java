@@ -20,6 +20,7 @@ import static org.inferred.freebuilder.processor.GenericTypeElementImpl.newTopLe
 import static org.inferred.freebuilder.processor.util.ClassTypeImpl.newTopLevelClass;
 import static org.inferred.freebuilder.processor.util.PrimitiveTypeImpl.INT;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_7;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_9;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
@@ -61,8 +62,8 @@ public class MapSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashMap<Integer, String> name = "
-            + "new LinkedHashMap<Integer, String>();",
+        "  private Map<Integer, String> name = ImmutableMap.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from",
@@ -75,7 +76,11 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder putName(int key, String value) {",
         "    Preconditions.checkNotNull(value);",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.put(key, value);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -101,7 +106,11 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder removeName(int key) {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.remove(key);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -112,7 +121,12 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = ImmutableMap.of();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -122,6 +136,9 @@ public class MapSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Map<Integer, String> getName() {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    return Collections.unmodifiableMap(name);",
         "  }",
         "",
@@ -129,7 +146,13 @@ public class MapSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    putAllName(value.getName());",
+        "    _lastBuilt = null;",
+        "    if (value instanceof Person_Builder.Value && name == ImmutableMap.<Integer, "
+            + "String>of()) {",
+        "      name = ImmutableMap.copyOf(value.getName());",
+        "    } else {",
+        "      putAllName(value.getName());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -138,6 +161,7 @@ public class MapSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    putAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -146,7 +170,8 @@ public class MapSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    _lastBuilt = null;",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -154,7 +179,12 @@ public class MapSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -187,7 +217,8 @@ public class MapSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -195,7 +226,9 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -230,7 +263,9 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -261,7 +296,8 @@ public class MapSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashMap<Integer, String> name = new LinkedHashMap<>();",
+        "  private Map<Integer, String> name = ImmutableMap.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from",
@@ -274,7 +310,11 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder putName(int key, String value) {",
         "    Preconditions.checkNotNull(value);",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    name.put(key, value);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -300,7 +340,11 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder removeName(int key) {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    name.remove(key);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -311,7 +355,12 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = ImmutableMap.of();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -321,6 +370,9 @@ public class MapSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Map<Integer, String> getName() {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<>(name);",
+        "    }",
         "    return Collections.unmodifiableMap(name);",
         "  }",
         "",
@@ -328,7 +380,13 @@ public class MapSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    putAllName(value.getName());",
+        "    _lastBuilt = null;",
+        "    if (value instanceof Person_Builder.Value && name == ImmutableMap.<Integer, "
+            + "String>of()) {",
+        "      name = ImmutableMap.copyOf(value.getName());",
+        "    } else {",
+        "      putAllName(value.getName());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -337,6 +395,7 @@ public class MapSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    putAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -345,7 +404,8 @@ public class MapSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    _lastBuilt = null;",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -353,7 +413,12 @@ public class MapSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -386,12 +451,15 @@ public class MapSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -423,7 +491,9 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -455,6 +525,7 @@ public class MapSourceTest {
         "",
         "  private final LinkedHashMap<Integer, String> name = "
             + "new LinkedHashMap<Integer, String>();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from",
@@ -470,6 +541,7 @@ public class MapSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    name.put(key, value);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -496,6 +568,7 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder removeName(int key) {",
         "    name.remove(key);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -507,6 +580,7 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    name.clear();",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -523,6 +597,7 @@ public class MapSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    putAllName(value.getName());",
         "    return (Person.Builder) this;",
         "  }",
@@ -532,6 +607,7 @@ public class MapSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    putAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -540,7 +616,8 @@ public class MapSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    _lastBuilt = null;",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -548,7 +625,12 @@ public class MapSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -580,7 +662,8 @@ public class MapSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -588,7 +671,9 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -623,7 +708,9 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -666,6 +753,7 @@ public class MapSourceTest {
         "  }",
         "",
         "  private final LinkedHashMap<Integer, String> name = new LinkedHashMap<>();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from",
@@ -679,6 +767,7 @@ public class MapSourceTest {
         "  public Person.Builder putName(int key, String value) {",
         "    Objects.requireNonNull(value);",
         "    name.put(key, value);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -705,6 +794,7 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder removeName(int key) {",
         "    name.remove(key);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -716,6 +806,7 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    name.clear();",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -732,6 +823,7 @@ public class MapSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    putAllName(value.getName());",
         "    return (Person.Builder) this;",
         "  }",
@@ -741,6 +833,7 @@ public class MapSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    putAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -749,7 +842,8 @@ public class MapSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    _lastBuilt = null;",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -757,7 +851,12 @@ public class MapSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -789,12 +888,15 @@ public class MapSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -826,7 +928,9 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -849,6 +953,368 @@ public class MapSourceTest {
         "}\n"));
   }
 
+  @Test
+  public void test_noGuava_j9() {
+    Metadata metadata = createMetadata(true);
+
+    assertThat(generateSource(metadata, JAVA_9)).isEqualTo(Joiner.on('\n').join(
+        "/**",
+        " * Auto-generated superclass of {@link Person.Builder},",
+        " * derived from the API of {@link Person}.",
+        " */",
+        "abstract class Person_Builder {",
+        "",
+        "  /**",
+        "   * Creates a new builder using {@code value} as a template.",
+        "   */",
+        "  public static Person.Builder from(Person value) {",
+        "    return new Person.Builder().mergeFrom(value);",
+        "  }",
+        "",
+        "  private final LinkedHashMap<Integer, String> name = new LinkedHashMap<>();",
+        "  private transient Person _lastBuilt;",
+        "",
+        "  /**",
+        "   * Associates {@code key} with {@code value} in the map to be returned from",
+        "   * {@link Person#getName()}.",
+        "   * If the map previously contained a mapping for the key,",
+        "   * the old value is replaced by the specified value.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code value} is null",
+        "   */",
+        "  public Person.Builder putName(int key, String value) {",
+        "    Objects.requireNonNull(value);",
+        "    name.put(key, value);",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Copies all of the mappings from {@code map} to the map to be returned from",
+        "   * {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code map} is null or contains a",
+        "   *     null key or value",
+        "   */",
+        "  public Person.Builder putAllName(Map<? extends Integer, ? extends String> map) {",
+        "    for (Map.Entry<? extends Integer, ? extends String> entry : map.entrySet()) {",
+        "      putName(entry.getKey(), entry.getValue());",
+        "    }",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Removes the mapping for {@code key} from the map to be returned from",
+        "   * {@link Person#getName()}, if one is present.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder removeName(int key) {",
+        "    name.remove(key);",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Invokes {@code mutator} with the map to be returned from",
+        "   * {@link Person#getName()}.",
+        "   *",
+        "   * <p>This method mutates the map in-place. {@code mutator} is a void",
+        "   * consumer, so any value returned from a lambda will be ignored. Take care",
+        "   * not to call pure functions, like {@link Collection#stream()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code mutator} is null",
+        "   */",
+        "  public Person.Builder mutateName(Consumer<? super Map<Integer, String>> mutator) {",
+        "    _lastBuilt = null;",
+        "    // If putName is overridden, this method will be updated to delegate to it",
+        "    mutator.accept(name);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Removes all of the mappings from the map to be returned from",
+        "   * {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder clearName() {",
+        "    name.clear();",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns an unmodifiable view of the map that will be returned by",
+        "   * {@link Person#getName()}.",
+        "   * Changes to this builder will be reflected in the view.",
+        "   */",
+        "  public Map<Integer, String> getName() {",
+        "    return Collections.unmodifiableMap(name);",
+        "  }",
+        "",
+        "  /**",
+        "   * Sets all property values using the given {@code Person} as a template.",
+        "   */",
+        "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
+        "    putAllName(value.getName());",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Copies values from the given {@code Builder}.",
+        "   * Does not affect any properties not set on the input.",
+        "   */",
+        "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
+        "    putAllName(((Person_Builder) template).name);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Resets the state of this builder.",
+        "   */",
+        "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
+        "    clearName();",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
+        "   */",
+        "  public Person build() {",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns a newly-created partial {@link Person}",
+        "   * based on the contents of the {@code Builder}.",
+        "   * State checking will not be performed.",
+        "   *",
+        "   * <p>Partials should only ever be used in tests.",
+        "   */",
+        "  public Person buildPartial() {",
+        "    return new Person_Builder.Partial(this);",
+        "  }",
+        "",
+        "  private static final class Value extends Person {",
+        "    private final Map<Integer, String> name;",
+        "",
+        "    private Value(Person_Builder builder) {",
+        "      this.name = immutableMap(builder.name);",
+        "    }",
+        "",
+        "    @Override",
+        "    public Map<Integer, String> getName() {",
+        "      return name;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean equals(Object obj) {",
+        "      if (!(obj instanceof Person_Builder.Value)) {",
+        "        return false;",
+        "      }",
+        "      Person_Builder.Value other = (Person_Builder.Value) obj;",
+        "      return (name == other.name || (name.size() == other.name.size() && name.equals(other.name)));",
+        "    }",
+        "",
+        "    @Override",
+        "    public int hashCode() {",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
+        "    }",
+        "",
+        "    @Override",
+        "    public String toString() {",
+        "      return \"Person{name=\" + name + \"}\";",
+        "    }",
+        "  }",
+        "",
+        "  private static final class Partial extends Person {",
+        "    private final Map<Integer, String> name;",
+        "",
+        "    Partial(Person_Builder builder) {",
+        "      this.name = immutableMap(builder.name);",
+        "    }",
+        "",
+        "    @Override",
+        "    public Map<Integer, String> getName() {",
+        "      return name;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean equals(Object obj) {",
+        "      if (!(obj instanceof Person_Builder.Partial)) {",
+        "        return false;",
+        "      }",
+        "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
+        "      return Objects.equals(name, other.name);",
+        "    }",
+        "",
+        "    @Override",
+        "    public int hashCode() {",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
+        "    }",
+        "",
+        "    @Override",
+        "    public String toString() {",
+        "      return \"partial Person{name=\" + name + \"}\";",
+        "    }",
+        "  }",
+        "",
+        "  private static <K, V> Map<K, V> immutableMap(Map<K, V> entries) {",
+        "    switch (entries.size()) {",
+        "      case 0:",
+        "        return Collections.emptyMap();",
+        "      case 1:",
+        "        Map.Entry<K, V> entry = entries.entrySet().iterator().next();",
+        "        return Collections.singletonMap(entry.getKey(), entry.getValue());",
+        "      default:",
+        "        return new CompactMap<>(entries);",
+        "    }",
+        "  }",
+        "",
+        "  /**",
+        "   * Helpers for open-addressing hash tables of distinct, non-null keys.",
+        "   * Each slot holds one plus the index of its key in an insertion-ordered",
+        "   * key array, or zero if empty. Tables are a power of two in size, and at",
+        "   * most half full.",
+        "   */",
+        "  private static final class CompactHashIndex {",
+        "",
+        "    /** Returns the index of {@code key} in {@code keys}, or -1. */",
+        "    static int indexOf(Object[] keys, int[] table, Object key) {",
+        "      if (key == null) {",
+        "        return -1;",
+        "      }",
+        "      int mask = table.length - 1;",
+        "      for (int slot = slot(key, mask); table[slot] != 0; slot = (slot + 1) & mask) {",
+        "        int index = table[slot] - 1;",
+        "        if (key.equals(keys[index])) {",
+        "          return index;",
+        "        }",
+        "      }",
+        "      return -1;",
+        "    }",
+        "",
+        "    /** Returns a table of {@code keys}, which must be distinct. */",
+        "    static int[] newTable(Object[] keys) {",
+        "      int tableSize = Integer.highestOneBit(keys.length * 2 - 1) << 1;",
+        "      int[] table = new int[tableSize];",
+        "      int mask = table.length - 1;",
+        "      for (int index = 0; index < keys.length; index++) {",
+        "        int slot = slot(keys[index], mask);",
+        "        while (table[slot] != 0) {",
+        "          slot = (slot + 1) & mask;",
+        "        }",
+        "        table[slot] = index + 1;",
+        "      }",
+        "      return table;",
+        "    }",
+        "",
+        "    private static int slot(Object key, int mask) {",
+        "      int hash = key.hashCode() * 0x9E3779B9;",
+        "      return (hash ^ (hash >>> 16)) & mask;",
+        "    }",
+        "",
+        "    private CompactHashIndex() {}",
+        "  }",
+        "",
+        "  /** An immutable, insertion-ordered map of two or more entries. */",
+        "  private static final class CompactMap<K, V> extends AbstractMap<K, V> implements Serializable {",
+        "",
+        "    private static final long serialVersionUID = 1L;",
+        "",
+        "    private final Object[] keys;",
+        "    private final Object[] values;",
+        "    private final int[] table;",
+        "",
+        "    CompactMap(Map<K, V> entries) {",
+        "      keys = new Object[entries.size()];",
+        "      values = new Object[keys.length];",
+        "      int index = 0;",
+        "      for (Map.Entry<K, V> entry : entries.entrySet()) {",
+        "        keys[index] = entry.getKey();",
+        "        values[index++] = entry.getValue();",
+        "      }",
+        "      table = CompactHashIndex.newTable(keys);",
+        "    }",
+        "",
+        "    @Override",
+        "    public int size() {",
+        "      return keys.length;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean containsKey(Object key) {",
+        "      return CompactHashIndex.indexOf(keys, table, key) >= 0;",
+        "    }",
+        "",
+        "    @Override",
+        "    public V get(Object key) {",
+        "      int index = CompactHashIndex.indexOf(keys, table, key);",
+        "      return (index < 0) ? null : value(index);",
+        "    }",
+        "",
+        "    @SuppressWarnings(\"unchecked\")",
+        "    private K key(int index) {",
+        "      return (K) keys[index];",
+        "    }",
+        "",
+        "    @SuppressWarnings(\"unchecked\")",
+        "    private V value(int index) {",
+        "      return (V) values[index];",
+        "    }",
+        "",
+        "    @Override",
+        "    public Set<Map.Entry<K, V>> entrySet() {",
+        "      return new AbstractSet<Map.Entry<K, V>>() {",
+        "        @Override",
+        "        public int size() {",
+        "          return keys.length;",
+        "        }",
+        "",
+        "        @Override",
+        "        public Iterator<Map.Entry<K, V>> iterator() {",
+        "          return new Iterator<Map.Entry<K, V>>() {",
+        "            private int index = 0;",
+        "",
+        "            @Override",
+        "            public boolean hasNext() {",
+        "              return index < keys.length;",
+        "            }",
+        "",
+        "            @Override",
+        "            public Map.Entry<K, V> next() {",
+        "              if (!hasNext()) {",
+        "                throw new NoSuchElementException();",
+        "              }",
+        "              Map.Entry<K, V> entry =",
+        "                  new AbstractMap.SimpleImmutableEntry<>(key(index), value(index));",
+        "              index++;",
+        "              return entry;",
+        "            }",
+        "          };",
+        "        }",
+        "      };",
+        "    }",
+        "  }",
+        "}\n"));
+  }
+
   @Test
   public void test_prefixless() {
     Metadata metadata = createMetadata(false);
@@ -868,8 +1334,8 @@ public class MapSourceTest {
         "    return new Person.Builder().mergeFrom(value);",
         "  }",
         "",
-        "  private final LinkedHashMap<Integer, String> name = "
-            + "new LinkedHashMap<Integer, String>();",
+        "  private Map<Integer, String> name = ImmutableMap.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Associates {@code key} with {@code value} in the map to be returned from",
@@ -882,7 +1348,11 @@ public class MapSourceTest {
         "   */",
         "  public Person.Builder putName(int key, String value) {",
         "    Preconditions.checkNotNull(value);",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.put(key, value);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -908,7 +1378,11 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder removeName(int key) {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    name.remove(key);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -919,7 +1393,12 @@ public class MapSourceTest {
         "   * @return this {@code Builder} object",
         "   */",
         "  public Person.Builder clearName() {",
-        "    name.clear();",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = ImmutableMap.of();",
+        "    } else {",
+        "      name.clear();",
+        "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -929,6 +1408,9 @@ public class MapSourceTest {
         "   * Changes to this builder will be reflected in the view.",
         "   */",
         "  public Map<Integer, String> name() {",
+        "    if (name instanceof ImmutableMap) {",
+        "      name = new LinkedHashMap<Integer, String>(name);",
+        "    }",
         "    return Collections.unmodifiableMap(name);",
         "  }",
         "",
@@ -936,7 +1418,13 @@ public class MapSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
-        "    putAllName(value.name());",
+        "    _lastBuilt = null;",
+        "    if (value instanceof Person_Builder.Value && name == ImmutableMap.<Integer, "
+            + "String>of()) {",
+        "      name = ImmutableMap.copyOf(value.name());",
+        "    } else {",
+        "      putAllName(value.name());",
+        "    }",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -945,6 +1433,7 @@ public class MapSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    putAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -953,7 +1442,8 @@ public class MapSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
-        "    name.clear();",
+        "    _lastBuilt = null;",
+        "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -961,7 +1451,12 @@ public class MapSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -994,7 +1489,8 @@ public class MapSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -1002,7 +1498,9 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1037,7 +1535,9 @@ public class MapSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1098,7 +1598,8 @@ public class MapSourceTest {
                 integer,
                 Optional.<TypeMirror>of(INT),
                 string,
-                Optional.<TypeMirror>absent()))
+                Optional.<TypeMirror>absent(),
+                false, false))
             .build())
         .build();
   }
@@ -671,6 +671,43 @@ public class MultisetBeanPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testMergeFrom_valueInstance_reusesImmutableMultiset() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MULTISET_PROPERTY_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType template = com.example.DataType.builder()")
+            .addLine("    .addItems(\"one\", \"two\")")
+            .addLine("    .build();")
+            .addLine("com.example.DataType value = com.example.DataType.builder()")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertSame(template.getItems(), value.getItems());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_valueInstance_thenModify() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MULTISET_PROPERTY_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType template = com.example.DataType.builder()")
+            .addLine("    .addItems(\"one\", \"two\")")
+            .addLine("    .build();")
+            .addLine("com.example.DataType value = com.example.DataType.builder()")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .setCountOfItems(\"one\", 0)")
+            .addLine("    .addItems(\"three\")")
+            .addLine("    .build();")
+            .addLine("assertThat(template.getItems()).iteratesAs(\"one\", \"two\");")
+            .addLine("assertThat(value.getItems()).iteratesAs(\"two\", \"three\");")
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testBuilderClear() {
     behaviorTester
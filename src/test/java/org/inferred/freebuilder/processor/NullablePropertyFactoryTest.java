@@ -87,7 +87,7 @@ public class NullablePropertyFactoryTest {
     Optional<CodeGenerator> codeGenerator = factory.create(config);
 
     assertThat(codeGenerator).hasValue(new NullablePropertyFactory.CodeGenerator(
-        metadata, property, ImmutableSet.of(model.typeElement(Nullable.class))));
+        metadata, property, ImmutableSet.of(model.typeElement(Nullable.class)), false));
   }
 
   @Test
@@ -110,7 +110,7 @@ public class NullablePropertyFactoryTest {
     Optional<CodeGenerator> codeGenerator = factory.create(config);
 
     assertThat(codeGenerator).hasValue(new NullablePropertyFactory.CodeGenerator(
-        metadata, property, ImmutableSet.of(model.typeElement("foo.bar.Nullable"))));
+        metadata, property, ImmutableSet.of(model.typeElement("foo.bar.Nullable")), false));
   }
 
   @Test
@@ -137,7 +137,7 @@ public class NullablePropertyFactoryTest {
 
     assertThat(codeGenerator).hasValue(new NullablePropertyFactory.CodeGenerator(
         metadata, property, ImmutableSet.of(
-            model.typeElement(Nullable.class), model.typeElement("foo.bar.Nullable"))));
+            model.typeElement(Nullable.class), model.typeElement("foo.bar.Nullable")), false));
   }
 
   @Test
@@ -61,6 +61,7 @@ public class NullableSourceTest {
         "",
         "  @Nullable private String name = null;",
         "  @Nullable private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -69,6 +70,7 @@ public class NullableSourceTest {
         "   */",
         "  public Person.Builder setName(@Nullable String name) {",
         "    this.name = name;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -87,6 +89,7 @@ public class NullableSourceTest {
         "   */",
         "  public Person.Builder setAge(@Nullable Integer age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -102,6 +105,7 @@ public class NullableSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    setName(value.getName());",
         "    setAge(value.getAge());",
         "    return (Person.Builder) this;",
@@ -112,6 +116,7 @@ public class NullableSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    setName(template.getName());",
         "    setAge(template.getAge());",
         "    return (Person.Builder) this;",
@@ -121,6 +126,7 @@ public class NullableSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -131,7 +137,12 @@ public class NullableSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -184,7 +195,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -235,7 +249,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -272,6 +289,7 @@ public class NullableSourceTest {
         "",
         "  @Nullable private String name = null;",
         "  @Nullable private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -280,6 +298,7 @@ public class NullableSourceTest {
         "   */",
         "  public Person.Builder setName(@Nullable String name) {",
         "    this.name = name;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -298,6 +317,7 @@ public class NullableSourceTest {
         "   */",
         "  public Person.Builder setAge(@Nullable Integer age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -313,6 +333,7 @@ public class NullableSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    setName(value.getName());",
         "    setAge(value.getAge());",
         "    return (Person.Builder) this;",
@@ -323,6 +344,7 @@ public class NullableSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    setName(template.getName());",
         "    setAge(template.getAge());",
         "    return (Person.Builder) this;",
@@ -332,6 +354,7 @@ public class NullableSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -342,7 +365,12 @@ public class NullableSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -389,7 +417,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -434,7 +465,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -470,6 +504,7 @@ public class NullableSourceTest {
         "",
         "  @Nullable private String name = null;",
         "  @Nullable private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -478,6 +513,7 @@ public class NullableSourceTest {
         "   */",
         "  public Person.Builder setName(@Nullable String name) {",
         "    this.name = name;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -512,6 +548,7 @@ public class NullableSourceTest {
         "   */",
         "  public Person.Builder setAge(@Nullable Integer age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -543,6 +580,7 @@ public class NullableSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    setName(value.getName());",
         "    setAge(value.getAge());",
         "    return (Person.Builder) this;",
@@ -553,6 +591,7 @@ public class NullableSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    setName(template.getName());",
         "    setAge(template.getAge());",
         "    return (Person.Builder) this;",
@@ -562,6 +601,7 @@ public class NullableSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -572,7 +612,12 @@ public class NullableSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -619,7 +664,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -664,7 +712,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -701,6 +752,7 @@ public class NullableSourceTest {
         "",
         "  @Nullable private String name = null;",
         "  @Nullable private Integer age = null;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#name()}.",
@@ -709,6 +761,7 @@ public class NullableSourceTest {
         "   */",
         "  public Person.Builder name(@Nullable String name) {",
         "    this.name = name;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -727,6 +780,7 @@ public class NullableSourceTest {
         "   */",
         "  public Person.Builder age(@Nullable Integer age) {",
         "    this.age = age;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -742,6 +796,7 @@ public class NullableSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    name(value.name());",
         "    age(value.age());",
         "    return (Person.Builder) this;",
@@ -752,6 +807,7 @@ public class NullableSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    name(template.name());",
         "    age(template.age());",
         "    return (Person.Builder) this;",
@@ -761,6 +817,7 @@ public class NullableSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
@@ -771,7 +828,12 @@ public class NullableSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -824,7 +886,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -875,7 +940,10 @@ public class NullableSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + (age == null ? 0 : age.hashCode());",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -938,11 +1006,11 @@ public class NullableSourceTest {
         .clearProperties()
         .addProperties(name.toBuilder()
             .setCodeGenerator(new NullablePropertyFactory.CodeGenerator(
-                metadata, name, ImmutableSet.of(nullable)))
+                metadata, name, ImmutableSet.of(nullable), false))
             .build())
         .addProperties(age.toBuilder()
             .setCodeGenerator(new NullablePropertyFactory.CodeGenerator(
-                metadata, age, ImmutableSet.of(nullable)))
+                metadata, age, ImmutableSet.of(nullable), false))
             .build())
         .build();
   }
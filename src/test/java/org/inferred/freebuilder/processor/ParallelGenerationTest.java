@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * Tests that {@link Processor} generates the same builders, written in the same order, whether
+ * generated source is laid out on worker threads or on the compiler thread.
+ */
+public class ParallelGenerationTest {
+
+  private static final int TYPES = 12;
+
+  private final BehaviorTester behaviorTester = BehaviorTester.create();
+
+  @Test
+  public void workerThreads() {
+    List<String> written = compile(ImmutableMap.of(Processor.THREADS_OPTION, "4"));
+    assertThat(written).containsExactlyElementsIn(expectedBuilders()).inOrder();
+  }
+
+  @Test
+  public void workerThreadsWithGoogleJavaFormat() {
+    List<String> written = compile(ImmutableMap.of(
+        Processor.THREADS_OPTION, "4", Processor.GOOGLE_JAVA_FORMAT_OPTION, "true"));
+    assertThat(written).containsExactlyElementsIn(expectedBuilders()).inOrder();
+  }
+
+  @Test
+  public void singleThreaded() {
+    List<String> written = compile(ImmutableMap.of(Processor.THREADS_OPTION, "1"));
+    assertThat(written).containsExactlyElementsIn(expectedBuilders()).inOrder();
+  }
+
+  @Test
+  public void invalidThreadCountFallsBackToDefault() {
+    RecordingProcessor processor =
+        new RecordingProcessor(ImmutableMap.of(Processor.THREADS_OPTION, "many"));
+    behaviorTester
+        .with(processor)
+        .with(type(0))
+        .compiles();
+    assertThat(processor.messages)
+        .containsExactly("Ignoring -Afreebuilder.threads=many: not a positive integer");
+    assertThat(processor.written).containsExactly("com.example.Type0_Builder");
+  }
+
+  private List<String> compile(Map<String, String> options) {
+    RecordingProcessor processor = new RecordingProcessor(options);
+    behaviorTester.with(processor);
+    TestBuilder testBuilder = new TestBuilder();
+    for (int i = 0; i < TYPES; i++) {
+      behaviorTester.with(type(i));
+      testBuilder
+          .addLine("com.example.Type%1$d value%1$d = new com.example.Type%1$d.Builder()", i)
+          .addLine("    .setName(\"name %d\")", i)
+          .addLine("    .setCount(%d)", i)
+          .addLine("    .build();")
+          .addLine("assertEquals(\"name %d\", value%d.getName());", i, i)
+          .addLine("assertEquals(%d, value%d.getCount());", i, i);
+    }
+    behaviorTester.with(testBuilder.build()).runTest();
+    return processor.written;
+  }
+
+  private static JavaFileObject type(int i) {
+    return new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public interface Type%d {", i)
+        .addLine("  String getName();")
+        .addLine("  int getCount();")
+        .addLine("")
+        .addLine("  class Builder extends Type%d_Builder {}", i)
+        .addLine("}")
+        .build();
+  }
+
+  private static List<String> expectedBuilders() {
+    List<String> builders = new ArrayList<>();
+    for (int i = 0; i < TYPES; i++) {
+      builders.add("com.example.Type" + i + "_Builder");
+    }
+    return builders;
+  }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.EqualsTester;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for fastutil and Eclipse Collections primitive collection properties. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class PrimitiveCollectionsLibraryPropertyTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  private static final JavaFileObject FASTUTIL_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract it.unimi.dsi.fastutil.ints.IntList getIds();")
+      .addLine("  public abstract it.unimi.dsi.fastutil.ints.IntSet getTags();")
+      .addLine("  public abstract it.unimi.dsi.fastutil.longs.Long2ObjectMap<String> getNames();")
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject ECLIPSE_COLLECTIONS_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("import org.eclipse.collections.api.list.primitive.ImmutableIntList;")
+      .addLine("import org.eclipse.collections.api.list.primitive.IntList;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract IntList getScores();")
+      .addLine("  public abstract ImmutableIntList getRanks();")
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testFastutilDefaultsToEmpty() {
+    withFastutil()
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().build();")
+            .addLine("assertThat(value.getIds()).isEmpty();")
+            .addLine("assertThat(value.getTags()).isEmpty();")
+            .addLine("assertThat(value.getNames()).isEmpty();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilAddAndPut() {
+    withFastutil()
+        .with(testBuilder()
+            .addLine("it.unimi.dsi.fastutil.ints.IntArrayList more =")
+            .addLine("    new it.unimi.dsi.fastutil.ints.IntArrayList();")
+            .addLine("more.add(7);")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(1)")
+            .addLine("    .addIds(2, 3)")
+            .addLine("    .addAllIds(more)")
+            .addLine("    .addTags(5, 5, 6)")
+            .addLine("    .putNames(10L, \"ten\")")
+            .addLine("    .putNames(20L, \"twenty\")")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getIds()).containsExactly(1, 2, 3, 7).inOrder();")
+            .addLine("assertThat(value.getIds().getInt(3)).isEqualTo(7);")
+            .addLine("assertThat(value.getTags()).containsExactly(5, 6).inOrder();")
+            .addLine("assertThat(value.getNames())")
+            .addLine("    .isEqualTo(%s.of(10L, \"ten\", 20L, \"twenty\"));", ImmutableMap.class)
+            .addLine("assertThat(value.getNames().keySet()).containsExactly(10L, 20L).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilRemove() {
+    withFastutil()
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addTags(1, 2, 3)")
+            .addLine("    .removeTags(2)")
+            .addLine("    .putNames(10L, \"ten\")")
+            .addLine("    .putNames(20L, \"twenty\")")
+            .addLine("    .removeNames(10L)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getTags()).containsExactly(1, 3).inOrder();")
+            .addLine("assertThat(value.getNames()).isEqualTo(%s.of(20L, \"twenty\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilPut_nullValue_throwsNpe() {
+    thrown.expect(NullPointerException.class);
+    withFastutil()
+        .with(testBuilder()
+            .addLine("new DataType.Builder().putNames(10L, null);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilClear() {
+    withFastutil()
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(1, 2)")
+            .addLine("    .clearIds()")
+            .addLine("    .addIds(3)")
+            .addLine("    .addTags(4)")
+            .addLine("    .clearTags()")
+            .addLine("    .putNames(10L, \"ten\")")
+            .addLine("    .clearNames()")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getIds()).containsExactly(3);")
+            .addLine("assertThat(value.getTags()).isEmpty();")
+            .addLine("assertThat(value.getNames()).isEmpty();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilBuilderGetterReflectsChanges() {
+    withFastutil()
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("it.unimi.dsi.fastutil.ints.IntList ids = builder.getIds();")
+            .addLine("builder.addIds(1, 2);")
+            .addLine("assertThat(ids).containsExactly(1, 2).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilBuilderGetterIsUnmodifiable() {
+    thrown.expect(UnsupportedOperationException.class);
+    withFastutil()
+        .with(testBuilder()
+            .addLine("new DataType.Builder().getIds().add(1);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilValueIsUnmodifiable() {
+    thrown.expect(UnsupportedOperationException.class);
+    withFastutil()
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().addTags(1).build();")
+            .addLine("value.getTags().remove(1);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilValueIsUnaffectedByLaterBuilderChanges() {
+    withFastutil()
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addIds(1)")
+            .addLine("    .putNames(10L, \"ten\");")
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addIds(2).putNames(20L, \"twenty\");")
+            .addLine("assertThat(value.getIds()).containsExactly(1);")
+            .addLine("assertThat(value.getNames()).isEqualTo(%s.of(10L, \"ten\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilMergeFrom() {
+    withFastutil()
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(1)")
+            .addLine("    .addTags(2)")
+            .addLine("    .putNames(10L, \"ten\")")
+            .addLine("    .build();")
+            .addLine("DataType.Builder partial = new DataType.Builder()")
+            .addLine("    .addIds(3)")
+            .addLine("    .putNames(20L, \"twenty\");")
+            .addLine("DataType merged = new DataType.Builder()")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .mergeFrom(partial)")
+            .addLine("    .build();")
+            .addLine("assertThat(merged.getIds()).containsExactly(1, 3).inOrder();")
+            .addLine("assertThat(merged.getTags()).containsExactly(2);")
+            .addLine("assertThat(merged.getNames())")
+            .addLine("    .isEqualTo(%s.of(10L, \"ten\", 20L, \"twenty\"));", ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilEquality() {
+    withFastutil()
+        .with(testBuilder()
+            .addLine("new %s()", EqualsTester.class)
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().build(),")
+            .addLine("        new DataType.Builder().build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().addIds(1, 2).putNames(3L, \"c\").build(),")
+            .addLine("        new DataType.Builder().addIds(1, 2).putNames(3L, \"c\").build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().addIds(2, 1).putNames(3L, \"c\").build())")
+            .addLine("    .testEquals();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFastutilOverriddenAddIsUsedByAddAllAndMergeFrom() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract it.unimi.dsi.fastutil.ints.IntList getIds();")
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {")
+            .addLine("    @Override public Builder addIds(int element) {")
+            .addLine("      if (element < 0) {")
+            .addLine("        throw new IllegalArgumentException(\"negative id\");")
+            .addLine("      }")
+            .addLine("      return super.addIds(element);")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}")
+            .build())
+        .with(testBuilder()
+            .addLine("it.unimi.dsi.fastutil.ints.IntArrayList ids =")
+            .addLine("    new it.unimi.dsi.fastutil.ints.IntArrayList();")
+            .addLine("ids.add(1);")
+            .addLine("ids.add(-2);")
+            .addLine("try {")
+            .addLine("  new DataType.Builder().addAllIds(ids);")
+            .addLine("  fail(\"Expected IllegalArgumentException\");")
+            .addLine("} catch (IllegalArgumentException expected) {")
+            .addLine("  assertThat(expected.getMessage()).isEqualTo(\"negative id\");")
+            .addLine("}")
+            .build());
+    withStubs(PrimitiveCollectionsLibraryStubs.FASTUTIL).runTest();
+  }
+
+  @Test
+  public void testEclipseCollectionsAddAndBuild() {
+    withEclipseCollections()
+        .with(testBuilder()
+            .addLine("org.eclipse.collections.impl.list.mutable.primitive.IntArrayList more =")
+            .addLine("    new org.eclipse.collections.impl.list.mutable.primitive.IntArrayList();")
+            .addLine("more.add(4);")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addScores(1)")
+            .addLine("    .addScores(2, 3)")
+            .addLine("    .addAllScores(more)")
+            .addLine("    .addRanks(9)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getScores().size()).isEqualTo(4);")
+            .addLine("assertThat(value.getScores().get(3)).isEqualTo(4);")
+            .addLine("assertThat(value.getRanks().get(0)).isEqualTo(9);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEclipseCollectionsBuilderGetterIsUnmodifiable() {
+    thrown.expect(UnsupportedOperationException.class);
+    withEclipseCollections()
+        .with(testBuilder()
+            .addLine("((org.eclipse.collections.api.list.primitive.MutableIntList)")
+            .addLine("    new DataType.Builder().getScores()).add(1);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEclipseCollectionsMergeFromAndClear() {
+    withEclipseCollections()
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().addScores(1).addRanks(2).build();")
+            .addLine("DataType merged = new DataType.Builder()")
+            .addLine("    .addScores(5)")
+            .addLine("    .clearScores()")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .mergeFrom(new DataType.Builder().addScores(3))")
+            .addLine("    .build();")
+            .addLine("assertThat(merged.getScores().size()).isEqualTo(2);")
+            .addLine("assertThat(merged.getScores().get(0)).isEqualTo(1);")
+            .addLine("assertThat(merged.getScores().get(1)).isEqualTo(3);")
+            .addLine("assertThat(merged.getRanks()).isEqualTo(value.getRanks());")
+            .addLine("assertThat(merged).isNotEqualTo(value);")
+            .build())
+        .runTest();
+  }
+
+  private BehaviorTester withFastutil() {
+    behaviorTester.with(new Processor(features)).with(FASTUTIL_TYPE);
+    return withStubs(PrimitiveCollectionsLibraryStubs.FASTUTIL);
+  }
+
+  private BehaviorTester withEclipseCollections() {
+    behaviorTester.with(new Processor(features)).with(ECLIPSE_COLLECTIONS_TYPE);
+    return withStubs(PrimitiveCollectionsLibraryStubs.ECLIPSE_COLLECTIONS);
+  }
+
+  private BehaviorTester withStubs(List<JavaFileObject> stubs) {
+    for (JavaFileObject stub : stubs) {
+      behaviorTester.with(stub);
+    }
+    return behaviorTester;
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableList;
+
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * Minimal stand-ins for the parts of the fastutil and Eclipse Collections APIs used by generated
+ * code, so behavior tests do not need either library on the classpath.
+ */
+class PrimitiveCollectionsLibraryStubs {
+
+  static final List<JavaFileObject> FASTUTIL = ImmutableList.of(
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public interface IntIterator extends java.util.Iterator<Integer> {")
+          .addLine("  int nextInt();")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public final class IntIterators {")
+          .addLine("  public static IntIterator wrap(final java.util.Iterator<Integer> it) {")
+          .addLine("    return new IntIterator() {")
+          .addLine("      @Override public boolean hasNext() { return it.hasNext(); }")
+          .addLine("      @Override public Integer next() { return it.next(); }")
+          .addLine("      @Override public int nextInt() { return it.next(); }")
+          .addLine("      @Override public void remove() { it.remove(); }")
+          .addLine("    };")
+          .addLine("  }")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public interface IntCollection extends java.util.Collection<Integer> {")
+          .addLine("  @Override IntIterator iterator();")
+          .addLine("  boolean add(int k);")
+          .addLine("  boolean addAll(IntCollection c);")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public interface IntList extends java.util.List<Integer>, IntCollection {")
+          .addLine("  int getInt(int index);")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public class IntArrayList extends java.util.ArrayList<Integer>")
+          .addLine("    implements IntList {")
+          .addLine("  public IntArrayList() {}")
+          .addLine("  public IntArrayList(IntCollection c) { super(c); }")
+          .addLine("  @Override public IntIterator iterator() {")
+          .addLine("    return IntIterators.wrap(super.iterator());")
+          .addLine("  }")
+          .addLine("  @Override public boolean add(int k) { return super.add(k); }")
+          .addLine("  @Override public boolean addAll(IntCollection c) { return super.addAll(c); }")
+          .addLine("  @Override public int getInt(int index) { return get(index); }")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public final class IntLists {")
+          .addLine("  public static IntList unmodifiable(final IntList list) {")
+          .addLine("    return new Unmodifiable(list);")
+          .addLine("  }")
+          .addLine("  private static class Unmodifiable extends java.util.AbstractList<Integer>")
+          .addLine("      implements IntList {")
+          .addLine("    private final IntList list;")
+          .addLine("    Unmodifiable(IntList list) { this.list = list; }")
+          .addLine("    @Override public Integer get(int index) { return list.get(index); }")
+          .addLine("    @Override public int size() { return list.size(); }")
+          .addLine("    @Override public IntIterator iterator() {")
+          .addLine("      return IntIterators.wrap(super.iterator());")
+          .addLine("    }")
+          .addLine("    @Override public boolean add(int k) {")
+          .addLine("      throw new UnsupportedOperationException();")
+          .addLine("    }")
+          .addLine("    @Override public boolean addAll(IntCollection c) {")
+          .addLine("      throw new UnsupportedOperationException();")
+          .addLine("    }")
+          .addLine("    @Override public int getInt(int index) { return list.getInt(index); }")
+          .addLine("  }")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public interface IntSet extends java.util.Set<Integer>, IntCollection {")
+          .addLine("  boolean remove(int k);")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public class IntLinkedOpenHashSet extends java.util.LinkedHashSet<Integer>")
+          .addLine("    implements IntSet {")
+          .addLine("  public IntLinkedOpenHashSet() {}")
+          .addLine("  public IntLinkedOpenHashSet(IntCollection c) { super(c); }")
+          .addLine("  @Override public IntIterator iterator() {")
+          .addLine("    return IntIterators.wrap(super.iterator());")
+          .addLine("  }")
+          .addLine("  @Override public boolean add(int k) { return super.add(k); }")
+          .addLine("  @Override public boolean addAll(IntCollection c) { return super.addAll(c); }")
+          .addLine("  @Override public boolean remove(int k) { return super.remove(k); }")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.ints;")
+          .addLine("public final class IntSets {")
+          .addLine("  public static IntSet unmodifiable(final IntSet set) {")
+          .addLine("    return new Unmodifiable(set);")
+          .addLine("  }")
+          .addLine("  private static class Unmodifiable extends java.util.AbstractSet<Integer>")
+          .addLine("      implements IntSet {")
+          .addLine("    private final IntSet set;")
+          .addLine("    Unmodifiable(IntSet set) { this.set = set; }")
+          .addLine("    @Override public int size() { return set.size(); }")
+          .addLine("    @Override public IntIterator iterator() {")
+          .addLine("      return IntIterators.wrap(")
+          .addLine("          java.util.Collections.unmodifiableSet(set).iterator());")
+          .addLine("    }")
+          .addLine("    @Override public boolean add(int k) {")
+          .addLine("      throw new UnsupportedOperationException();")
+          .addLine("    }")
+          .addLine("    @Override public boolean addAll(IntCollection c) {")
+          .addLine("      throw new UnsupportedOperationException();")
+          .addLine("    }")
+          .addLine("    @Override public boolean remove(int k) {")
+          .addLine("      throw new UnsupportedOperationException();")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.longs;")
+          .addLine("public interface Long2ObjectMap<V> extends java.util.Map<Long, V> {")
+          .addLine("  V put(long key, V value);")
+          .addLine("  V remove(long key);")
+          .addLine("  java.util.Set<Long2ObjectMap.Entry<V>> long2ObjectEntrySet();")
+          .addLine("  interface Entry<V> extends java.util.Map.Entry<Long, V> {")
+          .addLine("    long getLongKey();")
+          .addLine("  }")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.longs;")
+          .addLine("public class Long2ObjectLinkedOpenHashMap<V>")
+          .addLine("    extends java.util.LinkedHashMap<Long, V> implements Long2ObjectMap<V> {")
+          .addLine("  public Long2ObjectLinkedOpenHashMap() {}")
+          .addLine("  public Long2ObjectLinkedOpenHashMap(Long2ObjectMap<V> map) { super(map); }")
+          .addLine("  @Override public V put(long key, V value) { return super.put(key, value); }")
+          .addLine("  @Override public V remove(long key) { return super.remove(key); }")
+          .addLine("  @Override")
+          .addLine("  public java.util.Set<Long2ObjectMap.Entry<V>> long2ObjectEntrySet() {")
+          .addLine("    return Long2ObjectMaps.entries(this);")
+          .addLine("  }")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package it.unimi.dsi.fastutil.longs;")
+          .addLine("public final class Long2ObjectMaps {")
+          .addLine("  static <V> java.util.Set<Long2ObjectMap.Entry<V>> entries(")
+          .addLine("      java.util.Map<Long, V> map) {")
+          .addLine("    java.util.Set<Long2ObjectMap.Entry<V>> entries =")
+          .addLine("        new java.util.LinkedHashSet<Long2ObjectMap.Entry<V>>();")
+          .addLine("    for (final java.util.Map.Entry<Long, V> entry : map.entrySet()) {")
+          .addLine("      entries.add(new Long2ObjectMap.Entry<V>() {")
+          .addLine("        @Override public long getLongKey() { return entry.getKey(); }")
+          .addLine("        @Override public Long getKey() { return entry.getKey(); }")
+          .addLine("        @Override public V getValue() { return entry.getValue(); }")
+          .addLine("        @Override public V setValue(V value) {")
+          .addLine("          throw new UnsupportedOperationException();")
+          .addLine("        }")
+          .addLine("      });")
+          .addLine("    }")
+          .addLine("    return entries;")
+          .addLine("  }")
+          .addLine("  public static <V> Long2ObjectMap<V> unmodifiable(Long2ObjectMap<V> map) {")
+          .addLine("    return new Unmodifiable<V>(map);")
+          .addLine("  }")
+          .addLine("  private static class Unmodifiable<V> extends java.util.AbstractMap<Long, V>")
+          .addLine("      implements Long2ObjectMap<V> {")
+          .addLine("    private final Long2ObjectMap<V> map;")
+          .addLine("    Unmodifiable(Long2ObjectMap<V> map) { this.map = map; }")
+          .addLine("    @Override public java.util.Set<java.util.Map.Entry<Long, V>> entrySet() {")
+          .addLine("      return java.util.Collections.unmodifiableMap(map).entrySet();")
+          .addLine("    }")
+          .addLine("    @Override public V put(long key, V value) {")
+          .addLine("      throw new UnsupportedOperationException();")
+          .addLine("    }")
+          .addLine("    @Override public V remove(long key) {")
+          .addLine("      throw new UnsupportedOperationException();")
+          .addLine("    }")
+          .addLine("    @Override")
+          .addLine("    public java.util.Set<Long2ObjectMap.Entry<V>> long2ObjectEntrySet() {")
+          .addLine("      return entries(map);")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("}")
+          .build());
+
+  static final List<JavaFileObject> ECLIPSE_COLLECTIONS = ImmutableList.of(
+      new SourceBuilder()
+          .addLine("package org.eclipse.collections.api.iterator;")
+          .addLine("public interface IntIterator {")
+          .addLine("  boolean hasNext();")
+          .addLine("  int next();")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package org.eclipse.collections.api;")
+          .addLine("public interface IntIterable {")
+          .addLine("  org.eclipse.collections.api.iterator.IntIterator intIterator();")
+          .addLine("  int size();")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package org.eclipse.collections.api.list.primitive;")
+          .addLine("public interface IntList extends org.eclipse.collections.api.IntIterable {")
+          .addLine("  int get(int index);")
+          .addLine("  ImmutableIntList toImmutable();")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package org.eclipse.collections.api.list.primitive;")
+          .addLine("public interface ImmutableIntList extends IntList {}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package org.eclipse.collections.api.list.primitive;")
+          .addLine("public interface MutableIntList extends IntList {")
+          .addLine("  boolean add(int element);")
+          .addLine("  boolean addAll(org.eclipse.collections.api.IntIterable source);")
+          .addLine("  void clear();")
+          .addLine("  MutableIntList asUnmodifiable();")
+          .addLine("}")
+          .build(),
+      new SourceBuilder()
+          .addLine("package org.eclipse.collections.impl.list.mutable.primitive;")
+          .addLine("import java.util.ArrayList;")
+          .addLine("import java.util.Iterator;")
+          .addLine("import java.util.List;")
+          .addLine("import org.eclipse.collections.api.IntIterable;")
+          .addLine("import org.eclipse.collections.api.iterator.IntIterator;")
+          .addLine("import org.eclipse.collections.api.list.primitive.ImmutableIntList;")
+          .addLine("import org.eclipse.collections.api.list.primitive.IntList;")
+          .addLine("import org.eclipse.collections.api.list.primitive.MutableIntList;")
+          .addLine("public class IntArrayList implements MutableIntList {")
+          .addLine("  private final List<Integer> elements;")
+          .addLine("  private final boolean modifiable;")
+          .addLine("  public IntArrayList() { this(new ArrayList<Integer>(), true); }")
+          .addLine("  IntArrayList(List<Integer> elements, boolean modifiable) {")
+          .addLine("    this.elements = elements;")
+          .addLine("    this.modifiable = modifiable;")
+          .addLine("  }")
+          .addLine("  @Override public int get(int index) { return elements.get(index); }")
+          .addLine("  @Override public int size() { return elements.size(); }")
+          .addLine("  @Override public IntIterator intIterator() {")
+          .addLine("    final Iterator<Integer> it = elements.iterator();")
+          .addLine("    return new IntIterator() {")
+          .addLine("      @Override public boolean hasNext() { return it.hasNext(); }")
+          .addLine("      @Override public int next() { return it.next(); }")
+          .addLine("    };")
+          .addLine("  }")
+          .addLine("  @Override public boolean add(int element) {")
+          .addLine("    checkModifiable();")
+          .addLine("    return elements.add(element);")
+          .addLine("  }")
+          .addLine("  @Override public boolean addAll(IntIterable source) {")
+          .addLine("    checkModifiable();")
+          .addLine("    IntIterator it = source.intIterator();")
+          .addLine("    while (it.hasNext()) {")
+          .addLine("      elements.add(it.next());")
+          .addLine("    }")
+          .addLine("    return true;")
+          .addLine("  }")
+          .addLine("  @Override public void clear() {")
+          .addLine("    checkModifiable();")
+          .addLine("    elements.clear();")
+          .addLine("  }")
+          .addLine("  @Override public MutableIntList asUnmodifiable() {")
+          .addLine("    return new IntArrayList(elements, false);")
+          .addLine("  }")
+          .addLine("  @Override public ImmutableIntList toImmutable() {")
+          .addLine("    return new Immutable(new ArrayList<Integer>(elements));")
+          .addLine("  }")
+          .addLine("  @Override public boolean equals(Object obj) {")
+          .addLine("    if (!(obj instanceof IntList) || ((IntList) obj).size() != size()) {")
+          .addLine("      return false;")
+          .addLine("    }")
+          .addLine("    for (int i = 0; i < size(); i++) {")
+          .addLine("      if (get(i) != ((IntList) obj).get(i)) {")
+          .addLine("        return false;")
+          .addLine("      }")
+          .addLine("    }")
+          .addLine("    return true;")
+          .addLine("  }")
+          .addLine("  @Override public int hashCode() { return elements.hashCode(); }")
+          .addLine("  @Override public String toString() { return elements.toString(); }")
+          .addLine("  private void checkModifiable() {")
+          .addLine("    if (!modifiable) {")
+          .addLine("      throw new UnsupportedOperationException();")
+          .addLine("    }")
+          .addLine("  }")
+          .addLine("  private static class Immutable extends IntArrayList")
+          .addLine("      implements ImmutableIntList {")
+          .addLine("    Immutable(List<Integer> elements) { super(elements, false); }")
+          .addLine("  }")
+          .addLine("}")
+          .build());
+
+  private PrimitiveCollectionsLibraryStubs() {}
+}
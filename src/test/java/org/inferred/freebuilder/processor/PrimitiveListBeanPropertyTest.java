@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.SOURCE_LEVEL;
+import static org.junit.Assume.assumeTrue;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for {@code List<Integer>}, {@code List<Long>} and {@code List<Double>}. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class PrimitiveListBeanPropertyTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  private static final JavaFileObject PRIMITIVE_LISTS_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract %s<Integer> getInts();", List.class)
+      .addLine("  public abstract %s<Long> getLongs();", List.class)
+      .addLine("  public abstract %s<Double> getDoubles();", List.class)
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testAddElements() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addInts(1)")
+            .addLine("    .addInts(2, 3)")
+            .addLine("    .addAllInts(new int[] { 4, 5 })")
+            .addLine("    .addLongs(6L)")
+            .addLine("    .addAllLongs(%s.asList(7L, 8L))", Arrays.class)
+            .addLine("    .addDoubles(9.5, -0.0)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getInts()).containsExactly(1, 2, 3, 4, 5).inOrder();")
+            .addLine("assertThat(value.getLongs()).containsExactly(6L, 7L, 8L).inOrder();")
+            .addLine("assertThat(value.getDoubles()).containsExactly(9.5, -0.0).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddAllGrowsBeyondInitialCapacity() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("for (int i = 0; i < 100; i++) {")
+            .addLine("  builder.addInts(i);")
+            .addLine("}")
+            .addLine("DataType value = builder.build();")
+            .addLine("assertThat(value.getInts()).hasSize(100);")
+            .addLine("assertThat(value.getInts().get(99)).isEqualTo(99);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualsAndHashCodeMatchBoxedLists() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addInts(1, 2, 3)")
+            .addLine("    .addDoubles(0.5, Double.NaN)")
+            .addLine("    .build();")
+            .addLine("%s<Integer> ints = %s.asList(1, 2, 3);", List.class, Arrays.class)
+            .addLine("%s<Double> doubles = %s.asList(0.5, Double.NaN);",
+                List.class, Arrays.class)
+            .addLine("assertThat(value.getInts()).isEqualTo(ints);")
+            .addLine("assertThat(ints).isEqualTo(value.getInts());")
+            .addLine("assertThat(value.getInts().hashCode()).isEqualTo(ints.hashCode());")
+            .addLine("assertThat(value.getDoubles()).isEqualTo(doubles);")
+            .addLine("assertThat(value.getDoubles().hashCode()).isEqualTo(doubles.hashCode());")
+            .addLine("assertThat(value).isEqualTo(new DataType.Builder()")
+            .addLine("    .addAllInts(ints)")
+            .addLine("    .addAllDoubles(doubles)")
+            .addLine("    .build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuiltListIsImmutable() {
+    thrown.expect(UnsupportedOperationException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().addInts(1).build();")
+            .addLine("value.getInts().add(2);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddAfterBuildDoesNotModifyBuiltValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder().addInts(1, 2);")
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addInts(3);")
+            .addLine("assertThat(value.getInts()).containsExactly(1, 2).inOrder();")
+            .addLine("assertThat(builder.build().getInts()).containsExactly(1, 2, 3).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFromValueSharesBuiltList() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().addInts(1, 2).build();")
+            .addLine("DataType.Builder copy = new DataType.Builder().mergeFrom(value);")
+            .addLine("assertThat(copy.build().getInts()).isSameAs(value.getInts());")
+            .addLine("copy.addInts(3);")
+            .addLine("assertThat(value.getInts()).containsExactly(1, 2).inOrder();")
+            .addLine("assertThat(copy.build().getInts()).containsExactly(1, 2, 3).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFromBuilderAppends() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder template = new DataType.Builder().addLongs(3L, 4L);")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addLongs(1L, 2L)")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getLongs()).containsExactly(1L, 2L, 3L, 4L).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGetterReflectsBuilderChanges() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder().addInts(1);")
+            .addLine("%s<Integer> view = builder.getInts();", List.class)
+            .addLine("builder.addInts(2);")
+            .addLine("assertThat(view).containsExactly(1, 2).inOrder();")
+            .addLine("builder.clearInts();")
+            .addLine("assertThat(view).isEmpty();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testClear() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addInts(1, 2)")
+            .addLine("    .clearInts()")
+            .addLine("    .addInts(3)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getInts()).containsExactly(3);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddAllNullElement() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().addAllInts(%s.asList(1, null));", Arrays.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddAllPrimitiveStream() {
+    assumeTrue("Environment has streams", features.get(SOURCE_LEVEL).stream().isPresent());
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addAllInts(java.util.stream.IntStream.range(0, 3))")
+            .addLine("    .addAllLongs(java.util.stream.LongStream.of(5L))")
+            .addLine("    .addAllDoubles(java.util.stream.Stream.of(1.5))")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getInts()).containsExactly(0, 1, 2).inOrder();")
+            .addLine("assertThat(value.getLongs()).containsExactly(5L);")
+            .addLine("assertThat(value.getDoubles()).containsExactly(1.5);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMutate() {
+    assumeTrue("Environment has lambdas", features.get(FUNCTION_PACKAGE).consumer().isPresent());
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_LISTS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addInts(1, 2, 3, 4)")
+            .addLine("    .mutateInts(ints -> {")
+            .addLine("      ints.remove(0);")
+            .addLine("      ints.set(0, 7);")
+            .addLine("      ints.add(1, 8);")
+            .addLine("      ints.subList(2, 3).clear();")
+            .addLine("    })")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getInts()).containsExactly(7, 8, 4).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder().addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.testing.EqualsTester;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for {@code OptionalInt}, {@code OptionalLong} and {@code OptionalDouble}. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class PrimitiveOptionalPropertyTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.WITH_LAMBDAS;
+  }
+
+  private static final JavaFileObject PRIMITIVE_OPTIONALS_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract %s getCount();", OptionalInt.class)
+      .addLine("  public abstract %s getTotal();", OptionalLong.class)
+      .addLine("  public abstract %s getMean();", OptionalDouble.class)
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testDefaultsToEmpty() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().build();")
+            .addLine("assertThat(value.getCount()).isEqualTo(%s.empty());", OptionalInt.class)
+            .addLine("assertThat(value.getTotal()).isEqualTo(%s.empty());", OptionalLong.class)
+            .addLine("assertThat(value.getMean()).isEqualTo(%s.empty());", OptionalDouble.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSetPrimitive() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setCount(3)")
+            .addLine("    .setTotal(7L)")
+            .addLine("    .setMean(2.5)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getCount()).isEqualTo(%s.of(3));", OptionalInt.class)
+            .addLine("assertThat(value.getTotal()).isEqualTo(%s.of(7L));", OptionalLong.class)
+            .addLine("assertThat(value.getMean()).isEqualTo(%s.of(2.5));", OptionalDouble.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSetOptional() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setCount(5)")
+            .addLine("    .setCount(%s.empty())", OptionalInt.class)
+            .addLine("    .setTotal(%s.of(9L))", OptionalLong.class)
+            .addLine("    .build();")
+            .addLine("assertThat(value.getCount().isPresent()).isFalse();")
+            .addLine("assertThat(value.getTotal()).isEqualTo(%s.of(9L));", OptionalLong.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testSetNullOptional() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().setCount((%s) null);", OptionalInt.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testClear() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder().setMean(1.5);")
+            .addLine("assertThat(builder.getMean()).isEqualTo(%s.of(1.5));", OptionalDouble.class)
+            .addLine("builder.clearMean();")
+            .addLine("assertThat(builder.getMean().isPresent()).isFalse();")
+            .addLine("assertThat(builder.build().getMean().isPresent()).isFalse();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMapper() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setCount(4)")
+            .addLine("    .mapCount(count -> count * 10)")
+            .addLine("    .mapTotal(total -> total + 1)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getCount()).isEqualTo(%s.of(40));", OptionalInt.class)
+            .addLine("assertThat(value.getTotal().isPresent()).isFalse();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMapperUsesOverriddenSetter() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract %s getCount();", OptionalInt.class)
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {")
+            .addLine("    @Override public Builder setCount(int count) {")
+            .addLine("      if (count < 0) {")
+            .addLine("        throw new IllegalArgumentException(\"count must be non-negative\");")
+            .addLine("      }")
+            .addLine("      return super.setCount(count);")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}")
+            .build())
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder().setCount(2);")
+            .addLine("try {")
+            .addLine("  builder.mapCount(count -> -count);")
+            .addLine("  fail(\"Expected IllegalArgumentException\");")
+            .addLine("} catch (IllegalArgumentException expected) {}")
+            .addLine("assertThat(builder.build().getCount()).isEqualTo(%s.of(2));",
+                OptionalInt.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setCount(1).setMean(0.5).build();")
+            .addLine("DataType.Builder template = new DataType.Builder().setTotal(3L);")
+            .addLine("DataType merged = new DataType.Builder()")
+            .addLine("    .setCount(9)")
+            .addLine("    .setTotal(8L)")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertThat(merged.getCount()).isEqualTo(%s.of(1));", OptionalInt.class)
+            .addLine("assertThat(merged.getTotal()).isEqualTo(%s.of(3L));", OptionalLong.class)
+            .addLine("assertThat(merged.getMean()).isEqualTo(%s.of(0.5));", OptionalDouble.class)
+            .addLine("assertThat(DataType.Builder.from(merged).build()).isEqualTo(merged);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testReset() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder().setCount(1).setTotal(2L);")
+            .addLine("builder.reset();")
+            .addLine("assertThat(builder.build()).isEqualTo(new DataType.Builder().build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("new %s()", EqualsTester.class)
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().build(),")
+            .addLine("        new DataType.Builder().setCount(0).clearCount().build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().setCount(0).build(),")
+            .addLine("        new DataType.Builder().setCount(%s.of(0)).build())",
+                OptionalInt.class)
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().setMean(Double.NaN).build(),")
+            .addLine("        new DataType.Builder().setMean(Double.NaN).build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().setTotal(1L).setMean(-0.0).build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().setTotal(1L).setMean(0.0).build())")
+            .addLine("    .addEqualityGroup(")
+            .addLine("        new DataType.Builder().setCount(2).buildPartial(),")
+            .addLine("        new DataType.Builder().setCount(2).buildPartial())")
+            .addLine("    .testEquals();")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setCount(7)")
+            .addLine("    .setTotal(1L << 40)")
+            .addLine("    .setMean(2.5)")
+            .addLine("    .build();")
+            .addLine("assertEquals(")
+            .addLine("    %s.hash(value.getCount(), value.getTotal(), value.getMean()),",
+                Objects.class)
+            .addLine("    value.hashCode());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testValueStoresPrimitives() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setCount(3).build();")
+            .addLine("for (%s field : value.getClass().getDeclaredFields()) {", Field.class)
+            .addLine("  assertTrue(field.toString(), field.getType().isPrimitive());")
+            .addLine("}")
+            .addLine("assertEquals(%s.of(3), value.getCount());", OptionalInt.class)
+            .addLine("assertEquals(%s.empty(), value.getTotal());", OptionalLong.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testToString() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_OPTIONALS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().setCount(3).build();")
+            .addLine("assertThat(value.toString()).isEqualTo(")
+            .addLine("    \"DataType{count=OptionalInt[3], total=OptionalLong.empty, \"")
+            .addLine("        + \"mean=OptionalDouble.empty}\");")
+            .addLine("DataType partial = new DataType.Builder().setMean(1.5).buildPartial();")
+            .addLine("assertThat(partial.toString()).isEqualTo(")
+            .addLine("    \"partial DataType{count=OptionalInt.empty, total=OptionalLong.empty, \"")
+            .addLine("        + \"mean=OptionalDouble[1.5]}\");")
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder().addImport("com.example.DataType");
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for {@code Set<Integer>}, {@code Set<Long>} and {@code Map<Long, V>}. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class PrimitiveSetMapPropertyTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  private static final JavaFileObject PRIMITIVE_KEYS_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract %s<Integer> getInts();", Set.class)
+      .addLine("  public abstract %s<Long> getLongs();", Set.class)
+      .addLine("  public abstract %s<Long, String> getNames();", Map.class)
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testAddKeepsInsertionOrderAndIgnoresDuplicates() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addInts(3, 1, 3, 2)")
+            .addLine("    .addLongs(5L)")
+            .addLine("    .addAllLongs(%s.of(4L, 5L, 6L))", ImmutableSet.class)
+            .addLine("    .putNames(2L, \"two\")")
+            .addLine("    .putNames(1L, \"one\")")
+            .addLine("    .putNames(2L, \"deux\")")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getInts()).containsExactly(3, 1, 2).inOrder();")
+            .addLine("assertThat(value.getLongs()).containsExactly(5L, 4L, 6L).inOrder();")
+            .addLine("assertThat(value.getNames().keySet()).containsExactly(2L, 1L).inOrder();")
+            .addLine("assertThat(value.getNames())")
+            .addLine("    .isEqualTo(%s.of(2L, \"deux\", 1L, \"one\"));",
+                ImmutableMap.class)
+            .addLine("assertThat(value.getNames().get(1L)).isEqualTo(\"one\");")
+            .addLine("assertThat(value.getNames().get(3L)).isNull();")
+            .addLine("assertThat(value.getLongs().contains(4L)).isTrue();")
+            .addLine("assertThat(value.getLongs().contains(4)).isFalse();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testRemove() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addInts(1, 2, 3, 4)")
+            .addLine("    .removeInts(2)")
+            .addLine("    .removeInts(7)")
+            .addLine("    .addInts(2)")
+            .addLine("    .putNames(1L, \"one\")")
+            .addLine("    .putNames(2L, \"two\")")
+            .addLine("    .removeNames(1L)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getInts()).containsExactly(1, 3, 4, 2).inOrder();")
+            .addLine("assertThat(value.getNames()).isEqualTo(%s.of(2L, \"two\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testGrowsBeyondInitialCapacity() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("for (long i = 0; i < 1000; i++) {")
+            .addLine("  builder.addLongs(i * 1024).putNames(-i, \"\" + i);")
+            .addLine("}")
+            .addLine("for (long i = 0; i < 500; i++) {")
+            .addLine("  builder.removeLongs(i * 2048);")
+            .addLine("}")
+            .addLine("DataType value = builder.build();")
+            .addLine("assertThat(value.getLongs()).hasSize(500);")
+            .addLine("assertThat(value.getLongs().contains(1024L)).isTrue();")
+            .addLine("assertThat(value.getLongs().contains(2048L)).isFalse();")
+            .addLine("assertThat(value.getNames()).hasSize(1000);")
+            .addLine("assertThat(value.getNames().get(-999L)).isEqualTo(\"999\");")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualsAndHashCodeMatchBoxedCollections() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addLongs(1L, -1L, Long.MAX_VALUE)")
+            .addLine("    .putNames(1L, \"one\")")
+            .addLine("    .putNames(-7L, \"minus seven\")")
+            .addLine("    .build();")
+            .addLine("%s<Long> longs = %s.of(Long.MAX_VALUE, 1L, -1L);",
+                Set.class, ImmutableSet.class)
+            .addLine("%s<Long, String> names = %s.of(-7L, \"minus seven\", 1L, \"one\");",
+                Map.class, ImmutableMap.class)
+            .addLine("assertThat(value.getLongs()).isEqualTo(longs);")
+            .addLine("assertThat(longs).isEqualTo(value.getLongs());")
+            .addLine("assertThat(value.getLongs().hashCode()).isEqualTo(longs.hashCode());")
+            .addLine("assertThat(value.getNames()).isEqualTo(names);")
+            .addLine("assertThat(names).isEqualTo(value.getNames());")
+            .addLine("assertThat(value.getNames().hashCode()).isEqualTo(names.hashCode());")
+            .addLine("assertThat(value).isEqualTo(new DataType.Builder()")
+            .addLine("    .addAllLongs(longs)")
+            .addLine("    .putAllNames(names)")
+            .addLine("    .build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuiltSetIsImmutable() {
+    thrown.expect(UnsupportedOperationException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().addLongs(1L).build();")
+            .addLine("value.getLongs().add(2L);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuiltMapIsImmutable() {
+    thrown.expect(UnsupportedOperationException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().putNames(1L, \"one\").build();")
+            .addLine("value.getNames().remove(1L);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddAfterBuildDoesNotModifyBuiltValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addInts(1, 2)")
+            .addLine("    .putNames(1L, \"one\");")
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addInts(3).removeInts(1).putNames(1L, \"uno\");")
+            .addLine("assertThat(value.getInts()).containsExactly(1, 2).inOrder();")
+            .addLine("assertThat(value.getNames()).isEqualTo(%s.of(1L, \"one\"));",
+                ImmutableMap.class)
+            .addLine("assertThat(builder.build().getInts()).containsExactly(2, 3).inOrder();")
+            .addLine("assertThat(builder.build().getNames()).isEqualTo(%s.of(1L, \"uno\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFromValueSharesBuiltCollections() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addLongs(1L, 2L)")
+            .addLine("    .putNames(1L, \"one\")")
+            .addLine("    .build();")
+            .addLine("DataType.Builder copy = new DataType.Builder().mergeFrom(value);")
+            .addLine("assertThat(copy.build().getLongs()).isSameAs(value.getLongs());")
+            .addLine("assertThat(copy.build().getNames()).isSameAs(value.getNames());")
+            .addLine("copy.addLongs(3L).putNames(2L, \"two\");")
+            .addLine("assertThat(value.getLongs()).containsExactly(1L, 2L).inOrder();")
+            .addLine("assertThat(value.getNames()).isEqualTo(%s.of(1L, \"one\"));",
+                ImmutableMap.class)
+            .addLine("assertThat(copy.build().getLongs()).containsExactly(1L, 2L, 3L).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFromBuilder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder template = new DataType.Builder()")
+            .addLine("    .addInts(2, 3)")
+            .addLine("    .putNames(2L, \"two\");")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addInts(1, 2)")
+            .addLine("    .putNames(1L, \"one\")")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getInts()).containsExactly(1, 2, 3).inOrder();")
+            .addLine("assertThat(value.getNames().keySet()).containsExactly(1L, 2L).inOrder();")
+            .addLine("assertThat(value.getNames())")
+            .addLine("    .isEqualTo(%s.of(1L, \"one\", 2L, \"two\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMutateIteratorRemovesFromBuilder() {
+    assumeTrue("Environment has lambdas", features.get(FUNCTION_PACKAGE).consumer().isPresent());
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addInts(1, 2, 3)")
+            .addLine("    .putNames(1L, \"one\")")
+            .addLine("    .putNames(2L, \"two\");")
+            .addLine("%s<Integer> view = builder.getInts();", Set.class)
+            .addLine("builder.addInts(4);")
+            .addLine("assertThat(view).containsExactly(1, 2, 3, 4).inOrder();")
+            .addLine("builder.mutateInts(ints -> {")
+            .addLine("  for (%s<Integer> it = ints.iterator(); it.hasNext();) {", Iterator.class)
+            .addLine("    if (it.next() %% 2 == 0) {")
+            .addLine("      it.remove();")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("});")
+            .addLine("builder.mutateNames(names -> names.entrySet().iterator().next()")
+            .addLine("    .setValue(\"uno\"));")
+            .addLine("DataType value = builder.build();")
+            .addLine("assertThat(value.getInts()).containsExactly(1, 3).inOrder();")
+            .addLine("assertThat(value.getNames().keySet()).containsExactly(1L, 2L).inOrder();")
+            .addLine("assertThat(value.getNames())")
+            .addLine("    .isEqualTo(%s.of(1L, \"uno\", 2L, \"two\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMutateRemoveIfRemovesMostOfLargeCollections() {
+    assumeTrue("Environment has lambdas", features.get(FUNCTION_PACKAGE).consumer().isPresent());
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("for (int i = 0; i < 20000; i++) {")
+            .addLine("  builder.addInts(i);")
+            .addLine("  builder.putNames(i, Integer.toString(i));")
+            .addLine("}")
+            .addLine("builder.mutateInts(ints -> ints.removeIf(i -> i %% 100 != 0));")
+            .addLine("builder.mutateNames(names -> names.keySet().removeIf(k -> k %% 100 != 0));")
+            .addLine("assertThat(builder.getInts()).hasSize(200);")
+            .addLine("assertThat(builder.getInts()).contains(19900);")
+            .addLine("assertThat(builder.getInts()).doesNotContain(19901);")
+            .addLine("assertThat(builder.getNames()).containsEntry(19900L, \"19900\");")
+            .addLine("builder.addInts(1, 0).putNames(1L, \"one\").removeInts(19900);")
+            .addLine("DataType value = builder.build();")
+            .addLine("assertThat(value.getInts()).hasSize(200);")
+            .addLine("assertThat(value.getInts()).containsAllOf(0, 100, 19800, 1).inOrder();")
+            .addLine("assertThat(value.getInts()).doesNotContain(19900);")
+            .addLine("assertThat(value.getNames()).hasSize(201);")
+            .addLine("assertThat(value.getNames().keySet())")
+            .addLine("    .containsAllOf(0L, 100L, 19900L, 1L).inOrder();")
+            .addLine("assertThat(value.getNames()).containsEntry(1L, \"one\");")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testPutNullValue() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().putNames(1L, null);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddAllNullElement() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(PRIMITIVE_KEYS_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().addAllLongs(%s.asList(1L, null));", Arrays.class)
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder().addImport("com.example.DataType");
+  }
+}
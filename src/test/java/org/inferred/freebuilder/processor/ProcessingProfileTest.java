@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.ProcessingProfile.Phase;
+import org.inferred.freebuilder.processor.util.QualifiedName;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.tools.JavaFileObject;
+
+public class ProcessingProfileTest {
+
+  private static final QualifiedName FOO = QualifiedName.of("com.example", "Foo");
+  private static final QualifiedName BAR = QualifiedName.of("com.example", "Bar");
+  private static final long MILLI = 1000000;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void summary() {
+    ProcessingProfile profile = new ProcessingProfile();
+    profile.record(FOO, Phase.ANALYSE, 2 * MILLI, 0);
+    profile.record(FOO, Phase.FIND_METHODS, 1 * MILLI, 0);
+    profile.record(FOO, Phase.GENERATE, 3 * MILLI, 0);
+    profile.record(BAR, Phase.ANALYSE, 4 * MILLI, 0);
+    profile.record(BAR, Phase.WRITE, 1 * MILLI, 0);
+    assertEquals(
+        "FreeBuilder processed 2 types in 10.0 ms "
+            + "(analyse 6.0 ms, generate 3.0 ms, format 0.0 ms, write 1.0 ms)",
+        profile.summary());
+  }
+
+  @Test
+  public void report() throws IOException {
+    ProcessingProfile profile = new ProcessingProfile();
+    for (int i = 1; i <= 20; i++) {
+      QualifiedName type = QualifiedName.of("com.example", "Type" + i);
+      profile.record(type, Phase.ANALYSE, i * MILLI, 1000);
+      profile.record(type, Phase.FIND_METHODS, MILLI / 2, 100);
+    }
+    File file = new File(temporaryFolder.getRoot(), "reports/profile.json");
+    profile.writeReport(file);
+
+    JsonNode report = new ObjectMapper().readTree(file);
+    assertEquals(20, report.get("types").asInt());
+    assertEquals(210.0, report.get("totalMillis").asDouble(), 0.0);
+    JsonNode analyse = report.get("phases").get("analyse");
+    assertEquals(210.0, analyse.get("totalMillis").asDouble(), 0.0);
+    assertEquals(20000, analyse.get("allocatedBytes").asLong());
+    assertEquals(10.0, analyse.get("p50Millis").asDouble(), 0.0);
+    assertEquals(18.0, analyse.get("p90Millis").asDouble(), 0.0);
+    assertEquals(20.0, analyse.get("p99Millis").asDouble(), 0.0);
+    assertEquals(20.0, analyse.get("maxMillis").asDouble(), 0.0);
+    assertEquals(10.0, report.get("phases").get("methodsOn").get("totalMillis").asDouble(), 0.0);
+    JsonNode slowest = report.get("slowestTypes");
+    assertEquals(10, slowest.size());
+    assertEquals("com.example.Type20", slowest.get(0).get("type").asText());
+    assertEquals(20.0, slowest.get(0).get("totalMillis").asDouble(), 0.0);
+    assertEquals(0.5, slowest.get(0).get("methodsOnMillis").asDouble(), 0.0);
+    assertEquals("com.example.Type11", slowest.get(9).get("type").asText());
+  }
+
+  @Test
+  public void processorWritesProfile() throws IOException {
+    File file = new File(temporaryFolder.getRoot(), "profile.json");
+    RecordingProcessor processor =
+        new RecordingProcessor(ImmutableMap.of(Processor.PROFILE_OPTION, file.getPath()));
+    BehaviorTester behaviorTester = BehaviorTester.create();
+    behaviorTester
+        .with(processor)
+        .with(type("FirstType"))
+        .with(type("SecondType"))
+        .compiles();
+
+    JsonNode report = new ObjectMapper().readTree(file);
+    assertEquals(2, report.get("types").asInt());
+    assertThat(report.get("phases").get("generate").get("totalMillis").asDouble())
+        .isGreaterThan(0.0);
+    assertEquals(2, report.get("slowestTypes").size());
+    assertThat(processor.messages).hasSize(1);
+    assertThat(processor.messages.get(0)).startsWith("FreeBuilder processed 2 types in ");
+    assertThat(processor.messages.get(0)).endsWith("; profile written to " + file);
+  }
+
+  private static JavaFileObject type(String name) {
+    return new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public interface %s {", name)
+        .addLine("  String getName();")
+        .addLine("")
+        .addLine("  class Builder extends %s_Builder {}", name)
+        .addLine("}")
+        .build();
+  }
+}
@@ -23,7 +23,9 @@ import com.google.gwt.user.server.rpc.RPC;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.inferred.freebuilder.CachedHashCode;
 import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.InternValues;
 import org.inferred.freebuilder.processor.util.feature.FeatureSet;
 import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
 import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
@@ -47,6 +49,7 @@ import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.tools.JavaFileObject;
@@ -110,6 +113,18 @@ public class ProcessorTest {
       .addLine("}")
       .build();
 
+  private static final JavaFileObject INTERNED_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("@%s", InternValues.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract int getPropertyA();")
+      .addLine("  public abstract String getPropertyB();")
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
   @Parameter public FeatureSet features;
 
   @Rule public final ExpectedException thrown = ExpectedException.none();
@@ -543,6 +558,396 @@ public class ProcessorTest {
         .runTest();
   }
 
+  @Test
+  public void testHashCode_matchesArraysHashCode() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract boolean isFlag();")
+            .addLine("  public abstract byte getFlags();")
+            .addLine("  public abstract char getInitial();")
+            .addLine("  public abstract short getPort();")
+            .addLine("  public abstract int getOffset();")
+            .addLine("  public abstract long getId();")
+            .addLine("  public abstract float getRatio();")
+            .addLine("  public abstract double getScore();")
+            .addLine("  public abstract String getName();")
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .setFlag(true)")
+            .addLine("    .setFlags((byte) -3)")
+            .addLine("    .setInitial('q')")
+            .addLine("    .setPort((short) 1024)")
+            .addLine("    .setOffset(-77)")
+            .addLine("    .setId(0x123456789abcdefL)")
+            .addLine("    .setRatio(-2.5f)")
+            .addLine("    .setScore(Math.PI)")
+            .addLine("    .setName(\"Bob\")")
+            .addLine("    .build();")
+            .addLine("assertEquals(%s.hashCode(new Object[] {", Arrays.class)
+            .addLine("        true, (byte) -3, 'q', (short) 1024, -77, 0x123456789abcdefL,")
+            .addLine("        -2.5f, Math.PI, \"Bob\" }),")
+            .addLine("    value.hashCode());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testStaticFactory() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract String getName();")
+            .addLine("  public abstract long getId();")
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType value = com.example.DataType.Builder.of(\"a\", 3L);")
+            .addLine("assertEquals(\"a\", value.getName());")
+            .addLine("assertEquals(3L, value.getId());")
+            .addLine("assertEquals(new com.example.DataType.Builder()")
+            .addLine("    .setName(\"a\")")
+            .addLine("    .setId(3L)")
+            .addLine("    .build(), value);")
+            .addLine("assertEquals(value, com.example.DataType.Builder.from(value).build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testStaticFactory_nullParameter() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract String getName();")
+            .addLine("  public abstract long getId();")
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder.of(null, 3L);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testStaticFactory_genericType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public interface Pair<A, B> {")
+            .addLine("  A getFirst();")
+            .addLine("  B getSecond();")
+            .addLine("")
+            .addLine("  class Builder<A, B> extends Pair_Builder<A, B> {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.Pair<String, Integer> pair =")
+            .addLine("    com.example.Pair.Builder.of(\"a\", 1);")
+            .addLine("assertEquals(\"a\", pair.getFirst());")
+            .addLine("assertEquals((Integer) 1, pair.getSecond());")
+            .addLine("assertEquals(\"Pair{first=a, second=1}\", pair.toString());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuild_returnsLastValueUntilModified() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract int getPropertyA();")
+            .addLine("  public abstract %s<String> getPropertyB();", List.class)
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(1)")
+            .addLine("    .addPropertyB(\"a\");")
+            .addLine("com.example.DataType first = builder.build();")
+            .addLine("assertSame(first, builder.build());")
+            .addLine("builder.getPropertyB();")
+            .addLine("assertSame(first, builder.build());")
+            .addLine("builder.setPropertyA(2);")
+            .addLine("com.example.DataType second = builder.build();")
+            .addLine("assertNotSame(first, second);")
+            .addLine("assertEquals(2, second.getPropertyA());")
+            .addLine("assertSame(second, builder.build());")
+            .addLine("builder.addPropertyB(\"b\");")
+            .addLine("assertEquals(%s.asList(\"a\", \"b\"), builder.build().getPropertyB());",
+                Arrays.class)
+            .addLine("assertEquals(%s.asList(\"a\"), second.getPropertyB());", Arrays.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuild_bulkModificationsDiscardLastValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract int getPropertyA();")
+            .addLine("  public abstract %s<String> getPropertyB();", List.class)
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {")
+            .addLine("    public Builder() {")
+            .addLine("      setPropertyA(0);")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType template = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(5)")
+            .addLine("    .addPropertyB(\"t\")")
+            .addLine("    .build();")
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder()")
+            .addLine("    .addPropertyB(\"a\");")
+            .addLine("com.example.DataType value = builder.build();")
+            .addLine("builder.clear();")
+            .addLine("assertEquals(new com.example.DataType.Builder().build(), builder.build());")
+            .addLine("value = builder.build();")
+            .addLine("builder.mergeFrom(template);")
+            .addLine("assertEquals(template, builder.build());")
+            .addLine("value = builder.build();")
+            .addLine("builder.mergeFrom(new com.example.DataType.Builder().addPropertyB(\"c\"));")
+            .addLine("assertEquals(%s.asList(\"t\", \"c\"), builder.build().getPropertyB());",
+                Arrays.class)
+            .addLine("assertEquals(%s.asList(\"t\"), value.getPropertyB());", Arrays.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testReset() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract String getName();")
+            .addLine("  public abstract int getCount();")
+            .addLine("  public abstract %s<String> getTags();", List.class)
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {")
+            .addLine("    public Builder() {")
+            .addLine("      setCount(7);")
+            .addLine("    }")
+            .addLine("  }")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder builder = new com.example.DataType.Builder();")
+            .addLine("for (int i = 0; i < 3; i++) {")
+            .addLine("  com.example.DataType value = builder.reset()")
+            .addLine("      .setName(\"n\" + i)")
+            .addLine("      .addTags(\"t\" + i)")
+            .addLine("      .build();")
+            .addLine("  assertEquals(\"n\" + i, value.getName());")
+            .addLine("  assertEquals(7, value.getCount());")
+            .addLine("  assertEquals(%s.asList(\"t\" + i), value.getTags());", Arrays.class)
+            .addLine("  builder.setCount(i);")
+            .addLine("}")
+            .addLine("builder.reset();")
+            .addLine("assertEquals(7, builder.getCount());")
+            .addLine("assertThat(builder.getTags()).isEmpty();")
+            .addLine("try {")
+            .addLine("  builder.build();")
+            .addLine("  fail(\"Expected IllegalStateException\");")
+            .addLine("} catch (IllegalStateException expected) {")
+            .addLine("  assertEquals(\"Not set: [name]\", expected.getMessage());")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCachedHashCode() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", CachedHashCode.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract int getPropertyA();")
+            .addLine("  public abstract %s<String> getPropertyB();", List.class)
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType value = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(11)")
+            .addLine("    .addPropertyB(\"a\", \"b\")")
+            .addLine("    .build();")
+            .addLine("int expected = %s.hashCode(new Object[] {", Arrays.class)
+            .addLine("    11, %s.asList(\"a\", \"b\") });", Arrays.class)
+            .addLine("assertEquals(expected, value.hashCode());")
+            .addLine("assertEquals(expected, value.hashCode());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCachedHashCodeEquality() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", CachedHashCode.class)
+            .addLine("public abstract class DataType {")
+            .addLine("  public abstract int getPropertyA();")
+            .addLine("  public abstract String getPropertyB();")
+            .addLine("")
+            .addLine("  public static class Builder extends DataType_Builder {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType a1 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(1).setPropertyB(\"a\").build();")
+            .addLine("com.example.DataType a2 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(1).setPropertyB(\"a\").build();")
+            .addLine("com.example.DataType b = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(2).setPropertyB(\"a\").build();")
+            .addLine("// Compare before and after hash codes are cached")
+            .addLine("assertEquals(a1, a2);")
+            .addLine("assertFalse(a1.equals(b));")
+            .addLine("new %s()", EqualsTester.class)
+            .addLine("    .addEqualityGroup(a1, a2)")
+            .addLine("    .addEqualityGroup(b)")
+            .addLine("    .testEquals();")
+            .addLine("assertEquals(a1, a2);")
+            .addLine("assertFalse(a1.equals(b));")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testInternValues() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType a1 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(1).setPropertyB(\"a\").buildInterned();")
+            .addLine("com.example.DataType a2 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(1).setPropertyB(\"a\").buildInterned();")
+            .addLine("com.example.DataType a3 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(1).setPropertyB(\"a\").build();")
+            .addLine("com.example.DataType b = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(2).setPropertyB(\"a\").buildInterned();")
+            .addLine("assertThat(a2).isSameAs(a1);")
+            .addLine("assertThat(a3).isNotSameAs(a1);")
+            .addLine("assertThat(com.example.DataType.Builder.intern(a3)).isSameAs(a1);")
+            .addLine("assertThat(b).isNotSameAs(a1);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testInternValuesEquality() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType a1 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(1).setPropertyB(\"a\").buildInterned();")
+            .addLine("com.example.DataType a2 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(1).setPropertyB(\"a\").build();")
+            .addLine("com.example.DataType b1 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(2).setPropertyB(\"a\").buildInterned();")
+            .addLine("com.example.DataType b2 = new com.example.DataType.Builder()")
+            .addLine("    .setPropertyA(2).setPropertyB(\"a\").build();")
+            .addLine("new %s()", EqualsTester.class)
+            .addLine("    .addEqualityGroup(a1, a2)")
+            .addLine("    .addEqualityGroup(b1, b2)")
+            .addLine("    .testEquals();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testInternValues_genericType() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(new SourceBuilder()
+            .addLine("package com.example;")
+            .addLine("@%s", FreeBuilder.class)
+            .addLine("@%s", InternValues.class)
+            .addLine("public abstract class DataType<T> {")
+            .addLine("  public abstract T getProperty();")
+            .addLine("")
+            .addLine("  public static class Builder<T> extends DataType_Builder<T> {}")
+            .addLine("}")
+            .build())
+        .with(new TestBuilder()
+            .addLine("com.example.DataType<String> a1 = new com.example.DataType.Builder<String>()")
+            .addLine("    .setProperty(\"a\").buildInterned();")
+            .addLine("com.example.DataType<String> a2 = new com.example.DataType.Builder<String>()")
+            .addLine("    .setProperty(\"a\").build();")
+            .addLine("com.example.DataType<String> a3 = com.example.DataType.Builder.intern(a2);")
+            .addLine("assertThat(a3).isSameAs(a1);")
+            .addLine("assertThat(a3.getProperty()).isEqualTo(\"a\");")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testInternValues_unsetProperty() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not set: [propertyB]");
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(new TestBuilder()
+            .addLine("new com.example.DataType.Builder().setPropertyA(1).buildInterned();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testInternValues_null() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(INTERNED_TYPE)
+        .with(new TestBuilder()
+            .addLine("com.example.DataType.Builder.intern(null);")
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testToString_noProperties() {
     behaviorTester
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+
+/**
+ * Runs {@link Processor} with extra processor options, recording the source files it writes and
+ * the messages it issues.
+ */
+class RecordingProcessor extends Processor {
+
+  final List<String> written = new ArrayList<>();
+  final List<String> messages = new ArrayList<>();
+  private final Map<String, String> options;
+
+  RecordingProcessor(Map<String, String> options) {
+    this.options = options;
+  }
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    Map<String, String> allOptions = ImmutableMap.<String, String>builder()
+        .putAll(processingEnv.getOptions())
+        .putAll(options)
+        .build();
+    Filer filer = intercept(Filer.class, processingEnv.getFiler(), (method, args) -> {
+      if (method.getName().equals("createSourceFile")) {
+        written.add(args[0].toString());
+      }
+      return null;
+    });
+    Messager messager = intercept(Messager.class, processingEnv.getMessager(), (method, args) -> {
+      messages.add(args[1].toString());
+      return null;
+    });
+    super.init(intercept(ProcessingEnvironment.class, processingEnv, (method, args) -> {
+      switch (method.getName()) {
+        case "getOptions":
+          return allOptions;
+        case "getFiler":
+          return filer;
+        case "getMessager":
+          return messager;
+        default:
+          return null;
+      }
+    }));
+  }
+
+  /** A method override: returns a replacement result, or null to call the delegate. */
+  private interface MethodOverride {
+    Object invoke(Method method, Object[] args);
+  }
+
+  private static <T> T intercept(Class<T> type, T delegate, MethodOverride override) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      Object result = override.invoke(method, args);
+      if (result != null) {
+        return result;
+      }
+      try {
+        return method.invoke(delegate, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    };
+    return type.cast(Proxy.newProxyInstance(
+        RecordingProcessor.class.getClassLoader(), new Class<?>[] {type}, handler));
+  }
+}
@@ -31,6 +31,7 @@ import org.junit.runners.Parameterized.Parameter;
 import org.junit.runners.Parameterized.Parameters;
 import org.junit.runners.Parameterized.UseParametersRunnerFactory;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -299,6 +300,165 @@ public class RequiredBeanPropertiesTest {
         .runTest();
   }
 
+  @Test
+  public void testCantBuildWithUnsetProperties_40Properties() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not set: [property3, property35]");
+    behaviorTester
+        .with(new Processor(features))
+        .with(manyPropertiesType(40))
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("for (int i = 0; i < 40; i++) {")
+            .addLine("  if (i != 3 && i != 35) {")
+            .addLine("    DataType.Builder.class.getMethod(\"setProperty\" + i, int.class)")
+            .addLine("        .invoke(builder, i);")
+            .addLine("  }")
+            .addLine("}")
+            .addLine("builder.build();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testCantBuildWithUnsetProperties_70Properties() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not set: [property0, property63, property64, property69]");
+    behaviorTester
+        .with(new Processor(features))
+        .with(manyPropertiesType(70))
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("for (int i = 0; i < 70; i++) {")
+            .addLine("  if (i != 0 && i != 63 && i != 64 && i != 69) {")
+            .addLine("    DataType.Builder.class.getMethod(\"setProperty\" + i, int.class)")
+            .addLine("        .invoke(builder, i);")
+            .addLine("  }")
+            .addLine("}")
+            .addLine("builder.build();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuildPartial_70Properties() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(manyPropertiesType(70))
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder();")
+            .addLine("for (int i = 0; i < 70; i++) {")
+            .addLine("  DataType.Builder.class.getMethod(\"setProperty\" + i, int.class)")
+            .addLine("      .invoke(builder, i);")
+            .addLine("}")
+            .addLine("DataType value = builder.build();")
+            .addLine("assertEquals(64, value.getProperty64());")
+            .addLine("DataType partial = new DataType.Builder()")
+            .addLine("    .setProperty1(1)")
+            .addLine("    .setProperty66(66)")
+            .addLine("    .buildPartial();")
+            .addLine("assertEquals(66, partial.getProperty66());")
+            .addLine("assertEquals(partial, new DataType.Builder()")
+            .addLine("    .setProperty1(1)")
+            .addLine("    .setProperty66(66)")
+            .addLine("    .buildPartial());")
+            .addLine("assertFalse(partial.equals(new DataType.Builder()")
+            .addLine("    .setProperty1(1)")
+            .addLine("    .setProperty66(0)")
+            .addLine("    .setProperty67(0)")
+            .addLine("    .buildPartial()));")
+            .addLine("try {")
+            .addLine("  partial.getProperty65();")
+            .addLine("  fail(\"Expected UnsupportedOperationException\");")
+            .addLine("} catch (UnsupportedOperationException expected) {}")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFewRequiredOfManyProperties_usesIntField() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not set: [property3, property39]");
+    behaviorTester
+        .with(new Processor(features))
+        .with(manyPropertiesType(40, 3, 20, 39))
+        .with(testBuilder()
+            .addLine("assertEquals(int.class, Class.forName(\"com.example.DataType_Builder\")")
+            .addLine("    .getDeclaredField(\"_unsetProperties\").getType());")
+            .addLine("new DataType.Builder().setProperty20(20).build();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testFewRequiredOfOver64Properties_usesSingleField() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(manyPropertiesType(70, 0, 69))
+        .with(testBuilder()
+            .addLine("assertEquals(int.class, Class.forName(\"com.example.DataType_Builder\")")
+            .addLine("    .getDeclaredField(\"_unsetProperties\").getType());")
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .setProperty0(1)")
+            .addLine("    .setProperty69(69)")
+            .addLine("    .build();")
+            .addLine("assertEquals(69, value.getProperty69());")
+            .addLine("assertEquals(0, value.getProperty68());")
+            .addLine("DataType partial = new DataType.Builder().setProperty69(69).buildPartial();")
+            .addLine("assertEquals(69, partial.getProperty69());")
+            .addLine("try {")
+            .addLine("  partial.getProperty0();")
+            .addLine("  fail(\"Expected UnsupportedOperationException\");")
+            .addLine("} catch (UnsupportedOperationException expected) {}")
+            .addLine("try {")
+            .addLine("  new DataType.Builder().setProperty69(69).build();")
+            .addLine("  fail(\"Expected IllegalStateException\");")
+            .addLine("} catch (IllegalStateException expected) {")
+            .addLine("  assertEquals(\"Not set: [property0]\", expected.getMessage());")
+            .addLine("}")
+            .build())
+        .runTest();
+  }
+
+  private static JavaFileObject manyPropertiesType(int numProperties) {
+    SourceBuilder type = new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public abstract class DataType {");
+    for (int i = 0; i < numProperties; i++) {
+      type.addLine("  public abstract int getProperty%s();", i);
+    }
+    return type
+        .addLine("")
+        .addLine("  public static class Builder extends DataType_Builder {}")
+        .addLine("}")
+        .build();
+  }
+
+  /** Returns a type with {@code numProperties} properties, defaulted unless {@code required}. */
+  private static JavaFileObject manyPropertiesType(int numProperties, Integer... required) {
+    SourceBuilder type = new SourceBuilder()
+        .addLine("package com.example;")
+        .addLine("@%s", FreeBuilder.class)
+        .addLine("public abstract class DataType {");
+    for (int i = 0; i < numProperties; i++) {
+      type.addLine("  public abstract int getProperty%s();", i);
+    }
+    type.addLine("")
+        .addLine("  public static class Builder extends DataType_Builder {")
+        .addLine("    public Builder() {");
+    for (int i = 0; i < numProperties; i++) {
+      if (!Arrays.asList(required).contains(i)) {
+        type.addLine("      setProperty%s(0);", i);
+      }
+    }
+    return type
+        .addLine("    }")
+        .addLine("  }")
+        .addLine("}")
+        .build();
+  }
+
   private static TestBuilder testBuilder() {
     return new TestBuilder().addImport("com.example.DataType");
   }
@@ -76,12 +76,24 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -91,7 +103,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -101,8 +114,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x1) == 0, \"name not set\");",
         "    return name;",
         "  }",
         "",
@@ -113,7 +125,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -123,8 +136,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x2) == 0, \"age not set\");",
         "    return age;",
         "  }",
         "",
@@ -132,13 +144,14 @@ public class RequiredPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.getAge() != _defaults.getAge()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getAge() != _defaults.getAge()) "
+            + "{",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -149,17 +162,18 @@ public class RequiredPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.getAge() != _defaults.getAge())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.getAge() != "
+            + "_defaults.getAge())) {",
         "      setAge(template.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -169,11 +183,11 @@ public class RequiredPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -183,9 +197,16 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -227,10 +248,10 @@ public class RequiredPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      if (age != other.age) {",
+        "      if (!name.equals(other.name)) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -238,7 +259,10 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -250,17 +274,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -268,7 +292,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -286,22 +310,24 @@ public class RequiredPropertiesSourceTest {
         "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age, _unsetProperties});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -345,12 +371,24 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -360,7 +398,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -370,8 +409,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x1) == 0, \"name not set\");",
         "    return name;",
         "  }",
         "",
@@ -382,7 +420,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -392,8 +431,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x2) == 0, \"age not set\");",
         "    return age;",
         "  }",
         "",
@@ -401,13 +439,14 @@ public class RequiredPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.getAge() != _defaults.getAge()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getAge() != _defaults.getAge()) "
+            + "{",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -418,17 +457,18 @@ public class RequiredPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.getAge() != _defaults.getAge())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.getAge() != "
+            + "_defaults.getAge())) {",
         "      setAge(template.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -438,11 +478,11 @@ public class RequiredPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -452,9 +492,16 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -496,12 +543,15 @@ public class RequiredPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return Objects.equals(age, other.age) && Objects.equals(name, other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -513,17 +563,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -531,7 +581,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -545,22 +595,24 @@ public class RequiredPropertiesSourceTest {
         "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age, _unsetProperties);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -601,12 +653,24 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -619,7 +683,8 @@ public class RequiredPropertiesSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    this.name = name;",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -629,7 +694,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "    if (!((_unsetProperties & 0x1) == 0)) {",
         "      throw new IllegalStateException(\"name not set\");",
         "    }",
         "    return name;",
@@ -642,7 +707,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -652,7 +718,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "    if (!((_unsetProperties & 0x2) == 0)) {",
         "      throw new IllegalStateException(\"age not set\");",
         "    }",
         "    return age;",
@@ -662,13 +728,14 @@ public class RequiredPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.getAge() != _defaults.getAge()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getAge() != _defaults.getAge()) "
+            + "{",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -679,17 +746,18 @@ public class RequiredPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.getAge() != _defaults.getAge())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.getAge() != "
+            + "_defaults.getAge())) {",
         "      setAge(template.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -699,11 +767,11 @@ public class RequiredPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -713,10 +781,16 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    if (!_unsetProperties.isEmpty()) {",
-        "      throw new IllegalStateException(\"Not set: \" + _unsetProperties);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
         "    }",
-        "    return new Person_Builder.Value(this);",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -757,10 +831,10 @@ public class RequiredPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      if (age != other.age) {",
+        "      if (!name.equals(other.name)) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -768,7 +842,10 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -780,17 +857,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -798,7 +875,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -816,23 +893,27 @@ public class RequiredPropertiesSourceTest {
         "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age, _unsetProperties});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      StringBuilder result = new StringBuilder(\"partial Person{\");",
         "      String separator = \"\";",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) == 0) {",
         "        result.append(\"name=\").append(name);",
         "        separator = \", \";",
         "      }",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) == 0) {",
         "        result.append(separator);",
         "        result.append(\"age=\").append(age);",
         "      }",
@@ -877,12 +958,24 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -892,7 +985,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Objects.requireNonNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -902,7 +996,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "    if (!((_unsetProperties & 0x1) == 0)) {",
         "      throw new IllegalStateException(\"name not set\");",
         "    }",
         "    return name;",
@@ -915,7 +1009,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -925,7 +1020,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "    if (!((_unsetProperties & 0x2) == 0)) {",
         "      throw new IllegalStateException(\"age not set\");",
         "    }",
         "    return age;",
@@ -935,13 +1030,14 @@ public class RequiredPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.getAge() != _defaults.getAge()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getAge() != _defaults.getAge()) "
+            + "{",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -952,17 +1048,18 @@ public class RequiredPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.getAge() != _defaults.getAge())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.getAge() != "
+            + "_defaults.getAge())) {",
         "      setAge(template.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -972,11 +1069,11 @@ public class RequiredPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -986,10 +1083,16 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    if (!_unsetProperties.isEmpty()) {",
-        "      throw new IllegalStateException(\"Not set: \" + _unsetProperties);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
         "    }",
-        "    return new Person_Builder.Value(this);",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1030,12 +1133,15 @@ public class RequiredPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return Objects.equals(age, other.age) && Objects.equals(name, other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1047,17 +1153,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -1065,7 +1171,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -1079,23 +1185,27 @@ public class RequiredPropertiesSourceTest {
         "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age, _unsetProperties);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      StringBuilder result = new StringBuilder(\"partial Person{\");",
         "      String separator = \"\";",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) == 0) {",
         "        result.append(\"name=\").append(name);",
         "        separator = \", \";",
         "      }",
-        "      if (!_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) == 0) {",
         "        result.append(separator);",
         "        result.append(\"age=\").append(age);",
         "      }",
@@ -1142,12 +1252,24 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#getName()}.",
@@ -1157,7 +1279,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setName(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1180,8 +1303,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String getName() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x1) == 0, \"name not set\");",
         "    return name;",
         "  }",
         "",
@@ -1192,7 +1314,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder setAge(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1215,8 +1338,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int getAge() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x2) == 0, \"age not set\");",
         "    return age;",
         "  }",
         "",
@@ -1224,13 +1346,14 @@ public class RequiredPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.getName().equals(_defaults.getName())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.getName().equals(_defaults.getName())) {",
         "      setName(value.getName());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.getAge() != _defaults.getAge()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.getAge() != _defaults.getAge()) "
+            + "{",
         "      setAge(value.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -1241,17 +1364,18 @@ public class RequiredPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0",
         "            || !template.getName().equals(_defaults.getName()))) {",
         "      setName(template.getName());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.getAge() != _defaults.getAge())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.getAge() != "
+            + "_defaults.getAge())) {",
         "      setAge(template.getAge());",
         "    }",
         "    return (Person.Builder) this;",
@@ -1261,11 +1385,11 @@ public class RequiredPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1275,9 +1399,16 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1319,12 +1450,15 @@ public class RequiredPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name) && Objects.equals(age, other.age);",
+        "      return Objects.equals(age, other.age) && Objects.equals(name, other.name);",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1336,17 +1470,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String getName() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -1354,7 +1488,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int getAge() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -1368,22 +1502,24 @@ public class RequiredPropertiesSourceTest {
         "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
         "      return Objects.equals(name, other.name)",
         "          && Objects.equals(age, other.age)",
-        "          && Objects.equals(_unsetProperties, other._unsetProperties);",
+        "          && _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name, age, _unsetProperties);",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -1426,12 +1562,24 @@ public class RequiredPropertiesSourceTest {
         "    public String toString() {",
         "      return name;",
         "    }",
+        "",
+        "    static String describe(long unsetProperties) {",
+        "      StringBuilder result = new StringBuilder(\"[\");",
+        "      String separator = \"\";",
+        "      for (Person_Builder.Property property : values()) {",
+        "        if ((unsetProperties & (1L << property.ordinal())) != 0) {",
+        "          result.append(separator).append(property);",
+        "          separator = \", \";",
+        "        }",
+        "      }",
+        "      return result.append(\"]\").toString();",
+        "    }",
         "  }",
         "",
         "  private String name;",
         "  private int age;",
-        "  private final EnumSet<Person_Builder.Property> _unsetProperties =",
-        "      EnumSet.allOf(Person_Builder.Property.class);",
+        "  private int _unsetProperties = 0x3;",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Sets the value to be returned by {@link Person#name()}.",
@@ -1441,7 +1589,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder name(String name) {",
         "    this.name = Preconditions.checkNotNull(name);",
-        "    _unsetProperties.remove(Person_Builder.Property.NAME);",
+        "    _unsetProperties &= ~0x1;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1451,8 +1600,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public String name() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.NAME), \"name not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x1) == 0, \"name not set\");",
         "    return name;",
         "  }",
         "",
@@ -1463,7 +1611,8 @@ public class RequiredPropertiesSourceTest {
         "   */",
         "  public Person.Builder age(int age) {",
         "    this.age = age;",
-        "    _unsetProperties.remove(Person_Builder.Property.AGE);",
+        "    _unsetProperties &= ~0x2;",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1473,8 +1622,7 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if the field has not been set",
         "   */",
         "  public int age() {",
-        "    Preconditions.checkState(",
-        "        !_unsetProperties.contains(Person_Builder.Property.AGE), \"age not set\");",
+        "    Preconditions.checkState((_unsetProperties & 0x2) == 0, \"age not set\");",
         "    return age;",
         "  }",
         "",
@@ -1482,13 +1630,13 @@ public class RequiredPropertiesSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        || !value.name().equals(_defaults.name())) {",
+        "    if ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!value.name().equals(_defaults.name())) {",
         "      name(value.name());",
         "    }",
-        "    if (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        || value.age() != _defaults.age()) {",
+        "    if ((_defaults._unsetProperties & 0x2) != 0 || value.age() != _defaults.age()) {",
         "      age(value.age());",
         "    }",
         "    return (Person.Builder) this;",
@@ -1499,17 +1647,18 @@ public class RequiredPropertiesSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    // Upcast to access private fields; otherwise, oddly, we get an access violation.",
         "    Person_Builder base = (Person_Builder) template;",
         "    Person_Builder _defaults = new Person.Builder();",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.NAME)",
-        "            || !template.name().equals(_defaults.name()))) {",
+        "    if ((base._unsetProperties & 0x1) == 0",
+        "        && ((_defaults._unsetProperties & 0x1) != 0 || "
+            + "!template.name().equals(_defaults.name()))) {",
         "      name(template.name());",
         "    }",
-        "    if (!base._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "        && (_defaults._unsetProperties.contains(Person_Builder.Property.AGE)",
-        "            || template.age() != _defaults.age())) {",
+        "    if ((base._unsetProperties & 0x2) == 0",
+        "        && ((_defaults._unsetProperties & 0x2) != 0 || template.age() != "
+            + "_defaults.age())) {",
         "      age(template.age());",
         "    }",
         "    return (Person.Builder) this;",
@@ -1519,11 +1668,11 @@ public class RequiredPropertiesSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    Person_Builder _defaults = new Person.Builder();",
         "    name = _defaults.name;",
         "    age = _defaults.age;",
-        "    _unsetProperties.clear();",
-        "    _unsetProperties.addAll(_defaults._unsetProperties);",
+        "    _unsetProperties = _defaults._unsetProperties;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1533,9 +1682,16 @@ public class RequiredPropertiesSourceTest {
         "   * @throws IllegalStateException if any field has not been set",
         "   */",
         "  public Person build() {",
-        "    Preconditions.checkState(_unsetProperties.isEmpty(),"
-            + " \"Not set: %s\", _unsetProperties);",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    if (_unsetProperties != 0) {",
+        "      throw new IllegalStateException(",
+        "          \"Not set: \" + Person_Builder.Property.describe(_unsetProperties));",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1577,10 +1733,10 @@ public class RequiredPropertiesSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      if (age != other.age) {",
+        "      if (!name.equals(other.name)) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -1588,7 +1744,10 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      result = 31 * result + age;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1600,17 +1759,17 @@ public class RequiredPropertiesSourceTest {
         "  private static final class Partial extends Person {",
         "    private final String name;",
         "    private final int age;",
-        "    private final EnumSet<Person_Builder.Property> _unsetProperties;",
+        "    private final int _unsetProperties;",
         "",
         "    Partial(Person_Builder builder) {",
         "      this.name = builder.name;",
         "      this.age = builder.age;",
-        "      this._unsetProperties = builder._unsetProperties.clone();",
+        "      this._unsetProperties = builder._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public String name() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.NAME)) {",
+        "      if ((_unsetProperties & 0x1) != 0) {",
         "        throw new UnsupportedOperationException(\"name not set\");",
         "      }",
         "      return name;",
@@ -1618,7 +1777,7 @@ public class RequiredPropertiesSourceTest {
         "",
         "    @Override",
         "    public int age() {",
-        "      if (_unsetProperties.contains(Person_Builder.Property.AGE)) {",
+        "      if ((_unsetProperties & 0x2) != 0) {",
         "        throw new UnsupportedOperationException(\"age not set\");",
         "      }",
         "      return age;",
@@ -1636,22 +1795,24 @@ public class RequiredPropertiesSourceTest {
         "      if (age != other.age) {",
         "        return false;",
         "      }",
-        "      return _unsetProperties.equals(other._unsetProperties);",
+        "      return _unsetProperties == other._unsetProperties;",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name, age, _unsetProperties});",
+        "      int result = 1;",
+        "      result = 31 * result + (name == null ? 0 : name.hashCode());",
+        "      result = 31 * result + age;",
+        "      result = 31 * result + _unsetProperties;",
+        "      return result;",
         "    }",
         "",
         "    @Override",
         "    public String toString() {",
         "      return \"partial Person{\"",
         "          + COMMA_JOINER.join(",
-        "              (!_unsetProperties.contains(Person_Builder.Property.NAME) "
-            + "? \"name=\" + name : null),",
-        "              (!_unsetProperties.contains(Person_Builder.Property.AGE) "
-            + "? \"age=\" + age : null))",
+        "              ((_unsetProperties & 0x1) == 0 ? \"name=\" + name : null),",
+        "              ((_unsetProperties & 0x2) == 0 ? \"age=\" + age : null))",
         "          + \"}\";",
         "    }",
         "  }",
@@ -1707,10 +1868,11 @@ public class RequiredPropertiesSourceTest {
     return metadata.toBuilder()
         .clearProperties()
         .addProperties(name.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, name, false))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(
+                metadata, name, false, false))
             .build())
         .addProperties(age.toBuilder()
-            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, age, false))
+            .setCodeGenerator(new DefaultPropertyFactory.CodeGenerator(metadata, age, false, false))
             .build())
         .build();
   }
@@ -905,6 +905,52 @@ public class SetMultimapBeanPropertyTest {
         .runTest();
   }
 
+  @Test
+  public void testMergeFrom_valueInstance_reusesImmutableSetMultimap() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MULTIMAP_PROPERTY)
+        .with(testBuilder()
+            .addLine("DataType template = DataType.builder()")
+            .addLine("    .putItems(\"one\", \"A\")")
+            .addLine("    .build();")
+            .addLine("DataType value = DataType.builder()")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertSame(template.getItems(), value.getItems());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom_valueInstance_thenModify() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(MULTIMAP_PROPERTY)
+        .with(testBuilder()
+            .addLine("DataType template = DataType.builder()")
+            .addLine("    .putItems(\"one\", \"A\")")
+            .addLine("    .putItems(\"two\", \"B\")")
+            .addLine("    .build();")
+            .addLine("DataType value = DataType.builder()")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .removeAllItems(\"one\")")
+            .addLine("    .putItems(\"three\", \"C\")")
+            .addLine("    .build();")
+            .addLine("assertThat(template.getItems())")
+            .addLine("    .contains(\"one\", \"A\")")
+            .addLine("    .and(\"two\", \"B\")")
+            .addLine("    .andNothingElse()")
+            .addLine("    .inOrder();")
+            .addLine("assertThat(value.getItems())")
+            .addLine("    .contains(\"two\", \"B\")")
+            .addLine("    .and(\"three\", \"C\")")
+            .addLine("    .andNothingElse()")
+            .addLine("    .inOrder();")
+            .build())
+        .runTest();
+  }
+
   @Test
   public void testBuilderClear() {
     behaviorTester
@@ -20,6 +20,7 @@ import static org.inferred.freebuilder.processor.GenericTypeElementImpl.newTopLe
 import static org.inferred.freebuilder.processor.util.ClassTypeImpl.newTopLevelClass;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_7;
 import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_8;
+import static org.inferred.freebuilder.processor.util.feature.SourceLevel.JAVA_9;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
@@ -62,6 +63,7 @@ public class SetSourceTest {
         "  }",
         "",
         "  private Set<String> name = ImmutableSet.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the set to be returned from {@link Person#getName()}.",
@@ -76,6 +78,7 @@ public class SetSourceTest {
         "      this.name = new LinkedHashSet<String>(this.name);",
         "    }",
         "    this.name.add(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -120,6 +123,7 @@ public class SetSourceTest {
         "      this.name = new LinkedHashSet<String>(this.name);",
         "    }",
         "    this.name.remove(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -134,6 +138,7 @@ public class SetSourceTest {
         "    } else {",
         "      name.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -153,6 +158,7 @@ public class SetSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value instanceof Person_Builder.Value && name == ImmutableSet.<String>of()) {",
         "      name = ImmutableSet.copyOf(value.getName());",
         "    } else {",
@@ -166,6 +172,7 @@ public class SetSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    addAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -174,6 +181,7 @@ public class SetSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
@@ -182,7 +190,12 @@ public class SetSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -215,7 +228,8 @@ public class SetSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -223,7 +237,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -258,7 +274,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -290,6 +308,7 @@ public class SetSourceTest {
         "  }",
         "",
         "  private Set<String> name = ImmutableSet.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the set to be returned from {@link Person#getName()}.",
@@ -304,6 +323,7 @@ public class SetSourceTest {
         "      this.name = new LinkedHashSet<>(this.name);",
         "    }",
         "    this.name.add(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -348,6 +368,7 @@ public class SetSourceTest {
         "      this.name = new LinkedHashSet<>(this.name);",
         "    }",
         "    this.name.remove(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -362,6 +383,7 @@ public class SetSourceTest {
         "    } else {",
         "      name.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -381,6 +403,7 @@ public class SetSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value instanceof Person_Builder.Value && name == ImmutableSet.<String>of()) {",
         "      name = ImmutableSet.copyOf(value.getName());",
         "    } else {",
@@ -394,6 +417,7 @@ public class SetSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    addAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -402,6 +426,7 @@ public class SetSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
@@ -410,7 +435,12 @@ public class SetSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -443,12 +473,15 @@ public class SetSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -480,7 +513,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -511,6 +546,7 @@ public class SetSourceTest {
         "  }",
         "",
         "  private Set<String> name = ImmutableSet.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the set to be returned from {@link Person#getName()}.",
@@ -525,6 +561,7 @@ public class SetSourceTest {
         "      this.name = new LinkedHashSet<>(this.name);",
         "    }",
         "    this.name.add(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -594,6 +631,7 @@ public class SetSourceTest {
         "      this.name = new LinkedHashSet<>(this.name);",
         "    }",
         "    this.name.remove(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -611,6 +649,7 @@ public class SetSourceTest {
         "    if (name instanceof ImmutableSet) {",
         "      name = new LinkedHashSet<>(name);",
         "    }",
+        "    _lastBuilt = null;",
         "    // If addName is overridden, this method will be updated to delegate to it",
         "    mutator.accept(name);",
         "    return (Person.Builder) this;",
@@ -627,6 +666,7 @@ public class SetSourceTest {
         "    } else {",
         "      name.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -646,6 +686,7 @@ public class SetSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value instanceof Person_Builder.Value && name == ImmutableSet.<String>of()) {",
         "      name = ImmutableSet.copyOf(value.getName());",
         "    } else {",
@@ -659,6 +700,7 @@ public class SetSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    addAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -667,6 +709,7 @@ public class SetSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
@@ -675,7 +718,12 @@ public class SetSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -708,12 +756,15 @@ public class SetSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -745,7 +796,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -776,6 +829,7 @@ public class SetSourceTest {
         "  }",
         "",
         "  private final LinkedHashSet<String> name = new LinkedHashSet<String>();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the set to be returned from {@link Person#getName()}.",
@@ -790,6 +844,7 @@ public class SetSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    this.name.add(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -834,6 +889,7 @@ public class SetSourceTest {
         "      throw new NullPointerException();",
         "    }",
         "    this.name.remove(element);",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -844,6 +900,7 @@ public class SetSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    name.clear();",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -860,6 +917,7 @@ public class SetSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    addAllName(value.getName());",
         "    return (Person.Builder) this;",
         "  }",
@@ -869,6 +927,7 @@ public class SetSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    addAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -877,6 +936,7 @@ public class SetSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
@@ -885,7 +945,12 @@ public class SetSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -917,7 +982,8 @@ public class SetSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -925,7 +991,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -960,7 +1028,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1002,6 +1072,7 @@ public class SetSourceTest {
         "  }",
         "",
         "  private final LinkedHashSet<String> name = new LinkedHashSet<>();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the set to be returned from {@link Person#getName()}.",
@@ -1013,6 +1084,7 @@ public class SetSourceTest {
         "   */",
         "  public Person.Builder addName(String element) {",
         "    this.name.add(Objects.requireNonNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1054,6 +1126,7 @@ public class SetSourceTest {
         "   */",
         "  public Person.Builder removeName(String element) {",
         "    this.name.remove(Objects.requireNonNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1064,6 +1137,7 @@ public class SetSourceTest {
         "   */",
         "  public Person.Builder clearName() {",
         "    name.clear();",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1080,6 +1154,7 @@ public class SetSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    addAllName(value.getName());",
         "    return (Person.Builder) this;",
         "  }",
@@ -1089,6 +1164,7 @@ public class SetSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    addAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -1097,6 +1173,7 @@ public class SetSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
@@ -1105,7 +1182,12 @@ public class SetSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1137,12 +1219,15 @@ public class SetSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      return Objects.equals(name, other.name);",
+        "      return (name == other.name || (name.size() == other.name.size() && "
+            + "name.equals(other.name)));",
         "    }",
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1174,7 +1259,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Objects.hash(name);",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1196,6 +1283,368 @@ public class SetSourceTest {
         "}\n"));
   }
 
+  @Test
+  public void test_noGuava_j9() {
+    Metadata metadata = createMetadata(true);
+
+    assertThat(generateSource(metadata, JAVA_9)).isEqualTo(Joiner.on('\n').join(
+        "/**",
+        " * Auto-generated superclass of {@link Person.Builder},",
+        " * derived from the API of {@link Person}.",
+        " */",
+        "abstract class Person_Builder {",
+        "",
+        "  /**",
+        "   * Creates a new builder using {@code value} as a template.",
+        "   */",
+        "  public static Person.Builder from(Person value) {",
+        "    return new Person.Builder().mergeFrom(value);",
+        "  }",
+        "",
+        "  private final LinkedHashSet<String> name = new LinkedHashSet<>();",
+        "  private transient Person _lastBuilt;",
+        "",
+        "  /**",
+        "   * Adds {@code element} to the set to be returned from {@link Person#getName()}.",
+        "   * If the set already contains {@code element}, then {@code addName}",
+        "   * has no effect (only the previously added element is retained).",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code element} is null",
+        "   */",
+        "  public Person.Builder addName(String element) {",
+        "    this.name.add(Objects.requireNonNull(element));",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the set to be returned from",
+        "   * {@link Person#getName()}, ignoring duplicate elements",
+        "   * (only the first duplicate element is added).",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addName(String... elements) {",
+        "    return addAllName(Arrays.asList(elements));",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the set to be returned from",
+        "   * {@link Person#getName()}, ignoring duplicate elements",
+        "   * (only the first duplicate element is added).",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllName(Spliterator<? extends String> elements) {",
+        "    elements.forEachRemaining(this::addName);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the set to be returned from",
+        "   * {@link Person#getName()}, ignoring duplicate elements",
+        "   * (only the first duplicate element is added).",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllName(BaseStream<? extends String, ?> elements) {",
+        "    return addAllName(elements.spliterator());",
+        "  }",
+        "",
+        "  /**",
+        "   * Adds each element of {@code elements} to the set to be returned from",
+        "   * {@link Person#getName()}, ignoring duplicate elements",
+        "   * (only the first duplicate element is added).",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code elements} is null or contains a",
+        "   *     null element",
+        "   */",
+        "  public Person.Builder addAllName(Iterable<? extends String> elements) {",
+        "    elements.forEach(this::addName);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Removes {@code element} from the set to be returned from {@link Person#getName()}.",
+        "   * Does nothing if {@code element} is not a member of the set.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code element} is null",
+        "   */",
+        "  public Person.Builder removeName(String element) {",
+        "    this.name.remove(Objects.requireNonNull(element));",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Applies {@code mutator} to the set to be returned from {@link Person#getName()}.",
+        "   *",
+        "   * <p>This method mutates the set in-place. {@code mutator} is a void",
+        "   * consumer, so any value returned from a lambda will be ignored. Take care",
+        "   * not to call pure functions, like {@link Collection#stream()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   * @throws NullPointerException if {@code mutator} is null",
+        "   */",
+        "  public Person.Builder mutateName(Consumer<? super Set<String>> mutator) {",
+        "    _lastBuilt = null;",
+        "    // If addName is overridden, this method will be updated to delegate to it",
+        "    mutator.accept(name);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Clears the set to be returned from {@link Person#getName()}.",
+        "   *",
+        "   * @return this {@code Builder} object",
+        "   */",
+        "  public Person.Builder clearName() {",
+        "    name.clear();",
+        "    _lastBuilt = null;",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns an unmodifiable view of the set that will be returned by",
+        "   * {@link Person#getName()}.",
+        "   * Changes to this builder will be reflected in the view.",
+        "   */",
+        "  public Set<String> getName() {",
+        "    return Collections.unmodifiableSet(name);",
+        "  }",
+        "",
+        "  /**",
+        "   * Sets all property values using the given {@code Person} as a template.",
+        "   */",
+        "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
+        "    addAllName(value.getName());",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Copies values from the given {@code Builder}.",
+        "   * Does not affect any properties not set on the input.",
+        "   */",
+        "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
+        "    addAllName(((Person_Builder) template).name);",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Resets the state of this builder.",
+        "   */",
+        "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
+        "    clearName();",
+        "    return (Person.Builder) this;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
+        "   */",
+        "  public Person build() {",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
+        "  }",
+        "",
+        "  /**",
+        "   * Returns a newly-created partial {@link Person}",
+        "   * based on the contents of the {@code Builder}.",
+        "   * State checking will not be performed.",
+        "   *",
+        "   * <p>Partials should only ever be used in tests.",
+        "   */",
+        "  public Person buildPartial() {",
+        "    return new Person_Builder.Partial(this);",
+        "  }",
+        "",
+        "  private static final class Value extends Person {",
+        "    private final Set<String> name;",
+        "",
+        "    private Value(Person_Builder builder) {",
+        "      this.name = immutableSet(builder.name);",
+        "    }",
+        "",
+        "    @Override",
+        "    public Set<String> getName() {",
+        "      return name;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean equals(Object obj) {",
+        "      if (!(obj instanceof Person_Builder.Value)) {",
+        "        return false;",
+        "      }",
+        "      Person_Builder.Value other = (Person_Builder.Value) obj;",
+        "      return (name == other.name || (name.size() == other.name.size() && name.equals(other.name)));",
+        "    }",
+        "",
+        "    @Override",
+        "    public int hashCode() {",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
+        "    }",
+        "",
+        "    @Override",
+        "    public String toString() {",
+        "      return \"Person{name=\" + name + \"}\";",
+        "    }",
+        "  }",
+        "",
+        "  private static final class Partial extends Person {",
+        "    private final Set<String> name;",
+        "",
+        "    Partial(Person_Builder builder) {",
+        "      this.name = immutableSet(builder.name);",
+        "    }",
+        "",
+        "    @Override",
+        "    public Set<String> getName() {",
+        "      return name;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean equals(Object obj) {",
+        "      if (!(obj instanceof Person_Builder.Partial)) {",
+        "        return false;",
+        "      }",
+        "      Person_Builder.Partial other = (Person_Builder.Partial) obj;",
+        "      return Objects.equals(name, other.name);",
+        "    }",
+        "",
+        "    @Override",
+        "    public int hashCode() {",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
+        "    }",
+        "",
+        "    @Override",
+        "    public String toString() {",
+        "      return \"partial Person{name=\" + name + \"}\";",
+        "    }",
+        "  }",
+        "",
+        "  private static <E> Set<E> immutableSet(Set<E> elements) {",
+        "    switch (elements.size()) {",
+        "      case 0:",
+        "        return Collections.emptySet();",
+        "      case 1:",
+        "        return Collections.singleton(elements.iterator().next());",
+        "      default:",
+        "        return new CompactSet<>(elements);",
+        "    }",
+        "  }",
+        "",
+        "  /**",
+        "   * Helpers for open-addressing hash tables of distinct, non-null keys.",
+        "   * Each slot holds one plus the index of its key in an insertion-ordered",
+        "   * key array, or zero if empty. Tables are a power of two in size, and at",
+        "   * most half full.",
+        "   */",
+        "  private static final class CompactHashIndex {",
+        "",
+        "    /** Returns the index of {@code key} in {@code keys}, or -1. */",
+        "    static int indexOf(Object[] keys, int[] table, Object key) {",
+        "      if (key == null) {",
+        "        return -1;",
+        "      }",
+        "      int mask = table.length - 1;",
+        "      for (int slot = slot(key, mask); table[slot] != 0; slot = (slot + 1) & mask) {",
+        "        int index = table[slot] - 1;",
+        "        if (key.equals(keys[index])) {",
+        "          return index;",
+        "        }",
+        "      }",
+        "      return -1;",
+        "    }",
+        "",
+        "    /** Returns a table of {@code keys}, which must be distinct. */",
+        "    static int[] newTable(Object[] keys) {",
+        "      int tableSize = Integer.highestOneBit(keys.length * 2 - 1) << 1;",
+        "      int[] table = new int[tableSize];",
+        "      int mask = table.length - 1;",
+        "      for (int index = 0; index < keys.length; index++) {",
+        "        int slot = slot(keys[index], mask);",
+        "        while (table[slot] != 0) {",
+        "          slot = (slot + 1) & mask;",
+        "        }",
+        "        table[slot] = index + 1;",
+        "      }",
+        "      return table;",
+        "    }",
+        "",
+        "    private static int slot(Object key, int mask) {",
+        "      int hash = key.hashCode() * 0x9E3779B9;",
+        "      return (hash ^ (hash >>> 16)) & mask;",
+        "    }",
+        "",
+        "    private CompactHashIndex() {}",
+        "  }",
+        "",
+        "  /** An immutable, insertion-ordered set of two or more elements. */",
+        "  private static final class CompactSet<E> extends AbstractSet<E> implements Serializable {",
+        "",
+        "    private static final long serialVersionUID = 1L;",
+        "",
+        "    private final Object[] elements;",
+        "    private final int[] table;",
+        "",
+        "    CompactSet(Set<E> elements) {",
+        "      this.elements = elements.toArray();",
+        "      this.table = CompactHashIndex.newTable(this.elements);",
+        "    }",
+        "",
+        "    @Override",
+        "    public int size() {",
+        "      return elements.length;",
+        "    }",
+        "",
+        "    @Override",
+        "    public boolean contains(Object o) {",
+        "      return CompactHashIndex.indexOf(elements, table, o) >= 0;",
+        "    }",
+        "",
+        "    @Override",
+        "    public Iterator<E> iterator() {",
+        "      return new Iterator<E>() {",
+        "        private int index = 0;",
+        "",
+        "        @Override",
+        "        public boolean hasNext() {",
+        "          return index < elements.length;",
+        "        }",
+        "",
+        "        @SuppressWarnings(\"unchecked\")",
+        "        @Override",
+        "        public E next() {",
+        "          if (!hasNext()) {",
+        "            throw new NoSuchElementException();",
+        "          }",
+        "          return (E) elements[index++];",
+        "        }",
+        "      };",
+        "    }",
+        "  }",
+        "}\n"));
+  }
+
   @Test
   public void test_prefixless() {
     Metadata metadata = createMetadata(false);
@@ -1216,6 +1665,7 @@ public class SetSourceTest {
         "  }",
         "",
         "  private Set<String> name = ImmutableSet.of();",
+        "  private transient Person _lastBuilt;",
         "",
         "  /**",
         "   * Adds {@code element} to the set to be returned from {@link Person#name()}.",
@@ -1230,6 +1680,7 @@ public class SetSourceTest {
         "      this.name = new LinkedHashSet<String>(this.name);",
         "    }",
         "    this.name.add(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1274,6 +1725,7 @@ public class SetSourceTest {
         "      this.name = new LinkedHashSet<String>(this.name);",
         "    }",
         "    this.name.remove(Preconditions.checkNotNull(element));",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1288,6 +1740,7 @@ public class SetSourceTest {
         "    } else {",
         "      name.clear();",
         "    }",
+        "    _lastBuilt = null;",
         "    return (Person.Builder) this;",
         "  }",
         "",
@@ -1307,6 +1760,7 @@ public class SetSourceTest {
         "   * Sets all property values using the given {@code Person} as a template.",
         "   */",
         "  public Person.Builder mergeFrom(Person value) {",
+        "    _lastBuilt = null;",
         "    if (value instanceof Person_Builder.Value && name == ImmutableSet.<String>of()) {",
         "      name = ImmutableSet.copyOf(value.name());",
         "    } else {",
@@ -1320,6 +1774,7 @@ public class SetSourceTest {
         "   * Does not affect any properties not set on the input.",
         "   */",
         "  public Person.Builder mergeFrom(Person.Builder template) {",
+        "    _lastBuilt = null;",
         "    addAllName(((Person_Builder) template).name);",
         "    return (Person.Builder) this;",
         "  }",
@@ -1328,6 +1783,7 @@ public class SetSourceTest {
         "   * Resets the state of this builder.",
         "   */",
         "  public Person.Builder clear() {",
+        "    _lastBuilt = null;",
         "    clearName();",
         "    return (Person.Builder) this;",
         "  }",
@@ -1336,7 +1792,12 @@ public class SetSourceTest {
         "   * Returns a newly-created {@link Person} based on the contents of the {@code Builder}.",
         "   */",
         "  public Person build() {",
-        "    return new Person_Builder.Value(this);",
+        "    if (_lastBuilt != null) {",
+        "      return _lastBuilt;",
+        "    }",
+        "    Person value = new Person_Builder.Value(this);",
+        "    _lastBuilt = value;",
+        "    return value;",
         "  }",
         "",
         "  /**",
@@ -1369,7 +1830,8 @@ public class SetSourceTest {
         "        return false;",
         "      }",
         "      Person_Builder.Value other = (Person_Builder.Value) obj;",
-        "      if (!name.equals(other.name)) {",
+        "      if (name != other.name && (name.size() != other.name.size() || "
+            + "!name.equals(other.name))) {",
         "        return false;",
         "      }",
         "      return true;",
@@ -1377,7 +1839,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1412,7 +1876,9 @@ public class SetSourceTest {
         "",
         "    @Override",
         "    public int hashCode() {",
-        "      return Arrays.hashCode(new Object[] {name});",
+        "      int result = 1;",
+        "      result = 31 * result + name.hashCode();",
+        "      return result;",
         "    }",
         "",
         "    @Override",
@@ -1465,7 +1931,7 @@ public class SetSourceTest {
         .clearProperties()
         .addProperties(name.toBuilder()
             .setCodeGenerator(new SetPropertyFactory.CodeGenerator(
-                metadata, name, string, Optional.<TypeMirror>absent(), false))
+                metadata, name, string, Optional.<TypeMirror>absent(), false, false, false))
             .build())
         .build();
   }
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor;
+
+import static org.inferred.freebuilder.processor.util.feature.FunctionPackage.FUNCTION_PACKAGE;
+import static org.inferred.freebuilder.processor.util.feature.GuavaLibrary.GUAVA;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+
+import org.inferred.freebuilder.FreeBuilder;
+import org.inferred.freebuilder.processor.util.feature.FeatureSet;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTestRunner.Shared;
+import org.inferred.freebuilder.processor.util.testing.BehaviorTester;
+import org.inferred.freebuilder.processor.util.testing.ParameterizedBehaviorTestFactory;
+import org.inferred.freebuilder.processor.util.testing.SourceBuilder;
+import org.inferred.freebuilder.processor.util.testing.TestBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runners.Parameterized.UseParametersRunnerFactory;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import javax.tools.JavaFileObject;
+
+/** Behavioral tests for sorted and navigable set and map properties. */
+@RunWith(Parameterized.class)
+@UseParametersRunnerFactory(ParameterizedBehaviorTestFactory.class)
+public class SortedSetMapPropertyTest {
+
+  @Parameters(name = "{0}")
+  public static List<FeatureSet> featureSets() {
+    return FeatureSets.ALL;
+  }
+
+  private static final JavaFileObject SORTED_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract %s<String> getNames();", SortedSet.class)
+      .addLine("  public abstract %s<Integer> getIds();", NavigableSet.class)
+      .addLine("  public abstract %s<String, Integer> getCounts();", SortedMap.class)
+      .addLine("  public abstract %s<Long, String> getEvents();", NavigableMap.class)
+      .addLine("")
+      .addLine("  public static %s<String> namesComparator() {", Comparator.class)
+      .addLine("    return %s.reverseOrder();", Collections.class)
+      .addLine("  }")
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  private static final JavaFileObject IMMUTABLE_SORTED_TYPE = new SourceBuilder()
+      .addLine("package com.example;")
+      .addLine("@%s", FreeBuilder.class)
+      .addLine("public abstract class DataType {")
+      .addLine("  public abstract %s<String> getNames();", ImmutableSortedSet.class)
+      .addLine("  public abstract %s<String, Integer> getCounts();", ImmutableSortedMap.class)
+      .addLine("")
+      .addLine("  public static class Builder extends DataType_Builder {}")
+      .addLine("}")
+      .build();
+
+  @Parameter public FeatureSet features;
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+  @Shared public BehaviorTester behaviorTester;
+
+  @Test
+  public void testIteratesInSortedOrder() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addNames(\"bob\", \"alice\", \"carol\")")
+            .addLine("    .addIds(3, 1, 2, 1)")
+            .addLine("    .putCounts(\"b\", 2)")
+            .addLine("    .putCounts(\"a\", 1)")
+            .addLine("    .putEvents(20L, \"twenty\")")
+            .addLine("    .putEvents(10L, \"ten\")")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getNames())")
+            .addLine("    .containsExactly(\"carol\", \"bob\", \"alice\").inOrder();")
+            .addLine("assertThat(value.getIds()).containsExactly(1, 2, 3).inOrder();")
+            .addLine("assertThat(value.getCounts().keySet())")
+            .addLine("    .containsExactly(\"a\", \"b\").inOrder();")
+            .addLine("assertThat(value.getEvents().keySet()).containsExactly(10L, 20L).inOrder();")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testNavigableMethods() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(5, 1, 3)")
+            .addLine("    .putEvents(20L, \"twenty\")")
+            .addLine("    .putEvents(10L, \"ten\")")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getIds().ceiling(2)).isEqualTo(3);")
+            .addLine("assertThat(value.getIds().headSet(3, true)).containsExactly(1, 3).inOrder();")
+            .addLine("assertThat(value.getEvents().floorKey(15L)).isEqualTo(10L);")
+            .addLine("assertThat(value.getEvents().lastEntry().getValue()).isEqualTo(\"twenty\");")
+            .addLine("assertThat(value.getNames().comparator())")
+            .addLine("    .isEqualTo(DataType.namesComparator());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testEqualsOtherSetAndMapImplementations() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(2, 1)")
+            .addLine("    .putCounts(\"a\", 1)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getIds()).isEqualTo(%s.of(1, 2));", ImmutableSortedSet.class)
+            .addLine("assertThat(value.getCounts()).isEqualTo(%s.of(\"a\", 1));",
+                ImmutableMap.class)
+            .addLine("assertThat(value).isEqualTo(new DataType.Builder()")
+            .addLine("    .addAllIds(%s.of(1, 2))", ImmutableSortedSet.class)
+            .addLine("    .putAllCounts(%s.of(\"a\", 1))", ImmutableMap.class)
+            .addLine("    .build());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testRemove() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(1, 2, 3)")
+            .addLine("    .removeIds(2)")
+            .addLine("    .putEvents(10L, \"ten\")")
+            .addLine("    .putEvents(20L, \"twenty\")")
+            .addLine("    .removeEvents(10L)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getIds()).containsExactly(1, 3).inOrder();")
+            .addLine("assertThat(value.getEvents()).isEqualTo(%s.of(20L, \"twenty\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuiltSortedSetIsImmutable() {
+    thrown.expect(UnsupportedOperationException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().build();")
+            .addLine("value.getNames().add(\"alice\");")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testBuiltSortedMapIsImmutable() {
+    thrown.expect(UnsupportedOperationException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder().build();")
+            .addLine("value.getCounts().put(\"a\", 1);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testModifyingNavigableCollectionsDoesNotModifyValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(1)")
+            .addLine("    .putEvents(10L, \"ten\")")
+            .addLine("    .build();")
+            .addLine("try {")
+            .addLine("  value.getIds().add(2);")
+            .addLine("} catch (UnsupportedOperationException expected) { }")
+            .addLine("try {")
+            .addLine("  value.getEvents().pollFirstEntry();")
+            .addLine("} catch (UnsupportedOperationException expected) { }")
+            .addLine("assertThat(value.getIds()).containsExactly(1);")
+            .addLine("assertThat(value.getEvents()).isEqualTo(%s.of(10L, \"ten\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testModifyingBuilderDoesNotModifyBuiltValue() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType.Builder builder = new DataType.Builder()")
+            .addLine("    .addNames(\"alice\")")
+            .addLine("    .putCounts(\"a\", 1);")
+            .addLine("DataType value = builder.build();")
+            .addLine("builder.addNames(\"bob\");")
+            .addLine("builder.putCounts(\"a\", 2);")
+            .addLine("assertThat(value.getNames()).containsExactly(\"alice\");")
+            .addLine("assertThat(value.getCounts().get(\"a\")).isEqualTo(1);")
+            .addLine("DataType copy = DataType.Builder.from(value).build();")
+            .addLine("assertThat(copy).isEqualTo(value);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFrom() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addNames(\"alice\")")
+            .addLine("    .putEvents(10L, \"ten\")")
+            .addLine("    .build();")
+            .addLine("DataType.Builder template = new DataType.Builder()")
+            .addLine("    .addNames(\"carol\");")
+            .addLine("DataType merged = new DataType.Builder()")
+            .addLine("    .addNames(\"bob\")")
+            .addLine("    .mergeFrom(value)")
+            .addLine("    .mergeFrom(template)")
+            .addLine("    .build();")
+            .addLine("assertThat(merged.getNames())")
+            .addLine("    .containsExactly(\"carol\", \"bob\", \"alice\").inOrder();")
+            .addLine("assertThat(merged.getEvents()).isEqualTo(%s.of(10L, \"ten\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFromValueIntoEmptyBuilderThenModify() {
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addNames(\"alice\", \"carol\")")
+            .addLine("    .putEvents(10L, \"ten\")")
+            .addLine("    .build();")
+            .addLine("DataType.Builder builder = new DataType.Builder().mergeFrom(value);")
+            .addLine("assertThat(builder.build().getEvents()).isEqualTo(value.getEvents());")
+            .addLine("DataType modified = builder")
+            .addLine("    .addNames(\"bob\")")
+            .addLine("    .removeEvents(10L)")
+            .addLine("    .build();")
+            .addLine("assertThat(modified.getNames())")
+            .addLine("    .containsExactly(\"carol\", \"bob\", \"alice\").inOrder();")
+            .addLine("assertThat(modified.getEvents()).isEmpty();")
+            .addLine("assertThat(value.getNames())")
+            .addLine("    .containsExactly(\"carol\", \"alice\").inOrder();")
+            .addLine("assertThat(value.getEvents()).isEqualTo(%s.of(10L, \"ten\"));",
+                ImmutableMap.class)
+            .addLine("DataType cleared = builder.clearNames().addNames(\"dave\").build();")
+            .addLine("assertThat(cleared.getNames()).containsExactly(\"dave\");")
+            .addLine("assertThat(cleared.getNames().comparator())")
+            .addLine("    .isEqualTo(DataType.namesComparator());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMergeFromValueSharesImmutableMap() {
+    assumeTrue("Guava available", features.get(GUAVA).isAvailable());
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .putCounts(\"a\", 1)")
+            .addLine("    .build();")
+            .addLine("DataType copy = new DataType.Builder().mergeFrom(value).build();")
+            .addLine("assertThat(copy.getCounts()).isSameAs(value.getCounts());")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testImmutableSortedTypes() {
+    assumeTrue("Guava available", features.get(GUAVA).isAvailable());
+    behaviorTester
+        .with(new Processor(features))
+        .with(IMMUTABLE_SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addNames(\"bob\", \"alice\")")
+            .addLine("    .putCounts(\"b\", 2)")
+            .addLine("    .putCounts(\"a\", 1)")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getNames())")
+            .addLine("    .containsExactly(\"alice\", \"bob\").inOrder();")
+            .addLine("assertThat(value.getCounts().firstKey()).isEqualTo(\"a\");")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testAddNull() {
+    thrown.expect(NullPointerException.class);
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("new DataType.Builder().addNames((String) null);")
+            .build())
+        .runTest();
+  }
+
+  @Test
+  public void testMutate() {
+    assumeTrue("Environment has lambdas", features.get(FUNCTION_PACKAGE).consumer().isPresent());
+    behaviorTester
+        .with(new Processor(features))
+        .with(SORTED_TYPE)
+        .with(testBuilder()
+            .addLine("DataType value = new DataType.Builder()")
+            .addLine("    .addIds(1)")
+            .addLine("    .mutateIds(ids -> {")
+            .addLine("      ids.remove(1);")
+            .addLine("      ids.add(7);")
+            .addLine("      ids.add(4);")
+            .addLine("    })")
+            .addLine("    .mutateEvents(events -> events.put(10L, \"ten\"))")
+            .addLine("    .build();")
+            .addLine("assertThat(value.getIds()).containsExactly(4, 7).inOrder();")
+            .addLine("assertThat(value.getEvents()).isEqualTo(%s.of(10L, \"ten\"));",
+                ImmutableMap.class)
+            .build())
+        .runTest();
+  }
+
+  private static TestBuilder testBuilder() {
+    return new TestBuilder()
+        .addImport("com.example.DataType");
+  }
+}
@@ -92,6 +92,41 @@ public class CompilationUnitBuilderTest {
         source.toString());
   }
 
+  @Test
+  public void testIndentsWithoutGoogleJavaFormat() {
+    CompilationUnitBuilder source = newSourceWriter("com.example", "Bar");
+    source
+        .addLine("public class Bar {")
+        .addLine("public   void baz() {")
+        .addLine("}")
+        .addLine("}");
+    assertEquals(
+        "// Autogenerated code. Do not modify.\n"
+            + "package com.example;\n\n"
+            + "public class Bar {\n"
+            + "  public void baz() {\n"
+            + "  }\n"
+            + "}\n",
+        source.toString());
+  }
+
+  @Test
+  public void testGoogleJavaFormat() {
+    CompilationUnitBuilder source = newSourceWriter("com.example", "Bar", true);
+    source
+        .addLine("public class Bar {")
+        .addLine("public   void baz() {")
+        .addLine("}")
+        .addLine("}");
+    assertEquals(
+        "// Autogenerated code. Do not modify.\n"
+            + "package com.example;\n\n"
+            + "public class Bar {\n"
+            + "  public void baz() {}\n"
+            + "}\n",
+        source.toString());
+  }
+
   @Test
   public void testAddLine_typeInSamePackage() {
     CompilationUnitBuilder source = newSourceWriter("com.example", "Bar");
@@ -207,12 +242,18 @@ public class CompilationUnitBuilderTest {
   }
 
   private CompilationUnitBuilder newSourceWriter(String pkg, String simpleName) {
+    return newSourceWriter(pkg, simpleName, false);
+  }
+
+  private CompilationUnitBuilder newSourceWriter(
+      String pkg, String simpleName, boolean googleJavaFormat) {
     ProcessingEnvironment environment = Mockito.spy(model.environment());
     doReturn(filer).when(environment).getFiler();
     return new CompilationUnitBuilder(
         environment,
         QualifiedName.of(pkg, simpleName),
         ImmutableSet.<QualifiedName>of(),
-        new StaticFeatureSet());
+        new StaticFeatureSet(),
+        googleJavaFormat);
   }
 }
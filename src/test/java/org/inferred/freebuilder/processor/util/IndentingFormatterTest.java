@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 Google Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.inferred.freebuilder.processor.util;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Joiner;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class IndentingFormatterTest {
+
+  @Test
+  public void testEmptySource() {
+    assertEquals("\n", IndentingFormatter.format(""));
+  }
+
+  @Test
+  public void testReindentsBlocks() {
+    assertFormats(
+        lines(
+            "class Foo {",
+            "public void bar() {",
+            "    if (baz) {",
+            "qux();",
+            "}",
+            "  }",
+            "}"),
+        lines(
+            "class Foo {",
+            "  public void bar() {",
+            "    if (baz) {",
+            "      qux();",
+            "    }",
+            "  }",
+            "}"));
+  }
+
+  @Test
+  public void testKeepsContinuationOffset() {
+    assertFormats(
+        lines(
+            "class Foo {",
+            "      return a",
+            "          && b",
+            "  || c;",
+            "}"),
+        lines(
+            "class Foo {",
+            "  return a",
+            "      && b",
+            "      || c;",
+            "}"));
+  }
+
+  @Test
+  public void testMultiLineDeclaration() {
+    assertFormats(
+        lines(
+            "class Foo {",
+            "public Foo(",
+            "    int a,",
+            "    int b) {",
+            "this.a = a;",
+            "}",
+            "}"),
+        lines(
+            "class Foo {",
+            "  public Foo(",
+            "      int a,",
+            "      int b) {",
+            "    this.a = a;",
+            "  }",
+            "}"));
+  }
+
+  @Test
+  public void testAnonymousClass() {
+    assertFormats(
+        lines(
+            "class Foo {",
+            "Runnable r = new Runnable() {",
+            "@Override",
+            "public void run() {}",
+            "};",
+            "}"),
+        lines(
+            "class Foo {",
+            "  Runnable r = new Runnable() {",
+            "    @Override",
+            "    public void run() {}",
+            "  };",
+            "}"));
+  }
+
+  @Test
+  public void testEnumConstants() {
+    assertFormats(
+        lines(
+            "enum Property {",
+            "NAME(\"name\"),",
+            "AGE(\"age\");",
+            "}"),
+        lines(
+            "enum Property {",
+            "  NAME(\"name\"),",
+            "  AGE(\"age\");",
+            "}"));
+  }
+
+  @Test
+  public void testSwitch() {
+    assertFormats(
+        lines(
+            "switch (x) {",
+            "case A:",
+            "return 1;",
+            "default:",
+            "return 2;",
+            "}"),
+        lines(
+            "switch (x) {",
+            "  case A:",
+            "    return 1;",
+            "  default:",
+            "    return 2;",
+            "}"));
+  }
+
+  @Test
+  public void testCollapsesSpacesOutsideLiterals() {
+    assertFormats(
+        lines("String s =  \"a  {  b\"  +  'c';  // x  {  y"),
+        lines("String s = \"a  {  b\" + 'c'; // x  {  y"));
+  }
+
+  @Test
+  public void testCollapsesBlankLines() {
+    assertFormats(
+        lines("", "class Foo {", "", "", "int a;", "", "int b;", "}"),
+        lines("class Foo {", "", "  int a;", "", "  int b;", "}"));
+  }
+
+  @Test
+  public void testJavadoc() {
+    assertFormats(
+        lines(
+            "class Foo {",
+            "/**",
+            "* Braces { in comments",
+            "* are ignored.",
+            "*/",
+            "int a;",
+            "}"),
+        lines(
+            "class Foo {",
+            "  /**",
+            "   * Braces { in comments",
+            "   * are ignored.",
+            "   */",
+            "  int a;",
+            "}"));
+  }
+
+  @Test
+  public void testAnnotationOnOwnLine() {
+    assertFormats(
+        lines(
+            "class Foo {",
+            "@SuppressWarnings(\"unchecked\")",
+            "int a;",
+            "}"),
+        lines(
+            "class Foo {",
+            "  @SuppressWarnings(\"unchecked\")",
+            "  int a;",
+            "}"));
+  }
+
+  private static void assertFormats(String source, String expected) {
+    assertEquals(expected, IndentingFormatter.format(source));
+  }
+
+  private static String lines(String... lines) {
+    return Joiner.on('\n').join(lines) + "\n";
+  }
+}